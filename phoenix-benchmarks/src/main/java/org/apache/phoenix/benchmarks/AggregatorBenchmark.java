@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Server side aggregation of every row of the fixture table. The aggregators are
+ * deserialized from the scan of a compiled GROUP BY query, exactly as the region
+ * observer gets them, so that each aggregate function uses its real aggregator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregatorBenchmark {
+
+    public enum Function {
+        COUNT("COUNT(*)"),
+        SUM_LONG("SUM(A_LONG)"),
+        SUM_DECIMAL("SUM(A_DECIMAL)"),
+        SUM_DOUBLE("SUM(A_DOUBLE)"),
+        MIN_INTEGER("MIN(A_INTEGER)"),
+        MAX_VARCHAR("MAX(A_STRING)"),
+        AVG_INTEGER("AVG(A_INTEGER)"),
+        DISTINCT_COUNT("COUNT(DISTINCT A_INTEGER)"),
+        ALL("COUNT(*), SUM(A_LONG), SUM(A_DECIMAL), SUM(A_DOUBLE), MIN(A_INTEGER), MAX(A_STRING)");
+
+        private final String sql;
+
+        Function(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    @Param
+    public Function function;
+
+    private Configuration conf;
+    private ServerAggregators aggregators;
+    private Tuple[] tuples;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            BenchmarkFixtures.createTable(conn, BenchmarkFixtures.TABLE_NAME);
+            tuples = BenchmarkFixtures.toTuples(
+                    BenchmarkFixtures.generateRows(conn, BenchmarkFixtures.TABLE_NAME));
+            conf = conn.getQueryServices().getConfiguration();
+            byte[] serializedAggregators = BenchmarkFixtures.compile(conn,
+                    "SELECT ORG_ID, " + function.sql + " FROM " + BenchmarkFixtures.TABLE_NAME
+                            + " GROUP BY ORG_ID")
+                    .getContext().getScan().getAttribute(BaseScannerRegionObserver.AGGREGATORS);
+            aggregators = ServerAggregators.deserialize(serializedAggregators, conf, null);
+        }
+    }
+
+    @Benchmark
+    public byte[] aggregate() {
+        Aggregator[] rowAggregators = aggregators.newAggregators(conf);
+        for (Tuple tuple : tuples) {
+            aggregators.aggregate(rowAggregators, tuple);
+        }
+        return aggregators.toBytes(rowAggregators);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.types.PArrayDataType;
+import org.apache.phoenix.schema.types.PArrayDataTypeDecoder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Access to the elements of serialized arrays of fixed and variable width types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayBenchmark {
+
+    @Param({ "INTEGER", "VARCHAR" })
+    public String baseSqlType;
+
+    @Param({ "10", "1000" })
+    public int elementCount;
+
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private PDataType baseType;
+    private PDataType arrayType;
+    private byte[] array;
+
+    @Setup
+    public void setup() {
+        baseType = PDataType.fromSqlTypeName(baseSqlType);
+        arrayType = PDataType.fromTypeId(baseType.getSqlType() + PDataType.ARRAY_TYPE_BASE);
+        Random random = new Random(elementCount);
+        Object[] elements = new Object[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            elements[i] = baseType.isFixedWidth() ? (Object)random.nextInt() : Integer.toString(random.nextInt());
+        }
+        array = arrayType.toBytes(PArrayDataType.instantiatePhoenixArray(baseType, elements));
+    }
+
+    /**
+     * Positions on every element in turn, like ARRAY_ELEMENT_AT over each index
+     */
+    @Benchmark
+    public void positionAtElement(Blackhole bh) {
+        for (int i = 0; i < elementCount; i++) {
+            ptr.set(array);
+            PArrayDataTypeDecoder.positionAtArrayElement(ptr, i, baseType, baseType.getByteSize());
+            bh.consume(ptr.getLength());
+        }
+    }
+
+    @Benchmark
+    public Object decodeArray() {
+        return arrayType.toObject(array);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PhoenixRuntime;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * In-memory fixtures shared by the benchmarks. Tables are created through a
+ * connectionless Phoenix connection and rows are produced as the uncommitted
+ * KeyValues of UPSERT statements, so that no cluster is needed.
+ */
+final class BenchmarkFixtures {
+    static final String URL = PhoenixRuntime.JDBC_PROTOCOL
+            + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR + PhoenixRuntime.CONNECTIONLESS;
+
+    static final String TABLE_NAME = "BENCH";
+    static final String INDEXED_TABLE_NAME = "BENCH_INDEXED";
+    static final String INDEX_NAME = "BENCH_IDX";
+
+    static final int ORG_COUNT = 10;
+    static final int ENTITIES_PER_ORG = 1000;
+
+    private static final long SEED = 0xB4C3L;
+    private static final long BASE_DATE = 1577836800000L; // 2020-01-01
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private BenchmarkFixtures() {
+    }
+
+    static PhoenixConnection connect() throws SQLException {
+        return DriverManager.getConnection(URL).unwrap(PhoenixConnection.class);
+    }
+
+    /**
+     * Create the benchmark table if it does not exist yet. Columns are not encoded,
+     * so that cells may be looked up by column name like on most existing tables.
+     */
+    static PTable createTable(PhoenixConnection conn, String tableName) throws SQLException {
+        conn.createStatement().execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                + "ORG_ID CHAR(15) NOT NULL, "
+                + "ENTITY_ID VARCHAR NOT NULL, "
+                + "CREATED_DATE DATE NOT NULL, "
+                + "A_INTEGER INTEGER, "
+                + "A_LONG BIGINT, "
+                + "A_DECIMAL DECIMAL(12,2), "
+                + "A_DOUBLE DOUBLE, "
+                + "A_STRING VARCHAR, "
+                + "A_DATE DATE "
+                + "CONSTRAINT PK PRIMARY KEY (ORG_ID, ENTITY_ID, CREATED_DATE)) "
+                + "COLUMN_ENCODED_BYTES=0");
+        return getTable(conn, tableName);
+    }
+
+    /**
+     * Create a table with the same columns as {@link #createTable(PhoenixConnection, String)}
+     * and a covered global index on it.
+     */
+    static PTable createIndexedTable(PhoenixConnection conn) throws SQLException {
+        createTable(conn, INDEXED_TABLE_NAME);
+        conn.createStatement().execute("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON "
+                + INDEXED_TABLE_NAME + " (A_STRING, A_INTEGER) INCLUDE (A_LONG, A_DATE)");
+        return getTable(conn, INDEXED_TABLE_NAME);
+    }
+
+    static PTable getTable(PhoenixConnection conn, String tableName) throws SQLException {
+        return conn.getTable(new PTableKey(conn.getTenantId(), tableName));
+    }
+
+    static String orgId(int i) {
+        return String.format("org%012d", i);
+    }
+
+    static String entityId(int i) {
+        return String.format("e%05d", i);
+    }
+
+    /**
+     * Generate {@link #ORG_COUNT} * {@link #ENTITIES_PER_ORG} rows with pseudo random
+     * column values. The same rows are returned on every call.
+     * @return the cells of each row, with rows in row key order
+     */
+    static List<List<Cell>> generateRows(PhoenixConnection conn, String tableName) throws SQLException {
+        Random random = new Random(SEED);
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        for (int org = 0; org < ORG_COUNT; org++) {
+            for (int entity = 0; entity < ENTITIES_PER_ORG; entity++) {
+                stmt.setString(1, orgId(org));
+                stmt.setString(2, entityId(entity));
+                stmt.setDate(3, new Date(BASE_DATE + random.nextInt(365) * DAY));
+                stmt.setInt(4, random.nextInt(1000000));
+                stmt.setLong(5, random.nextLong());
+                stmt.setBigDecimal(6, BigDecimal.valueOf(random.nextInt(10000000), 2));
+                stmt.setDouble(7, random.nextDouble() * 1000);
+                stmt.setString(8, randomString(random));
+                stmt.setDate(9, new Date(BASE_DATE + random.nextInt(365) * DAY));
+                stmt.execute();
+            }
+        }
+        try {
+            Iterator<Pair<byte[], List<Cell>>> iterator = PhoenixRuntime.getUncommittedDataIterator(conn);
+            return splitByRow(iterator.next().getSecond());
+        } finally {
+            conn.rollback();
+        }
+    }
+
+    private static String randomString(Random random) {
+        int length = 4 + random.nextInt(28);
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append((char)('a' + random.nextInt(26)));
+        }
+        return buf.toString();
+    }
+
+    private static List<List<Cell>> splitByRow(List<Cell> cells) {
+        List<List<Cell>> rows = Lists.newArrayList();
+        List<Cell> row = null;
+        for (Cell cell : cells) {
+            if (row == null || !CellUtil.matchingRows(row.get(0), cell)) {
+                row = Lists.newArrayList();
+                rows.add(row);
+            }
+            row.add(cell);
+        }
+        return rows;
+    }
+
+    static Tuple[] toTuples(List<List<Cell>> rows) {
+        Tuple[] tuples = new Tuple[rows.size()];
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i] = new MultiKeyValueTuple(rows.get(i));
+        }
+        return tuples;
+    }
+
+    static QueryPlan compile(PhoenixConnection conn, String sql) throws SQLException {
+        return conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(sql);
+    }
+
+    /**
+     * Get the WHERE clause expression that would be evaluated on the server for the query.
+     * @throws IllegalStateException if the whole WHERE clause was turned into key ranges
+     */
+    static Expression getFilterExpression(QueryPlan plan) {
+        Expression expression = findFilterExpression(plan.getContext().getScan().getFilter());
+        if (expression == null) {
+            throw new IllegalStateException("No filter expression for " + plan);
+        }
+        return expression;
+    }
+
+    private static Expression findFilterExpression(Filter filter) {
+        if (filter instanceof BooleanExpressionFilter) {
+            return ((BooleanExpressionFilter)filter).getExpression();
+        }
+        if (filter instanceof FilterList) {
+            for (Filter child : ((FilterList)filter).getFilters()) {
+                Expression expression = findFilterExpression(child);
+                if (expression != null) {
+                    return expression;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.filter.CompiledPredicate;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Evaluation of compiled WHERE clauses against every row of the fixture table, the
+ * same way the filter pushed down to the region server evaluates them, both by
+ * interpreting the expression and through its {@link CompiledPredicate}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    public enum WhereClause {
+        COMPARISON("A_INTEGER > 500000 AND A_LONG < 0"),
+        IN_LIST("A_INTEGER IN (1, 10, 100, 1000, 10000, 100000) OR A_STRING IN ('abcd', 'efgh', 'ijkl')"),
+        LIKE("A_STRING LIKE 'ab%' OR A_STRING LIKE '%xyz%'"),
+        ARITHMETIC("A_DECIMAL * 2 + A_INTEGER > 100000.5 AND A_DOUBLE / 3 < 200"),
+        FUNCTION("UPPER(SUBSTR(A_STRING, 2, 3)) = 'ABC' OR TRUNC(A_DATE, 'DAY') > TO_DATE('2020-06-01')"),
+        LONG_ARITHMETIC("A_LONG + A_INTEGER * 2 > 0 AND A_LONG % 7 = 3"),
+        CASE_CONVERSION("UPPER(A_STRING) = 'ABCD' OR LOWER(UPPER(A_STRING)) LIKE 'x%'"),
+        DATE_FUNCTION("YEAR(A_DATE) = 2020 AND (MONTH(A_DATE) = 6 OR DAYOFWEEK(A_DATE) = 1)");
+
+        private final String sql;
+
+        WhereClause(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    @Param
+    public WhereClause whereClause;
+
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private Expression expression;
+    private CompiledPredicate predicate;
+    private Tuple[] tuples;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            BenchmarkFixtures.createTable(conn, BenchmarkFixtures.TABLE_NAME);
+            tuples = BenchmarkFixtures.toTuples(
+                    BenchmarkFixtures.generateRows(conn, BenchmarkFixtures.TABLE_NAME));
+            expression = BenchmarkFixtures.getFilterExpression(BenchmarkFixtures.compile(conn,
+                    "SELECT * FROM " + BenchmarkFixtures.TABLE_NAME + " WHERE " + whereClause.sql));
+            predicate = CompiledPredicate.compile(expression);
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole bh) {
+        for (Tuple tuple : tuples) {
+            expression.reset();
+            bh.consume(expression.evaluate(tuple, ptr));
+        }
+    }
+
+    @Benchmark
+    public void evaluateCompiled(Blackhole bh) {
+        if (predicate == null) { // Nothing to compile, same as evaluate
+            evaluate(bh);
+            return;
+        }
+        for (Tuple tuple : tuples) {
+            expression.reset();
+            predicate.reset();
+            bh.consume(predicate.evaluate(tuple));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.hbase.index.ValueGetter;
+import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
+import org.apache.phoenix.hbase.index.util.GenericKeyValueBuilder;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Generation of the index row of a covered global index for data table rows, as
+ * done for every data table mutation by the index region observer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexMaintainerBenchmark {
+    private static final int ROW_COUNT = 1024;
+
+    private IndexMaintainer maintainer;
+    private ImmutableBytesWritable[] rowKeys;
+    private ValueGetter[] valueGetters;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            PTable table = BenchmarkFixtures.createIndexedTable(conn);
+            ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+            table.getIndexMaintainers(ptr, conn);
+            maintainer = IndexMaintainer.deserialize(ptr, GenericKeyValueBuilder.INSTANCE, true).get(0);
+
+            List<List<Cell>> rows = BenchmarkFixtures.generateRows(conn, BenchmarkFixtures.INDEXED_TABLE_NAME);
+            int step = rows.size() / ROW_COUNT;
+            rowKeys = new ImmutableBytesWritable[ROW_COUNT];
+            valueGetters = new ValueGetter[ROW_COUNT];
+            for (int i = 0; i < ROW_COUNT; i++) {
+                List<Cell> row = rows.get(i * step);
+                rowKeys[i] = new ImmutableBytesWritable(CellUtil.cloneRow(row.get(0)));
+                valueGetters[i] = newValueGetter(rowKeys[i].get(), row);
+            }
+        }
+    }
+
+    private static ValueGetter newValueGetter(final byte[] rowKey, List<Cell> row) {
+        final Map<ColumnReference, ImmutableBytesWritable> values = Maps.newHashMapWithExpectedSize(row.size());
+        for (Cell cell : row) {
+            values.put(new ColumnReference(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell)),
+                    new ImmutableBytesWritable(CellUtil.cloneValue(cell)));
+        }
+        return new ValueGetter() {
+
+            @Override
+            public ImmutableBytesWritable getLatestValue(ColumnReference ref, long ts) {
+                return values.get(ref);
+            }
+
+            @Override
+            public byte[] getRowKey() {
+                return rowKey;
+            }
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void buildUpdateMutation(Blackhole bh) throws Exception {
+        for (int i = 0; i < ROW_COUNT; i++) {
+            bh.consume(maintainer.buildUpdateMutation(GenericKeyValueBuilder.INSTANCE, valueGetters[i],
+                    rowKeys[i], HConstants.LATEST_TIMESTAMP, null, null));
+        }
+    }
+}
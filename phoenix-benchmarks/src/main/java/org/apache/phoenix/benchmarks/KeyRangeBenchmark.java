@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.query.KeyRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Intersection of single key ranges and of sorted lists of key ranges, as done when
+ * compiling WHERE clauses and when matching scan ranges against region boundaries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyRangeBenchmark {
+    private static final int RANGE_COUNT = 1024;
+
+    /**
+     * Number of ranges in each of the lists being intersected
+     */
+    @Param({ "10", "1000" })
+    public int listSize;
+
+    private KeyRange[] ranges;
+    private List<KeyRange> list1;
+    private List<KeyRange> list2;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(RANGE_COUNT);
+        ranges = new KeyRange[RANGE_COUNT];
+        for (int i = 0; i < RANGE_COUNT; i++) {
+            ranges[i] = newRange(random, random.nextInt(10000), 1000);
+        }
+        list1 = newSortedRanges(random, listSize);
+        list2 = newSortedRanges(random, listSize);
+    }
+
+    private static KeyRange newRange(Random random, long start, int maxWidth) {
+        boolean lowerUnbound = random.nextInt(20) == 0;
+        boolean upperUnbound = random.nextInt(20) == 0;
+        return KeyRange.getKeyRange(
+                lowerUnbound ? KeyRange.UNBOUND : Bytes.toBytes(start), random.nextBoolean(),
+                upperUnbound ? KeyRange.UNBOUND : Bytes.toBytes(start + 1 + random.nextInt(maxWidth)),
+                random.nextBoolean());
+    }
+
+    private static List<KeyRange> newSortedRanges(Random random, int size) {
+        List<KeyRange> ranges = Lists.newArrayListWithExpectedSize(size);
+        long start = 0;
+        for (int i = 0; i < size; i++) {
+            start += 1 + random.nextInt(100);
+            long end = start + 1 + random.nextInt(100);
+            ranges.add(KeyRange.getKeyRange(Bytes.toBytes(start), true, Bytes.toBytes(end), false));
+            start = end;
+        }
+        return ranges;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RANGE_COUNT)
+    public void intersect(Blackhole bh) {
+        KeyRange prev = ranges[RANGE_COUNT - 1];
+        for (KeyRange range : ranges) {
+            bh.consume(prev.intersect(range));
+            prev = range;
+        }
+    }
+
+    @Benchmark
+    public List<KeyRange> intersectLists() {
+        return KeyRange.intersect(list1, list2);
+    }
+}
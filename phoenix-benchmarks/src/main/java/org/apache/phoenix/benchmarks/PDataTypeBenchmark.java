@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding, decoding and comparison of serialized values for the most used types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PDataTypeBenchmark {
+    private static final int VALUE_COUNT = 1024;
+
+    @Param({ "INTEGER", "BIGINT", "DECIMAL", "VARCHAR", "DATE", "TIMESTAMP" })
+    public String sqlType;
+
+    @Param({ "ASC", "DESC" })
+    public SortOrder sortOrder;
+
+    private PDataType type;
+    private Object[] values;
+    private byte[][] encoded;
+
+    @Setup
+    public void setup() {
+        type = PDataType.fromSqlTypeName(sqlType);
+        Random random = new Random(VALUE_COUNT);
+        values = new Object[VALUE_COUNT];
+        encoded = new byte[VALUE_COUNT][];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = newValue(random);
+            encoded[i] = type.toBytes(values[i], sortOrder);
+        }
+    }
+
+    private Object newValue(Random random) {
+        long millis = 1577836800000L + (long)random.nextInt(Integer.MAX_VALUE) * 10;
+        switch (sqlType) {
+        case "INTEGER":
+            return random.nextInt();
+        case "BIGINT":
+            return random.nextLong();
+        case "DECIMAL":
+            return BigDecimal.valueOf(random.nextLong() % 100000000000L, random.nextInt(6));
+        case "VARCHAR":
+            StringBuilder buf = new StringBuilder();
+            for (int i = 4 + random.nextInt(28); i > 0; i--) {
+                buf.append((char)('a' + random.nextInt(26)));
+            }
+            return buf.toString();
+        case "DATE":
+            return new Date(millis);
+        case "TIMESTAMP":
+            Timestamp ts = new Timestamp(millis);
+            ts.setNanos(random.nextInt(1000000000));
+            return ts;
+        default:
+            throw new IllegalArgumentException("Unsupported type " + sqlType);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public void encode(Blackhole bh) {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            bh.consume(type.toBytes(values[i], sortOrder));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public void decode(Blackhole bh) {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            byte[] b = encoded[i];
+            bh.consume(type.toObject(b, 0, b.length, type, sortOrder));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public void compareTo(Blackhole bh) {
+        byte[] prev = encoded[VALUE_COUNT - 1];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            byte[] b = encoded[i];
+            bh.consume(type.compareTo(prev, 0, prev.length, sortOrder, b, 0, b.length, sortOrder, type));
+            prev = b;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.phoenix.coprocessor.generated.PTableProtos;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of table metadata to and from its protobuf form, as done for every
+ * table returned by the metadata endpoint and cached on the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PTableProtoBenchmark {
+
+    /**
+     * Whether or not the table has a global index, which is serialized along with the table
+     */
+    @Param({ "false", "true" })
+    public boolean indexed;
+
+    private PTable table;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            table = indexed ? BenchmarkFixtures.createIndexedTable(conn)
+                    : BenchmarkFixtures.createTable(conn, BenchmarkFixtures.TABLE_NAME);
+            serialized = PTableImpl.toProto(table).toByteArray();
+        }
+    }
+
+    @Benchmark
+    public PTableProtos.PTable toProto() {
+        return PTableImpl.toProto(table);
+    }
+
+    @Benchmark
+    public PTable fromProto() throws Exception {
+        return PTableImpl.createFromProto(PTableProtos.PTable.parseFrom(serialized));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.KeyValueSchema;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.RowKeySchema;
+import org.apache.phoenix.schema.ValueBitSet;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Field navigation through a {@link RowKeySchema} over row keys and through a
+ * {@link KeyValueSchema} over aggregated values, as done when extracting columns
+ * from the row key and when merging aggregated rows on the client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaNavigationBenchmark {
+    private static final int KEY_COUNT = 1024;
+
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private RowKeySchema rowKeySchema;
+    private byte[][] rowKeys;
+    private KeyValueSchema valueSchema;
+    private ValueBitSet valueSet;
+    private byte[][] values;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            PTable table = BenchmarkFixtures.createTable(conn, BenchmarkFixtures.TABLE_NAME);
+            List<List<Cell>> rows = BenchmarkFixtures.generateRows(conn, BenchmarkFixtures.TABLE_NAME);
+            rowKeySchema = table.getRowKeySchema();
+            int step = rows.size() / KEY_COUNT;
+            rowKeys = new byte[KEY_COUNT][];
+            for (int i = 0; i < KEY_COUNT; i++) {
+                rowKeys[i] = CellUtil.cloneRow(rows.get(i * step).get(0));
+            }
+
+            // Aggregate each row on its own to get a realistic mix of fixed and variable width values
+            byte[] serializedAggregators = BenchmarkFixtures.compile(conn,
+                    "SELECT ORG_ID, COUNT(*), SUM(A_LONG), SUM(A_DECIMAL), MIN(A_STRING), MAX(A_DATE) FROM "
+                            + BenchmarkFixtures.TABLE_NAME + " GROUP BY ORG_ID")
+                    .getContext().getScan().getAttribute(BaseScannerRegionObserver.AGGREGATORS);
+            ServerAggregators aggregators = ServerAggregators.deserialize(serializedAggregators,
+                    conn.getQueryServices().getConfiguration(), null);
+            valueSchema = aggregators.getValueSchema();
+            valueSet = ValueBitSet.newInstance(valueSchema);
+            Tuple[] tuples = BenchmarkFixtures.toTuples(rows);
+            values = new byte[KEY_COUNT][];
+            Aggregator[] rowAggregators = aggregators.getAggregators();
+            for (int i = 0; i < KEY_COUNT; i++) {
+                aggregators.reset(rowAggregators);
+                aggregators.aggregate(rowAggregators, tuples[i * step]);
+                values[i] = aggregators.toBytes(rowAggregators);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_COUNT)
+    public void rowKeyNext(Blackhole bh) {
+        int fieldCount = rowKeySchema.getFieldCount();
+        for (byte[] rowKey : rowKeys) {
+            int maxOffset = rowKeySchema.iterator(rowKey, ptr);
+            for (int i = 0; i < fieldCount; i++) {
+                bh.consume(rowKeySchema.next(ptr, i, maxOffset));
+            }
+            bh.consume(ptr.getOffset());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_COUNT)
+    public void rowKeyPrevious(Blackhole bh) {
+        int lastField = rowKeySchema.getFieldCount() - 1;
+        for (byte[] rowKey : rowKeys) {
+            // Position on the last field, then walk back to the first one
+            rowKeySchema.iterator(rowKey, ptr, lastField + 1);
+            for (int i = lastField - 1; i >= 0; i--) {
+                bh.consume(rowKeySchema.previous(ptr, i, 0));
+            }
+            bh.consume(ptr.getOffset());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_COUNT)
+    public void valueNext(Blackhole bh) {
+        for (byte[] value : values) {
+            ptr.set(value);
+            valueSet.clear();
+            valueSet.or(ptr);
+            int maxOffset = ptr.getOffset() + ptr.getLength();
+            valueSchema.iterator(ptr);
+            int i = 0;
+            Boolean hasValue;
+            while ((hasValue = valueSchema.next(ptr, i, maxOffset, valueSet)) != null) {
+                bh.consume(hasValue);
+                i++;
+            }
+        }
+    }
+}
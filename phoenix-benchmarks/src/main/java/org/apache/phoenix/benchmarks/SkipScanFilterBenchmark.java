@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Drives a {@link SkipScanFilter} over the sorted rows of a table the way a region
+ * scanner does: every cell goes through filterKeyValue and, when a seek is requested,
+ * the cells before the hint returned by getNextCellHint are skipped. The sparse variant
+ * only keeps every few rows, like a table holding few of the keys of a large IN list,
+ * so that each row moves the filter far ahead within a slot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkipScanFilterBenchmark {
+
+    /**
+     * Number of distinct ENTITY_ID values in the IN list
+     */
+    @Param({ "10", "100", "1000" })
+    public int inListSize;
+
+    private static final int SPARSE_ROW_STEP = 37;
+
+    private SkipScanFilter template;
+    private Cell[] cells;
+    private Cell[] sparseCells;
+
+    @Setup
+    public void setup() throws Exception {
+        try (PhoenixConnection conn = BenchmarkFixtures.connect()) {
+            BenchmarkFixtures.createTable(conn, BenchmarkFixtures.TABLE_NAME);
+            List<List<Cell>> rows = BenchmarkFixtures.generateRows(conn, BenchmarkFixtures.TABLE_NAME);
+            cells = new Cell[rows.size()];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = rows.get(i).get(0);
+            }
+            sparseCells = new Cell[cells.length / SPARSE_ROW_STEP];
+            for (int i = 0; i < sparseCells.length; i++) {
+                sparseCells[i] = cells[i * SPARSE_ROW_STEP];
+            }
+            StringBuilder sql = new StringBuilder("SELECT * FROM " + BenchmarkFixtures.TABLE_NAME
+                    + " WHERE ORG_ID IN ('" + BenchmarkFixtures.orgId(1) + "','"
+                    + BenchmarkFixtures.orgId(5) + "','" + BenchmarkFixtures.orgId(8) + "')"
+                    + " AND ENTITY_ID IN (");
+            int step = BenchmarkFixtures.ENTITIES_PER_ORG / inListSize;
+            for (int i = 0; i < inListSize; i++) {
+                sql.append(i == 0 ? "'" : ",'").append(BenchmarkFixtures.entityId(i * step)).append('\'');
+            }
+            sql.append(')');
+            template = BenchmarkFixtures.compile(conn, sql.toString()).getContext()
+                    .getScanRanges().getSkipScanFilter();
+            if (template == null) {
+                throw new IllegalStateException("Expected a skip scan for " + sql);
+            }
+        }
+    }
+
+    @Benchmark
+    public void filterAndSeek(Blackhole bh) throws Exception {
+        filterAndSeek(cells, bh);
+    }
+
+    @Benchmark
+    public void filterAndSeekSparse(Blackhole bh) throws Exception {
+        filterAndSeek(sparseCells, bh);
+    }
+
+    private void filterAndSeek(Cell[] cells, Blackhole bh) {
+        SkipScanFilter filter = new SkipScanFilter(template, false);
+        int i = 0;
+        while (i < cells.length && !filter.filterAllRemaining()) {
+            Cell cell = cells[i];
+            ReturnCode code = filter.filterKeyValue(cell);
+            if (code == ReturnCode.SEEK_NEXT_USING_HINT) {
+                Cell hint = filter.getNextCellHint(cell);
+                while (i < cells.length && CellComparatorImpl.COMPARATOR.compareRows(cells[i], hint) < 0) {
+                    i++;
+                }
+            } else {
+                bh.consume(code);
+                i++;
+            }
+        }
+    }
+}
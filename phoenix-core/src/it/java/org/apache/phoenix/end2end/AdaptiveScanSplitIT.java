@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Queries whose parallel scans are all split at runtime after their first row
+ */
+// Needs to extend BaseUniqueNamesOwnClusterIT as splitting is forced through the client config
+public class AdaptiveScanSplitIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 100;
+    private static final int FAN_OUT = 3;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(3);
+        props.put(QueryServices.ADAPTIVE_SCAN_SPLIT_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // Every scan lags from its first row on
+        props.put(QueryServices.ADAPTIVE_SCAN_SPLIT_MIN_TIME_MS_ATTRIB, Long.toString(0));
+        props.put(QueryServices.ADAPTIVE_SCAN_SPLIT_COUNT_ATTRIB, Integer.toString(4));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String createTable(Connection conn) throws SQLException {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER PRIMARY KEY, V INTEGER) SPLIT ON (25, 50, 75)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setInt(2, i % 10);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K, V FROM " + tableName);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals(i % 10, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testHashJoinWithSeveralMatchesPerRow() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String lhsTable = createTable(conn);
+            String rhsTable = generateUniqueName();
+            conn.createStatement().execute("CREATE TABLE " + rhsTable
+                    + " (ID INTEGER PRIMARY KEY, V INTEGER, W INTEGER)");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + rhsTable + " VALUES (?, ?, ?)");
+            for (int v = 0; v < 10; v++) {
+                for (int j = 0; j < FAN_OUT; j++) {
+                    stmt.setInt(1, v * FAN_OUT + j);
+                    stmt.setInt(2, v);
+                    stmt.setInt(3, j);
+                    stmt.execute();
+                }
+            }
+            conn.commit();
+
+            ResultSet rs = conn.createStatement().executeQuery("SELECT /*+ USE_SORT_MERGE_JOIN */ COUNT(*) FROM "
+                    + lhsTable + " L JOIN " + rhsTable + " R ON L.V = R.V");
+            assertTrue(rs.next());
+            assertEquals(ROW_COUNT * FAN_OUT, rs.getInt(1));
+
+            rs = conn.createStatement().executeQuery("SELECT L.K, R.W FROM " + lhsTable + " L JOIN "
+                    + rhsTable + " R ON L.V = R.V");
+            int[] matches = new int[ROW_COUNT];
+            int count = 0;
+            while (rs.next()) {
+                matches[rs.getInt(1)]++;
+                count++;
+            }
+            assertEquals(ROW_COUNT * FAN_OUT, count);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertEquals(FAN_OUT, matches[i]);
+            }
+        }
+    }
+}
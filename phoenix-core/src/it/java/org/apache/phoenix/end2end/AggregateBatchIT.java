@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Server side aggregation of rows in batches, with the WHERE clause evaluated over the batch
+ */
+// Needs to extend BaseUniqueNamesOwnClusterIT as batches are enabled on the region servers
+public class AggregateBatchIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 1000;
+    private static final int GROUP_COUNT = 10;
+
+    private static class Row {
+        final int g;
+        final int k;
+        final Integer a;
+        final Long b;
+        final Double e;
+        final String v;
+
+        Row(int g, int k, Integer a, Long b, Double e, String v) {
+            this.g = g;
+            this.k = k;
+            this.a = a;
+            this.b = b;
+            this.e = e;
+            this.v = v;
+        }
+    }
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        // Many batches per region
+        props.put(QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB, Integer.toString(7));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static List<Row> createTable(Connection conn, String tableName) throws SQLException {
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (G INTEGER NOT NULL, K INTEGER NOT NULL, "
+                + "A INTEGER, B BIGINT, E DOUBLE, V VARCHAR CONSTRAINT PK PRIMARY KEY (G, K)) SPLIT ON (3, 6)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?, ?, ?)");
+        Random random = new Random(2468);
+        List<Row> rows = Lists.newArrayListWithExpectedSize(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            // Halves, so that sums are exact whatever the order they are added in
+            Row row = new Row(i % GROUP_COUNT, i,
+                    random.nextInt(5) == 0 ? null : random.nextInt(100),
+                    random.nextInt(5) == 0 ? null : random.nextInt(400) - 200L,
+                    random.nextInt(5) == 0 ? null : (random.nextInt(2000) - 1000) / 2.0,
+                    "v" + random.nextInt(10));
+            stmt.setInt(1, row.g);
+            stmt.setInt(2, row.k);
+            stmt.setObject(3, row.a);
+            stmt.setObject(4, row.b);
+            stmt.setObject(5, row.e);
+            stmt.setString(6, row.v);
+            stmt.execute();
+            rows.add(row);
+        }
+        conn.commit();
+        return rows;
+    }
+
+    private static void assertAggregates(ResultSet rs, List<Row> rows, Predicate<Row> where) throws SQLException {
+        long count = 0;
+        long countB = 0;
+        Long sumB = null;
+        Double sumE = null;
+        Integer minA = null;
+        Double maxE = null;
+        for (Row row : rows) {
+            if (!where.test(row)) {
+                continue;
+            }
+            count++;
+            if (row.b != null) {
+                countB++;
+                sumB = sumB == null ? row.b : sumB + row.b;
+            }
+            if (row.e != null) {
+                sumE = sumE == null ? row.e : sumE + row.e;
+                maxE = maxE == null ? row.e : Math.max(maxE, row.e);
+            }
+            if (row.a != null) {
+                minA = minA == null ? row.a : Math.min(minA, row.a);
+            }
+        }
+        assertEquals(count, rs.getLong(1));
+        assertEquals(countB, rs.getLong(2));
+        assertEquals(sumB, rs.getObject(3) == null ? null : rs.getLong(3));
+        assertEquals(sumE, rs.getObject(4) == null ? null : rs.getDouble(4));
+        assertEquals(minA, rs.getObject(5) == null ? null : rs.getInt(5));
+        assertEquals(maxE, rs.getObject(6) == null ? null : rs.getDouble(6));
+    }
+
+    private static void assertUngrouped(Connection conn, String tableName, List<Row> rows, String whereClause,
+            Predicate<Row> where) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*), COUNT(B), SUM(B), SUM(E), MIN(A), MAX(E)"
+                + " FROM " + tableName + " WHERE " + whereClause);
+        assertTrue(whereClause, rs.next());
+        assertAggregates(rs, rows, where);
+        assertFalse(whereClause, rs.next());
+    }
+
+    @Test
+    public void testUngroupedAggregation() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = generateUniqueName();
+            List<Row> rows = createTable(conn, tableName);
+            assertUngrouped(conn, tableName, rows, "A > 10 AND B < 0",
+                    r -> r.a != null && r.a > 10 && r.b != null && r.b < 0);
+            assertUngrouped(conn, tableName, rows, "A + B > 10",
+                    r -> r.a != null && r.b != null && r.a + r.b > 10);
+            assertUngrouped(conn, tableName, rows, "B - A * 2 <= 0 AND E >= -100.5",
+                    r -> r.a != null && r.b != null && r.e != null && r.b - r.a * 2 <= 0 && r.e >= -100.5);
+            assertUngrouped(conn, tableName, rows, "E * 2 - B > 100",
+                    r -> r.e != null && r.b != null && r.e * 2 - r.b > 100);
+            // Skip scan over the row key along with the WHERE clause
+            assertUngrouped(conn, tableName, rows, "G IN (1, 4, 8) AND A < 50",
+                    r -> (r.g == 1 || r.g == 4 || r.g == 8) && r.a != null && r.a < 50);
+            // Row key column in the WHERE clause
+            assertUngrouped(conn, tableName, rows, "K > 500 AND A > 90",
+                    r -> r.k > 500 && r.a != null && r.a > 90);
+            // No matching rows
+            assertUngrouped(conn, tableName, rows, "A > 1000", r -> false);
+            // WHERE clause that is not vectorized
+            assertUngrouped(conn, tableName, rows, "V = 'v3' OR B > 150",
+                    r -> r.v.equals("v3") || (r.b != null && r.b > 150));
+        }
+    }
+
+    @Test
+    public void testOrderedGroupBy() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = generateUniqueName();
+            List<Row> rows = createTable(conn, tableName);
+            for (String whereClause : new String[] { "A > 0", "V != 'v3'" }) {
+                ResultSet rs = conn.createStatement().executeQuery(
+                        "SELECT COUNT(*), COUNT(B), SUM(B), SUM(E), MIN(A), MAX(E), G FROM " + tableName
+                                + " WHERE " + whereClause + " GROUP BY G");
+                for (int g = 0; g < GROUP_COUNT; g++) {
+                    assertTrue(rs.next());
+                    assertEquals(g, rs.getInt(7));
+                    final int group = g;
+                    assertAggregates(rs, rows, whereClause.startsWith("A")
+                            ? r -> r.g == group && r.a != null && r.a > 0
+                            : r -> r.g == group && !r.v.equals("v3"));
+                }
+                assertFalse(rs.next());
+            }
+        }
+    }
+}
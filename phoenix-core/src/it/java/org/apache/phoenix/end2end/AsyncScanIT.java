@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Queries reading tables through the asynchronous HBase client
+ */
+public class AsyncScanIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 1000;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.ASYNC_SCAN_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // Small results so that scanners get suspended while waiting on the consumer
+        props.put(HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY, Long.toString(1024));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR) SPLIT ON (250, 500, 750)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "value" + i);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K, V FROM " + tableName);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals("value" + i, rs.getString(2));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testAggregateAndFilter() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + tableName);
+            assertTrue(rs.next());
+            assertEquals(ROW_COUNT, rs.getInt(1));
+            assertFalse(rs.next());
+
+            rs = conn.createStatement().executeQuery("SELECT K FROM " + tableName
+                    + " WHERE V LIKE 'value9%' ORDER BY K DESC LIMIT 3");
+            assertTrue(rs.next());
+            assertEquals(999, rs.getInt(1));
+            assertTrue(rs.next());
+            assertEquals(998, rs.getInt(1));
+            assertTrue(rs.next());
+            assertEquals(997, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testSlowConsumer() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K FROM " + tableName);
+            int count = 0;
+            while (rs.next()) {
+                assertEquals(count++, rs.getInt(1));
+                if (count % 250 == 0) {
+                    // Let the scanners read ahead and suspend
+                    Thread.sleep(100);
+                }
+            }
+            assertEquals(ROW_COUNT, count);
+        }
+    }
+}
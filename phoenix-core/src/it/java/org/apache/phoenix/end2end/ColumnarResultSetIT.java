@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Result sets read in batches of decoded column vectors
+ */
+public class ColumnarResultSetIT extends BaseUniqueNamesOwnClusterIT {
+    // Not a divisor of the row count, so that the last batch is partial
+    private static final int BATCH_SIZE = 8;
+    private static final int ROW_COUNT = 100;
+    private static final long BASE_DATE = 1577836800000L;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.COLUMNAR_RESULT_SET_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.put(QueryServices.COLUMNAR_RESULT_SET_BATCH_SIZE_ATTRIB, Integer.toString(BATCH_SIZE));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static Integer intValue(int k) {
+        return k % 11 == 0 ? null : k * 3 - 50;
+    }
+
+    private static String lowCardinalityValue(int k) {
+        return k % 7 == 0 ? null : "v" + k % 3;
+    }
+
+    private static String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL, L BIGINT NOT NULL, I INTEGER, D DOUBLE, DEC DECIMAL(10,2), "
+                + "S VARCHAR, U VARCHAR, C CHAR(3), B BOOLEAN, DT DATE "
+                + "CONSTRAINT PK PRIMARY KEY (K, L DESC))");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        for (int k = 0; k < ROW_COUNT; k++) {
+            stmt.setInt(1, k);
+            stmt.setLong(2, k * 1000000000L);
+            if (intValue(k) == null) {
+                stmt.setNull(3, Types.INTEGER);
+            } else {
+                stmt.setInt(3, intValue(k));
+            }
+            stmt.setDouble(4, k / 4.0);
+            stmt.setBigDecimal(5, BigDecimal.valueOf(k * 101, 2));
+            stmt.setString(6, lowCardinalityValue(k));
+            stmt.setString(7, "u" + k);
+            stmt.setString(8, "c" + k % 2);
+            stmt.setBoolean(9, k % 2 == 0);
+            stmt.setDate(10, new Date(BASE_DATE + k));
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    @Test
+    public void testGetters() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K, L, I, D, DEC, S, U, C, B, DT FROM " + tableName);
+            for (int k = 0; k < ROW_COUNT; k++) {
+                assertTrue(rs.next());
+                assertEquals(k, rs.getInt(1));
+                assertEquals(k, rs.getLong(1));
+                assertEquals(Integer.valueOf(k), rs.getObject(1));
+                assertEquals(Integer.toString(k), rs.getString(1));
+                assertEquals(k * 1000000000L, rs.getLong(2));
+                assertEquals(Long.valueOf(k * 1000000000L), rs.getObject(2));
+                // Read from the row, as the value is not decoded into an INTEGER
+                assertEquals(BigDecimal.valueOf(k * 1000000000L), rs.getBigDecimal(2));
+                Integer i = intValue(k);
+                assertEquals(i == null ? 0 : i.intValue(), rs.getInt("I"));
+                assertEquals(i == null, rs.wasNull());
+                assertEquals(i, rs.getObject("I"));
+                assertEquals(k / 4.0, rs.getDouble(4), 0);
+                assertEquals(0, BigDecimal.valueOf(k * 101, 2).compareTo(rs.getBigDecimal(5)));
+                assertEquals(lowCardinalityValue(k), rs.getString(6));
+                assertEquals(lowCardinalityValue(k) == null, rs.wasNull());
+                assertEquals("u" + k, rs.getString(7));
+                assertEquals("u" + k, rs.getObject(7));
+                assertEquals("c" + k % 2, rs.getString(8));
+                assertEquals(k % 2 == 0, rs.getBoolean(9));
+                assertEquals(new Date(BASE_DATE + k), rs.getDate(10));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testExpressions() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT I * 2, UPPER(S), S || U FROM "
+                    + tableName + " WHERE K >= 10 ORDER BY K DESC");
+            for (int k = ROW_COUNT - 1; k >= 10; k--) {
+                assertTrue(rs.next());
+                Integer i = intValue(k);
+                assertEquals(i == null ? null : (long) i * 2, rs.getObject(1) == null
+                        ? null : rs.getLong(1));
+                String s = lowCardinalityValue(k);
+                assertEquals(s == null ? null : s.toUpperCase(), rs.getString(2));
+                assertEquals((s == null ? "" : s) + "u" + k, rs.getString(3));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testAggregate() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT S, COUNT(*), MAX(K) FROM "
+                    + tableName + " GROUP BY S ORDER BY S");
+            int[] counts = new int[4];
+            int[] max = new int[4];
+            for (int k = 0; k < ROW_COUNT; k++) {
+                String s = lowCardinalityValue(k);
+                int group = s == null ? 0 : s.charAt(1) - '0' + 1;
+                counts[group]++;
+                max[group] = k;
+            }
+            assertTrue(rs.next());
+            assertNull(rs.getString(1));
+            assertEquals(counts[0], rs.getLong(2));
+            assertEquals(max[0], rs.getInt(3));
+            for (int group = 1; group <= 3; group++) {
+                assertTrue(rs.next());
+                assertEquals("v" + (group - 1), rs.getString(1));
+                assertEquals(counts[group], rs.getLong(2));
+                assertEquals(max[group], rs.getInt(3));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
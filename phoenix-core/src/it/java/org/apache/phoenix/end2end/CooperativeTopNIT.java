@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * ORDER BY ... LIMIT queries whose scans share the sort key of the n-th row of the
+ * best scan finished so far
+ */
+public class CooperativeTopNIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 500;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.COOPERATIVE_TOPN_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // Few threads for many scans, so that most scans start after others have finished
+        props.put(QueryServices.THREAD_POOL_SIZE_ATTRIB, Integer.toString(2));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static Integer value(int k) {
+        return k % 13 == 0 ? null : (k * 37) % 101;
+    }
+
+    private static String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V INTEGER, S VARCHAR) SALT_BUCKETS=16");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (int k = 0; k < ROW_COUNT; k++) {
+            stmt.setInt(1, k);
+            Integer v = value(k);
+            if (v == null) {
+                stmt.setNull(2, Types.INTEGER);
+            } else {
+                stmt.setInt(2, v);
+            }
+            stmt.setString(3, "s" + (k * 7) % 50);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    private static List<Integer> expectedValues(boolean ascending, final boolean nullsLast, int limit, int offset) {
+        List<Integer> values = new ArrayList<>();
+        for (int k = 0; k < ROW_COUNT; k++) {
+            values.add(value(k));
+        }
+        final Comparator<Integer> order = ascending
+                ? Comparator.<Integer>naturalOrder() : Comparator.<Integer>reverseOrder();
+        Collections.sort(values, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer v1, Integer v2) {
+                if (v1 == null || v2 == null) {
+                    return v1 == v2 ? 0 : (v1 == null) == nullsLast ? 1 : -1;
+                }
+                return order.compare(v1, v2);
+            }
+        });
+        return values.subList(offset, offset + limit);
+    }
+
+    private static List<Integer> queryValues(Connection conn, String query) throws Exception {
+        List<Integer> values = new ArrayList<>();
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        while (rs.next()) {
+            int k = rs.getInt(1);
+            Integer v = rs.getObject(2) == null ? null : rs.getInt(2);
+            // The row must be returned with its own value
+            assertEquals(value(k), v);
+            values.add(v);
+        }
+        return values;
+    }
+
+    @Test
+    public void testOrderByLimit() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            for (boolean ascending : new boolean[] { true, false }) {
+                for (boolean nullsLast : new boolean[] { true, false }) {
+                    String orderBy = " ORDER BY V " + (ascending ? "ASC" : "DESC")
+                            + (nullsLast ? " NULLS LAST" : " NULLS FIRST");
+                    assertEquals(orderBy, expectedValues(ascending, nullsLast, 10, 0), queryValues(conn,
+                            "SELECT K, V FROM " + tableName + orderBy + " LIMIT 10"));
+                    assertEquals(orderBy, expectedValues(ascending, nullsLast, 25, 30), queryValues(conn,
+                            "SELECT K, V FROM " + tableName + orderBy + " LIMIT 25 OFFSET 30"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOrderByMultipleColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K FROM " + tableName
+                    + " WHERE V IS NOT NULL ORDER BY V DESC, K LIMIT 20");
+            List<int[]> expected = new ArrayList<>();
+            for (int k = 0; k < ROW_COUNT; k++) {
+                if (value(k) != null) {
+                    expected.add(new int[] { value(k), k });
+                }
+            }
+            Collections.sort(expected, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] r1, int[] r2) {
+                    return r1[0] != r2[0] ? Integer.compare(r2[0], r1[0]) : Integer.compare(r1[1], r2[1]);
+                }
+            });
+            for (int i = 0; i < 20; i++) {
+                assertTrue(rs.next());
+                assertEquals(expected.get(i)[1], rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testOrderByDescVarLength() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT DISTINCT S FROM (SELECT S FROM "
+                    + tableName + " ORDER BY S DESC LIMIT 30)");
+            List<String> values = new ArrayList<>();
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+            // s9, s8, ..., s5 have 10 rows each
+            Collections.sort(values);
+            assertEquals(Arrays.asList("s7", "s8", "s9"), values);
+        }
+    }
+}
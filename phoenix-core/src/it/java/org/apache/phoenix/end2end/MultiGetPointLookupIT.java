@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Point lookups read with batched Gets
+ */
+public class MultiGetPointLookupIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 1000;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.MULTI_GET_POINT_LOOKUP_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.put(QueryServices.MULTI_GET_POINT_LOOKUP_MAX_KEYS_ATTRIB, Integer.toString(10));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        PreparedStatement stmt = conn.prepareStatement("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR) SPLIT ON (?, ?, ?)");
+        for (int i = 1; i <= 3; i++) {
+            stmt.setBytes(i, PInteger.INSTANCE.toBytes(i * ROW_COUNT / 4));
+        }
+        stmt.execute();
+        stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "value" + i);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    private static void assertKeys(ResultSet rs, int... keys) throws Exception {
+        for (int key : keys) {
+            assertTrue(rs.next());
+            assertEquals(key, rs.getInt(1));
+            assertEquals("value" + key, rs.getString(2));
+        }
+        assertFalse(rs.next());
+    }
+
+    private static String getExplainPlan(Connection conn, String query) throws Exception {
+        return QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+    }
+
+    @Test
+    public void testInList() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            String query = "SELECT K, V FROM " + tableName + " WHERE K IN (900, 3, 251, 1500, 600, 250)";
+            String plan = getExplainPlan(conn, query);
+            assertTrue(plan, plan.matches("CLIENT MULTI-GET \\d+-WAY POINT LOOKUP ON 6 KEYS OVER " + tableName));
+            assertKeys(conn.createStatement().executeQuery(query), 3, 250, 251, 600, 900);
+
+            // A single key
+            assertKeys(conn.createStatement().executeQuery(
+                    "SELECT K, V FROM " + tableName + " WHERE K = 42"), 42);
+            // Keys that do not exist
+            assertKeys(conn.createStatement().executeQuery(
+                    "SELECT K, V FROM " + tableName + " WHERE K IN (-1, 1000, 2000)"));
+        }
+    }
+
+    @Test
+    public void testFilterAndLimit() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            String query = "SELECT K, V FROM " + tableName
+                    + " WHERE K IN (10, 100, 11, 110, 800) AND V LIKE 'value1%'";
+            String plan = getExplainPlan(conn, query);
+            assertTrue(plan, plan.startsWith("CLIENT MULTI-GET"));
+            assertTrue(plan, plan.contains("SERVER FILTER BY V LIKE 'value1%'"));
+            assertKeys(conn.createStatement().executeQuery(query), 10, 11, 100, 110);
+
+            assertKeys(conn.createStatement().executeQuery("SELECT K, V FROM " + tableName
+                    + " WHERE K IN (10, 100, 11, 110, 800) LIMIT 2"), 10, 11);
+        }
+    }
+
+    @Test
+    public void testRowValueConstructorIn() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = generateUniqueName();
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (A VARCHAR NOT NULL, B INTEGER NOT NULL, C VARCHAR CONSTRAINT PK PRIMARY KEY (A, B))"
+                    + " SALT_BUCKETS = 4");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+            for (int i = 0; i < 100; i++) {
+                stmt.setString(1, "a" + (i % 10));
+                stmt.setInt(2, i);
+                stmt.setString(3, "c" + i);
+                stmt.execute();
+            }
+            conn.commit();
+            String query = "SELECT B, C FROM " + tableName
+                    + " WHERE (A, B) IN (('a1', 1), ('a5', 55), ('a5', 56), ('a9', 99)) ORDER BY A, B";
+            String plan = getExplainPlan(conn, query);
+            assertTrue(plan, plan.contains("MULTI-GET"));
+            assertTrue(plan, plan.contains("POINT LOOKUP ON 4 KEYS"));
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertEquals("c1", rs.getString(2));
+            assertTrue(rs.next());
+            assertEquals(55, rs.getInt(1));
+            assertEquals("c55", rs.getString(2));
+            assertTrue(rs.next());
+            assertEquals(99, rs.getInt(1));
+            assertEquals("c99", rs.getString(2));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testScansUsedWhenNotApplicable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            // Ordered on the server
+            String query = "SELECT K, V FROM " + tableName + " WHERE K IN (1, 2, 3) ORDER BY V DESC";
+            assertTrue(getExplainPlan(conn, query).startsWith("CLIENT PARALLEL"));
+            assertKeys(conn.createStatement().executeQuery(query), 3, 2, 1);
+            // More keys than the configured maximum
+            query = "SELECT K, V FROM " + tableName + " WHERE K IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11)";
+            assertTrue(getExplainPlan(conn, query).startsWith("CLIENT PARALLEL"));
+            assertKeys(conn.createStatement().executeQuery(query), 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+        }
+    }
+}
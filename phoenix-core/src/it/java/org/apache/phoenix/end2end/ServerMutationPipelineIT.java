@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.security.AccessDeniedException;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Server side UPSERT SELECT, DELETE and local index builds writing their batches in the background
+ */
+// Needs to extend BaseUniqueNamesOwnClusterIT as the pipeline is enabled on the region servers
+public class ServerMutationPipelineIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 200;
+    private static final String READ_ONLY_USER = "readOnlyUser_" + generateUniqueName();
+
+    /**
+     * Denies writes from {@link #READ_ONLY_USER} the way the AccessController does, based on the
+     * user of the RPC call the write is made in.
+     */
+    public static class ReadOnlyUserRegionObserver extends SimpleRegionObserver {
+        @Override
+        public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+                MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+            if (c.getCaller().isPresent() && READ_ONLY_USER.equals(c.getCaller().get().getShortName())) {
+                throw new AccessDeniedException("Insufficient permissions for user '" + READ_ONLY_USER + "'");
+            }
+        }
+    }
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.SERVER_MUTATION_PIPELINE_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // Many batches per region
+        props.put(QueryServices.MUTATE_BATCH_SIZE_ATTRIB, Integer.toString(7));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String createTable(Connection conn) throws SQLException {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER PRIMARY KEY, V VARCHAR, N INTEGER) SPLIT ON (50, 100, 150)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "v" + i);
+            stmt.setInt(3, i);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    private static void assertRows(Connection conn, String tableName, String suffix, int increment)
+            throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT K, V, N FROM " + tableName + " ORDER BY K");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals("v" + i + suffix, rs.getString(2));
+            assertEquals(i + increment, rs.getInt(3));
+        }
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testUpsertSelectIntoSameTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            conn.setAutoCommit(true);
+            int count = conn.createStatement().executeUpdate("UPSERT INTO " + tableName
+                    + " SELECT K, V || 'x', N + 1 FROM " + tableName);
+            assertEquals(ROW_COUNT, count);
+            assertRows(conn, tableName, "x", 1);
+        }
+    }
+
+    @Test
+    public void testUpsertSelectIntoOtherTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String sourceTableName = createTable(conn);
+            String targetTableName = generateUniqueName();
+            conn.createStatement().execute("CREATE TABLE " + targetTableName
+                    + " (K INTEGER PRIMARY KEY, V VARCHAR, N INTEGER) SPLIT ON (100)");
+            conn.setAutoCommit(true);
+            int count = conn.createStatement().executeUpdate("UPSERT INTO " + targetTableName
+                    + " SELECT K, V, N * 2 - K FROM " + sourceTableName);
+            assertEquals(ROW_COUNT, count);
+            assertRows(conn, targetTableName, "", 0);
+        }
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            conn.setAutoCommit(true);
+            int count = conn.createStatement().executeUpdate("DELETE FROM " + tableName + " WHERE N % 3 = 0");
+            assertEquals((ROW_COUNT + 2) / 3, count);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K FROM " + tableName + " ORDER BY K");
+            for (int i = 0; i < ROW_COUNT; i++) {
+                if (i % 3 != 0) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                }
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testLocalIndexBuild() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            String indexName = generateUniqueName();
+            conn.createStatement().execute("CREATE LOCAL INDEX " + indexName + " ON " + tableName + " (V)");
+            String query = "SELECT K, V FROM " + tableName + " WHERE V >= 'v1' AND V < 'v2' ORDER BY V";
+            ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+            // Local index rows are stored in the data table, prefixed by the index id
+            assertTrue(plan.toString(), plan.toString().contains(tableName + " [1,'v1']"));
+            rs = conn.createStatement().executeQuery(query);
+            int count = 0;
+            while (rs.next()) {
+                assertEquals("v" + rs.getInt(1), rs.getString(2));
+                assertTrue(rs.getString(2).startsWith("v1"));
+                count++;
+            }
+            // 1, 10-19 and 100-199
+            assertEquals(1 + 10 + 100, count);
+        }
+    }
+
+    @Test
+    public void testWritesCheckedAgainstCaller() throws Exception {
+        final String tableName;
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            tableName = createTable(conn);
+            TestUtil.addCoprocessor(conn, tableName, ReadOnlyUserRegionObserver.class);
+        }
+        User readOnlyUser = User.createUserForTesting(config, READ_ONLY_USER, new String[0]);
+        // The test driver shares its connection to the cluster between users
+        final String url = "jdbc:phoenix:localhost:" + getUtility().getZkCluster().getClientPort() + ":/hbase";
+        for (final String dml : new String[] {
+                "UPSERT INTO " + tableName + " SELECT K, V || 'x', N + 1 FROM " + tableName,
+                "DELETE FROM " + tableName + " WHERE N % 3 = 0" }) {
+            readOnlyUser.runAs(new PrivilegedExceptionAction<Void>() {
+                @Override
+                public Void run() throws Exception {
+                    try (Connection conn = DriverManager.getConnection(url)) {
+                        conn.setAutoCommit(true);
+                        conn.createStatement().executeUpdate(dml);
+                        fail(dml + " should have been denied");
+                    } catch (SQLException e) {
+                        Throwable cause = e;
+                        while (cause != null && !(cause instanceof AccessDeniedException)
+                                && !String.valueOf(cause.getMessage()).contains(AccessDeniedException.class.getName())) {
+                            cause = cause.getCause();
+                        }
+                        if (cause == null) {
+                            throw e;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertRows(conn, tableName, "", 0);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.end2end.BaseUniqueNamesOwnClusterIT;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSource;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceImpl;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.IndexScrutiny;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Global index maintenance with the data row states cached by {@link IndexRegionObserver}
+ */
+// Needs to extend BaseUniqueNamesOwnClusterIT as the cache is enabled on the region servers
+public class DataRowStateCacheIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 20;
+    private static final String DELAY_ATTRIBUTE = "_DataRowStateCacheIT.delay";
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(IndexRegionObserver.ROW_STATE_CACHE_SIZE_KEY, Long.toString(1024 * 1024));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static long getCacheHits(String tableName) {
+        MetricsIndexerSourceImpl metricSource =
+                (MetricsIndexerSourceImpl) MetricsIndexerSourceFactory.getInstance().getIndexerSource();
+        return metricSource.getMetricsRegistry()
+                .getCounter(MetricsIndexerSource.DATA_ROW_STATE_CACHE_HIT + "." + tableName, 0).value();
+    }
+
+    private static void createTableAndIndex(Connection conn, String tableName, String indexName)
+            throws SQLException {
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K VARCHAR PRIMARY KEY, V1 VARCHAR, V2 INTEGER, V3 VARCHAR)");
+        conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + tableName
+                + " (V1) INCLUDE (V2)");
+    }
+
+    private static void assertIndexIsConsistent(Connection conn, String tableName, String indexName,
+            int rowCount) throws SQLException {
+        assertEquals(rowCount, IndexScrutiny.scrutinizeIndex(conn, tableName, indexName));
+        // No stale index row may be left behind
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + indexName);
+        assertTrue(rs.next());
+        assertEquals(rowCount, rs.getInt(1));
+    }
+
+    @Test
+    public void testUpdatesOfSameRows() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTableAndIndex(conn, tableName, indexName);
+            PreparedStatement upsertAll = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?)");
+            PreparedStatement upsertV2 = conn.prepareStatement("UPSERT INTO " + tableName + " (K, V2) VALUES (?, ?)");
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    upsertAll.setString(1, "k" + i);
+                    upsertAll.setString(2, "a" + round + "_" + i);
+                    upsertAll.setInt(3, round);
+                    upsertAll.setString(4, "b" + round);
+                    upsertAll.execute();
+                }
+                conn.commit();
+                assertIndexIsConsistent(conn, tableName, indexName, ROW_COUNT);
+                // Partial updates need the cached values of the other columns
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    upsertV2.setString(1, "k" + i);
+                    upsertV2.setInt(2, 100 + round);
+                    upsertV2.execute();
+                }
+                conn.commit();
+                assertIndexIsConsistent(conn, tableName, indexName, ROW_COUNT);
+            }
+            assertTrue(getCacheHits(tableName) >= 8 * ROW_COUNT);
+
+            ResultSet rs = conn.createStatement().executeQuery("SELECT /*+ INDEX(" + tableName + " " + indexName
+                    + ") */ K, V2 FROM " + tableName + " WHERE V1 = 'a4_3'");
+            assertTrue(rs.next());
+            assertEquals("k3", rs.getString(1));
+            assertEquals(104, rs.getInt(2));
+
+            // Deleted rows and columns must not be taken from the cache
+            conn.createStatement().execute("DELETE FROM " + tableName + " WHERE K IN ('k1', 'k2')");
+            conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V1) VALUES ('k3', null)");
+            conn.commit();
+            assertIndexIsConsistent(conn, tableName, indexName, ROW_COUNT - 2);
+            conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V2) VALUES ('k1', 1)");
+            conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V2) VALUES ('k3', 3)");
+            conn.commit();
+            assertIndexIsConsistent(conn, tableName, indexName, ROW_COUNT - 1);
+
+            getUtility().getAdmin().flush(TableName.valueOf(tableName));
+            conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V1) VALUES ('k4', 'x')");
+            conn.commit();
+            assertIndexIsConsistent(conn, tableName, indexName, ROW_COUNT - 1);
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfHotRows() throws Exception {
+        final String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        final int hotRowCount = 5;
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTableAndIndex(conn, tableName, indexName);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    try (Connection conn = DriverManager.getConnection(getUrl())) {
+                        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName
+                                + " (K, V1, V2) VALUES (?, ?, ?)");
+                        for (int i = 0; i < 100; i++) {
+                            stmt.setString(1, "k" + random.nextInt(hotRowCount));
+                            stmt.setString(2, "a" + random.nextInt(10));
+                            stmt.setInt(3, i);
+                            stmt.execute();
+                            if (random.nextBoolean()) {
+                                conn.commit();
+                            }
+                        }
+                        conn.commit();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertIndexIsConsistent(conn, tableName, indexName, hotRowCount);
+        }
+        assertTrue(getCacheHits(tableName) > 0);
+    }
+
+    /**
+     * Holds the writes having the {@link #DELAY_ATTRIBUTE} attribute in preBatchMutate(), after
+     * {@link IndexRegionObserver} has run, until the test lets them go
+     */
+    public static class DelayingRegionObserver extends SimpleRegionObserver {
+        private static volatile CountDownLatch delayed;
+        private static volatile CountDownLatch resume;
+
+        @Override
+        public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+                MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+            if (miniBatchOp.getOperation(0).getAttribute(DELAY_ATTRIBUTE) == null) {
+                return;
+            }
+            delayed.countDown();
+            try {
+                resume.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    @Test
+    public void testIndexedAndNonIndexedWritesOfHotRow() throws Exception {
+        final String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        String coveringIndexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            // No column encoding, so that the row can be written with a plain HBase put
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K VARCHAR PRIMARY KEY, V1 VARCHAR, V2 INTEGER, V3 VARCHAR)"
+                    + " COLUMN_ENCODED_BYTES = 0");
+            conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + tableName
+                    + " (V1) INCLUDE (V2)");
+            TestUtil.addCoprocessor(conn, tableName, DelayingRegionObserver.class);
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('k', 'a', 1, 'old')");
+            conn.commit();
+
+            // A write not enabled for indexing of a column no index uses yet. It is held after
+            // its row was invalidated in the cache and before it is visible.
+            DelayingRegionObserver.delayed = new CountDownLatch(1);
+            DelayingRegionObserver.resume = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            Future<?> nonIndexedWrite;
+            try {
+                nonIndexedWrite = executor.submit(() -> {
+                    try (Table table = getUtility().getConnection().getTable(TableName.valueOf(tableName))) {
+                        Put put = new Put(Bytes.toBytes("k"));
+                        put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, Bytes.toBytes("V3"),
+                                PVarchar.INSTANCE.toBytes("new"));
+                        put.setAttribute(DELAY_ATTRIBUTE, PDataType.TRUE_BYTES);
+                        table.put(put);
+                    }
+                    return null;
+                });
+                assertTrue(DelayingRegionObserver.delayed.await(60, TimeUnit.SECONDS));
+                // An indexed write of the same row meanwhile reads the previous state of the row
+                // and caches its next state
+                conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V1, V2) VALUES ('k', 'b', 2)");
+                conn.commit();
+                DelayingRegionObserver.resume.countDown();
+                nonIndexedWrite.get();
+            } finally {
+                DelayingRegionObserver.resume.countDown();
+                executor.shutdownNow();
+            }
+            assertIndexIsConsistent(conn, tableName, indexName, 1);
+
+            // The new index covers the column written without indexing, and is maintained from
+            // the cached row state from now on, which must not have missed that write
+            conn.createStatement().execute("CREATE INDEX " + coveringIndexName + " ON " + tableName
+                    + " (V2) INCLUDE (V3)");
+            conn.createStatement().execute("UPSERT INTO " + tableName + " (K, V2) VALUES ('k', 3)");
+            conn.commit();
+            assertIndexIsConsistent(conn, tableName, indexName, 1);
+            assertIndexIsConsistent(conn, tableName, coveringIndexName, 1);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT /*+ INDEX(" + tableName + " "
+                    + coveringIndexName + ") */ V3 FROM " + tableName + " WHERE V2 = 3");
+            assertTrue(rs.next());
+            assertEquals("new", rs.getString(1));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.wal.WALEdit;
+import org.apache.phoenix.end2end.BaseUniqueNamesOwnClusterIT;
+import org.apache.phoenix.end2end.index.ImmutableIndexIT;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Commits whose tables are sent concurrently within each phase
+ */
+// Needs to extend BaseUniqueNamesOwnClusterIT as the client sends the mutations of several tables at a time
+public class ConcurrentCommitIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 50;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+        props.put(QueryServices.MUTATE_MAX_CONCURRENT_TABLES_ATTRIB, Integer.toString(4));
+        // Several batches per table
+        props.put(QueryServices.MUTATE_BATCH_SIZE_ATTRIB, Integer.toString(10));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static void upsertRows(Statement stmt, String tableName) throws SQLException {
+        for (int k = 0; k < ROW_COUNT; k++) {
+            stmt.execute("UPSERT INTO " + tableName + " VALUES (" + k + ", 'a" + k + "', 'b" + k + "', " + k + ")");
+        }
+    }
+
+    private static String createTable(Statement stmt, String options) throws SQLException {
+        String tableName = generateUniqueName();
+        stmt.execute("CREATE TABLE " + tableName
+                + " (K INTEGER PRIMARY KEY, A VARCHAR, B VARCHAR, C INTEGER) " + options);
+        return tableName;
+    }
+
+    @Test
+    public void testIndexesVerifiedAfterCommit() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.setAutoCommit(false);
+            Statement stmt = conn.createStatement();
+            String[] tableNames = new String[3];
+            String[] indexNames = new String[3 * tableNames.length];
+            for (int i = 0; i < tableNames.length; i++) {
+                tableNames[i] = createTable(stmt, i == 0 ? "" : "IMMUTABLE_ROWS=true");
+                String[] columns = { "A", "B", "C" };
+                for (int j = 0; j < columns.length; j++) {
+                    String indexName = generateUniqueName();
+                    stmt.execute("CREATE INDEX " + indexName + " ON " + tableNames[i] + " (" + columns[j] + ")");
+                    indexNames[i * columns.length + j] = indexName;
+                }
+            }
+            for (String tableName : tableNames) {
+                upsertRows(stmt, tableName);
+            }
+            conn.commit();
+
+            for (String tableName : tableNames) {
+                assertEquals(ROW_COUNT, TestUtil.getRowCount(conn, tableName));
+            }
+            for (String indexName : indexNames) {
+                assertEquals(ROW_COUNT, TestUtil.getRowCount(conn, indexName));
+                // Verified in the last phase, once the rows of all data tables were written
+                assertTrue(indexName,
+                        ImmutableIndexIT.verifyRowsForEmptyColValue(conn, indexName, IndexRegionObserver.VERIFIED_BYTES));
+            }
+        }
+    }
+
+    @Test
+    public void testTableFailure() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.setAutoCommit(false);
+            Statement stmt = conn.createStatement();
+            String[] tableNames = new String[4];
+            for (int i = 0; i < tableNames.length; i++) {
+                tableNames[i] = createTable(stmt, "");
+            }
+            TestUtil.addCoprocessor(conn, tableNames[1], FailingRegionObserver.class);
+            // Statement indexes are only defined for connections without metadata operations
+            try (Connection upsertConn = DriverManager.getConnection(getUrl())) {
+                upsertConn.setAutoCommit(false);
+                for (String tableName : tableNames) {
+                    upsertConn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (1, 'a', 'b', 1)");
+                }
+                try {
+                    upsertConn.commit();
+                    fail();
+                } catch (CommitException e) {
+                    // Only the statement of the failing table is reported, whatever the order
+                    // in which the tables were sent
+                    assertArrayEquals(new int[] { 1 }, e.getUncommittedStatementIndexes());
+                }
+            }
+            for (int i = 0; i < tableNames.length; i++) {
+                assertEquals(i == 1 ? 0 : 1, TestUtil.getRowCount(conn, tableNames[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testUnverifiedIndexFailure() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.setAutoCommit(false);
+            Statement stmt = conn.createStatement();
+            String tableName = createTable(stmt, "IMMUTABLE_ROWS=true");
+            String failingIndexName = generateUniqueName();
+            stmt.execute("CREATE INDEX " + failingIndexName + " ON " + tableName + " (A)");
+            String indexName = generateUniqueName();
+            stmt.execute("CREATE INDEX " + indexName + " ON " + tableName + " (B)");
+            TestUtil.addCoprocessor(conn, failingIndexName, FailingRegionObserver.class);
+            upsertRows(stmt, tableName);
+            try {
+                conn.commit();
+                fail();
+            } catch (CommitException e) {
+            }
+            conn.rollback();
+            // The data table is only written once all unverified index rows were written
+            assertEquals(0, TestUtil.getRowCount(conn, tableName));
+        }
+    }
+
+    public static class FailingRegionObserver extends SimpleRegionObserver {
+        @Override
+        public void prePut(ObserverContext<RegionCoprocessorEnvironment> c, Put put, WALEdit edit,
+                Durability durability) throws IOException {
+            throw new DoNotRetryIOException();
+        }
+    }
+}
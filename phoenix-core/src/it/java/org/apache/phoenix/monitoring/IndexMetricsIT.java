@@ -92,6 +92,14 @@ public class IndexMetricsIT extends ParallelStatsDisabledIT {
         verifyCounter(MetricsIndexerSource.SLOW_DUPLICATE_KEY, registry);
         verifyCounter(getTableCounterName(MetricsIndexerSource.SLOW_DUPLICATE_KEY), registry);
 
+        metricSource.incrementDataRowStateCacheHits(TABLE_NAME, 1);
+        verifyCounter(MetricsIndexerSource.DATA_ROW_STATE_CACHE_HIT, registry);
+        verifyCounter(getTableCounterName(MetricsIndexerSource.DATA_ROW_STATE_CACHE_HIT), registry);
+
+        metricSource.incrementDataRowStateCacheMisses(TABLE_NAME, 1);
+        verifyCounter(MetricsIndexerSource.DATA_ROW_STATE_CACHE_MISS, registry);
+        verifyCounter(getTableCounterName(MetricsIndexerSource.DATA_ROW_STATE_CACHE_MISS), registry);
+
     }
 
     @Test
@@ -145,6 +153,10 @@ public class IndexMetricsIT extends ParallelStatsDisabledIT {
         verifyHistogram(MetricsIndexerSource.PRE_WAL_RESTORE_TIME, registry);
         verifyHistogram(getTableCounterName(MetricsIndexerSource.PRE_WAL_RESTORE_TIME), registry);
 
+        metricSource.updateRowLockWaitTime(TABLE_NAME, TIME_VAL);
+        verifyHistogram(MetricsIndexerSource.ROW_LOCK_WAIT_TIME, registry);
+        verifyHistogram(getTableCounterName(MetricsIndexerSource.ROW_LOCK_WAIT_TIME), registry);
+
     }
 
     @Test
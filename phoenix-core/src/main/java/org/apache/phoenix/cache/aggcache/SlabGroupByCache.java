@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.GroupByCache;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.aggregator.SlabAggregator;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+
+/**
+ *
+ * Cache for distinct values and their aggregations which stores the group keys
+ * and the aggregator state in a few large byte slabs instead of one map entry and
+ * one set of aggregators per group. Groups are located through an open addressing
+ * hash table of group ids. Only usable when every aggregator has a fixed width state
+ * (see {@link SlabAggregator#isSupported(Aggregator[])}). The memory used by the
+ * slabs and the hash table is tracked exactly through the memory chunk, which
+ * is resized whenever one of the arrays grows.
+ *
+ */
+public class SlabGroupByCache implements GroupByCache {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+    private static final int AVG_KEY_SIZE = 16;
+
+    private final ServerAggregators aggregators;
+    private final SlabAggregator.Cursor cursor;
+    private final SlabAggregator[] rowAggregators;
+    private final int stateSize;
+    private final MemoryChunk chunk;
+
+    // Open addressing table of group id + 1, with 0 meaning an empty slot
+    private int[] table;
+    // Per group hash code, to avoid comparing keys on collisions and to rehash
+    private int[] hashes;
+    // Per group start offset of the key in the keys slab. Has one more element
+    // than the number of groups so that the key length can be computed.
+    private int[] keyOffsets;
+    private byte[] keys;
+    private byte[] states;
+    private int groupCount;
+
+    public SlabGroupByCache(MemoryManager memoryManager, ServerAggregators aggregators, int estDistVals) {
+        this.aggregators = aggregators;
+        this.cursor = new SlabAggregator.Cursor();
+        this.rowAggregators = SlabAggregator.newSlabAggregators(aggregators.getAggregators(), cursor);
+        this.stateSize = SlabAggregator.getStateSize(rowAggregators);
+        int capacity = Math.max(MIN_CAPACITY, estDistVals);
+        int tableSize = tableSizeFor(capacity);
+        this.chunk = memoryManager.allocate(sizeOf(tableSize, capacity, (long)capacity * AVG_KEY_SIZE));
+        this.table = new int[tableSize];
+        this.hashes = new int[capacity];
+        this.keyOffsets = new int[capacity + 1];
+        this.keys = new byte[capacity * AVG_KEY_SIZE];
+        this.states = new byte[capacity * stateSize];
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int minSize = (int)Math.ceil(capacity / LOAD_FACTOR);
+        return Integer.highestOneBit(Math.max(MIN_CAPACITY, minSize - 1)) << 1;
+    }
+
+    private long sizeOf(int tableSize, int capacity, long keysSize) {
+        return (long)tableSize * Bytes.SIZEOF_INT
+                + (long)capacity * Bytes.SIZEOF_INT * 2
+                + keysSize
+                + (long)capacity * stateSize;
+    }
+
+    private long getAllocatedSize() {
+        return sizeOf(table.length, hashes.length, keys.length);
+    }
+
+    private static int hash(ImmutableBytesPtr key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public Aggregator[] cache(ImmutableBytesPtr key) {
+        int h = hash(key);
+        int mask = table.length - 1;
+        int slot = h & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int groupId = entry - 1;
+            if (hashes[groupId] == h) {
+                int keyOffset = keyOffsets[groupId];
+                if (Bytes.equals(keys, keyOffset, keyOffsets[groupId + 1] - keyOffset,
+                        key.get(), key.getOffset(), key.getLength())) {
+                    cursor.set(states, groupId * stateSize);
+                    return rowAggregators;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        int groupId = addGroup(key, h);
+        table[slot] = groupId + 1;
+        if (groupCount > table.length * LOAD_FACTOR) {
+            rehash();
+        }
+        cursor.set(states, groupId * stateSize);
+        return rowAggregators;
+    }
+
+    private int addGroup(ImmutableBytesPtr key, int h) {
+        int groupId = groupCount;
+        int keyOffset = keyOffsets[groupId];
+        ensureCapacity(groupId + 1, keyOffset + key.getLength());
+        System.arraycopy(key.get(), key.getOffset(), keys, keyOffset, key.getLength());
+        keyOffsets[groupId + 1] = keyOffset + key.getLength();
+        hashes[groupId] = h;
+        // The state of the new group is all zeros, which is the initial state of every slab aggregator
+        groupCount++;
+        return groupId;
+    }
+
+    private void ensureCapacity(int nGroups, int keysSize) {
+        int capacity = hashes.length;
+        int newCapacity = capacity;
+        if (nGroups > capacity) {
+            newCapacity = capacity + (capacity >> 1);
+        }
+        long newKeysSize = keys.length;
+        if (keysSize > keys.length) {
+            newKeysSize = Math.max(keysSize, keys.length + ((long)keys.length >> 1));
+            if (newKeysSize > Integer.MAX_VALUE - 8) {
+                newKeysSize = Integer.MAX_VALUE - 8;
+                if (keysSize > newKeysSize) {
+                    throw new IllegalStateException("Group by keys exceed the maximum slab size of " + newKeysSize + " bytes");
+                }
+            }
+        }
+        if (newCapacity == capacity && newKeysSize == keys.length) {
+            return;
+        }
+        // Account for the memory before allocating it, so that we fail with an
+        // InsufficientMemoryException instead of running out of heap.
+        chunk.resize(sizeOf(table.length, newCapacity, newKeysSize));
+        if (newCapacity != capacity) {
+            int[] newHashes = new int[newCapacity];
+            System.arraycopy(hashes, 0, newHashes, 0, groupCount);
+            hashes = newHashes;
+            int[] newKeyOffsets = new int[newCapacity + 1];
+            System.arraycopy(keyOffsets, 0, newKeyOffsets, 0, groupCount + 1);
+            keyOffsets = newKeyOffsets;
+            byte[] newStates = new byte[newCapacity * stateSize];
+            System.arraycopy(states, 0, newStates, 0, groupCount * stateSize);
+            states = newStates;
+        }
+        if (newKeysSize != keys.length) {
+            byte[] newKeys = new byte[(int)newKeysSize];
+            System.arraycopy(keys, 0, newKeys, 0, keyOffsets[groupCount]);
+            keys = newKeys;
+        }
+    }
+
+    private void rehash() {
+        int newTableSize = table.length << 1;
+        chunk.resize(sizeOf(newTableSize, hashes.length, keys.length));
+        int[] newTable = new int[newTableSize];
+        int mask = newTableSize - 1;
+        for (int groupId = 0; groupId < groupCount; groupId++) {
+            int slot = hashes[groupId] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = groupId + 1;
+        }
+        table = newTable;
+    }
+
+    @Override
+    public RegionScanner getScanner(final RegionScanner s) {
+        // The hash table is no longer needed once we start returning results
+        table = new int[0];
+        chunk.resize(getAllocatedSize());
+        return new BaseRegionScanner(s) {
+            private int groupId = 0;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    s.close();
+                } finally {
+                    SlabGroupByCache.this.close();
+                }
+            }
+
+            @Override
+            public boolean next(List<Cell> results) throws IOException {
+                if (groupId >= groupCount) {
+                    return false;
+                }
+                cursor.set(states, groupId * stateSize);
+                byte[] value = aggregators.toBytes(rowAggregators);
+                int keyOffset = keyOffsets[groupId];
+                Cell keyValue = PhoenixKeyValueUtil.newKeyValue(keys, keyOffset,
+                        keyOffsets[groupId + 1] - keyOffset, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN,
+                        AGG_TIMESTAMP, value, 0, value.length);
+                results.add(keyValue);
+                groupId++;
+                return groupId < groupCount;
+            }
+        };
+    }
+
+    @Override
+    public long size() {
+        return groupCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk.close();
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_MAX_CACHE_MAX;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.GroupByCache;
+import org.apache.phoenix.coprocessor.GroupedAggregateRegionObserver;
+import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixCoprocessorSourceFactory;
+import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixGroupBySpillSource;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.Closeables;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Spillable cache for distinct values and their aggregations that spills by sorting instead of
+ * evicting single groups. Groups are aggregated in an in-memory hash map, which grows by a factor of
+ * 1.5 as long as memory can be reserved for it, up to {@link QueryServices#GROUPBY_MAX_CACHE_SIZE_ATTRIB}.
+ * Once the map cannot grow anymore, its entries are sorted by group key and written sequentially as
+ * a run to a temp file, using the same serialization as the {@link SpillManager}, and the map is
+ * cleared. When the results are requested, the spilled runs and the sorted remainder of the map are
+ * merged in a single streaming pass, so that every spill file is read sequentially exactly once and
+ * the memory needed for the merge is bounded by one buffered entry per run.
+ *
+ * A group that was spilled may be aggregated again after the map is cleared, in which case the merge
+ * returns one partial aggregation per run for that key, next to each other. Server aggregators do not
+ * support merging their states, so these partial aggregations are combined by the client, like the
+ * partial aggregations of the same group coming from different regions.
+ */
+public class SortedSpillGroupByCache implements GroupByCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortedSpillGroupByCache.class);
+
+    // Min size of main memory cache in bytes --> lower bound
+    private static final int SORTED_SPILL_CACHE_MIN_SIZE = 4096; // 4K
+    private static final int SPILL_RUN_BUFFER_SIZE = 64 * 1024; // 64K
+
+    private static final Comparator<Map.Entry<ImmutableBytesPtr, Aggregator[]>> ENTRY_COMPARATOR =
+            new Comparator<Map.Entry<ImmutableBytesPtr, Aggregator[]>>() {
+                @Override
+                public int compare(Map.Entry<ImmutableBytesPtr, Aggregator[]> e1,
+                        Map.Entry<ImmutableBytesPtr, Aggregator[]> e2) {
+                    return e1.getKey().compareTo(e2.getKey());
+                }
+            };
+
+    private final Configuration conf;
+    private final ServerAggregators aggregators;
+    private final MemoryChunk chunk;
+    private final int estValueSize;
+    private final File spillFilesDirectory;
+    private final MetricsPhoenixGroupBySpillSource metricsSource;
+    private final List<SpillRun> runs = Lists.newArrayList();
+    private Map<ImmutableBytesPtr, Aggregator[]> cache;
+    private int cacheSize;
+    private boolean canGrow = true;
+    private int maxNumGroupsInMemory;
+
+    public SortedSpillGroupByCache(RegionCoprocessorEnvironment env, ImmutableBytesPtr tenantId,
+            ServerAggregators aggs, int estSizeNum) {
+        this(env.getConfiguration(), GlobalCache.getTenantCache(env, tenantId).getMemoryManager(),
+                aggs, estSizeNum,
+                MetricsPhoenixCoprocessorSourceFactory.getInstance().getGroupBySpillSource());
+    }
+
+    public SortedSpillGroupByCache(Configuration conf, MemoryManager memoryManager,
+            ServerAggregators aggs, int estSizeNum, MetricsPhoenixGroupBySpillSource metricsSource) {
+        this.conf = conf;
+        this.aggregators = aggs;
+        this.metricsSource = metricsSource;
+        this.estValueSize = aggregators.getEstimatedByteSize();
+        this.spillFilesDirectory = conf.get(QueryServices.SPOOL_DIRECTORY) != null
+                ? new File(conf.get(QueryServices.SPOOL_DIRECTORY)) : null;
+
+        final long maxCacheSizeConf = conf.getLong(GROUPBY_MAX_CACHE_SIZE_ATTRIB, DEFAULT_GROUPBY_MAX_CACHE_MAX);
+        final int maxSizeNum = (int)(maxCacheSizeConf / estValueSize);
+        final int minSizeNum = (SORTED_SPILL_CACHE_MIN_SIZE / estValueSize);
+
+        // use upper and lower bounds for the cache size
+        this.cacheSize = Math.max(minSizeNum, Math.min(maxSizeNum, estSizeNum));
+        long estSize = GroupedAggregateRegionObserver.sizeOfUnorderedGroupByMap(cacheSize, estValueSize);
+        try {
+            this.chunk = memoryManager.allocate(estSize);
+        } catch (InsufficientMemoryException ime) {
+            LOGGER.error("Requested Map size exceeds memory limit, " +
+                    "please decrease max size via config paramter: "
+                    + GROUPBY_MAX_CACHE_SIZE_ATTRIB);
+            throw ime;
+        }
+        this.cache = new HashMap<ImmutableBytesPtr, Aggregator[]>(cacheSize);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Instantiating sorted spill groupby cache of element size: " + cacheSize);
+        }
+    }
+
+    /**
+     * Returns a lower bound of the number of distinct groups aggregated so far. As long as nothing
+     * was spilled, this is the exact number of groups in memory. Once runs were spilled, a group may
+     * be aggregated again after the map was cleared and cannot be told apart from a new group without
+     * reading the runs back, so the largest number of groups held at once in memory is returned
+     * instead. This never overcounts, so that a GROUP BY with a LIMIT does not stop aggregating
+     * before enough distinct groups were seen.
+     */
+    @Override
+    public long size() {
+        return cache == null ? maxNumGroupsInMemory : Math.max(maxNumGroupsInMemory, cache.size());
+    }
+
+    /**
+     * @return the number of sorted runs spilled to disk so far
+     */
+    public int getNumSpillRuns() {
+        return runs.size();
+    }
+
+    @Override
+    public Aggregator[] cache(ImmutableBytesPtr cacheKey) {
+        Aggregator[] rowAggregators = cache.get(cacheKey);
+        if (rowAggregators == null) {
+            if (cache.size() >= cacheSize && !grow()) {
+                try {
+                    spill();
+                } catch (IOException ioe) {
+                    // Ensure that we always close and delete the temp files
+                    try {
+                        throw new RuntimeException(ioe);
+                    } finally {
+                        Closeables.closeQuietly(this);
+                    }
+                }
+            }
+            rowAggregators = aggregators.newAggregators(conf);
+            cache.put(new ImmutableBytesPtr(cacheKey), rowAggregators);
+        }
+        return rowAggregators;
+    }
+
+    private boolean grow() {
+        if (canGrow) {
+            int newCacheSize = (int)(cacheSize * 1.5f);
+            long maxCacheSizeConf = conf.getLong(GROUPBY_MAX_CACHE_SIZE_ATTRIB, DEFAULT_GROUPBY_MAX_CACHE_MAX);
+            long estSize = GroupedAggregateRegionObserver.sizeOfUnorderedGroupByMap(newCacheSize, estValueSize);
+            if (estSize <= maxCacheSizeConf) {
+                try {
+                    chunk.resize(estSize);
+                    cacheSize = newCacheSize;
+                    return true;
+                } catch (InsufficientMemoryException im) {
+                    // Cannot extend Map anymore, start spilling
+                }
+            }
+            canGrow = false;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map.Entry<ImmutableBytesPtr, Aggregator[]>[] sortCache() {
+        Map.Entry<ImmutableBytesPtr, Aggregator[]>[] entries = cache.entrySet().toArray(new Map.Entry[cache.size()]);
+        Arrays.sort(entries, ENTRY_COMPARATOR);
+        return entries;
+    }
+
+    private void spill() throws IOException {
+        File file = File.createTempFile("GroupBySpillRun", null, spillFilesDirectory);
+        // Add the run first so that the file is deleted on close, even if writing fails
+        SpillRun run = new SpillRun(file);
+        runs.add(run);
+        long bytes = 0;
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), SPILL_RUN_BUFFER_SIZE))) {
+            for (Map.Entry<ImmutableBytesPtr, Aggregator[]> entry : sortCache()) {
+                bytes += SpillManager.writeEntry(output, entry.getKey(), aggregators.toBytes(entry.getValue()));
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Spilled sorted run of " + cache.size() + " groups and " + bytes + " bytes to "
+                    + file.getAbsolutePath());
+        }
+        metricsSource.incrementSpillRunsWrittenCount();
+        metricsSource.incrementSpillBytesWritten(bytes);
+        maxNumGroupsInMemory = Math.max(maxNumGroupsInMemory, cache.size());
+        cache.clear();
+    }
+
+    /**
+     * Closes cache and deletes the spilled runs
+     */
+    @Override
+    public void close() throws IOException {
+        for (SpillRun run : runs) {
+            Closeables.closeQuietly(run);
+        }
+        Closeables.closeQuietly(chunk);
+    }
+
+    @Override
+    public RegionScanner getScanner(final RegionScanner s) {
+        final PriorityQueue<SortedSource> queue;
+        try {
+            queue = newMergeQueue();
+        } catch (IOException ioe) {
+            try {
+                throw new RuntimeException(ioe);
+            } finally {
+                Closeables.closeQuietly(this);
+            }
+        }
+        return new BaseRegionScanner(s) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    s.close();
+                } finally {
+                    // Always close gbCache and swallow possible Exceptions
+                    Closeables.closeQuietly(SortedSpillGroupByCache.this);
+                }
+            }
+
+            @Override
+            public boolean next(List<Cell> results) throws IOException {
+                SortedSource source = queue.poll();
+                if (source == null) {
+                    return false;
+                }
+                ImmutableBytesWritable key = source.getKey();
+                ImmutableBytesWritable value = source.getValue();
+                results.add(PhoenixKeyValueUtil.newKeyValue(key.get(), key.getOffset(), key.getLength(),
+                        SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, AGG_TIMESTAMP,
+                        value.get(), value.getOffset(), value.getLength()));
+                if (source.advance()) {
+                    queue.add(source);
+                }
+                return !queue.isEmpty();
+            }
+        };
+    }
+
+    private PriorityQueue<SortedSource> newMergeQueue() throws IOException {
+        PriorityQueue<SortedSource> queue = new PriorityQueue<SortedSource>(runs.size() + 1,
+                new Comparator<SortedSource>() {
+                    @Override
+                    public int compare(SortedSource s1, SortedSource s2) {
+                        int c = s1.getKey().compareTo(s2.getKey());
+                        // Return the partial aggregations of the same key in the order they were spilled
+                        return c != 0 ? c : Integer.compare(s1.index, s2.index);
+                    }
+                });
+        for (int i = 0; i < runs.size(); i++) {
+            SortedSource source = runs.get(i).open(i);
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+        SortedSource source = new InMemorySource(runs.size(), sortCache());
+        maxNumGroupsInMemory = Math.max(maxNumGroupsInMemory, cache.size());
+        cache = null;
+        if (source.advance()) {
+            queue.add(source);
+        }
+        return queue;
+    }
+
+    /**
+     * Source of key/value groupby tuples sorted by key
+     */
+    private static abstract class SortedSource {
+        protected final int index;
+        protected final ImmutableBytesWritable key = new ImmutableBytesWritable();
+        protected final ImmutableBytesWritable value = new ImmutableBytesWritable();
+
+        protected SortedSource(int index) {
+            this.index = index;
+        }
+
+        ImmutableBytesWritable getKey() {
+            return key;
+        }
+
+        ImmutableBytesWritable getValue() {
+            return value;
+        }
+
+        /**
+         * Move to the next tuple
+         * @return false if no more tuples are available
+         */
+        abstract boolean advance() throws IOException;
+    }
+
+    private final class InMemorySource extends SortedSource {
+        private final Map.Entry<ImmutableBytesPtr, Aggregator[]>[] entries;
+        private int position = 0;
+
+        private InMemorySource(int index, Map.Entry<ImmutableBytesPtr, Aggregator[]>[] entries) {
+            super(index);
+            this.entries = entries;
+        }
+
+        @Override
+        boolean advance() {
+            if (position >= entries.length) {
+                return false;
+            }
+            Map.Entry<ImmutableBytesPtr, Aggregator[]> entry = entries[position];
+            // Release the aggregators as we go
+            entries[position++] = null;
+            key.set(entry.getKey().get(), entry.getKey().getOffset(), entry.getKey().getLength());
+            value.set(aggregators.toBytes(entry.getValue()));
+            return true;
+        }
+    }
+
+    /**
+     * Run of spilled key/value groupby tuples sorted by key, stored in a temp file
+     */
+    private static final class SpillRun implements Closeable {
+        private final File file;
+        private DataInputStream input;
+
+        private SpillRun(File file) {
+            this.file = file;
+        }
+
+        private SortedSource open(int index) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), SPILL_RUN_BUFFER_SIZE));
+            return new SortedSource(index) {
+                @Override
+                boolean advance() throws IOException {
+                    int keyLength;
+                    try {
+                        keyLength = WritableUtils.readVInt(input);
+                    } catch (EOFException e) {
+                        close();
+                        return false;
+                    }
+                    byte[] keyBytes = new byte[keyLength];
+                    input.readFully(keyBytes);
+                    byte[] valueBytes = new byte[WritableUtils.readVInt(input)];
+                    input.readFully(valueBytes);
+                    key.set(keyBytes);
+                    value.set(valueBytes);
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            Closeables.closeQuietly(input);
+            input = null;
+            if (file.exists() && !file.delete()) {
+                LOGGER.warn("Unable to delete GROUP BY spill file " + file.getAbsolutePath());
+            }
+        }
+    }
+}
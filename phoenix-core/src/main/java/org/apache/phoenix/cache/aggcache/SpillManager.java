@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -141,15 +142,7 @@ public class SpillManager implements Closeable {
         try {
             bai = new ByteArrayOutputStream();
             output = new DataOutputStream(bai);
-            // key length
-            WritableUtils.writeVInt(output, key.getLength());
-            // key
-            output.write(key.get(), key.getOffset(), key.getLength());
-            byte[] aggsByte = serverAggs.toBytes(aggs);
-            // aggs length
-            WritableUtils.writeVInt(output, aggsByte.length);
-            // aggs
-            output.write(aggsByte);
+            writeEntry(output, key, serverAggs.toBytes(aggs));
             return bai.toByteArray();
         } finally {
 
@@ -164,6 +157,28 @@ public class SpillManager implements Closeable {
         }
     }
 
+    /**
+     * Write a serialized key/value groupby tuple
+     * @param output the output to write to
+     * @param key the group key
+     * @param aggsBytes the aggregators, serialized through {@link ServerAggregators#toBytes(Aggregator[])}
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    static long writeEntry(DataOutput output, ImmutableBytesWritable key, byte[] aggsBytes)
+            throws IOException {
+        // key length
+        WritableUtils.writeVInt(output, key.getLength());
+        // key
+        output.write(key.get(), key.getOffset(), key.getLength());
+        // aggs length
+        WritableUtils.writeVInt(output, aggsBytes.length);
+        // aggs
+        output.write(aggsBytes);
+        return WritableUtils.getVIntSize(key.getLength()) + key.getLength()
+                + WritableUtils.getVIntSize(aggsBytes.length) + aggsBytes.length;
+    }
+
     /**
      * Helper method to deserialize the key part from a serialized byte array
      * @param data
@@ -116,6 +116,7 @@ public class JoinCompiler {
         HASH_BUILD_LEFT,
         HASH_BUILD_RIGHT,
         SORT_MERGE,
+        HASH_PARTITIONED,
     }
 
     public enum ColumnRefType {
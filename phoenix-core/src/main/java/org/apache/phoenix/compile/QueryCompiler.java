@@ -48,6 +48,7 @@ import org.apache.phoenix.execute.HashJoinPlan;
 import org.apache.phoenix.execute.HashJoinPlan.HashSubPlan;
 import org.apache.phoenix.execute.HashJoinPlan.WhereClauseSubPlan;
 import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.PartitionedHashJoinPlan;
 import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
@@ -55,7 +56,12 @@ import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.ProjectedColumnExpression;
+import org.apache.phoenix.expression.RowKeyColumnExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.expression.visitor.StatelessTraverseAllExpressionVisitor;
+import org.apache.phoenix.filter.JoinKeyBloomFilter;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -77,9 +83,13 @@ import org.apache.phoenix.query.ConnectionQueryServices;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.AmbiguousColumnException;
+import org.apache.phoenix.schema.ColumnRef;
 import org.apache.phoenix.schema.ColumnNotFoundException;
+import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PDatum;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.schema.ProjectedColumn;
 import org.apache.phoenix.schema.RowValueConstructorOffsetNotCoercibleException;
 import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.schema.TableRef;
@@ -117,6 +127,9 @@ public class QueryCompiler {
     private final boolean optimizeSubquery;
     private final Map<TableRef, QueryPlan> dataPlans;
     private final boolean costBased;
+    private final boolean joinBloomFilterEnabled;
+    private final boolean partitionedHashJoinEnabled;
+    private final long maxServerCacheSize;
 
     public QueryCompiler(PhoenixStatement statement, SelectStatement select, ColumnResolver resolver, boolean projectTuples, boolean optimizeSubquery, Map<TableRef, QueryPlan> dataPlans) throws SQLException {
         this(statement, select, resolver, Collections.<PDatum>emptyList(), null, new SequenceManager(statement), projectTuples, optimizeSubquery, dataPlans);
@@ -144,6 +157,9 @@ public class QueryCompiler {
         this.usePersistentCache = select.getHint().hasHint(Hint.USE_PERSISTENT_CACHE);
         ConnectionQueryServices services = statement.getConnection().getQueryServices();
         this.costBased = services.getProps().getBoolean(QueryServices.COST_BASED_OPTIMIZER_ENABLED, QueryServicesOptions.DEFAULT_COST_BASED_OPTIMIZER_ENABLED);
+        this.joinBloomFilterEnabled = services.getProps().getBoolean(QueryServices.JOIN_BLOOM_FILTER_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_JOIN_BLOOM_FILTER_ENABLED);
+        this.partitionedHashJoinEnabled = services.getProps().getBoolean(QueryServices.PARTITIONED_HASH_JOIN_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_PARTITIONED_HASH_JOIN_ENABLED);
+        this.maxServerCacheSize = services.getProps().getLong(QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
         scan.setLoadColumnFamiliesOnDemand(true);
         if (select.getHint().hasHint(Hint.NO_CACHE)) {
             scan.setCacheBlocks(false);
@@ -300,9 +316,14 @@ public class QueryCompiler {
 
         List<JoinCompiler.Strategy> strategies = joinTable.getApplicableJoinStrategies();
         assert strategies.size() > 0;
+        ColumnResolver originalResolver = context.getResolver();
         if (!costBased || strategies.size() == 1) {
-            return compileJoinQuery(
+            QueryPlan plan = compileJoinQuery(
                     strategies.get(0), context, binds, joinTable, asSubquery, projectPKColumns, orderBy);
+            if (!isHashCacheTooLarge(plan)) {
+                return plan;
+            }
+            return compilePartitionedHashJoinQuery(context, originalResolver, binds, joinTable, asSubquery, projectPKColumns, orderBy);
         }
 
         QueryPlan bestPlan = null;
@@ -318,11 +339,44 @@ public class QueryCompiler {
                 bestCost = cost;
             }
         }
+        if (isHashCacheTooLarge(bestPlan)) {
+            return compilePartitionedHashJoinQuery(context, originalResolver, binds, joinTable, asSubquery, projectPKColumns, orderBy);
+        }
         context.setResolver(bestPlan.getContext().getResolver());
         context.setCurrentTable(bestPlan.getContext().getCurrentTable());
         return bestPlan;
     }
 
+    /**
+     * Determines whether the estimated size of any of the hash join caches of the plan
+     * exceeds the maximum server cache size, in which case the join would fail at
+     * execution time and should be done on the client by a {@link PartitionedHashJoinPlan}.
+     */
+    private boolean isHashCacheTooLarge(QueryPlan plan) throws SQLException {
+        if (!partitionedHashJoinEnabled || !(plan instanceof HashJoinPlan)) {
+            return false;
+        }
+        for (HashJoinPlan.SubPlan subPlan : ((HashJoinPlan) plan).getSubPlans()) {
+            if (subPlan instanceof HashSubPlan) {
+                Long estimatedBytes = subPlan.getInnerPlan().getEstimatedBytesToScan();
+                if (estimatedBytes != null && estimatedBytes > maxServerCacheSize) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private QueryPlan compilePartitionedHashJoinQuery(StatementContext context, ColumnResolver resolver, List<Object> binds, JoinTable joinTable, boolean asSubquery, boolean projectPKColumns, List<OrderByNode> orderBy) throws SQLException {
+        StatementContext newContext = new StatementContext(
+                context.getStatement(), resolver, context.getBindManager(), new Scan(), context.getSequenceManager());
+        QueryPlan plan = compileJoinQuery(
+                JoinCompiler.Strategy.HASH_PARTITIONED, newContext, binds, joinTable, asSubquery, projectPKColumns, orderBy);
+        context.setResolver(plan.getContext().getResolver());
+        context.setCurrentTable(plan.getContext().getCurrentTable());
+        return plan;
+    }
+
     protected QueryPlan compileJoinQuery(JoinCompiler.Strategy strategy, StatementContext context, List<Object> binds, JoinTable joinTable, boolean asSubquery, boolean projectPKColumns, List<OrderByNode> orderBy) throws SQLException {
         byte[] emptyByteArray = new byte[0];
         List<JoinSpec> joinSpecs = joinTable.getJoinSpecs();
@@ -406,7 +460,9 @@ public class QueryCompiler {
                     if (i < count - 1) {
                         fieldPositions[i + 1] = fieldPositions[i] + (tables[i] == null ? 0 : (tables[i].getColumns().size() - tables[i].getPKColumns().size()));
                     }
-                    hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions, joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression, keyRangeRhsExpression);
+                    List<Expression> bloomFilterKeyExpressions = optimized || table.isSubselect() || starJoinVector == null
+                            ? null : getBloomFilterKeyExpressions(tableRef, joinSpec.getType(), starJoinVector[i], joinExpressions[i], keyRangeLhsExpression);
+                    hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions, joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression, keyRangeRhsExpression, bloomFilterKeyExpressions);
                 }
                 TupleProjector.serializeProjectorIntoScan(context.getScan(), tupleProjector,
                         wildcardIncludesDynamicCols);
@@ -513,7 +569,9 @@ public class QueryCompiler {
                                         keyRangeExpressions.getFirst(),
                                         keyRangeExpressions.getSecond())});
             }
-            case SORT_MERGE: {
+            case SORT_MERGE:
+            case HASH_PARTITIONED: {
+                boolean sortMerge = strategy == JoinCompiler.Strategy.SORT_MERGE;
                 JoinTable lhsJoin =  joinTable.createSubJoinTable(statement.getConnection());
                 JoinSpec lastJoinSpec = joinSpecs.get(joinSpecs.size() - 1);
                 JoinType type = lastJoinSpec.getType();
@@ -535,12 +593,12 @@ public class QueryCompiler {
                 Scan lhsScan = ScanUtil.newScan(originalScan);
                 StatementContext lhsCtx = new StatementContext(statement, context.getResolver(), context.getBindManager(), lhsScan, new SequenceManager(statement));
                 boolean preserveRowkey = !projectPKColumns && type != JoinType.Full;
-                QueryPlan lhsPlan = compileJoinQuery(lhsCtx, binds, lhsJoin, true, !preserveRowkey, lhsOrderBy);
+                QueryPlan lhsPlan = compileJoinQuery(lhsCtx, binds, lhsJoin, true, !preserveRowkey, sortMerge ? lhsOrderBy : null);
                 PTable lhsProjTable = lhsCtx.getResolver().getTables().get(0).getTable();
 
                 Scan rhsScan = ScanUtil.newScan(originalScan);
                 StatementContext rhsCtx = new StatementContext(statement, context.getResolver(), context.getBindManager(), rhsScan, new SequenceManager(statement));
-                QueryPlan rhsPlan = compileJoinQuery(rhsCtx, binds, rhsJoin, true, true, rhsOrderBy);
+                QueryPlan rhsPlan = compileJoinQuery(rhsCtx, binds, rhsJoin, true, true, sortMerge ? rhsOrderBy : null);
                 PTable rhsProjTable = rhsCtx.getResolver().getTables().get(0).getTable();
 
                 Pair<List<Expression>, List<Expression>> joinConditions = lastJoinSpec.compileJoinConditions(type == JoinType.Right ? rhsCtx : lhsCtx, type == JoinType.Right ? lhsCtx : rhsCtx, strategy);
@@ -555,21 +613,39 @@ public class QueryCompiler {
                 TableRef tableRef = resolver.getTables().get(0);
                 StatementContext subCtx = new StatementContext(statement, resolver, context.getBindManager(), ScanUtil.newScan(originalScan), new SequenceManager(statement));
                 subCtx.setCurrentTable(tableRef);
-                QueryPlan innerPlan = new SortMergeJoinPlan(
-                        subCtx,
-                        joinTable.getOriginalJoinSelectStatement(),
-                        tableRef,
-                        type == JoinType.Right ? JoinType.Left : type,
-                        lhsPlan,
-                        rhsPlan,
-                        new Pair<List<Expression>,List<Expression>>(lhsKeyExpressions, rhsKeyExpressions),
-                        rhsKeyExpressions,
-                        projectedTable,
-                        lhsProjTable,
-                        needsMerge ? rhsProjTable : null,
-                        fieldPosition,
-                        lastJoinSpec.isSingleValueOnly(),
-                        new Pair<List<OrderByNode>,List<OrderByNode>>(lhsOrderBy, rhsOrderBy));
+                QueryPlan innerPlan;
+                if (sortMerge) {
+                    innerPlan = new SortMergeJoinPlan(
+                            subCtx,
+                            joinTable.getOriginalJoinSelectStatement(),
+                            tableRef,
+                            type == JoinType.Right ? JoinType.Left : type,
+                            lhsPlan,
+                            rhsPlan,
+                            new Pair<List<Expression>,List<Expression>>(lhsKeyExpressions, rhsKeyExpressions),
+                            rhsKeyExpressions,
+                            projectedTable,
+                            lhsProjTable,
+                            needsMerge ? rhsProjTable : null,
+                            fieldPosition,
+                            lastJoinSpec.isSingleValueOnly(),
+                            new Pair<List<OrderByNode>,List<OrderByNode>>(lhsOrderBy, rhsOrderBy));
+                } else {
+                    innerPlan = new PartitionedHashJoinPlan(
+                            subCtx,
+                            joinTable.getOriginalJoinSelectStatement(),
+                            tableRef,
+                            type == JoinType.Right ? JoinType.Left : type,
+                            lhsPlan,
+                            rhsPlan,
+                            new Pair<List<Expression>,List<Expression>>(lhsKeyExpressions, rhsKeyExpressions),
+                            projectedTable,
+                            lhsProjTable,
+                            needsMerge ? rhsProjTable : null,
+                            fieldPosition,
+                            lastJoinSpec.isSingleValueOnly(),
+                            PartitionedHashJoinPlan.getNumPartitions(rhsPlan, context.getConnection().getQueryServices().getProps()));
+                }
                 context.setCurrentTable(tableRef);
                 context.setResolver(resolver);
                 TableNode from = NODE_FACTORY.namedTable(tableRef.getTableAlias(), NODE_FACTORY.table(tableRef.getTable().getSchemaName().getString(), tableRef.getTable().getTableName().getString()));
@@ -611,6 +687,74 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Rewrite the LHS join key expressions, which are compiled against the projected table,
+     * in terms of the columns of the LHS table, so that they can be evaluated on the rows
+     * scanned by the region server before projection by a {@link JoinKeyBloomFilter}.
+     * @return the rewritten expressions, or null if the join Bloom filter is disabled, if the
+     * join does not filter out LHS rows, if the join keys are already pushed down as key ranges,
+     * or if the join keys depend on anything other than the columns of the LHS table.
+     */
+    private List<Expression> getBloomFilterKeyExpressions(final TableRef tableRef, JoinType type, boolean earlyEvaluation, List<Expression> joinExpressions, Expression keyRangeLhsExpression) {
+        if (!joinBloomFilterEnabled || !earlyEvaluation || keyRangeLhsExpression != null
+                || (type != JoinType.Inner && type != JoinType.Semi)
+                || tableRef.getTable().getIndexType() == IndexType.LOCAL) {
+            return null;
+        }
+        CloneExpressionVisitor visitor = new CloneExpressionVisitor() {
+            @Override
+            public boolean isCloneNode(Expression node, List<Expression> children) {
+                return !children.equals(node.getChildren());
+            }
+
+            @Override
+            public Expression visit(ProjectedColumnExpression node) {
+                PColumn column = node.getColumn();
+                if (column instanceof ProjectedColumn) {
+                    ColumnRef sourceColumnRef = ((ProjectedColumn) column).getSourceColumnRef();
+                    if (sourceColumnRef.getTableRef().equals(tableRef)) {
+                        try {
+                            return sourceColumnRef.newColumnExpression();
+                        } catch (SQLException e) {
+                            // Keep the projected column, so that no filter is built
+                        }
+                    }
+                }
+                return node;
+            }
+        };
+        final boolean[] found = new boolean[1];
+        StatelessTraverseAllExpressionVisitor<Void> rowKeyColumnFinder = new StatelessTraverseAllExpressionVisitor<Void>() {
+            @Override
+            public Void visit(RowKeyColumnExpression node) {
+                found[0] = true;
+                return null;
+            }
+        };
+        StatelessTraverseAllExpressionVisitor<Void> projectedColumnFinder = new StatelessTraverseAllExpressionVisitor<Void>() {
+            @Override
+            public Void visit(ProjectedColumnExpression node) {
+                found[0] = true;
+                return null;
+            }
+        };
+        List<Expression> keyExpressions = Lists.newArrayListWithExpectedSize(joinExpressions.size());
+        for (Expression joinExpression : joinExpressions) {
+            // Row key columns of the projected table may not be laid out as in the LHS row key
+            joinExpression.accept(rowKeyColumnFinder);
+            if (found[0]) {
+                return null;
+            }
+            Expression keyExpression = joinExpression.accept(visitor);
+            keyExpression.accept(projectedColumnFinder);
+            if (found[0]) {
+                return null;
+            }
+            keyExpressions.add(keyExpression);
+        }
+        return keyExpressions;
+    }
+
     private boolean getKeyExpressionCombinations(Pair<Expression, Expression> combination, StatementContext context, SelectStatement select, TableRef table, JoinType type, final List<Expression> joinExpressions, final List<Expression> hashExpressions) throws SQLException {
         if ((type != JoinType.Inner && type != JoinType.Semi) || this.noChildParentJoinOptimization)
             return false;
@@ -62,6 +62,8 @@ abstract public class BaseScannerRegionObserver extends CompatBaseScannerRegionO
     public static final String ESTIMATED_DISTINCT_VALUES = "_EstDistinctValues";
     public static final String NON_AGGREGATE_QUERY = "_NonAggregateQuery";
     public static final String TOPN = "_TopN";
+    // Sort keys of a TopN scan past which rows can no longer be part of the query result
+    public static final String TOPN_THRESHOLD = "_TopNThreshold";
     public static final String UNGROUPED_AGG = "_UngroupedAgg";
     public static final String DELETE_AGG = "_DeleteAgg";
     public static final String UPSERT_SELECT_TABLE = "_UpsertSelectTable";
@@ -80,6 +82,8 @@ abstract public class BaseScannerRegionObserver extends CompatBaseScannerRegionO
     public static final String SERVER_PAGING = "_ServerPaging";
     // The number of rows to be scanned in one RPC call
     public static final String AGGREGATE_PAGE_SIZE_IN_MS = "_AggregatePageSizeInMs";
+    // WHERE clause moved from the scan filter into the batch of an ungrouped aggregation
+    public static final String AGGREGATE_BATCH_WHERE = "_AggregateBatchWhere";
 
     // Index verification type done by the index tool
     public static final String INDEX_REBUILD_VERIFY_TYPE = "_IndexRebuildVerifyType";
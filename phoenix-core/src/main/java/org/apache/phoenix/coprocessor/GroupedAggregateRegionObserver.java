@@ -20,11 +20,17 @@ package org.apache.phoenix.coprocessor;
 import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SLAB_CACHE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILLABLE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILL_STRATEGY_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPED_AGGREGATE_PAGE_SIZE_IN_MS;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SLAB_CACHE;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILLABLE;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILL_STRATEGY;
+import static org.apache.phoenix.query.QueryServicesOptions.GROUPBY_SPILL_STRATEGY_SORT;
 import static org.apache.phoenix.util.ScanUtil.getDummyResult;
 
 import java.io.ByteArrayInputStream;
@@ -54,12 +60,16 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.cache.TenantCache;
+import org.apache.phoenix.cache.aggcache.SlabGroupByCache;
+import org.apache.phoenix.cache.aggcache.SortedSpillGroupByCache;
 import org.apache.phoenix.cache.aggcache.SpillableGroupByCache;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregatorBatch;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.aggregator.SlabAggregator;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.index.IndexMaintainer;
@@ -391,8 +401,19 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver im
             boolean spillableEnabled =
                     conf.getBoolean(GROUPBY_SPILLABLE_ATTRIB, DEFAULT_GROUPBY_SPILLABLE);
             if (spillableEnabled) {
+                String spillStrategy =
+                        conf.get(GROUPBY_SPILL_STRATEGY_ATTRIB, DEFAULT_GROUPBY_SPILL_STRATEGY);
+                if (GROUPBY_SPILL_STRATEGY_SORT.equalsIgnoreCase(spillStrategy)) {
+                    return new SortedSpillGroupByCache(env, tenantId, aggregators, estDistVals);
+                }
                 return new SpillableGroupByCache(env, tenantId, aggregators, estDistVals);
             }
+            boolean slabEnabled =
+                    conf.getBoolean(GROUPBY_SLAB_CACHE_ATTRIB, DEFAULT_GROUPBY_SLAB_CACHE);
+            if (slabEnabled && SlabAggregator.isSupported(aggregators.getAggregators())) {
+                TenantCache tenantCache = GlobalCache.getTenantCache(env, tenantId);
+                return new SlabGroupByCache(tenantCache.getMemoryManager(), aggregators, estDistVals);
+            }
 
             return new InMemoryGroupByCache(env, tenantId, customAnnotations, aggregators, estDistVals);
         }
@@ -532,6 +553,8 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver im
         private final long limit;
         private final List<Expression> expressions;
         private final long pageSizeInMs;
+        // Aggregates the rows of a group in batches, or null to aggregate them one at a time
+        private final ServerAggregatorBatch aggregatorBatch;
         private long rowCount = 0;
         private ImmutableBytesPtr currentKey = null;
 
@@ -548,6 +571,9 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver im
             minMaxQualifiers = EncodedColumnsUtil.getMinMaxQualifiersFromScan(scan);
             useQualifierAsIndex = EncodedColumnsUtil.useQualifierAsIndex(minMaxQualifiers);
             encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
+            aggregatorBatch = ServerAggregatorBatch.newInstance(aggregators, aggregators.getAggregators(),
+                    c.getEnvironment().getConfiguration().getInt(AGGREGATE_BATCH_SIZE_ATTRIB,
+                            QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE));
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(LogUtil.addCustomAnnotations(
                         "Grouped aggregation over ordered rows with scan " + scan + ", group by "
@@ -589,7 +615,11 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver im
                             key = TupleUtil.getConcatenatedValue(result, expressions);
                             aggBoundary = currentKey != null && currentKey.compareTo(key) != 0;
                             if (!aggBoundary) {
-                                aggregators.aggregate(rowAggregators, result);
+                                if (aggregatorBatch != null) {
+                                    aggregatorBatch.aggregate(result);
+                                } else {
+                                    aggregators.aggregate(rowAggregators, result);
+                                }
                                 if (LOGGER.isDebugEnabled()) {
                                     LOGGER.debug(LogUtil.addCustomAnnotations(
                                             "Row passed filters: " + kvs
@@ -605,6 +635,10 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver im
                         // row in the case of a DISTINCT with a LIMIT
                         now = EnvironmentEdgeManager.currentTimeMillis();
                     } while (hasMore && !aggBoundary && !atLimit && (now - startTime) < pageSizeInMs);
+                    if (aggregatorBatch != null) {
+                        // Also before returning a dummy result, so that no cells are referenced across calls
+                        aggregatorBatch.flush();
+                    }
                 }
             } finally {
                 if (acquiredLock) region.closeRegionOperation();
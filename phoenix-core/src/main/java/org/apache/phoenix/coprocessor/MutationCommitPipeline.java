@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.hbase.RegionTooBusyException;
+import org.apache.hadoop.hbase.ipc.RpcCall;
+import org.apache.hadoop.hbase.ipc.RpcUtil;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.phoenix.util.ServerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the batches of mutations built by a server side UPSERT SELECT, DELETE or index build
+ * scan on a separate thread, so that the scan builds the next batch while the previous one is
+ * written. At most one batch is in flight at a time, which keeps the batches in order and bounds
+ * the memory held to two batches. The batches are written with the RPC context of the thread that
+ * submits them, so that coprocessors such as the AccessController check the permissions of the
+ * user who ran the statement and the writes observe the deadline of its call.
+ * <p>
+ * When the batches are written to the scanned region, their size adapts to its memstore: the
+ * batch size is halved when the memstore is above half of the blocking size or when the region
+ * rejects a batch with a {@link RegionTooBusyException}, in which case the batch is retried after
+ * a pause. It grows back towards the configured size while the memstore stays below a quarter of
+ * the blocking size.
+ */
+class MutationCommitPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MutationCommitPipeline.class);
+    private static final int MAX_BUSY_RETRIES = 10;
+    private static final long BUSY_RETRY_PAUSE_MS = 100;
+    // The batch size never goes below this fraction of the configured one
+    private static final int MIN_BATCH_SIZE_DIVISOR = 16;
+    // Fraction of the configured batch size added back at a time
+    private static final int BATCH_SIZE_INCREMENT_DIVISOR = 8;
+
+    interface Batch {
+        void write() throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final UngroupedAggregateRegionObserver observer;
+    // The region written to, or null when the batches are written to other regions
+    private final Region region;
+    private final long blockingMemStoreSize;
+    private final int maxBatchSize;
+    private final long maxBatchSizeBytes;
+    private volatile int batchSize;
+    private volatile long batchSizeBytes;
+    private Future<Void> inFlight;
+
+    MutationCommitPipeline(ExecutorService executor, UngroupedAggregateRegionObserver observer, Region region,
+            long blockingMemStoreSize, int maxBatchSize, long maxBatchSizeBytes) {
+        this.executor = executor;
+        this.observer = observer;
+        this.region = region;
+        this.blockingMemStoreSize = blockingMemStoreSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchSizeBytes = maxBatchSizeBytes;
+        this.batchSize = maxBatchSize;
+        this.batchSizeBytes = maxBatchSizeBytes;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    long getBatchSizeBytes() {
+        return batchSizeBytes;
+    }
+
+    boolean isBatchFull(UngroupedAggregateRegionObserver.MutationList mutations) {
+        return ServerUtil.readyToCommit(mutations.size(), mutations.byteSize(), batchSize, batchSizeBytes);
+    }
+
+    void shrinkBatchSize() {
+        if (maxBatchSize > 0) {
+            batchSize = Math.max(Math.max(1, maxBatchSize / MIN_BATCH_SIZE_DIVISOR), batchSize / 2);
+        }
+        if (maxBatchSizeBytes > 0) {
+            batchSizeBytes = Math.max(Math.max(1, maxBatchSizeBytes / MIN_BATCH_SIZE_DIVISOR), batchSizeBytes / 2);
+        }
+    }
+
+    void growBatchSize() {
+        if (maxBatchSize > 0) {
+            batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / BATCH_SIZE_INCREMENT_DIVISOR));
+        }
+        if (maxBatchSizeBytes > 0) {
+            batchSizeBytes = Math.min(maxBatchSizeBytes,
+                    batchSizeBytes + Math.max(1, maxBatchSizeBytes / BATCH_SIZE_INCREMENT_DIVISOR));
+        }
+    }
+
+    private void adjustToMemStorePressure() {
+        if (region == null || blockingMemStoreSize <= 0) {
+            return;
+        }
+        long memStoreSize = region.getMemStoreHeapSize();
+        if (memStoreSize > blockingMemStoreSize / 2) {
+            shrinkBatchSize();
+        } else if (memStoreSize < blockingMemStoreSize / 4) {
+            growBatchSize();
+        }
+    }
+
+    void write(Batch batch) throws IOException {
+        adjustToMemStorePressure();
+        for (int retry = 0;; retry++) {
+            try {
+                batch.write();
+                return;
+            } catch (RegionTooBusyException e) {
+                if (region == null || retry >= MAX_BUSY_RETRIES) {
+                    throw e;
+                }
+                shrinkBatchSize();
+                LOGGER.debug("Region " + region.getRegionInfo().getRegionNameAsString()
+                        + " too busy, retrying batch with batch size now at " + batchSize, e);
+                observer.checkForRegionClosingOrSplitting();
+                try {
+                    Thread.sleep(BUSY_RETRY_PAUSE_MS * (retry + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the batch on the executor once the previous one has been written.
+     * @throws IOException if writing the previous batch failed
+     */
+    void submit(final Batch batch) throws IOException {
+        await();
+        // The caller's RPC call stays live until it awaits the batch, as it does before returning
+        final RpcCall rpcContext = RpcUtil.getRpcContext();
+        try {
+            inFlight = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    RpcCall previousRpcContext = RpcUtil.getRpcContext();
+                    try {
+                        RpcUtil.setRpcContext(rpcContext);
+                        write(batch);
+                    } finally {
+                        RpcUtil.setRpcContext(previousRpcContext);
+                    }
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pool is shutting down along with the region server
+            write(batch);
+        }
+    }
+
+    /**
+     * Wait for the batch in flight to be written.
+     * @throws IOException if writing the batch failed
+     */
+    void await() throws IOException {
+        Future<Void> future = inFlight;
+        if (future == null) {
+            return;
+        }
+        inFlight = null;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            // Don't leave the write running behind the caller's back
+            awaitQuietly(future);
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Wait for the batch in flight to be written, ignoring its failure. Used when the scan fails.
+     */
+    void abort() {
+        Future<Void> future = inFlight;
+        inFlight = null;
+        if (future != null) {
+            awaitQuietly(future);
+        }
+    }
+
+    private static void awaitQuietly(Future<Void> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to write a batch of mutations", e.getCause());
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -32,10 +32,12 @@ import java.io.IOException;
 import java.security.PrivilegedExceptionAction;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.annotation.concurrent.GuardedBy;
 
@@ -58,6 +60,8 @@ import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.ipc.RpcControllerFactory;
@@ -80,9 +84,15 @@ import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.filter.AllVersionsIndexRebuildFilter;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.filter.VectorizedPredicate;
 import org.apache.phoenix.hbase.index.Indexer;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.exception.IndexWriteException;
+import org.apache.phoenix.hbase.index.parallel.ThreadPoolBuilder;
+import org.apache.phoenix.hbase.index.parallel.ThreadPoolManager;
+import org.apache.phoenix.hbase.index.write.AbstractParallelWriterIndexCommitter;
 import org.apache.phoenix.index.GlobalIndexChecker;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.index.PhoenixIndexCodec;
@@ -169,13 +179,16 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
      */
     @GuardedBy("lock")
     private int scansReferenceCount = 0;
+    // Only written while holding the lock, volatile so that the check done for every scanned row
+    // doesn't need to take it
     @GuardedBy("lock")
-    private boolean isRegionClosingOrSplitting = false;
+    private volatile boolean isRegionClosingOrSplitting = false;
     private static final Logger LOGGER = LoggerFactory.getLogger(UngroupedAggregateRegionObserver.class);
     private Configuration upsertSelectConfig;
     private Configuration compactionConfig;
     private Configuration indexWriteConfig;
     private ReadOnlyProps indexWriteProps;
+    private ThreadPoolExecutor mutationPipelinePool;
 
     @Override
     public Optional<RegionObserver> getRegionObserver() {
@@ -206,6 +219,37 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
                 e.getConfiguration().getInt(QueryServices.INDEX_REBUILD_RPC_RETRIES_COUNTER,
                         QueryServicesOptions.DEFAULT_INDEX_REBUILD_RPC_RETRIES_COUNTER));
         indexWriteProps = new ReadOnlyProps(indexWriteConfig.iterator());
+
+        if (e.getConfiguration().getBoolean(QueryServices.SERVER_MUTATION_PIPELINE_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_SERVER_MUTATION_PIPELINE_ENABLED)) {
+            mutationPipelinePool = ThreadPoolManager.getExecutor(
+                    new ThreadPoolBuilder("ServerMutationPipeline", e.getConfiguration())
+                            .setMaxThread(QueryServices.SERVER_MUTATION_PIPELINE_THREADS_ATTRIB,
+                                    QueryServicesOptions.DEFAULT_SERVER_MUTATION_PIPELINE_THREADS)
+                            .setCoreTimeout(AbstractParallelWriterIndexCommitter.INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY),
+                    (RegionCoprocessorEnvironment) e);
+        }
+    }
+
+    @Override
+    public void stop(CoprocessorEnvironment e) throws IOException {
+        if (mutationPipelinePool != null) {
+            // Releases our reference to the shared pool
+            mutationPipelinePool.shutdown();
+        }
+    }
+
+    /**
+     * @return a pipeline to write the batches of mutations of a scan in the background, or null
+     * if pipelining is disabled
+     */
+    MutationCommitPipeline newCommitPipeline(Region region, boolean writesToRegion, long blockingMemStoreSize,
+            int maxBatchSize, long maxBatchSizeBytes) {
+        if (mutationPipelinePool == null) {
+            return null;
+        }
+        return new MutationCommitPipeline(mutationPipelinePool, this, writesToRegion ? region : null,
+                blockingMemStoreSize, maxBatchSize, maxBatchSizeBytes);
     }
 
     Configuration getUpsertSelectConfig() {
@@ -315,6 +359,9 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
      * @throws IOException
      */
     void checkForRegionClosingOrSplitting() throws IOException {
+        if (!isRegionClosingOrSplitting) {
+            return;
+        }
         synchronized (lock) {
             if (isRegionClosingOrSplitting) {
                 lock.notifyAll();
@@ -338,6 +385,59 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
             scan.withStartRow(HConstants.EMPTY_START_ROW);
             scan.withStopRow(HConstants.EMPTY_END_ROW);
             scan.setFilter(null);
+        } else if (isRegionObserverFor(scan)) {
+            moveWhereIntoAggregateBatch(scan, e.getEnvironment().getConfiguration().getInt(
+                    QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE));
+        }
+    }
+
+    /**
+     * Evaluate the WHERE clause of a plain ungrouped aggregation over the batches of
+     * {@link UngroupedAggregateRegionScanner} instead of through the scan filter, when it can
+     * be vectorized. Skip scan filters are left in place, as they seek over the region.
+     */
+    static void moveWhereIntoAggregateBatch(Scan scan, int batchSize) {
+        // Only plain aggregations, as mutating scans and joins evaluate more than the WHERE clause per row
+        if (batchSize <= 0 || ScanUtil.isIndexRebuild(scan) || ScanUtil.isLocalIndex(scan)
+                || scan.getAttribute(BaseScannerRegionObserver.UPSERT_SELECT_TABLE) != null
+                || scan.getAttribute(BaseScannerRegionObserver.DELETE_AGG) != null
+                || scan.getAttribute(BaseScannerRegionObserver.DELETE_CF) != null
+                || scan.getAttribute(BaseScannerRegionObserver.DELETE_CQ) != null
+                || scan.getAttribute(BaseScannerRegionObserver.EMPTY_CF) != null
+                || scan.getAttribute(BaseScannerRegionObserver.UPGRADE_DESC_ROW_KEY) != null
+                || scan.getAttribute(BaseScannerRegionObserver.LOCAL_INDEX_BUILD) != null
+                || scan.getAttribute(BaseScannerRegionObserver.CHECK_VERIFY_COLUMN) != null
+                || HashJoinInfo.isHashJoin(scan)
+                || TupleProjector.deserializeProjectorFromScan(scan) != null) {
+            return;
+        }
+        Filter filter = scan.getFilter();
+        BooleanExpressionFilter whereFilter = null;
+        List<Filter> remainingFilters = Lists.newArrayList();
+        if (filter instanceof BooleanExpressionFilter) {
+            whereFilter = (BooleanExpressionFilter)filter;
+        } else if (filter instanceof FilterList
+                && ((FilterList)filter).getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+            for (Filter f : ((FilterList)filter).getFilters()) {
+                if (f instanceof BooleanExpressionFilter && whereFilter == null) {
+                    whereFilter = (BooleanExpressionFilter)f;
+                } else if (f instanceof SkipScanFilter) {
+                    remainingFilters.add(f);
+                } else {
+                    return;
+                }
+            }
+        }
+        if (whereFilter == null || VectorizedPredicate.compile(whereFilter.getExpression(), 1) == null) {
+            return;
+        }
+        scan.setAttribute(AGGREGATE_BATCH_WHERE, serialize(Collections.singletonList(whereFilter.getExpression())));
+        if (remainingFilters.isEmpty()) {
+            scan.setFilter(null);
+        } else if (remainingFilters.size() == 1) {
+            scan.setFilter(remainingFilters.get(0));
+        } else {
+            scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, remainingFilters));
         }
     }
 
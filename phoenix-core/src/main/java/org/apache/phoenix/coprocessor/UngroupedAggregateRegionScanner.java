@@ -29,6 +29,7 @@ import static org.apache.phoenix.coprocessor.UngroupedAggregateRegionObserver.se
 import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MUTATE_BATCH_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MUTATE_BATCH_SIZE_BYTES_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.SOURCE_OPERATION_ATTRIB;
@@ -71,8 +72,9 @@ import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.exception.DataExceedsCapacityException;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.aggregator.Aggregator;
-import org.apache.phoenix.expression.aggregator.Aggregators;
+import org.apache.phoenix.expression.aggregator.ServerAggregatorBatch;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.filter.VectorizedPredicate;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.util.GenericKeyValueBuilder;
 import org.apache.phoenix.index.PhoenixIndexCodec;
@@ -161,6 +163,9 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
     private byte[] indexMaintainersPtr;
     private boolean useIndexProto;
     private Connection targetHConn = null;
+    private MutationCommitPipeline commitPipeline = null;
+    // WHERE clause moved out of the scan filter by UngroupedAggregateRegionObserver
+    private VectorizedPredicate where = null;
 
     public UngroupedAggregateRegionScanner(final ObserverContext<RegionCoprocessorEnvironment> c,
                                            final RegionScanner innerScanner, final Region region, final Scan scan,
@@ -185,6 +190,11 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                                 QueryServicesOptions.DEFAULT_UNGROUPED_AGGREGATE_PAGE_SIZE_IN_MS);
             }
         }
+        byte[] whereBytes = scan.getAttribute(BaseScannerRegionObserver.AGGREGATE_BATCH_WHERE);
+        if (whereBytes != null) {
+            where = VectorizedPredicate.compile(deserializeExpressions(whereBytes).get(0),
+                    Math.max(1, conf.getInt(AGGREGATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE)));
+        }
         ts = scan.getTimeRange().getMax();
         boolean localIndexScan = ScanUtil.isLocalIndex(scan);
         encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
@@ -276,6 +286,8 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
             maxBatchSize = conf.getInt(MUTATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE);
             maxBatchSizeBytes = conf.getLong(MUTATE_BATCH_SIZE_BYTES_ATTRIB,
                     QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE_BYTES);
+            commitPipeline = ungroupedAggregateRegionObserver.newCommitPipeline(region, needToWrite,
+                    blockingMemStoreSize, maxBatchSize, maxBatchSizeBytes);
         }
         minMaxQualifiers = EncodedColumnsUtil.getMinMaxQualifiersFromScan(scan);
         if (LOGGER.isDebugEnabled()) {
@@ -569,6 +581,52 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
             }
         }
     }
+
+    private boolean isBatchFull(UngroupedAggregateRegionObserver.MutationList mutations) {
+        if (commitPipeline != null) {
+            return commitPipeline.isBatchFull(mutations);
+        }
+        return ServerUtil.readyToCommit(mutations.size(), mutations.byteSize(), maxBatchSize, maxBatchSizeBytes);
+    }
+
+    /**
+     * Commit the mutations, in the background when pipelining is enabled.
+     * @return the list to collect the next batch of mutations into
+     */
+    private UngroupedAggregateRegionObserver.MutationList commit(
+            final UngroupedAggregateRegionObserver.MutationList mutations) throws IOException {
+        if (commitPipeline == null) {
+            ungroupedAggregateRegionObserver.commit(region, mutations, indexUUID, blockingMemStoreSize, indexMaintainersPtr,
+                    txState, targetHTable, useIndexProto, isPKChanging, clientVersionBytes);
+            mutations.clear();
+            return mutations;
+        }
+        commitPipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                ungroupedAggregateRegionObserver.commit(region, mutations, indexUUID, blockingMemStoreSize,
+                        indexMaintainersPtr, txState, targetHTable, useIndexProto, isPKChanging, clientVersionBytes);
+            }
+        });
+        return new UngroupedAggregateRegionObserver.MutationList(mutations.size());
+    }
+
+    private UngroupedAggregateRegionObserver.MutationList commitIndexMutations(
+            final UngroupedAggregateRegionObserver.MutationList indexMutations) throws IOException {
+        if (commitPipeline == null) {
+            ungroupedAggregateRegionObserver.commitBatch(region, indexMutations, blockingMemStoreSize);
+            indexMutations.clear();
+            return indexMutations;
+        }
+        commitPipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                ungroupedAggregateRegionObserver.commitBatch(region, indexMutations, blockingMemStoreSize);
+            }
+        });
+        return new UngroupedAggregateRegionObserver.MutationList(indexMutations.size());
+    }
+
     @Override
     public boolean next(List<Cell> resultsToReturn) throws IOException {
         boolean hasMore;
@@ -576,10 +634,12 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
         Configuration conf = env.getConfiguration();
         final TenantCache tenantCache = GlobalCache.getTenantCache(env, ScanUtil.getTenantId(scan));
         try (MemoryManager.MemoryChunk em = tenantCache.getMemoryManager().allocate(0)) {
-            Aggregators aggregators = ServerAggregators.deserialize(
+            ServerAggregators aggregators = ServerAggregators.deserialize(
                     scan.getAttribute(BaseScannerRegionObserver.AGGREGATORS), conf, em);
             Aggregator[] rowAggregators = aggregators.getAggregators();
             aggregators.reset(rowAggregators);
+            ServerAggregatorBatch aggregatorBatch = ServerAggregatorBatch.newInstance(aggregators, rowAggregators,
+                    conf.getInt(AGGREGATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE), where);
             Cell lastCell = null;
             boolean hasAny = false;
             ImmutableBytesWritable ptr = new ImmutableBytesWritable();
@@ -601,6 +661,10 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                         hasMore = innerScanner.nextRaw(results);
                         if (!results.isEmpty()) {
                             lastCell = results.get(0);
+                            if (where != null && aggregatorBatch != null) {
+                                // The batch holds on to the rows until it evaluates the WHERE clause over them
+                                result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new MultiKeyValueTuple();
+                            }
                             result.setKeyValues(results);
                             if (isDescRowKeyOrderUpgrade) {
                                 if (!descRowKeyOrderUpgrade(results, ptr, mutations)) {
@@ -626,31 +690,40 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                                  */
                                 insertEmptyKeyValue(results, mutations);
                             }
-                            if (ServerUtil.readyToCommit(mutations.size(), mutations.byteSize(), maxBatchSize, maxBatchSizeBytes)) {
-                                ungroupedAggregateRegionObserver.commit(region, mutations, indexUUID, blockingMemStoreSize, indexMaintainersPtr,
-                                        txState, targetHTable, useIndexProto, isPKChanging, clientVersionBytes);
-                                mutations.clear();
+                            if (isBatchFull(mutations)) {
+                                mutations = commit(mutations);
                             }
                             // Commit in batches based on UPSERT_BATCH_SIZE_BYTES_ATTRIB in config
 
-                            if (ServerUtil.readyToCommit(indexMutations.size(), indexMutations.byteSize(), maxBatchSize, maxBatchSizeBytes)) {
+                            if (isBatchFull(indexMutations)) {
                                 setIndexAndTransactionProperties(indexMutations, indexUUID, indexMaintainersPtr, txState, clientVersionBytes, useIndexProto);
-                                ungroupedAggregateRegionObserver.commitBatch(region, indexMutations, blockingMemStoreSize);
-                                indexMutations.clear();
+                                indexMutations = commitIndexMutations(indexMutations);
+                            }
+                            if (aggregatorBatch != null) {
+                                aggregatorBatch.aggregate(result);
+                                hasAny = true;
+                            } else if (where == null || where.evaluate(result)) {
+                                aggregators.aggregate(rowAggregators, result);
+                                hasAny = true;
                             }
-                            aggregators.aggregate(rowAggregators, result);
-                            hasAny = true;
                         }
                     } while (hasMore && (EnvironmentEdgeManager.currentTimeMillis() - startTime) < pageSizeInMs);
+                    if (aggregatorBatch != null) {
+                        aggregatorBatch.flush();
+                        if (where != null) {
+                            hasAny = aggregatorBatch.getAggregatedRowCount() > 0;
+                        }
+                    }
 
                     if (!mutations.isEmpty()) {
-                        ungroupedAggregateRegionObserver.commit(region, mutations, indexUUID, blockingMemStoreSize, indexMaintainersPtr, txState,
-                                targetHTable, useIndexProto, isPKChanging, clientVersionBytes);
-                        mutations.clear();
+                        mutations = commit(mutations);
                     }
                     if (!indexMutations.isEmpty()) {
-                        ungroupedAggregateRegionObserver.commitBatch(region, indexMutations, blockingMemStoreSize);
-                        indexMutations.clear();
+                        indexMutations = commitIndexMutations(indexMutations);
+                    }
+                    if (commitPipeline != null) {
+                        // All writes must be done before the region operation ends
+                        commitPipeline.await();
                     }
                 }
             } catch (InsufficientMemoryException e) {
@@ -661,6 +734,10 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                 LOGGER.error("Exception in UngroupedAggreagteRegionScanner for region "
                         + region.getRegionInfo().getRegionNameAsString(), e);
                 throw e;
+            } finally {
+                if (commitPipeline != null) {
+                    commitPipeline.abort();
+                }
             }
             Cell keyValue;
             if (hasAny) {
@@ -26,6 +26,8 @@ public class MetricsPhoenixCoprocessorSourceFactory {
             INSTANCE = new MetricsPhoenixCoprocessorSourceFactory();
     // Holds the PHOENIX_TTL related metrics.
     private static volatile MetricsPhoenixTTLSource phoenixTTLSource;
+    // Holds the GROUP BY spill related metrics.
+    private static volatile MetricsPhoenixGroupBySpillSource groupBySpillSource;
 
     public static MetricsPhoenixCoprocessorSourceFactory getInstance() {
         return INSTANCE;
@@ -42,4 +44,16 @@ public class MetricsPhoenixCoprocessorSourceFactory {
         }
         return INSTANCE.phoenixTTLSource;
     }
+
+    // return the metric source for spilling GROUP BY caches.
+    public MetricsPhoenixGroupBySpillSource getGroupBySpillSource() {
+        if (INSTANCE.groupBySpillSource == null) {
+            synchronized (MetricsPhoenixGroupBySpillSource.class) {
+                if (INSTANCE.groupBySpillSource == null) {
+                    INSTANCE.groupBySpillSource = new MetricsPhoenixGroupBySpillSourceImpl();
+                }
+            }
+        }
+        return INSTANCE.groupBySpillSource;
+    }
 }
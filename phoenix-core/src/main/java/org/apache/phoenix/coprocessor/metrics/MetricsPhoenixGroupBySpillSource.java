@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.phoenix.coprocessor.metrics;
+
+import org.apache.hadoop.hbase.metrics.BaseSource;
+
+/**
+ * Interface for metrics about spilling of server side GROUP BY caches
+ * by {@link org.apache.phoenix.cache.aggcache.SortedSpillGroupByCache}.
+ */
+public interface MetricsPhoenixGroupBySpillSource extends BaseSource {
+
+    // Metrics2 and JMX constants
+    String METRICS_NAME = "PhoenixGroupBySpill";
+    String METRICS_CONTEXT = "phoenix";
+    String METRICS_DESCRIPTION = "Metrics about spilling of Phoenix server side GROUP BY";
+    String METRICS_JMX_CONTEXT = "RegionServer,sub=" + METRICS_NAME;
+
+    String GROUPBY_SPILL_RUNS_WRITTEN = "phoenixGroupBySpillRunsWritten";
+    String GROUPBY_SPILL_RUNS_WRITTEN_DESC = "The number of sorted runs spilled to disk by GROUP BY";
+
+    String GROUPBY_SPILL_BYTES_WRITTEN = "phoenixGroupBySpillBytesWritten";
+    String GROUPBY_SPILL_BYTES_WRITTEN_DESC = "The number of bytes spilled to disk by GROUP BY";
+
+    /**
+     * Report the number of sorted runs spilled to disk.
+     */
+    long getSpillRunsWrittenCount();
+
+    /**
+     * Keeps track of the number of sorted runs spilled to disk.
+     */
+    void incrementSpillRunsWrittenCount();
+
+    /**
+     * Report the number of bytes spilled to disk.
+     */
+    long getSpillBytesWritten();
+
+    /**
+     * Keeps track of the number of bytes spilled to disk.
+     * @param bytes the number of bytes written by a spill
+     */
+    void incrementSpillBytesWritten(long bytes);
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.phoenix.coprocessor.metrics;
+
+import org.apache.hadoop.hbase.metrics.BaseSourceImpl;
+import org.apache.hadoop.metrics2.lib.MutableFastCounter;
+
+/**
+ * Implementation for tracking GROUP BY spill metrics.
+ */
+public class MetricsPhoenixGroupBySpillSourceImpl extends BaseSourceImpl
+        implements MetricsPhoenixGroupBySpillSource {
+    private final MutableFastCounter spillRunsWritten;
+    private final MutableFastCounter spillBytesWritten;
+
+    public MetricsPhoenixGroupBySpillSourceImpl() {
+        this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
+    }
+
+    public MetricsPhoenixGroupBySpillSourceImpl(String metricsName, String metricsDescription,
+            String metricsContext, String metricsJmxContext) {
+        super(metricsName, metricsDescription, metricsContext, metricsJmxContext);
+
+        spillRunsWritten = getMetricsRegistry().newCounter(GROUPBY_SPILL_RUNS_WRITTEN,
+                GROUPBY_SPILL_RUNS_WRITTEN_DESC, 0L);
+
+        spillBytesWritten = getMetricsRegistry().newCounter(GROUPBY_SPILL_BYTES_WRITTEN,
+                GROUPBY_SPILL_BYTES_WRITTEN_DESC, 0L);
+    }
+
+    @Override public long getSpillRunsWrittenCount() { return spillRunsWritten.value(); }
+
+    @Override public void incrementSpillRunsWrittenCount() { spillRunsWritten.incr(); }
+
+    @Override public long getSpillBytesWritten() { return spillBytesWritten.value(); }
+
+    @Override public void incrementSpillBytesWritten(long bytes) { spillBytesWritten.incr(bytes); }
+}
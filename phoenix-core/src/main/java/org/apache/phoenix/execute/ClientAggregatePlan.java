@@ -176,7 +176,9 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
                     iterator =
                             new OrderedResultIterator(iterator, keyExpressionOrderBy,
                                     spoolingEnabled, thresholdBytes, null, null,
-                                    projector.getEstimatedRowByteSize());
+                                    projector.getEstimatedRowByteSize(),
+                                    context.getConnection().getQueryServices().getExecutor(),
+                                    getSortParallelism());
                     aggResultIterator = new ClientGroupedAggregatingResultIterator(LookAheadResultIterator.wrap(iterator), serverAggregators, keyExpressions);
                 }
             }
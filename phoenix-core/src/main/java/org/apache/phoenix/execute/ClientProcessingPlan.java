@@ -23,7 +23,10 @@ import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.util.ReadOnlyProps;
 
 /**
  * Query plan that does where, order-by limit at client side, which is
@@ -89,4 +92,21 @@ public abstract class ClientProcessingPlan extends DelegateQueryPlan {
     public Expression getWhere() {
         return where;
     }
+
+    /**
+     * @return the number of runs a client side sort is split into, sorted concurrently
+     * on the query thread pool, or 1 if parallel sorting is disabled.
+     */
+    protected int getSortParallelism() {
+        ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.CLIENT_PARALLEL_SORT_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_CLIENT_PARALLEL_SORT_ENABLED)) {
+            return 1;
+        }
+        int threadPoolSize = props.getInt(QueryServices.THREAD_POOL_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_THREAD_POOL_SIZE);
+        int maxThreads = props.getInt(QueryServices.CLIENT_PARALLEL_SORT_MAX_THREADS_ATTRIB,
+                QueryServicesOptions.DEFAULT_CLIENT_PARALLEL_SORT_MAX_THREADS);
+        return Math.max(1, Math.min(threadPoolSize, maxThreads));
+    }
 }
@@ -105,7 +105,9 @@ public class ClientScanPlan extends ClientProcessingPlan {
             iterator =
                     new OrderedResultIterator(iterator, orderBy.getOrderByExpressions(),
                             spoolingEnabled, thresholdBytes, limit, offset,
-                            projector.getEstimatedRowByteSize());
+                            projector.getEstimatedRowByteSize(),
+                            context.getConnection().getQueryServices().getExecutor(),
+                            getSortParallelism());
         } else {
             if (offset != null) {
                 iterator = new OffsetResultIterator(iterator, offset);
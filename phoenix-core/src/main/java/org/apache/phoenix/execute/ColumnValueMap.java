@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.phoenix.schema.PColumn;
+
+/**
+ * Map of the column values of a buffered row. The columns and their values are kept in
+ * two parallel arrays instead of a hash table of entries, so that a row costs two references
+ * per column value. Small rows are searched linearly; once a row has more than
+ * {@link #INDEX_THRESHOLD} columns an open addressing table of array positions is
+ * maintained on the side to keep lookups constant time for wide tables.
+ */
+public final class ColumnValueMap extends AbstractMap<PColumn, byte[]> {
+    static final int INDEX_THRESHOLD = 8;
+
+    private PColumn[] columns;
+    private byte[][] values;
+    private int size;
+    // Open addressing table of (array position + 1), 0 meaning an empty slot
+    private int[] index;
+
+    public ColumnValueMap(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        this.columns = new PColumn[capacity];
+        this.values = new byte[capacity][];
+    }
+
+    private static int slot(Object column, int mask) {
+        int h = column.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int indexOf(Object column) {
+        if (column == null) {
+            return -1;
+        }
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (columns[i] == column || column.equals(columns[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = slot(column, mask);; slot = (slot + 1) & mask) {
+            int position = index[slot] - 1;
+            if (position < 0) {
+                return -1;
+            }
+            if (columns[position] == column || column.equals(columns[position])) {
+                return position;
+            }
+        }
+    }
+
+    private void addToIndex(int position) {
+        int mask = index.length - 1;
+        int slot = slot(columns[position], mask);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position + 1;
+    }
+
+    private void rebuildIndex() {
+        if (size <= INDEX_THRESHOLD) {
+            index = null;
+            return;
+        }
+        // Keep the load factor at or below one half
+        int length = Integer.highestOneBit(size * 4 - 1);
+        if (index == null || index.length != length) {
+            index = new int[length];
+        } else {
+            Arrays.fill(index, 0);
+        }
+        for (int i = 0; i < size; i++) {
+            addToIndex(i);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object column) {
+        return indexOf(column) >= 0;
+    }
+
+    @Override
+    public byte[] get(Object column) {
+        int position = indexOf(column);
+        return position < 0 ? null : values[position];
+    }
+
+    @Override
+    public byte[] put(PColumn column, byte[] value) {
+        if (column == null) {
+            throw new NullPointerException();
+        }
+        int position = indexOf(column);
+        if (position >= 0) {
+            byte[] oldValue = values[position];
+            values[position] = value;
+            return oldValue;
+        }
+        if (size == columns.length) {
+            int capacity = size + (size >> 1) + 1;
+            columns = Arrays.copyOf(columns, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        columns[size] = column;
+        values[size] = value;
+        size++;
+        if (index != null && size * 2 <= index.length) {
+            addToIndex(size - 1);
+        } else if (size > INDEX_THRESHOLD) {
+            rebuildIndex();
+        }
+        return null;
+    }
+
+    @Override
+    public byte[] remove(Object column) {
+        int position = indexOf(column);
+        if (position < 0) {
+            return null;
+        }
+        byte[] oldValue = values[position];
+        removeAt(position);
+        return oldValue;
+    }
+
+    private void removeAt(int position) {
+        int moved = size - position - 1;
+        System.arraycopy(columns, position + 1, columns, position, moved);
+        System.arraycopy(values, position + 1, values, position, moved);
+        size--;
+        columns[size] = null;
+        values[size] = null;
+        if (index != null) {
+            rebuildIndex();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(columns, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        index = null;
+    }
+
+    @Override
+    public Set<Entry<PColumn, byte[]>> entrySet() {
+        return new AbstractSet<Entry<PColumn, byte[]>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                ColumnValueMap.this.clear();
+            }
+
+            @Override
+            public Iterator<Entry<PColumn, byte[]>> iterator() {
+                return new Iterator<Entry<PColumn, byte[]>>() {
+                    private int next = 0;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<PColumn, byte[]> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new AbstractMap.SimpleImmutableEntry<>(columns[last], values[last]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+}
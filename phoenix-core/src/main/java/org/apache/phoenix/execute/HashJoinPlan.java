@@ -58,6 +58,7 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.InListExpression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.filter.JoinKeyBloomFilter;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.*;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -83,6 +84,7 @@ import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.SQLCloseables;
+import org.apache.phoenix.util.ScanUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -106,6 +108,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
     private HashCacheClient hashClient;
     private AtomicLong firstJobEndTime;
     private List<Expression> keyRangeExpressions;
+    private List<JoinKeyBloomFilter> joinKeyBloomFilters;
     private Long estimatedRows;
     private Long estimatedBytes;
     private Long estimateInfoTs;
@@ -176,6 +179,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
                   : new HashCacheClient(delegate.getContext().getConnection());
             firstJobEndTime = new AtomicLong(0);
             keyRangeExpressions = new CopyOnWriteArrayList<Expression>();
+            joinKeyBloomFilters = new CopyOnWriteArrayList<JoinKeyBloomFilter>();
         }
         
         for (int i = 0; i < count; i++) {
@@ -245,6 +249,9 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
         if (joinInfo != null) {
             HashJoinInfo.serializeHashJoinIntoScan(scan, joinInfo);
+            for (JoinKeyBloomFilter filter : joinKeyBloomFilters) {
+                ScanUtil.andFilterAtEnd(scan, filter);
+            }
         }
         
         ResultIterator iterator = joinInfo == null ? delegate.iterator(scanGrouper, scan) : ((BaseQueryPlan) delegate).iterator(dependencies, scanGrouper, scan);
@@ -506,6 +513,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
         private final boolean usePersistentCache;
         private final Expression keyRangeLhsExpression;
         private final Expression keyRangeRhsExpression;
+        private final List<Expression> bloomFilterKeyExpressions;
         private final MessageDigest digest;
         
         public HashSubPlan(int index, QueryPlan subPlan, 
@@ -514,6 +522,21 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 boolean usePersistentCache,
                 Expression keyRangeLhsExpression, 
                 Expression keyRangeRhsExpression) {
+            this(index, subPlan, hashExpressions, singleValueOnly, usePersistentCache,
+                    keyRangeLhsExpression, keyRangeRhsExpression, null);
+        }
+
+        /**
+         * @param bloomFilterKeyExpressions the LHS join key expressions compiled against the
+         * LHS table, used to push a {@link JoinKeyBloomFilter} down to the LHS scan, or null
+         */
+        public HashSubPlan(int index, QueryPlan subPlan, 
+                List<Expression> hashExpressions,
+                boolean singleValueOnly,
+                boolean usePersistentCache,
+                Expression keyRangeLhsExpression, 
+                Expression keyRangeRhsExpression,
+                List<Expression> bloomFilterKeyExpressions) {
             this.index = index;
             this.plan = subPlan;
             this.hashExpressions = hashExpressions;
@@ -521,6 +544,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
             this.usePersistentCache = usePersistentCache;
             this.keyRangeLhsExpression = keyRangeLhsExpression;
             this.keyRangeRhsExpression = keyRangeRhsExpression;
+            this.bloomFilterKeyExpressions = bloomFilterKeyExpressions;
             try {
                 this.digest = MessageDigest.getInstance("SHA-256");
             } catch (NoSuchAlgorithmException e) {
@@ -558,10 +582,25 @@ public class HashJoinPlan extends DelegateQueryPlan {
                             " for " + queryString);
                     if (cache == null) {
                         LOGGER.debug("Making RPC to add cache " + Hex.encodeHexString(cacheId));
+                        JoinKeyBloomFilter.Builder bloomFilterBuilder = null;
+                        if (bloomFilterKeyExpressions != null) {
+                            long maxBloomFilterSize = parent.getContext().getConnection().getQueryServices().getProps().getLong(
+                                    QueryServices.JOIN_BLOOM_FILTER_MAX_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_JOIN_BLOOM_FILTER_MAX_SIZE);
+                            bloomFilterBuilder = new JoinKeyBloomFilter.Builder(maxBloomFilterSize);
+                        }
                         cache = parent.hashClient.addHashCache(ranges, cacheId, iterator,
                                 plan.getEstimatedSize(), hashExpressions, singleValueOnly, usePersistentCache,
                                 parent.delegate.getTableRef().getTable(), keyRangeRhsExpression,
-                                keyRangeRhsValues);
+                                keyRangeRhsValues, bloomFilterBuilder);
+                        if (bloomFilterBuilder != null) {
+                            JoinKeyBloomFilter bloomFilter = bloomFilterBuilder.build(bloomFilterKeyExpressions);
+                            if (bloomFilter != null) {
+                                parent.joinKeyBloomFilters.add(bloomFilter);
+                            } else {
+                                LOGGER.debug("Skipping join Bloom filter for hash plan [" + index
+                                        + "] as the join keys exceed the maximum filter size");
+                            }
+                        }
                         long endTime = EnvironmentEdgeManager.currentTimeMillis();
                         boolean isSet = parent.firstJobEndTime.compareAndSet(0, endTime);
                         if (!isSet && (endTime
@@ -624,6 +663,14 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
         @Override
         public List<String> getPostSteps(HashJoinPlan parent) throws SQLException {
+            if (bloomFilterKeyExpressions != null) {
+                // The filter is only built if the RHS keys fit in its maximum size
+                long maxBloomFilterSize = parent.getContext().getConnection().getQueryServices().getProps().getLong(
+                        QueryServices.JOIN_BLOOM_FILTER_MAX_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_JOIN_BLOOM_FILTER_MAX_SIZE);
+                String step = "    DYNAMIC SERVER BLOOM FILTER BY " + bloomFilterKeyExpressions.toString()
+                        + " (IF AT MOST " + JoinKeyBloomFilter.Builder.getMaxNumKeys(maxBloomFilterSize) + " RHS KEYS)";
+                return Collections.<String> singletonList(step);
+            }
             if (keyRangeLhsExpression == null)
                 return Collections.<String> emptyList();
             
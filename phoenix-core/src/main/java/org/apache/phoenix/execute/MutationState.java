@@ -30,15 +30,27 @@ import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_WILDCARD_QUE
 import java.io.IOException;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
@@ -71,11 +83,13 @@ import org.apache.phoenix.index.PhoenixIndexFailurePolicy.MutateCommand;
 import org.apache.phoenix.index.PhoenixIndexMetaData;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement.Operation;
+import org.apache.phoenix.job.JobManager.JobCallable;
 import org.apache.phoenix.monitoring.GlobalClientMetrics;
 import org.apache.phoenix.monitoring.MutationMetricQueue;
 import org.apache.phoenix.monitoring.MutationMetricQueue.MutationMetric;
 import org.apache.phoenix.monitoring.MutationMetricQueue.NoOpMutationMetricsQueue;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
@@ -135,6 +149,7 @@ public class MutationState implements SQLCloseable {
     private final long maxSizeBytes;
     private final long batchSize;
     private final long batchSizeBytes;
+    private final int maxConcurrentTables;
     private long batchCount = 0L;
     private final Map<TableRef, MultiRowMutationState> mutations;
     private final Set<String> uncommittedPhysicalNames = Sets.newHashSetWithExpectedSize(10);
@@ -193,6 +208,9 @@ public class MutationState implements SQLCloseable {
         this.connection = connection;
         this.batchSize = connection.getMutateBatchSize();
         this.batchSizeBytes = connection.getMutateBatchSizeBytes();
+        this.maxConcurrentTables = connection.getQueryServices().getProps().getInt(
+                QueryServices.MUTATE_MAX_CONCURRENT_TABLES_ATTRIB,
+                QueryServicesOptions.DEFAULT_MUTATE_MAX_CONCURRENT_TABLES);
         this.mutations = mutations;
         boolean isMetricsEnabled = connection.isRequestLevelMetricsEnabled();
         this.mutationMetricQueue = isMetricsEnabled ? new MutationMetricQueue()
@@ -410,6 +428,7 @@ public class MutationState implements SQLCloseable {
         boolean incrementRowCount = dstMutations == this.mutations;
         MultiRowMutationState existingRows = dstMutations.put(tableRef, srcRows);
         if (existingRows != null) { // Rows for that table already exist
+            long existingSize = existingRows.getEstimatedSize();
             // Loop through new rows and replace existing with new
             for (Map.Entry<ImmutableBytesPtr, RowMutationState> rowEntry : srcRows.entrySet()) {
                 // Replace existing row with new row
@@ -421,12 +440,8 @@ public class MutationState implements SQLCloseable {
                         // if new row is PRow.DELETE_MARKER, it means delete, and we don't need to merge it with
                         // existing row.
                         if (newRow != PRow.DELETE_MARKER) {
-                            // decrement estimated size by the size of the old row
-                            estimatedSize -= existingRowMutationState.calculateEstimatedSize();
                             // Merge existing column values with new column values
                             existingRowMutationState.join(rowEntry.getValue());
-                            // increment estimated size by the size of the new row
-                            estimatedSize += existingRowMutationState.calculateEstimatedSize();
                             // Now that the existing row has been merged with the new row, replace it back
                             // again (since it was merged with the new one above).
                             existingRows.put(rowEntry.getKey(), existingRowMutationState);
@@ -435,11 +450,14 @@ public class MutationState implements SQLCloseable {
                 } else {
                     if (incrementRowCount && !isIndex) { // Don't count index rows in row count
                         numRows++;
-                        // increment estimated size by the size of the new row
-                        estimatedSize += rowEntry.getValue().calculateEstimatedSize();
                     }
                 }
             }
+            if (incrementRowCount && !isIndex) {
+                // existingRows tracks the size of the rows it replaced and merged, so its
+                // growth is the size added by the new rows
+                estimatedSize += existingRows.getEstimatedSize() - existingSize;
+            }
             // Put the existing one back now that it's merged
             dstMutations.put(tableRef, existingRows);
         } else {
@@ -451,7 +469,7 @@ public class MutationState implements SQLCloseable {
                 numRows += srcRows.size();
                 // if we added all the rows from newMutationState we can just increment the
                 // estimatedSize by newMutationState.estimatedSize
-                estimatedSize += srcRows.estimatedSize;
+                estimatedSize += srcRows.getEstimatedSize();
             }
         }
     }
@@ -631,10 +649,11 @@ public class MutationState implements SQLCloseable {
             if (tableWithRowTimestampCol) {
                 RowTimestampColInfo rowTsColInfo = state.getRowTimestampColInfo();
                 if (rowTsColInfo.useServerTimestamp()) {
-                    // regenerate the key with this timestamp.
-                    key = getNewRowKeyWithRowTimestamp(key, serverTimestamp, table);
-                    // since we are about to modify the byte[] stored in key (which changes its hashcode)
-                    // we need to remove the entry from the values map and add a new entry with the modified byte[]
+                    // regenerate the key with this timestamp, on a copy since the key points into
+                    // the key slabs of the values map
+                    key = getNewRowKeyWithRowTimestamp(new ImmutableBytesPtr(key.copyBytes()), serverTimestamp, table);
+                    // since the modified key has a different hashcode we need to remove the entry from
+                    // the values map and add a new entry with the modified byte[]
                     modifiedValues.put(key, state);
                     iterator.remove();
                     timestampToUse = serverTimestamp;
@@ -997,14 +1016,14 @@ public class MutationState implements SQLCloseable {
                     verifiedOrDeletedIndexMutations);
 
             // Phase 1: Send index mutations with the empty column value = "unverified"
-            sendMutations(unverifiedIndexMutations.entrySet().iterator(), span, indexMetaDataPtr, false);
+            sendMutations(unverifiedIndexMutations, span, indexMetaDataPtr, false);
 
             // Phase 2: Send data table and other indexes
-            sendMutations(physicalTableMutationMap.entrySet().iterator(), span, indexMetaDataPtr, false);
+            sendMutations(physicalTableMutationMap, span, indexMetaDataPtr, false);
 
             // Phase 3: Send put index mutations with the empty column value = "verified" and/or delete index mutations
             try {
-                sendMutations(verifiedOrDeletedIndexMutations.entrySet().iterator(), span, indexMetaDataPtr, true);
+                sendMutations(verifiedOrDeletedIndexMutations, span, indexMetaDataPtr, true);
             } catch (SQLException ex) {
                 LOGGER.warn(
                         "Ignoring exception that happened during setting index verified value to verified=TRUE ",
@@ -1013,6 +1032,124 @@ public class MutationState implements SQLCloseable {
         }
     }
 
+    /**
+     * Send the mutations of one phase of a commit. The mutations of up to
+     * {@link QueryServices#MUTATE_MAX_CONCURRENT_TABLES_ATTRIB} tables are sent at the same
+     * time, each table on its own through {@link #sendMutations(Iterator, Span, ImmutableBytesWritable, boolean)}.
+     * The phase only completes once all of its tables have been sent, so that no mutation of
+     * the next phase is applied before. Transactional tables are always sent one
+     * after the other, as the transaction context is not thread safe.
+     */
+    private void sendMutations(Map<TableInfo, List<Mutation>> mutationMap, final Span span,
+            ImmutableBytesWritable indexMetaDataPtr, final boolean isVerifiedPhase) throws SQLException {
+        if (maxConcurrentTables <= 1 || mutationMap.size() <= 1 || hasTransactionalTable(mutationMap)) {
+            sendMutations(mutationMap.entrySet().iterator(), span, indexMetaDataPtr, isVerifiedPhase);
+            return;
+        }
+        Deque<Future<Void>> inFlight = new ArrayDeque<>(maxConcurrentTables);
+        SQLException sqlE = null;
+        for (final Entry<TableInfo, List<Mutation>> entry : mutationMap.entrySet()) {
+            if (inFlight.size() == maxConcurrentTables) {
+                sqlE = await(inFlight.removeFirst(), sqlE);
+            }
+            if (sqlE != null) {
+                // Like when sending one table after the other, stop at the first failure
+                break;
+            }
+            JobCallable<Void> callable = new JobCallable<Void>() {
+                @Override
+                public Void call() throws SQLException {
+                    sendMutations(Iterators.singletonIterator(entry), span,
+                            new ImmutableBytesWritable(), isVerifiedPhase);
+                    return null;
+                }
+
+                @Override
+                public Object getJobId() {
+                    return MutationState.this;
+                }
+
+                @Override
+                public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                    return TaskExecutionMetricsHolder.NO_OP_INSTANCE;
+                }
+            };
+            Future<Void> future;
+            try {
+                future = connection.getQueryServices().getExecutor().submit(callable);
+            } catch (RejectedExecutionException e) {
+                // Run by this thread once awaited
+                future = new FutureTask<>(callable);
+            }
+            inFlight.addLast(future);
+        }
+        while (!inFlight.isEmpty()) {
+            sqlE = await(inFlight.removeFirst(), sqlE);
+        }
+        if (sqlE instanceof CommitException) {
+            // Other tables may have been sent after the failure was raised
+            CommitException commitE = (CommitException) sqlE;
+            int[] uncommittedStatementIndexes;
+            synchronized (this) {
+                uncommittedStatementIndexes = getUncommittedStatementIndexes();
+            }
+            CommitException e = new CommitException((Exception) commitE.getCause(),
+                    uncommittedStatementIndexes, commitE.getServerTimestamp());
+            e.setNextException(commitE.getNextException());
+            sqlE = e;
+        }
+        if (sqlE != null) {
+            throw sqlE;
+        }
+    }
+
+    /**
+     * Wait for the mutations of a table to be sent, sending them from this thread if no
+     * thread of the pool has picked them up yet, so that a commit run from the pool itself
+     * cannot wait on tasks queued behind it.
+     * @return the first exception of the phase
+     */
+    private static SQLException await(Future<Void> future, SQLException sqlE) {
+        if (future instanceof RunnableFuture) {
+            // No-op if the task has already been started
+            ((RunnableFuture<?>) future).run();
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return chain(sqlE, new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                return chain(sqlE, (SQLException) cause);
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return chain(sqlE, ServerUtil.parseServerException(cause));
+        }
+        return sqlE;
+    }
+
+    private static SQLException chain(SQLException first, SQLException next) {
+        if (first == null) {
+            return next;
+        }
+        first.setNextException(next);
+        return first;
+    }
+
+    private static boolean hasTransactionalTable(Map<TableInfo, List<Mutation>> mutationMap) {
+        for (TableInfo tableInfo : mutationMap.keySet()) {
+            if (tableInfo.getOrigTableRef().getTable().isTransactional()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void sendMutations(Iterator<Entry<TableInfo, List<Mutation>>> mutationsIterator, Span span, ImmutableBytesWritable indexMetaDataPtr, boolean isVerifiedPhase)
             throws SQLException {
         while (mutationsIterator.hasNext()) {
@@ -1133,7 +1270,9 @@ public class MutationState implements SQLCloseable {
                         // only in case of 1121 SQLException
                         itrListMutation.remove();
 
-                        batchCount++;
+                        synchronized (this) {
+                            batchCount++;
+                        }
                         if (LOGGER.isDebugEnabled())
                             LOGGER.debug("Sent batch of " + mutationBatch.size() + " for "
                                     + Bytes.toString(htableName));
@@ -1146,11 +1285,13 @@ public class MutationState implements SQLCloseable {
                     numFailedMutations = 0;
 
                     // Remove batches as we process them
-                    mutations.remove(origTableRef);
-                    if (tableInfo.isDataTable()) {
-                        numRows -= numMutations;
-                        // recalculate the estimated size
-                        estimatedSize = PhoenixKeyValueUtil.getEstimatedRowMutationSize(mutations);
+                    synchronized (this) {
+                        mutations.remove(origTableRef);
+                        if (tableInfo.isDataTable()) {
+                            numRows -= numMutations;
+                            // recalculate the estimated size
+                            estimatedSize = PhoenixKeyValueUtil.getEstimatedRowMutationSize(mutations);
+                        }
                     }
                 } catch (Exception e) {
                     mutationCommitTime = EnvironmentEdgeManager.currentTimeMillis() - startTime;
@@ -1201,7 +1342,10 @@ public class MutationState implements SQLCloseable {
                     }
                     // Throw to client an exception that indicates the statements that
                     // were not committed successfully.
-                    int[] uncommittedStatementIndexes = getUncommittedStatementIndexes();
+                    int[] uncommittedStatementIndexes;
+                    synchronized (this) {
+                        uncommittedStatementIndexes = getUncommittedStatementIndexes();
+                    }
                     sqlE = new CommitException(e, uncommittedStatementIndexes, serverTimestamp);
                     numFailedMutations = uncommittedStatementIndexes.length;
                     GLOBAL_MUTATION_BATCH_FAILED_COUNT.update(numFailedMutations);
@@ -1212,7 +1356,9 @@ public class MutationState implements SQLCloseable {
                 } finally {
                     MutationMetric mutationsMetric = new MutationMetric(numMutations, mutationSizeBytes,
                             mutationCommitTime, numFailedMutations, numFailedPhase3Mutations);
-                    mutationMetricQueue.addMetricsForTable(Bytes.toString(htableName), mutationsMetric);
+                    synchronized (this) {
+                        mutationMetricQueue.addMetricsForTable(Bytes.toString(htableName), mutationsMetric);
+                    }
                     try {
                         if (cache != null) cache.close();
                     } finally {
@@ -1628,44 +1774,301 @@ public class MutationState implements SQLCloseable {
         }
     }
 
+    /**
+     * Uncommitted rows of a table, keyed by row key. Instead of a hash map of boxed keys and
+     * entries, the row keys are copied into shared byte slabs and the rows are kept in insertion
+     * ordered parallel arrays, indexed by an open addressing table of array positions. Removed
+     * rows leave a hole that is reclaimed when the arrays are next resized. The estimated size is
+     * kept up to date as rows are added, replaced and removed.
+     */
     public static class MultiRowMutationState {
-        private Map<ImmutableBytesPtr, RowMutationState> rowKeyToRowMutationState;
+        private static final int MIN_KEY_SLAB_SIZE = 256;
+        private static final int MAX_KEY_SLAB_SIZE = 64 * 1024;
+        // Index slot of a removed row, so that probing continues past it
+        private static final int REMOVED = -1;
+
+        private final int expectedSize;
+        // Row key of each row as a (slab, offset, length) triple along with its hash code
+        private byte[][] keySlabs;
+        private int[] keyOffsets;
+        private int[] keyLengths;
+        private int[] keyHashes;
+        private RowMutationState[] rowMutationStates;
+        // Number of array positions in use, including the holes left by removed rows
+        private int used;
+        private int size;
+        // Open addressing table of (array position + 1), 0 meaning an empty slot
+        private int[] index;
+        private byte[] keySlab;
+        private int keySlabOffset;
+        private int modCount;
         private long estimatedSize;
 
         public MultiRowMutationState(int size) {
-            this.rowKeyToRowMutationState = Maps.newHashMapWithExpectedSize(size);
+            this.expectedSize = Math.max(size, 1);
             this.estimatedSize = 0;
         }
 
+        private static int slot(int hash, int mask) {
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private int find(ImmutableBytesPtr ptr, int hash) {
+            if (index == null) {
+                return -1;
+            }
+            int mask = index.length - 1;
+            for (int slot = slot(hash, mask);; slot = (slot + 1) & mask) {
+                int position = index[slot] - 1;
+                if (position == -1) {
+                    return -1;
+                }
+                if (position >= 0 && keyHashes[position] == hash
+                        && Bytes.equals(keySlabs[position], keyOffsets[position], keyLengths[position],
+                                ptr.get(), ptr.getOffset(), ptr.getLength())) {
+                    return position;
+                }
+            }
+        }
+
+        private int findSlot(int position) {
+            int mask = index.length - 1;
+            int slot = slot(keyHashes[position], mask);
+            while (index[slot] != position + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void addToIndex(int position) {
+            int mask = index.length - 1;
+            int slot = slot(keyHashes[position], mask);
+            while (index[slot] > 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = position + 1;
+        }
+
+        /**
+         * Make room for one more row, reclaiming the holes of removed rows when they make
+         * up at least half of the arrays and doubling their capacity otherwise.
+         */
+        private void ensureCapacity() {
+            if (rowMutationStates == null) {
+                resize(expectedSize);
+            } else if (used == rowMutationStates.length) {
+                resize(size > used / 2 ? used * 2 : used);
+            }
+        }
+
+        private void resize(int capacity) {
+            byte[][] newKeySlabs = new byte[capacity][];
+            int[] newKeyOffsets = new int[capacity];
+            int[] newKeyLengths = new int[capacity];
+            int[] newKeyHashes = new int[capacity];
+            RowMutationState[] newRowMutationStates = new RowMutationState[capacity];
+            int newUsed = 0;
+            for (int i = 0; i < used; i++) {
+                if (rowMutationStates[i] != null) {
+                    newKeySlabs[newUsed] = keySlabs[i];
+                    newKeyOffsets[newUsed] = keyOffsets[i];
+                    newKeyLengths[newUsed] = keyLengths[i];
+                    newKeyHashes[newUsed] = keyHashes[i];
+                    newRowMutationStates[newUsed] = rowMutationStates[i];
+                    newUsed++;
+                }
+            }
+            keySlabs = newKeySlabs;
+            keyOffsets = newKeyOffsets;
+            keyLengths = newKeyLengths;
+            keyHashes = newKeyHashes;
+            rowMutationStates = newRowMutationStates;
+            used = newUsed;
+            // Keep the load factor of the index, holes included, at or below one half
+            index = new int[Integer.highestOneBit(capacity * 4 - 1)];
+            for (int i = 0; i < used; i++) {
+                addToIndex(i);
+            }
+            modCount++;
+        }
+
+        private void copyKey(int position, ImmutableBytesPtr ptr) {
+            int length = ptr.getLength();
+            if (length > MAX_KEY_SLAB_SIZE / 4) {
+                keySlabs[position] = ptr.copyBytes();
+                keyOffsets[position] = 0;
+            } else {
+                if (keySlab == null || keySlabOffset + length > keySlab.length) {
+                    keySlab = new byte[keySlab == null ? MIN_KEY_SLAB_SIZE
+                            : Math.min(keySlab.length * 2, MAX_KEY_SLAB_SIZE)];
+                    keySlabOffset = 0;
+                }
+                System.arraycopy(ptr.get(), ptr.getOffset(), keySlab, keySlabOffset, length);
+                keySlabs[position] = keySlab;
+                keyOffsets[position] = keySlabOffset;
+                keySlabOffset += length;
+            }
+            keyLengths[position] = length;
+        }
+
         public RowMutationState put(ImmutableBytesPtr ptr, RowMutationState rowMutationState) {
+            checkNotNull(rowMutationState);
+            int hash = ptr.hashCode();
+            int position = find(ptr, hash);
+            if (position >= 0) {
+                RowMutationState oldRowMutationState = rowMutationStates[position];
+                rowMutationStates[position] = rowMutationState;
+                estimatedSize += rowMutationState.calculateEstimatedSize()
+                        - oldRowMutationState.calculateEstimatedSize();
+                return oldRowMutationState;
+            }
+            ensureCapacity();
+            position = used++;
+            copyKey(position, ptr);
+            keyHashes[position] = hash;
+            rowMutationStates[position] = rowMutationState;
+            addToIndex(position);
+            size++;
+            modCount++;
             estimatedSize += rowMutationState.calculateEstimatedSize();
-            return rowKeyToRowMutationState.put(ptr, rowMutationState);
+            return null;
         }
 
         public void putAll(MultiRowMutationState other) {
-            estimatedSize += other.estimatedSize;
-            rowKeyToRowMutationState.putAll(other.rowKeyToRowMutationState);
+            for (int i = 0; i < other.used; i++) {
+                if (other.rowMutationStates[i] != null) {
+                    put(other.getKey(i), other.rowMutationStates[i]);
+                }
+            }
+        }
+
+        private ImmutableBytesPtr getKey(int position) {
+            return new ImmutableBytesPtr(keySlabs[position], keyOffsets[position], keyLengths[position]);
+        }
+
+        private void remove(int position) {
+            index[findSlot(position)] = REMOVED;
+            estimatedSize -= rowMutationStates[position].calculateEstimatedSize();
+            keySlabs[position] = null;
+            rowMutationStates[position] = null;
+            size--;
+            modCount++;
         }
 
         public boolean isEmpty() {
-            return rowKeyToRowMutationState.isEmpty();
+            return size == 0;
         }
 
         public int size() {
-            return rowKeyToRowMutationState.size();
+            return size;
         }
 
+        public long getEstimatedSize() {
+            return estimatedSize;
+        }
+
+        /**
+         * @return a view of the rows in insertion order. The key of each entry points into
+         * the shared key slabs, and its bytes must be copied before they are modified.
+         */
         public Set<Entry<ImmutableBytesPtr, RowMutationState>> entrySet() {
-            return rowKeyToRowMutationState.entrySet();
+            return new AbstractSet<Entry<ImmutableBytesPtr, RowMutationState>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<ImmutableBytesPtr, RowMutationState>> iterator() {
+                    return new RowIterator<Entry<ImmutableBytesPtr, RowMutationState>>() {
+                        @Override
+                        Entry<ImmutableBytesPtr, RowMutationState> get(int position) {
+                            return new AbstractMap.SimpleImmutableEntry<>(getKey(position),
+                                    rowMutationStates[position]);
+                        }
+                    };
+                }
+            };
         }
 
         public void clear() {
-            rowKeyToRowMutationState.clear();
+            keySlabs = null;
+            keyOffsets = null;
+            keyLengths = null;
+            keyHashes = null;
+            rowMutationStates = null;
+            index = null;
+            keySlab = null;
+            keySlabOffset = 0;
+            used = 0;
+            size = 0;
+            modCount++;
             estimatedSize = 0;
         }
 
         public Collection<RowMutationState> values() {
-            return rowKeyToRowMutationState.values();
+            return new AbstractCollection<RowMutationState>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<RowMutationState> iterator() {
+                    return new RowIterator<RowMutationState>() {
+                        @Override
+                        RowMutationState get(int position) {
+                            return rowMutationStates[position];
+                        }
+                    };
+                }
+            };
+        }
+
+        private abstract class RowIterator<T> implements Iterator<T> {
+            private int next = advance(0);
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            private int advance(int position) {
+                while (position < used && rowMutationStates[position] == null) {
+                    position++;
+                }
+                return position;
+            }
+
+            abstract T get(int position);
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = advance(next + 1);
+                return get(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                MultiRowMutationState.this.remove(last);
+                expectedModCount = modCount;
+                last = -1;
+            }
         }
     }
 
@@ -0,0 +1,767 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.apache.phoenix.util.NumberUtil.add;
+import static org.apache.phoenix.util.NumberUtil.getMin;
+
+import java.io.IOException;
+import java.sql.ParameterMetaData;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.ExplainPlan;
+import org.apache.phoenix.compile.ExplainPlanAttributes;
+import org.apache.phoenix.compile.ExplainPlanAttributes
+    .ExplainPlanAttributesBuilder;
+import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.compile.QueryCompiler;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.execute.TupleProjector.ProjectedValueTuple;
+import org.apache.phoenix.execute.visitor.ByteCountVisitor;
+import org.apache.phoenix.execute.visitor.QueryPlanVisitor;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.iterate.BaseResultIterator;
+import org.apache.phoenix.iterate.DefaultParallelScanGrouper;
+import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.PhoenixQueues;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.iterate.SizeAwareQueue;
+import org.apache.phoenix.jdbc.PhoenixStatement.Operation;
+import org.apache.phoenix.optimize.Cost;
+import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.KeyValueSchema;
+import org.apache.phoenix.schema.KeyValueSchema.KeyValueSchemaBuilder;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.ValueBitSet;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.TupleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
+import org.apache.phoenix.thirdparty.com.google.common.hash.HashFunction;
+import org.apache.phoenix.thirdparty.com.google.common.hash.Hashing;
+
+/**
+ *
+ * Client side hash join for joins whose build side is too large to be sent to the
+ * region servers as a hash join cache. Both sides are hash partitioned on the join key
+ * into spooled queues, after which the partitions are joined one at a time by loading
+ * the RHS of the partition into an in-memory hash table and probing it with the LHS.
+ * A partition whose RHS is still larger than the client spool threshold is partitioned
+ * again with a different hash function, up to {@link #MAX_PARTITION_DEPTH} times.
+ * Unlike {@link SortMergeJoinPlan}, neither side needs to be sorted and the output is
+ * not ordered.
+ *
+ */
+public class PartitionedHashJoinPlan implements QueryPlan {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedHashJoinPlan.class);
+    private static final int MAX_PARTITION_DEPTH = 3;
+
+    private final StatementContext context;
+    private final FilterableStatement statement;
+    private final TableRef table;
+    /**
+     * In {@link QueryCompiler#compileJoinQuery},{@link JoinType#Right} is converted
+     * to {@link JoinType#Left}.
+     */
+    private final JoinType joinType;
+    private final QueryPlan lhsPlan;
+    private final QueryPlan rhsPlan;
+    private final List<Expression> lhsKeyExpressions;
+    private final List<Expression> rhsKeyExpressions;
+    private final KeyValueSchema joinedSchema;
+    private final KeyValueSchema lhsSchema;
+    private final KeyValueSchema rhsSchema;
+    private final int rhsFieldPosition;
+    private final boolean isSingleValueOnly;
+    private final int numPartitions;
+    private final Set<TableRef> tableRefs;
+    private final long thresholdBytes;
+    private Long estimatedBytes;
+    private Long estimatedRows;
+    private Long estimateInfoTs;
+    private boolean getEstimatesCalled;
+
+    public PartitionedHashJoinPlan(
+            StatementContext context,
+            FilterableStatement statement,
+            TableRef table,
+            JoinType type,
+            QueryPlan lhsPlan,
+            QueryPlan rhsPlan,
+            Pair<List<Expression>,List<Expression>> lhsAndRhsKeyExpressions,
+            PTable joinedTable,
+            PTable lhsTable,
+            PTable rhsTable,
+            int rhsFieldPosition,
+            boolean isSingleValueOnly,
+            int numPartitions) {
+        if (type == JoinType.Right) throw new IllegalArgumentException("JoinType should not be " + type);
+        if (numPartitions < 1) throw new IllegalArgumentException("Invalid number of partitions " + numPartitions);
+        this.context = context;
+        this.statement = statement;
+        this.table = table;
+        this.joinType = type;
+        this.lhsPlan = lhsPlan;
+        this.rhsPlan = rhsPlan;
+        this.lhsKeyExpressions = lhsAndRhsKeyExpressions.getFirst();
+        this.rhsKeyExpressions = lhsAndRhsKeyExpressions.getSecond();
+        this.joinedSchema = buildSchema(joinedTable);
+        this.lhsSchema = buildSchema(lhsTable);
+        this.rhsSchema = buildSchema(rhsTable);
+        this.rhsFieldPosition = rhsFieldPosition;
+        this.isSingleValueOnly = isSingleValueOnly;
+        this.numPartitions = numPartitions;
+        this.tableRefs = Sets.newHashSetWithExpectedSize(lhsPlan.getSourceRefs().size() + rhsPlan.getSourceRefs().size());
+        this.tableRefs.addAll(lhsPlan.getSourceRefs());
+        this.tableRefs.addAll(rhsPlan.getSourceRefs());
+        this.thresholdBytes =
+                context.getConnection().getQueryServices().getProps().getLong(
+                    QueryServices.CLIENT_SPOOL_THRESHOLD_BYTES_ATTRIB,
+                    QueryServicesOptions.DEFAULT_CLIENT_SPOOL_THRESHOLD_BYTES);
+    }
+
+    /**
+     * Determine the number of partitions needed for each partition of the build side
+     * to fit within the client spool threshold.
+     * @param buildPlan the plan of the build (right hand) side of the join
+     * @param props the properties of the connection
+     * @return the number of partitions, between 1 and the configured maximum
+     */
+    public static int getNumPartitions(QueryPlan buildPlan, ReadOnlyProps props) throws SQLException {
+        int maxPartitions = props.getInt(
+                QueryServices.PARTITIONED_HASH_JOIN_MAX_PARTITIONS_ATTRIB,
+                QueryServicesOptions.DEFAULT_PARTITIONED_HASH_JOIN_MAX_PARTITIONS);
+        long thresholdBytes = props.getLong(
+                QueryServices.CLIENT_SPOOL_THRESHOLD_BYTES_ATTRIB,
+                QueryServicesOptions.DEFAULT_CLIENT_SPOOL_THRESHOLD_BYTES);
+        Long buildBytes = buildPlan.getEstimatedBytesToScan();
+        if (buildBytes == null || thresholdBytes <= 0) {
+            return Math.max(1, maxPartitions);
+        }
+        long numPartitions = (buildBytes + thresholdBytes - 1) / thresholdBytes;
+        return (int) Math.max(1, Math.min(maxPartitions, numPartitions));
+    }
+
+    @Override
+    public Operation getOperation() {
+        return statement.getOperation();
+    }
+
+    private static KeyValueSchema buildSchema(PTable table) {
+        KeyValueSchemaBuilder builder = new KeyValueSchemaBuilder(0);
+        if (table != null) {
+            for (PColumn column : table.getColumns()) {
+                if (!SchemaUtil.isPKColumn(column)) {
+                    builder.addField(column);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public ResultIterator iterator(ParallelScanGrouper scanGrouper) throws SQLException {
+        return iterator(scanGrouper, null);
+    }
+
+    @Override
+    public ResultIterator iterator(ParallelScanGrouper scanGrouper, Scan scan) throws SQLException {
+        return new PartitionedHashJoinIterator(lhsPlan.iterator(scanGrouper), rhsPlan.iterator(scanGrouper));
+    }
+
+    @Override
+    public ResultIterator iterator() throws SQLException {
+        return iterator(DefaultParallelScanGrouper.getInstance());
+    }
+
+    @Override
+    public ExplainPlan getExplainPlan() throws SQLException {
+        List<String> steps = Lists.newArrayList();
+        steps.add("PARTITIONED-HASH-JOIN (" + joinType.toString().toUpperCase() + ") TABLES");
+        ExplainPlan lhsExplainPlan = lhsPlan.getExplainPlan();
+        ExplainPlanAttributesBuilder lhsPlanBuilder =
+          new ExplainPlanAttributesBuilder(lhsExplainPlan.getPlanStepsAsAttributes());
+        lhsPlanBuilder.setAbstractExplainPlan("PARTITIONED-HASH-JOIN ("
+          + joinType.toString().toUpperCase() + ")");
+        for (String step : lhsExplainPlan.getPlanSteps()) {
+            steps.add("    " + step);
+        }
+        steps.add("AND" + (rhsSchema.getFieldCount() == 0 ? " (SKIP MERGE)" : ""));
+
+        ExplainPlan rhsExplainPlan = rhsPlan.getExplainPlan();
+        ExplainPlanAttributes rhsPlanAttributes = rhsExplainPlan.getPlanStepsAsAttributes();
+        lhsPlanBuilder.setRhsJoinQueryExplainPlan(
+          new ExplainPlanAttributesBuilder(rhsPlanAttributes).build());
+        for (String step : rhsExplainPlan.getPlanSteps()) {
+            steps.add("    " + step);
+        }
+        return new ExplainPlan(steps, lhsPlanBuilder.build());
+    }
+
+    @Override
+    public Cost getCost() {
+        Double byteCount = this.accept(new ByteCountVisitor());
+
+        if (byteCount == null) {
+            return Cost.UNKNOWN;
+        }
+
+        Cost cost = new Cost(0, 0, byteCount);
+        return cost.plus(lhsPlan.getCost()).plus(rhsPlan.getCost());
+    }
+
+    @Override
+    public StatementContext getContext() {
+        return context;
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() {
+        return context.getBindManager().getParameterMetaData();
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return lhsPlan.getEstimatedSize() + rhsPlan.getEstimatedSize();
+    }
+
+    @Override
+    public TableRef getTableRef() {
+        return table;
+    }
+
+    @Override
+    public RowProjector getProjector() {
+        return null;
+    }
+
+    @Override
+    public Integer getLimit() {
+        return null;
+    }
+
+    @Override
+    public Integer getOffset() {
+        return null;
+    }
+
+    @Override
+    public OrderBy getOrderBy() {
+        return null;
+    }
+
+    @Override
+    public GroupBy getGroupBy() {
+        return null;
+    }
+
+    @Override
+    public List<KeyRange> getSplits() {
+        return Collections.<KeyRange> emptyList();
+    }
+
+    @Override
+    public List<List<Scan>> getScans() {
+        return Collections.<List<Scan>> emptyList();
+    }
+
+    @Override
+    public FilterableStatement getStatement() {
+        return statement;
+    }
+
+    @Override
+    public boolean isDegenerate() {
+        return false;
+    }
+
+    @Override
+    public boolean isRowKeyOrdered() {
+        return false;
+    }
+
+    public JoinType getJoinType() {
+        return joinType;
+    }
+
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    private static ImmutableBytesPtr getKey(Tuple tuple, List<Expression> keyExpressions) throws SQLException {
+        try {
+            return TupleUtil.getConcatenatedValue(tuple, keyExpressions);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Spooled LHS and RHS rows of one hash partition
+     */
+    private class Partition {
+        private final int depth;
+        private final SizeAwareQueue<Tuple> lhsTuples;
+        private final SizeAwareQueue<Tuple> rhsTuples;
+        private long lhsCount;
+        private long rhsCount;
+        private long rhsByteSize;
+
+        Partition(int depth, long queueThresholdBytes) {
+            this.depth = depth;
+            this.lhsTuples = PhoenixQueues.newBufferedTupleQueue(queueThresholdBytes);
+            this.rhsTuples = PhoenixQueues.newBufferedTupleQueue(queueThresholdBytes);
+        }
+
+        void addLhs(Tuple tuple) {
+            lhsTuples.add(tuple);
+            lhsCount++;
+        }
+
+        void addRhs(Tuple tuple) {
+            rhsTuples.add(tuple);
+            rhsCount++;
+            rhsByteSize += CellUtil.estimatedSerializedSizeOf(tuple.getValue(0));
+        }
+
+        /**
+         * @return true if the partition cannot produce any row for the join type
+         */
+        boolean isEmpty() {
+            if (rhsCount == 0 && (joinType == JoinType.Inner || joinType == JoinType.Semi)) {
+                return true;
+            }
+            return lhsCount == 0 && (rhsCount == 0 || joinType != JoinType.Full);
+        }
+
+        void close() throws IOException {
+            try {
+                lhsTuples.close();
+            } finally {
+                rhsTuples.close();
+            }
+        }
+    }
+
+    /**
+     * RHS rows sharing the same join key
+     */
+    private static class BuildEntry {
+        private final List<Tuple> tuples = Lists.newArrayListWithExpectedSize(1);
+        private boolean matched;
+    }
+
+    @VisibleForTesting
+    public class PartitionedHashJoinIterator implements ResultIterator {
+        private final ResultIterator lhsIterator;
+        private final ResultIterator rhsIterator;
+        private final Deque<Partition> partitions;
+        private final ValueBitSet destBitSet;
+        private final ValueBitSet lhsBitSet;
+        private final ValueBitSet rhsBitSet;
+        private final byte[] emptyProjectedValue;
+        private boolean initialized;
+        private Partition partition;
+        private Map<ImmutableBytesPtr, BuildEntry> hashTable;
+        private Tuple lhsTuple;
+        private Iterator<Tuple> matches;
+        private Iterator<BuildEntry> unmatchedEntries;
+
+        public PartitionedHashJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator) {
+            this.lhsIterator = lhsIterator;
+            this.rhsIterator = rhsIterator;
+            this.partitions = new ArrayDeque<Partition>();
+            this.destBitSet = ValueBitSet.newInstance(joinedSchema);
+            this.lhsBitSet = ValueBitSet.newInstance(lhsSchema);
+            this.rhsBitSet = ValueBitSet.newInstance(rhsSchema);
+            lhsBitSet.clear();
+            int len = lhsBitSet.getEstimatedLength();
+            this.emptyProjectedValue = new byte[len];
+            lhsBitSet.toBytes(emptyProjectedValue, 0);
+        }
+
+        public boolean isInitialized() {
+            return initialized;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException sqlException = null;
+            try {
+                lhsIterator.close();
+            } catch (SQLException e) {
+                sqlException = e;
+            }
+            try {
+                rhsIterator.close();
+            } catch (SQLException e) {
+                if (sqlException != null) {
+                    sqlException.setNextException(e);
+                } else {
+                    sqlException = e;
+                }
+            }
+            try {
+                closePartition();
+                while (!partitions.isEmpty()) {
+                    partitions.poll().close();
+                }
+            } catch (IOException e) {
+                if (sqlException != null) {
+                    sqlException.setNextException(
+                        new SQLException("Also encountered exception while closing partitions", e));
+                } else {
+                    sqlException = new SQLException("Error while closing partitions", e);
+                }
+            }
+            if (sqlException != null) {
+                LOGGER.error("PartitionedHashJoinIterator close error!", sqlException);
+            }
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            if (!initialized) {
+                addPartitions(lhsIterator, rhsIterator, 0);
+                initialized = true;
+            }
+
+            while (true) {
+                if (matches != null) {
+                    if (matches.hasNext()) {
+                        return join(lhsTuple, matches.next());
+                    }
+                    matches = null;
+                }
+                if (partition == null && !nextPartition()) {
+                    return null;
+                }
+                if (unmatchedEntries == null) {
+                    Tuple lhs = partition.lhsTuples.poll();
+                    if (lhs != null) {
+                        BuildEntry entry = hashTable.get(getKey(lhs, lhsKeyExpressions));
+                        switch (joinType) {
+                        case Semi:
+                            if (entry != null) {
+                                return lhs;
+                            }
+                            break;
+                        case Anti:
+                            if (entry == null) {
+                                return lhs;
+                            }
+                            break;
+                        default:
+                            if (entry != null) {
+                                // Like the server side hash cache, only fail once a duplicate key is hit
+                                if (isSingleValueOnly && entry.tuples.size() > 1) {
+                                    throw new SQLExceptionInfo.Builder(SQLExceptionCode.SINGLE_ROW_SUBQUERY_RETURNS_MULTIPLE_ROWS).build().buildException();
+                                }
+                                entry.matched = true;
+                                lhsTuple = lhs;
+                                matches = entry.tuples.iterator();
+                            } else if (joinType != JoinType.Inner) {
+                                return join(lhs, null);
+                            }
+                        }
+                        continue;
+                    }
+                    if (joinType == JoinType.Full) {
+                        unmatchedEntries = hashTable.values().iterator();
+                        continue;
+                    }
+                } else if (unmatchedEntries.hasNext()) {
+                    BuildEntry entry = unmatchedEntries.next();
+                    if (!entry.matched) {
+                        lhsTuple = null;
+                        matches = entry.tuples.iterator();
+                    }
+                    continue;
+                }
+                try {
+                    closePartition();
+                } catch (IOException e) {
+                    throw new SQLException(e);
+                }
+            }
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+
+        @Override
+        public void explain(List<String> planSteps,
+                ExplainPlanAttributesBuilder explainPlanAttributesBuilder) {
+        }
+
+        /**
+         * Hash partition the rows of both sides and queue the non empty partitions
+         * in front of the ones still to be processed.
+         */
+        private void addPartitions(ResultIterator lhs, ResultIterator rhs, int depth) throws SQLException {
+            HashFunction hashFunction = Hashing.murmur3_32(depth);
+            // Bound the rows buffered in memory across all the queues by the spool threshold
+            long queueThresholdBytes = Math.max(1, thresholdBytes / numPartitions);
+            Partition[] children = new Partition[numPartitions];
+            for (int i = 0; i < numPartitions; i++) {
+                children[i] = new Partition(depth, queueThresholdBytes);
+            }
+            try {
+                long rhsCount = 0;
+                Tuple tuple;
+                while ((tuple = rhs.next()) != null) {
+                    children[getPartition(hashFunction, getKey(tuple, rhsKeyExpressions))].addRhs(tuple);
+                    rhsCount++;
+                }
+                // Rows of the LHS may only be dropped early for inner and semi joins
+                boolean needsUnmatched = joinType != JoinType.Inner && joinType != JoinType.Semi;
+                if (rhsCount > 0 || needsUnmatched) {
+                    while ((tuple = lhs.next()) != null) {
+                        Partition child = children[getPartition(hashFunction, getKey(tuple, lhsKeyExpressions))];
+                        if (child.rhsCount > 0 || needsUnmatched) {
+                            child.addLhs(tuple);
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                for (Partition child : children) {
+                    closeQuietly(child);
+                }
+                throw e;
+            }
+            for (int i = numPartitions - 1; i >= 0; i--) {
+                if (children[i].isEmpty()) {
+                    closeQuietly(children[i]);
+                } else {
+                    partitions.addFirst(children[i]);
+                }
+            }
+        }
+
+        private int getPartition(HashFunction hashFunction, ImmutableBytesPtr key) {
+            int hash = hashFunction.hashBytes(key.get(), key.getOffset(), key.getLength()).asInt();
+            return (hash & Integer.MAX_VALUE) % numPartitions;
+        }
+
+        private boolean nextPartition() throws SQLException {
+            while (!partitions.isEmpty()) {
+                Partition next = partitions.poll();
+                if (next.rhsByteSize > thresholdBytes && next.depth < MAX_PARTITION_DEPTH && numPartitions > 1) {
+                    try {
+                        addPartitions(newQueueIterator(next.lhsTuples), newQueueIterator(next.rhsTuples), next.depth + 1);
+                    } finally {
+                        closeQuietly(next);
+                    }
+                    continue;
+                }
+                partition = next;
+                buildHashTable();
+                return true;
+            }
+            return false;
+        }
+
+        private void buildHashTable() throws SQLException {
+            boolean keepTuples = joinType != JoinType.Semi && joinType != JoinType.Anti;
+            hashTable = Maps.newHashMapWithExpectedSize((int) Math.min(Integer.MAX_VALUE, partition.rhsCount));
+            Tuple tuple;
+            while ((tuple = partition.rhsTuples.poll()) != null) {
+                ImmutableBytesPtr key = getKey(tuple, rhsKeyExpressions);
+                BuildEntry entry = hashTable.get(key);
+                if (entry == null) {
+                    entry = new BuildEntry();
+                    hashTable.put(key, entry);
+                }
+                if (keepTuples) {
+                    entry.tuples.add(tuple);
+                }
+            }
+        }
+
+        private void closePartition() throws IOException {
+            hashTable = null;
+            lhsTuple = null;
+            matches = null;
+            unmatchedEntries = null;
+            if (partition != null) {
+                Partition current = partition;
+                partition = null;
+                current.close();
+            }
+        }
+
+        private Tuple join(Tuple lhs, Tuple rhs) throws SQLException {
+            try {
+                ProjectedValueTuple t = null;
+                if (lhs == null) {
+                    t = new ProjectedValueTuple(rhs, rhs.getValue(0).getTimestamp(),
+                            this.emptyProjectedValue, 0, this.emptyProjectedValue.length,
+                            this.emptyProjectedValue.length);
+                } else if (lhs instanceof ProjectedValueTuple) {
+                    t = (ProjectedValueTuple) lhs;
+                } else {
+                    ImmutableBytesWritable ptr = context.getTempPtr();
+                    TupleProjector.decodeProjectedValue(lhs, ptr);
+                    lhsBitSet.clear();
+                    lhsBitSet.or(ptr);
+                    int bitSetLen = lhsBitSet.getEstimatedLength();
+                    t = new ProjectedValueTuple(lhs, lhs.getValue(0).getTimestamp(),
+                            ptr.get(), ptr.getOffset(), ptr.getLength(), bitSetLen);
+
+                }
+                return rhsBitSet == ValueBitSet.EMPTY_VALUE_BITSET ?
+                        t : TupleProjector.mergeProjectedValue(t, destBitSet,
+                                rhs, rhsBitSet, rhsFieldPosition, true);
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+    }
+
+    private static ResultIterator newQueueIterator(final SizeAwareQueue<Tuple> queue) {
+        return new BaseResultIterator() {
+            @Override
+            public Tuple next() throws SQLException {
+                return queue.poll();
+            }
+        };
+    }
+
+    private static void closeQuietly(Partition partition) {
+        try {
+            partition.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close partition", e);
+        }
+    }
+
+    @Override
+    public boolean useRoundRobinIterator() {
+        return false;
+    }
+
+    @Override
+    public <T> T accept(QueryPlanVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public Set<TableRef> getSourceRefs() {
+        return tableRefs;
+    }
+
+    public QueryPlan getLhsPlan() {
+        return lhsPlan;
+    }
+
+    public QueryPlan getRhsPlan() {
+        return rhsPlan;
+    }
+
+    @Override
+    public Long getEstimatedRowsToScan() throws SQLException {
+        if (!getEstimatesCalled) {
+            getEstimates();
+        }
+        return estimatedRows;
+    }
+
+    @Override
+    public Long getEstimatedBytesToScan() throws SQLException {
+        if (!getEstimatesCalled) {
+            getEstimates();
+        }
+        return estimatedBytes;
+    }
+
+    @Override
+    public Long getEstimateInfoTimestamp() throws SQLException {
+        if (!getEstimatesCalled) {
+            getEstimates();
+        }
+        return estimateInfoTs;
+    }
+
+    private void getEstimates() throws SQLException {
+        getEstimatesCalled = true;
+        if ((lhsPlan.getEstimatedBytesToScan() == null || rhsPlan.getEstimatedBytesToScan() == null)
+                || (lhsPlan.getEstimatedRowsToScan() == null
+                || rhsPlan.getEstimatedRowsToScan() == null)
+                || (lhsPlan.getEstimateInfoTimestamp() == null
+                || rhsPlan.getEstimateInfoTimestamp() == null)) {
+            /*
+             * If any of the sub plans doesn't have the estimate info available, then we don't
+             * provide estimate for the overall plan
+             */
+            estimatedBytes = null;
+            estimatedRows = null;
+            estimateInfoTs = null;
+        } else {
+            estimatedBytes =
+                    add(add(estimatedBytes, lhsPlan.getEstimatedBytesToScan()),
+                            rhsPlan.getEstimatedBytesToScan());
+            estimatedRows =
+                    add(add(estimatedRows, lhsPlan.getEstimatedRowsToScan()),
+                            rhsPlan.getEstimatedRowsToScan());
+            estimateInfoTs =
+                    getMin(lhsPlan.getEstimateInfoTimestamp(), rhsPlan.getEstimateInfoTimestamp());
+        }
+    }
+
+    @Override
+    public List<OrderBy> getOutputOrderBys() {
+        // Rows are returned partition by partition, so no order is preserved
+        return Collections.<OrderBy> emptyList();
+    }
+
+    @Override
+    public boolean isApplicable() {
+        return true;
+    }
+}
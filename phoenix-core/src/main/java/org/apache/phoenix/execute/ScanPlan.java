@@ -35,6 +35,7 @@ import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
 import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
@@ -49,6 +50,7 @@ import org.apache.phoenix.iterate.ConcatResultIterator;
 import org.apache.phoenix.iterate.LimitingResultIterator;
 import org.apache.phoenix.iterate.MergeSortRowKeyResultIterator;
 import org.apache.phoenix.iterate.MergeSortTopNResultIterator;
+import org.apache.phoenix.iterate.MultiGetIterators;
 import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.iterate.ParallelIterators;
@@ -67,7 +69,9 @@ import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.SaltingUtil;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.schema.stats.StatisticsUtil;
@@ -75,6 +79,7 @@ import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.ExpressionUtil;
 import org.apache.phoenix.util.QueryUtil;
 import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SchemaUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -249,6 +254,40 @@ public class ScanPlan extends BaseQueryPlan {
                         && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context));
     }
 
+    /**
+     * Point lookups may be run as batched Gets if they need none of the work done in the scanner
+     * hooks of the coprocessors, which Gets bypass: no server side ordering or offset, no hash
+     * join, no index read repair, no transaction or view TTL filtering, no array element or
+     * dynamic column projection and no unpacking of columns stored in a single cell.
+     */
+    private boolean useMultiGet(Scan scan, Map<ImmutableBytesPtr,ServerCache> caches, boolean isOffsetOnServer) {
+        ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.MULTI_GET_POINT_LOOKUP_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_MULTI_GET_POINT_LOOKUP_ENABLED)) {
+            return false;
+        }
+        ScanRanges scanRanges = context.getScanRanges();
+        if (!scanRanges.isPointLookup() || scanRanges.getPointLookupCount() > props.getInt(
+                QueryServices.MULTI_GET_POINT_LOOKUP_MAX_KEYS_ATTRIB,
+                QueryServicesOptions.DEFAULT_MULTI_GET_POINT_LOOKUP_MAX_KEYS)) {
+            return false;
+        }
+        // Rows read with Gets are not spooled or chunked, so only the default factories can be replaced
+        if (parallelIteratorFactory != ParallelIteratorFactory.NOOP_FACTORY
+                && !(parallelIteratorFactory instanceof ChunkedResultIterator.ChunkedResultIteratorFactory)) {
+            return false;
+        }
+        PTable table = tableRef.getTable();
+        return !isSerial && !isOffsetOnServer && orderBy.getOrderByExpressions().isEmpty()
+                && !ScanUtil.isReversed(scan) && statement.getTableSamplingRate() == null
+                && (caches == null || caches.isEmpty())
+                && table.getType() != PTableType.INDEX && !table.isTransactional() && table.getPhoenixTTL() == 0
+                && table.getImmutableStorageScheme() == ImmutableStorageScheme.ONE_CELL_PER_COLUMN
+                && !context.getConnection().isDescVarLengthRowKeyUpgrade()
+                && scan.getAttribute(BaseScannerRegionObserver.SPECIFIC_ARRAY_INDEX) == null
+                && scan.getAttribute(ScanRegionObserver.WILDCARD_SCAN_INCLUDES_DYNAMIC_COLUMNS) == null;
+    }
+
     @Override
     protected ResultIterator newIterator(ParallelScanGrouper scanGrouper, Scan scan, Map<ImmutableBytesPtr,ServerCache> caches) throws SQLException {
         // Set any scan attributes before creating the scanner, as it will be too late afterwards
@@ -276,6 +315,8 @@ public class ScanPlan extends BaseQueryPlan {
             iterators = new SerialIterators(this, perScanLimit, offset, parallelIteratorFactory, scanGrouper, scan, caches, dataPlan);
         } else if (isSerial) {
             iterators = new SerialIterators(this, perScanLimit, null, parallelIteratorFactory, scanGrouper, scan, caches, dataPlan);
+        } else if (useMultiGet(scan, caches, isOffsetOnServer)) {
+            iterators = new MultiGetIterators(this, perScanLimit, scanGrouper, scan, caches, dataPlan);
         } else {
             iterators = new ParallelIterators(this, perScanLimit, parallelIteratorFactory, scanGrouper, scan, initFirstScanOnly, caches, dataPlan);
         }
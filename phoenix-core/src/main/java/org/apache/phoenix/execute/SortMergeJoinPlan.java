@@ -811,8 +811,13 @@ public class SortMergeJoinPlan implements QueryPlan {
         
         public void evaluate(Tuple tuple) {
             for (int i = 0; i < keys.size(); i++) {
-                if (!expressions.get(i).evaluate(tuple, keys.get(i))) {
-                    keys.get(i).set(EMPTY_PTR);
+                Expression expression = expressions.get(i);
+                ImmutableBytesWritable key = keys.get(i);
+                if (!expression.evaluate(tuple, key)) {
+                    key.set(EMPTY_PTR);
+                } else if (expression.isResultTransient()) {
+                    // The key is kept while the next rows are evaluated
+                    key.set(key.copyBytes());
                 }
             }
         }
@@ -27,6 +27,7 @@ import org.apache.phoenix.execute.CorrelatePlan;
 import org.apache.phoenix.execute.CursorFetchPlan;
 import org.apache.phoenix.execute.HashJoinPlan;
 import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.PartitionedHashJoinPlan;
 import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
@@ -136,6 +137,17 @@ public class AvgRowWidthVisitor implements QueryPlanVisitor<Double> {
         return join(lhsWidth, rhsWidth, plan.getJoinType());
     }
 
+    @Override
+    public Double visit(PartitionedHashJoinPlan plan) {
+        Double lhsWidth = plan.getLhsPlan().accept(this);
+        Double rhsWidth = plan.getRhsPlan().accept(this);
+        if (lhsWidth == null || rhsWidth == null) {
+            return null;
+        }
+
+        return join(lhsWidth, rhsWidth, plan.getJoinType());
+    }
+
     @Override
     public Double visit(UnionPlan plan) {
         Double sum = 0.0;
@@ -27,6 +27,7 @@ import org.apache.phoenix.execute.CorrelatePlan;
 import org.apache.phoenix.execute.CursorFetchPlan;
 import org.apache.phoenix.execute.HashJoinPlan;
 import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.PartitionedHashJoinPlan;
 import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
@@ -83,6 +84,11 @@ public class ByteCountVisitor implements QueryPlanVisitor<Double> {
         return getByteCountFromRowCountAndRowWidth(plan);
     }
 
+    @Override
+    public Double visit(PartitionedHashJoinPlan plan) {
+        return getByteCountFromRowCountAndRowWidth(plan);
+    }
+
     @Override
     public Double visit(UnionPlan plan) {
         return getByteCountFromRowCountAndRowWidth(plan);
@@ -37,6 +37,7 @@ public interface QueryPlanVisitor<E> {
     E visit(TupleProjectionPlan plan);
     E visit(HashJoinPlan plan);
     E visit(SortMergeJoinPlan plan);
+    E visit(PartitionedHashJoinPlan plan);
     E visit(UnionPlan plan);
     E visit(UnnestArrayPlan plan);
     E visit(CorrelatePlan plan);
@@ -30,6 +30,7 @@ import org.apache.phoenix.execute.CorrelatePlan;
 import org.apache.phoenix.execute.CursorFetchPlan;
 import org.apache.phoenix.execute.HashJoinPlan;
 import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.PartitionedHashJoinPlan;
 import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
@@ -184,6 +185,17 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
         return null;
     }
 
+    @Override
+    public Double visit(PartitionedHashJoinPlan plan) {
+        Double lhsRows = plan.getLhsPlan().accept(this);
+        Double rhsRows = plan.getRhsPlan().accept(this);
+        if (lhsRows != null && rhsRows != null) {
+            return join(lhsRows, rhsRows, plan.getJoinType());
+        }
+
+        return null;
+    }
+
     @Override
     public Double visit(UnionPlan plan) {
         int count = plan.getSubPlans().size();
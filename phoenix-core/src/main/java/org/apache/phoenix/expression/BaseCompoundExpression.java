@@ -36,6 +36,7 @@ public abstract class BaseCompoundExpression extends BaseExpression {
     private Determinism determinism;
     private boolean requiresFinalEvaluation;
     private boolean cloneExpression;
+    private boolean resultTransient;
    
     public BaseCompoundExpression() {
         init(Collections.<Expression>emptyList());
@@ -51,6 +52,7 @@ public abstract class BaseCompoundExpression extends BaseExpression {
         boolean isNullable = false;
         boolean requiresFinalEvaluation = false;
         boolean cloneExpression = false;
+        boolean resultTransient = false;
         this.determinism = Determinism.ALWAYS;
         for (int i = 0; i < children.size(); i++) {
             Expression child = children.get(i);
@@ -59,11 +61,13 @@ public abstract class BaseCompoundExpression extends BaseExpression {
             this.determinism = this.determinism.combine(child.getDeterminism());
             requiresFinalEvaluation |= child.requiresFinalEvaluation();
             cloneExpression |= child.isCloneExpression();
+            resultTransient |= child.isResultTransient();
         }
         this.isStateless = isStateless;
         this.isNullable = isNullable;
         this.requiresFinalEvaluation = requiresFinalEvaluation;
         this.cloneExpression = cloneExpression;
+        this.resultTransient = resultTransient;
     }
     
     @Override
@@ -82,6 +86,12 @@ public abstract class BaseCompoundExpression extends BaseExpression {
         return this.cloneExpression;
     }
 
+    @Override
+    public boolean isResultTransient() {
+        // Conservatively assume that the value of a child may be passed through
+        return this.resultTransient;
+    }
+
     @Override
     public boolean isStateless() {
         return isStateless;
@@ -51,7 +51,8 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
  * @since 0.1
  */
 public abstract class BaseExpression implements Expression {
-    
+    private byte[] resultBuffer;
+
     public static interface ExpressionComparabilityWrapper {
         public Expression wrap(Expression lhs, Expression rhs, boolean rowKeyOrderOptimizable) throws SQLException;
     }
@@ -260,6 +261,32 @@ public abstract class BaseExpression implements Expression {
        return isCloneExpressionByDeterminism(this);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return false;
+    }
+
+    /**
+     * Get a buffer owned by this expression to serialize a result of the given size into,
+     * so that evaluation does not need to allocate a new byte array every time. The buffer
+     * is always at least one byte longer than requested, so that the evaluated value never
+     * covers the whole array and code copying a ptr only "if necessary" (for example
+     * {@link org.apache.phoenix.util.ByteUtil#copyKeyBytesIfNecessary}) still copies it. Subclasses
+     * using this buffer must return true from {@link #isResultTransient()}.
+     * @param size the number of bytes needed
+     * @return a buffer of at least size + 1 bytes
+     */
+    protected final byte[] getResultBuffer(int size) {
+        if (resultBuffer == null || resultBuffer.length <= size) {
+            int length = size + 1;
+            if (resultBuffer != null) {
+                length = Math.max(length, resultBuffer.length * 2);
+            }
+            resultBuffer = new byte[length];
+        }
+        return resultBuffer;
+    }
+
     protected static boolean isCloneExpressionByDeterminism(BaseExpression expression) {
         if(expression.getDeterminism() == Determinism.PER_INVOCATION) {
             return true;
@@ -123,4 +123,9 @@ public abstract class BaseSingleExpression extends BaseExpression {
     public boolean isCloneExpression() {
         return children.get(0).isCloneExpression();
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return children.get(0).isResultTransient();
+    }
 }
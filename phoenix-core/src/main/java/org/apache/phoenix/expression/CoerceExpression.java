@@ -24,11 +24,19 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.types.PUnsignedInt;
+import org.apache.phoenix.schema.types.PUnsignedSmallint;
+import org.apache.phoenix.schema.types.PUnsignedTinyint;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
@@ -146,6 +154,17 @@ public class CoerceExpression extends BaseSingleExpression {
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         if (getChild().evaluate(tuple, ptr)) {
+            if (ptr.getLength() != 0 && isWidenedToLong()) {
+                // Avoid boxing the value and allocating the result of the most common coercion
+                long value = getChild().getDataType().getCodec().decodeLong(ptr, getChild().getSortOrder());
+                byte[] result = getResultBuffer(Bytes.SIZEOF_LONG);
+                int length = PLong.INSTANCE.getCodec().encodeLong(value, result, 0);
+                if (toSortOrder == SortOrder.DESC) {
+                    SortOrder.invert(result, 0, result, 0, length);
+                }
+                ptr.set(result, 0, length);
+                return true;
+            }
             getDataType().coerceBytes(ptr, null, getChild().getDataType(),
                     getChild().getMaxLength(), null, getChild().getSortOrder(), 
                     maxLength, null, getSortOrder(), rowKeyOrderOptimizable);
@@ -154,6 +173,17 @@ public class CoerceExpression extends BaseSingleExpression {
         return false;
     }
 
+    private boolean isWidenedToLong() {
+        return toType == PLong.INSTANCE && PDataType.equalsAny(getChild().getDataType(), PInteger.INSTANCE,
+                PSmallint.INSTANCE, PTinyint.INSTANCE, PUnsignedInt.INSTANCE, PUnsignedSmallint.INSTANCE,
+                PUnsignedTinyint.INSTANCE);
+    }
+
+    @Override
+    public boolean isResultTransient() {
+        return isWidenedToLong() || super.isResultTransient();
+    }
+
     @Override
     public PDataType getDataType() {
         return toType;
@@ -67,9 +67,9 @@ public class DateAddExpression extends AddExpression {
             }
             finalResult += value;
         }
-        byte[] resultPtr = new byte[getDataType().getByteSize()];
-        getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -83,4 +83,8 @@ public class DateAddExpression extends AddExpression {
         return new DateAddExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
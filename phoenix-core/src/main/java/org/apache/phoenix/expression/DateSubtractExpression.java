@@ -67,9 +67,9 @@ public class DateSubtractExpression extends SubtractExpression {
                 finalResult -= value;
             }
         }
-        byte[] resultPtr=new byte[getDataType().getByteSize()];
-        getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -83,4 +83,8 @@ public class DateSubtractExpression extends SubtractExpression {
         return new DateSubtractExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -76,7 +76,9 @@ public class DecimalAddExpression extends AddExpression {
         if (result == null) {
             throw new DataExceedsCapacityException(PDecimal.INSTANCE, maxLength, scale, null);
         }
-        ptr.set(PDecimal.INSTANCE.toBytes(result));
+        byte[] resultPtr = getResultBuffer(PDecimal.INSTANCE.getByteSize());
+        int length = PDecimal.INSTANCE.toBytes(result, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -99,4 +101,9 @@ public class DecimalAddExpression extends AddExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new DecimalAddExpression(children);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -67,7 +67,9 @@ public class DecimalDivideExpression extends DivideExpression {
             throw new DataExceedsCapacityException(
                     PDecimal.INSTANCE, getMaxLength(), getScale(), null);
         }
-        ptr.set(PDecimal.INSTANCE.toBytes(result));
+        byte[] resultPtr = getResultBuffer(PDecimal.INSTANCE.getByteSize());
+        int length = PDecimal.INSTANCE.toBytes(result, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -80,4 +82,9 @@ public class DecimalDivideExpression extends DivideExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new DecimalDivideExpression(children);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -94,7 +94,9 @@ public class DecimalSubtractExpression extends SubtractExpression {
         if (result == null) {
             throw new DataExceedsCapacityException(PDecimal.INSTANCE, maxLength, scale, null);
         }
-        ptr.set(PDecimal.INSTANCE.toBytes(result));
+        byte[] resultPtr = getResultBuffer(PDecimal.INSTANCE.getByteSize());
+        int length = PDecimal.INSTANCE.toBytes(result, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -117,4 +119,9 @@ public class DecimalSubtractExpression extends SubtractExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new DecimalSubtractExpression(children);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -110,4 +110,9 @@ public class DelegateExpression implements Expression {
         return delegate.isCloneExpression();
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return delegate.isResultTransient();
+    }
+
 }
@@ -54,9 +54,9 @@ public class DoubleAddExpression extends AddExpression {
                 return false;
             }
         }
-        byte[] resultPtr = new byte[getDataType().getByteSize()];
-        getDataType().getCodec().encodeDouble(result, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = getDataType().getCodec().encodeDouble(result, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -70,4 +70,8 @@ public class DoubleAddExpression extends AddExpression {
         return new DoubleAddExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
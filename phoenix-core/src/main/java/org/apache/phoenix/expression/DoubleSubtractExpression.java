@@ -58,9 +58,9 @@ public class DoubleSubtractExpression extends SubtractExpression {
                 return false;
             }
         }
-        byte[] resultPtr = new byte[getDataType().getByteSize()];
-        getDataType().getCodec().encodeDouble(result, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = getDataType().getCodec().encodeDouble(result, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -74,4 +74,8 @@ public class DoubleSubtractExpression extends SubtractExpression {
         return new DoubleSubtractExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
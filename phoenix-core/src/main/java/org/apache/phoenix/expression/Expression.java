@@ -94,4 +94,12 @@ public interface Expression extends PDatum, Writable {
      * @return
      */
     boolean isCloneExpression();
+
+    /**
+     * Determines if the bytes set by {@link #evaluate(Tuple, ImmutableBytesWritable)} may be
+     * backed by a buffer owned by the expression which is overwritten by the next evaluation.
+     * Callers that hold on to the evaluated value across evaluations must copy it when true.
+     * @return true if the evaluated value is only valid until the next evaluation
+     */
+    boolean isResultTransient();
 }
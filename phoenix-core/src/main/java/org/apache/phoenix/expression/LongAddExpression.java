@@ -46,9 +46,9 @@ public class LongAddExpression extends AddExpression {
             long childvalue = child.getDataType().getCodec().decodeLong(ptr, child.getSortOrder());
             finalResult += childvalue;
         }
-        byte[] resultPtr=new byte[PLong.INSTANCE.getByteSize()];
-        getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(PLong.INSTANCE.getByteSize());
+        int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -62,4 +62,8 @@ public class LongAddExpression extends AddExpression {
         return new LongAddExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
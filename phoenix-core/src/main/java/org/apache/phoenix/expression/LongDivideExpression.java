@@ -50,9 +50,9 @@ public class LongDivideExpression extends DivideExpression {
                 finalResult /= childvalue;
             }
         }
-        byte[] resultPtr=new byte[PLong.INSTANCE.getByteSize()];
-        getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(PLong.INSTANCE.getByteSize());
+        int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -66,4 +66,8 @@ public class LongDivideExpression extends DivideExpression {
         return new LongDivideExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
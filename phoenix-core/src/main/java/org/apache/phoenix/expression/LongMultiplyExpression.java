@@ -49,9 +49,9 @@ public class LongMultiplyExpression extends MultiplyExpression {
             long childvalue = child.getDataType().getCodec().decodeLong(ptr, child.getSortOrder());
             finalResult *= childvalue;
         }
-        byte[] resultPtr=new byte[getDataType().getByteSize()];
-        getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -65,4 +65,8 @@ public class LongMultiplyExpression extends MultiplyExpression {
         return new LongMultiplyExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -68,9 +68,9 @@ public class LongSubtractExpression extends SubtractExpression {
                 }
             }
 		}
-		byte[] resultPtr=new byte[getDataType().getByteSize()];
-		getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
-		ptr.set(resultPtr);
+		byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+		int length = getDataType().getCodec().encodeLong(finalResult, resultPtr, 0);
+		ptr.set(resultPtr, 0, length);
 		return true;
 	}
 
@@ -83,5 +83,9 @@ public class LongSubtractExpression extends SubtractExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new LongSubtractExpression(children);
     }
-	
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
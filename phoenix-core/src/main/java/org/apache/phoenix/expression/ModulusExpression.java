@@ -77,9 +77,9 @@ public class ModulusExpression extends ArithmeticExpression {
         long remainder = dividend % divisor;
         
         // return the result, use encodeLong to avoid extra Long allocation
-        byte[] resultPtr=new byte[PLong.INSTANCE.getByteSize()];
-        getDataType().getCodec().encodeLong(remainder, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(PLong.INSTANCE.getByteSize());
+        int length = getDataType().getCodec().encodeLong(remainder, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -107,4 +107,9 @@ public class ModulusExpression extends ArithmeticExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new ModulusExpression(children);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
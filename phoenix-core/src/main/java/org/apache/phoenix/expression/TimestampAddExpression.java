@@ -76,9 +76,9 @@ public class TimestampAddExpression extends AddExpression {
             finalResult = finalResult.add(value);
         }
         Timestamp ts = DateUtil.getTimestamp(finalResult);
-        byte[] resultPtr = new byte[getDataType().getByteSize()];
-        PTimestamp.INSTANCE.toBytes(ts, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = PTimestamp.INSTANCE.toBytes(ts, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -92,4 +92,8 @@ public class TimestampAddExpression extends AddExpression {
         return new TimestampAddExpression(children);
     }
 
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
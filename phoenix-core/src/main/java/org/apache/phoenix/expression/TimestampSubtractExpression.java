@@ -77,9 +77,9 @@ public class TimestampSubtractExpression extends SubtractExpression {
             }
         }
         Timestamp ts = DateUtil.getTimestamp(finalResult);
-        byte[] resultPtr = new byte[getDataType().getByteSize()];
-        PTimestamp.INSTANCE.toBytes(ts, resultPtr, 0);
-        ptr.set(resultPtr);
+        byte[] resultPtr = getResultBuffer(getDataType().getByteSize());
+        int length = PTimestamp.INSTANCE.toBytes(ts, resultPtr, 0);
+        ptr.set(resultPtr, 0, length);
         return true;
     }
 
@@ -92,4 +92,9 @@ public class TimestampSubtractExpression extends SubtractExpression {
     public ArithmeticExpression clone(List<Expression> children) {
         return new TimestampSubtractExpression(children);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
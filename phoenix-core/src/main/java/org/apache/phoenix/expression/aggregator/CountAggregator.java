@@ -50,6 +50,14 @@ public class CountAggregator extends BaseAggregator {
         count++;
     }
 
+    /**
+     * Count a batch of rows, equivalent to calling {@link #aggregate(Tuple, ImmutableBytesWritable)}
+     * once per row.
+     */
+    void aggregate(long rowCount) {
+        count += rowCount;
+    }
+
     @Override
     public boolean isNullable() {
         return false;
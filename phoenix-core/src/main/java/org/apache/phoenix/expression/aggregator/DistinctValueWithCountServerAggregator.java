@@ -44,15 +44,11 @@ import org.iq80.snappy.Snappy;
 public class DistinctValueWithCountServerAggregator extends BaseAggregator {
     public static final int DEFAULT_ESTIMATED_DISTINCT_VALUES = 10000;
     public static final byte[] COMPRESS_MARKER = new byte[] { (byte)1 };
-    // copy a key unless it uses at least 10% of the backing array
-    private static final int COPY_THRESHOLD = 100/10;
-    // copy key only (make a new array) if the backing array is at least this size
-    // (to avoid ending up using _more_ memory)
-    private static final int FIXED_COPY_THRESHOLD = SizedUtil.ARRAY_SIZE * 2;
 
     private int compressThreshold;
     private int heapSize = 0;
     private byte[] buffer = null;
+    private final ImmutableBytesPtr lookupKey = new ImmutableBytesPtr();
     protected Map<ImmutableBytesPtr, Integer> valueVsCount = new HashMap<ImmutableBytesPtr, Integer>();
 
     public DistinctValueWithCountServerAggregator(Configuration conf) {
@@ -68,18 +64,19 @@ public class DistinctValueWithCountServerAggregator extends BaseAggregator {
 
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
-        ImmutableBytesPtr key = ptr.get().length > FIXED_COPY_THRESHOLD &&
-                                ptr.get().length > ptr.getLength() * COPY_THRESHOLD ?
-                        new ImmutableBytesPtr(ptr.copyBytes()) :
-                        new ImmutableBytesPtr(ptr);
-        Integer count = this.valueVsCount.get(key);
+        lookupKey.set(ptr);
+        Integer count = this.valueVsCount.get(lookupKey);
         if (count == null) {
+            // Always copy a new key: the ptr may be backed by a buffer that is overwritten by
+            // the next evaluation, and otherwise the key could pin a much larger backing array
+            ImmutableBytesPtr key = new ImmutableBytesPtr(ptr.copyBytes());
             this.valueVsCount.put(key, 1);
             heapSize += SizedUtil.MAP_ENTRY_SIZE + // entry
                     Bytes.SIZEOF_INT + // key size
                     key.getLength() + SizedUtil.ARRAY_SIZE; // value size
         } else {
-            this.valueVsCount.put(key, ++count);
+            // The existing key is kept by the map
+            this.valueVsCount.put(lookupKey, ++count);
         }
     }
 
@@ -55,6 +55,25 @@ public class DoubleSumAggregator extends BaseAggregator {
         }
     }
 
+    /**
+     * Sum a batch of already decoded input values, equivalent to calling
+     * {@link #aggregate(Tuple, ImmutableBytesWritable)} once per value.
+     * Values are added in order, so the result is the same as the row by row sum.
+     */
+    void aggregate(double[] values, int length) {
+        if (length == 0) {
+            return;
+        }
+        double sum = this.sum;
+        for (int i = 0; i < length; i++) {
+            sum += values[i];
+        }
+        this.sum = sum;
+        if (buffer == null) {
+            initBuffer();
+        }
+    }
+
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         if (buffer == null) {
@@ -35,6 +35,8 @@ import org.apache.phoenix.util.SizedUtil;
 abstract public class MinAggregator extends BaseAggregator {
     /** Used to store the accumulate the results of the MIN function */
     protected final ImmutableBytesWritable value = new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY);
+    /** Copy of the current value, since the aggregated bytes may be reused by the next evaluation */
+    private byte[] buffer = ByteUtil.EMPTY_BYTE_ARRAY;
     
     public MinAggregator(SortOrder sortOrder) {
         super(sortOrder);
@@ -48,7 +50,8 @@ abstract public class MinAggregator extends BaseAggregator {
 
     @Override
     public int getSize() {
-        return super.getSize() + /*value*/ SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE;
+        return super.getSize() + /*value*/ SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE
+                + /*buffer*/ SizedUtil.ARRAY_SIZE + buffer.length;
     }
 
     /**
@@ -71,14 +74,23 @@ abstract public class MinAggregator extends BaseAggregator {
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
         if (isNull()) {
-            value.set(ptr.get(), ptr.getOffset(), ptr.getLength());
+            setValue(ptr);
         } else {
             if (!keepFirst(value, ptr)) {
                 // replace the value with the new value
-                value.set(ptr.get(), ptr.getOffset(), ptr.getLength());
+                setValue(ptr);
             }
         }
     }
+
+    private void setValue(ImmutableBytesWritable ptr) {
+        int length = ptr.getLength();
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        System.arraycopy(ptr.get(), ptr.getOffset(), buffer, 0, length);
+        value.set(buffer, 0, length);
+    }
     
     @Override
     public String toString() {
@@ -74,6 +74,24 @@ abstract public class NumberSumAggregator extends BaseAggregator {
         }
     }
 
+    /**
+     * Sum a batch of already decoded input values, equivalent to calling
+     * {@link #aggregate(Tuple, ImmutableBytesWritable)} once per value.
+     */
+    void aggregate(long[] values, int length) {
+        if (length == 0) {
+            return;
+        }
+        long sum = this.sum;
+        for (int i = 0; i < length; i++) {
+            sum += values[i];
+        }
+        this.sum = sum;
+        if (buffer == null) {
+            initBuffer();
+        }
+    }
+
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         if (buffer == null) {
@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.filter.VectorizedPredicate;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+
+/**
+ *
+ * Batch mode for {@link ServerAggregators#aggregate(Aggregator[], Tuple)}. Instead of
+ * passing every row to every aggregator, the input values of COUNT, SUM, MIN and MAX over
+ * numeric types are decoded into primitive vectors, which are aggregated in a tight loop
+ * once a batch of rows has been collected. The results are exactly the same as with the row
+ * by row path: values are aggregated in the same order, and null or empty values are skipped
+ * in the same way. Other aggregators are still passed one row at a time.
+ *
+ * A batch may also be given the WHERE clause of the scan as a {@link VectorizedPredicate}, in
+ * which case rows are only decoded and aggregated once the predicate has selected them.
+ *
+ */
+public class ServerAggregatorBatch {
+
+    private enum Kind {
+        // COUNT(*) or COUNT over a non null constant, which only needs the number of rows
+        COUNT_ROWS,
+        COUNT,
+        LONG_SUM,
+        DOUBLE_SUM,
+        LONG_MIN,
+        LONG_MAX,
+        DOUBLE_MIN,
+        DOUBLE_MAX,
+        // No vectorized implementation, aggregate row by row
+        ROW
+    }
+
+    // Size of the largest numeric type handled by MIN and MAX
+    private static final int VALUE_COPY_SIZE = Bytes.SIZEOF_LONG;
+
+    private final Aggregator[] rowAggregators;
+    private final Expression[] expressions;
+    private final Kind[] kinds;
+    private final PDataType[] inputDataTypes;
+    private final SortOrder[] sortOrders;
+    private final long[][] longVectors;
+    private final double[][] doubleVectors;
+    // Input values of MIN and MAX, so that the bytes of the winning row may be passed to the aggregator
+    private final byte[][][] valueArrays;
+    private final int[][] valueOffsets;
+    private final int[][] valueLengths;
+    // Fixed size slots to copy MIN and MAX input values into when the expression reuses its result buffer
+    private final byte[][] valueCopies;
+    private final int[] vectorSizes;
+    private final int batchSize;
+    private final VectorizedPredicate predicate;
+    // Rows of the batch, kept until the predicate has been evaluated over them
+    private final Tuple[] rows;
+    private final int[] selection;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private int rowCount;
+    private long aggregatedRowCount;
+
+    private ServerAggregatorBatch(ServerAggregators aggregators, Aggregator[] rowAggregators, Kind[] kinds,
+            int batchSize, VectorizedPredicate predicate) {
+        int length = rowAggregators.length;
+        this.rowAggregators = rowAggregators;
+        this.expressions = aggregators.expressions;
+        this.kinds = kinds;
+        this.batchSize = batchSize;
+        this.predicate = predicate;
+        this.rows = predicate == null ? null : new Tuple[batchSize];
+        this.selection = predicate == null ? null : new int[batchSize];
+        this.inputDataTypes = new PDataType[length];
+        this.sortOrders = new SortOrder[length];
+        this.longVectors = new long[length][];
+        this.doubleVectors = new double[length][];
+        this.valueArrays = new byte[length][][];
+        this.valueOffsets = new int[length][];
+        this.valueLengths = new int[length][];
+        this.valueCopies = new byte[length][];
+        this.vectorSizes = new int[length];
+        for (int i = 0; i < length; i++) {
+            Aggregator aggregator = rowAggregators[i];
+            switch (kinds[i]) {
+            case LONG_SUM:
+                inputDataTypes[i] = ((NumberSumAggregator)aggregator).getInputDataType();
+                sortOrders[i] = ((BaseAggregator)aggregator).sortOrder;
+                longVectors[i] = new long[batchSize];
+                break;
+            case DOUBLE_SUM:
+                inputDataTypes[i] = ((DoubleSumAggregator)aggregator).getInputDataType();
+                sortOrders[i] = ((BaseAggregator)aggregator).sortOrder;
+                doubleVectors[i] = new double[batchSize];
+                break;
+            case LONG_MIN:
+            case LONG_MAX:
+            case DOUBLE_MIN:
+            case DOUBLE_MAX:
+                inputDataTypes[i] = aggregator.getDataType();
+                sortOrders[i] = ((BaseAggregator)aggregator).sortOrder;
+                if (kinds[i] == Kind.LONG_MIN || kinds[i] == Kind.LONG_MAX) {
+                    longVectors[i] = new long[batchSize];
+                } else {
+                    doubleVectors[i] = new double[batchSize];
+                }
+                valueArrays[i] = new byte[batchSize][];
+                valueOffsets[i] = new int[batchSize];
+                valueLengths[i] = new int[batchSize];
+                if (expressions[i].isResultTransient()) {
+                    valueCopies[i] = new byte[batchSize * VALUE_COPY_SIZE];
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Create a batch for the given aggregators
+     * @param aggregators the server aggregators, providing the input expressions
+     * @param rowAggregators the aggregators to aggregate into
+     * @param batchSize the maximum number of rows to buffer before aggregating them
+     * @return the batch, or null if batch mode is disabled or would not help for these aggregators
+     */
+    public static ServerAggregatorBatch newInstance(ServerAggregators aggregators, Aggregator[] rowAggregators, int batchSize) {
+        return newInstance(aggregators, rowAggregators, batchSize, null);
+    }
+
+    /**
+     * Create a batch for the given aggregators, aggregating only the rows selected by a predicate
+     * @param aggregators the server aggregators, providing the input expressions
+     * @param rowAggregators the aggregators to aggregate into
+     * @param batchSize the maximum number of rows to buffer before aggregating them
+     * @param predicate the WHERE clause compiled for the same batch size, or null to aggregate every row
+     * @return the batch, or null if batch mode is disabled or would not help for these aggregators
+     */
+    public static ServerAggregatorBatch newInstance(ServerAggregators aggregators, Aggregator[] rowAggregators,
+            int batchSize, VectorizedPredicate predicate) {
+        if (batchSize <= 0 || rowAggregators.length == 0) {
+            return null;
+        }
+        Kind[] kinds = new Kind[rowAggregators.length];
+        boolean hasVectorized = false;
+        for (int i = 0; i < rowAggregators.length; i++) {
+            // Size tracking aggregators must be aggregated through SizeTrackingServerAggregators
+            if (rowAggregators[i].trackSize()) {
+                return null;
+            }
+            kinds[i] = getKind(rowAggregators[i], aggregators.expressions[i]);
+            hasVectorized |= kinds[i] != Kind.ROW;
+        }
+        // Evaluating the predicate over the batch helps even if the aggregators are not vectorized
+        return hasVectorized || predicate != null
+                ? new ServerAggregatorBatch(aggregators, rowAggregators, kinds, batchSize, predicate) : null;
+    }
+
+    private static Kind getKind(Aggregator aggregator, Expression expression) {
+        if (aggregator instanceof CountAggregator) {
+            if (expression instanceof LiteralExpression && ((LiteralExpression)expression).getValue() != null) {
+                return Kind.COUNT_ROWS;
+            }
+            return Kind.COUNT;
+        }
+        if (aggregator instanceof NumberSumAggregator
+                && VectorizedPredicate.isIntegral(((NumberSumAggregator)aggregator).getInputDataType())) {
+            return Kind.LONG_SUM;
+        }
+        if (aggregator instanceof DoubleSumAggregator
+                && VectorizedPredicate.isFloatingPoint(((DoubleSumAggregator)aggregator).getInputDataType())) {
+            return Kind.DOUBLE_SUM;
+        }
+        if (aggregator instanceof MinAggregator) {
+            PDataType type = aggregator.getDataType();
+            // MaxAggregator extends MinAggregator
+            boolean isMax = aggregator instanceof MaxAggregator;
+            if (VectorizedPredicate.isIntegral(type)) {
+                return isMax ? Kind.LONG_MAX : Kind.LONG_MIN;
+            }
+            if (VectorizedPredicate.isFloatingPoint(type)) {
+                return isMax ? Kind.DOUBLE_MAX : Kind.DOUBLE_MIN;
+            }
+        }
+        return Kind.ROW;
+    }
+
+    /**
+     * Add a row to the batch, aggregating the batch if it is full
+     * @param result the row to aggregate
+     */
+    public void aggregate(Tuple result) {
+        if (predicate != null) {
+            // The row must not be reused by the caller until the batch is flushed
+            predicate.add(result, rowCount);
+            rows[rowCount] = result;
+        } else {
+            addRow(result);
+        }
+        if (++rowCount == batchSize) {
+            flush();
+        }
+    }
+
+    private void addRow(Tuple result) {
+        for (int i = 0; i < kinds.length; i++) {
+            Kind kind = kinds[i];
+            if (kind == Kind.COUNT_ROWS) {
+                continue;
+            }
+            Expression expression = expressions[i];
+            if (expression.evaluate(result, ptr) && ptr.getLength() != 0) {
+                int size = vectorSizes[i];
+                switch (kind) {
+                case ROW:
+                    rowAggregators[i].aggregate(result, ptr);
+                    break;
+                case COUNT:
+                    vectorSizes[i] = size + 1;
+                    break;
+                case LONG_SUM:
+                    longVectors[i][size] = inputDataTypes[i].getCodec().decodeLong(ptr, sortOrders[i]);
+                    vectorSizes[i] = size + 1;
+                    break;
+                case DOUBLE_SUM:
+                    doubleVectors[i][size] = inputDataTypes[i].getCodec().decodeDouble(ptr, sortOrders[i]);
+                    vectorSizes[i] = size + 1;
+                    break;
+                case LONG_MIN:
+                case LONG_MAX:
+                    longVectors[i][size] = inputDataTypes[i].getCodec().decodeLong(ptr, sortOrders[i]);
+                    addValue(i, size);
+                    break;
+                default:
+                    doubleVectors[i][size] = inputDataTypes[i].getCodec().decodeDouble(ptr, sortOrders[i]);
+                    addValue(i, size);
+                    break;
+                }
+            }
+            expression.reset();
+        }
+    }
+
+    private void addValue(int i, int size) {
+        byte[] copies = valueCopies[i];
+        if (copies != null && ptr.getLength() <= VALUE_COPY_SIZE) {
+            // The bytes will be overwritten by the evaluation of the next row
+            int offset = size * VALUE_COPY_SIZE;
+            System.arraycopy(ptr.get(), ptr.getOffset(), copies, offset, ptr.getLength());
+            valueArrays[i][size] = copies;
+            valueOffsets[i][size] = offset;
+        } else if (copies != null) {
+            valueArrays[i][size] = ptr.copyBytes();
+            valueOffsets[i][size] = 0;
+        } else {
+            // Keep a reference to the bytes of the value instead of copying them
+            valueArrays[i][size] = ptr.get();
+            valueOffsets[i][size] = ptr.getOffset();
+        }
+        valueLengths[i][size] = ptr.getLength();
+        vectorSizes[i] = size + 1;
+    }
+
+    /**
+     * Aggregate the rows of the current batch. Must be called before reading the
+     * state of the aggregators.
+     */
+    public void flush() {
+        int selectedCount = rowCount;
+        if (predicate != null) {
+            selectedCount = predicate.select(rows, rowCount, selection);
+            for (int j = 0; j < selectedCount; j++) {
+                addRow(rows[selection[j]]);
+            }
+            Arrays.fill(rows, 0, rowCount, null);
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            int size = vectorSizes[i];
+            Aggregator aggregator = rowAggregators[i];
+            switch (kinds[i]) {
+            case COUNT_ROWS:
+                ((CountAggregator)aggregator).aggregate(selectedCount);
+                break;
+            case COUNT:
+                ((CountAggregator)aggregator).aggregate(size);
+                break;
+            case LONG_SUM:
+                ((NumberSumAggregator)aggregator).aggregate(longVectors[i], size);
+                break;
+            case DOUBLE_SUM:
+                ((DoubleSumAggregator)aggregator).aggregate(doubleVectors[i], size);
+                break;
+            case LONG_MIN:
+                aggregateValue(i, minIndex(longVectors[i], size));
+                break;
+            case LONG_MAX:
+                aggregateValue(i, maxIndex(longVectors[i], size));
+                break;
+            case DOUBLE_MIN:
+                aggregateValue(i, minIndex(doubleVectors[i], size));
+                break;
+            case DOUBLE_MAX:
+                aggregateValue(i, maxIndex(doubleVectors[i], size));
+                break;
+            default:
+                break;
+            }
+            vectorSizes[i] = 0;
+            if (valueArrays[i] != null) {
+                // Release the references to the rows of this batch
+                Arrays.fill(valueArrays[i], 0, size, null);
+            }
+        }
+        aggregatedRowCount += selectedCount;
+        rowCount = 0;
+    }
+
+    /**
+     * @return the number of rows aggregated by the batches flushed so far
+     */
+    public long getAggregatedRowCount() {
+        return aggregatedRowCount;
+    }
+
+    private void aggregateValue(int i, int index) {
+        if (index >= 0) {
+            ptr.set(valueArrays[i][index], valueOffsets[i][index], valueLengths[i][index]);
+            rowAggregators[i].aggregate(null, ptr);
+        }
+    }
+
+    private static int minIndex(long[] values, int length) {
+        int index = length == 0 ? -1 : 0;
+        for (int i = 1; i < length; i++) {
+            if (values[i] < values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static int maxIndex(long[] values, int length) {
+        int index = length == 0 ? -1 : 0;
+        for (int i = 1; i < length; i++) {
+            if (values[i] > values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    // Double.compare matches the byte ordering of the floating point types, including for -0.0 and NaN
+    private static int minIndex(double[] values, int length) {
+        int index = length == 0 ? -1 : 0;
+        for (int i = 1; i < length; i++) {
+            if (Double.compare(values[i], values[index]) < 0) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static int maxIndex(double[] values, int length) {
+        int index = length == 0 ? -1 : 0;
+        for (int i = 1; i < length; i++) {
+            if (Double.compare(values[i], values[index]) > 0) {
+                index = i;
+            }
+        }
+        return index;
+    }
+}
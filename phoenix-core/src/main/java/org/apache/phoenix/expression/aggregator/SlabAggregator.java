@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.SizedUtil;
+
+/**
+ *
+ * Aggregator that keeps its state in a shared byte slab instead of in the
+ * aggregator itself, so that a single instance can be used for every group
+ * of a GROUP BY. The slab and the offset of the current group are set through
+ * a {@link Cursor} shared by all the aggregators of a row. Only aggregators
+ * with a fixed width state are supported: COUNT, SUM over integral and floating
+ * point types, and MIN/MAX over fixed width types.
+ *
+ */
+public class SlabAggregator extends BaseAggregator {
+
+    /**
+     * Position of the state of the current group within the slab
+     */
+    public static final class Cursor {
+        private byte[] slab;
+        private int offset;
+
+        public void set(byte[] slab, int offset) {
+            this.slab = slab;
+            this.offset = offset;
+        }
+    }
+
+    private enum Kind {
+        COUNT(0),
+        LONG_SUM(1),
+        DOUBLE_SUM(1),
+        MIN(Bytes.SIZEOF_INT),
+        MAX(Bytes.SIZEOF_INT);
+
+        // Bytes in front of the value used to track whether or not a value was set
+        private final int headerSize;
+
+        Kind(int headerSize) {
+            this.headerSize = headerSize;
+        }
+    }
+
+    private final Aggregator delegate;
+    private final Kind kind;
+    private final PDataType inputDataType;
+    private final Cursor cursor;
+    private final int stateOffset;
+    private final int valueSize;
+    private byte[] buffer;
+
+    private SlabAggregator(BaseAggregator delegate, Kind kind, PDataType inputDataType, int valueSize, Cursor cursor, int stateOffset) {
+        // Use the sort order of the input, not of the aggregated value
+        super(delegate.sortOrder);
+        this.delegate = delegate;
+        this.kind = kind;
+        this.inputDataType = inputDataType;
+        this.valueSize = valueSize;
+        this.cursor = cursor;
+        this.stateOffset = stateOffset;
+    }
+
+    private static Kind getKind(Aggregator aggregator) {
+        if (aggregator instanceof CountAggregator) {
+            return Kind.COUNT;
+        }
+        if (aggregator instanceof NumberSumAggregator) {
+            return Kind.LONG_SUM;
+        }
+        if (aggregator instanceof DoubleSumAggregator) {
+            return Kind.DOUBLE_SUM;
+        }
+        Integer byteSize = aggregator.getDataType() == null ? null : aggregator.getDataType().getByteSize();
+        if (byteSize == null || !aggregator.getDataType().isFixedWidth()) {
+            return null;
+        }
+        // Check MAX first, as MaxAggregator extends MinAggregator
+        if (aggregator instanceof MaxAggregator) {
+            return Kind.MAX;
+        }
+        if (aggregator instanceof MinAggregator) {
+            return Kind.MIN;
+        }
+        return null;
+    }
+
+    /**
+     * Determines whether or not all the aggregators have a fixed width state
+     * and may be replaced by slab aggregators.
+     */
+    public static boolean isSupported(Aggregator[] aggregators) {
+        for (Aggregator aggregator : aggregators) {
+            if (getKind(aggregator) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create slab aggregators laid out one after the other in the slab, sharing the given cursor.
+     * @param aggregators the aggregators to replace. Must be supported as determined by {@link #isSupported(Aggregator[])}
+     * @param cursor cursor used to position the aggregators on the state of a group
+     * @return the slab aggregators, in the same order as the aggregators they replace
+     */
+    public static SlabAggregator[] newSlabAggregators(Aggregator[] aggregators, Cursor cursor) {
+        SlabAggregator[] slabAggregators = new SlabAggregator[aggregators.length];
+        int offset = 0;
+        for (int i = 0; i < aggregators.length; i++) {
+            Aggregator aggregator = aggregators[i];
+            Kind kind = getKind(aggregator);
+            if (kind == null) {
+                throw new IllegalArgumentException("Aggregator " + aggregator + " does not have a fixed width state");
+            }
+            PDataType inputDataType = null;
+            int valueSize;
+            switch (kind) {
+            case LONG_SUM:
+                inputDataType = ((NumberSumAggregator)aggregator).getInputDataType();
+                valueSize = Bytes.SIZEOF_LONG;
+                break;
+            case DOUBLE_SUM:
+                inputDataType = ((DoubleSumAggregator)aggregator).getInputDataType();
+                valueSize = Bytes.SIZEOF_DOUBLE;
+                break;
+            case MIN:
+            case MAX:
+                valueSize = aggregator.getDataType().getByteSize();
+                break;
+            default:
+                valueSize = Bytes.SIZEOF_LONG;
+                break;
+            }
+            slabAggregators[i] = new SlabAggregator((BaseAggregator)aggregator, kind, inputDataType, valueSize, cursor, offset);
+            offset += slabAggregators[i].getStateSize();
+        }
+        return slabAggregators;
+    }
+
+    /**
+     * @return the total number of bytes of slab used by the state of one group
+     */
+    public static int getStateSize(SlabAggregator[] aggregators) {
+        int size = 0;
+        for (SlabAggregator aggregator : aggregators) {
+            size += aggregator.getStateSize();
+        }
+        return size;
+    }
+
+    private int getStateSize() {
+        return kind.headerSize + valueSize;
+    }
+
+    private int getPosition() {
+        return cursor.offset + stateOffset;
+    }
+
+    private boolean isSet(byte[] slab, int position) {
+        return kind.headerSize == 0 || (kind.headerSize == 1 ? slab[position] != 0 : Bytes.toInt(slab, position) != 0);
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+        byte[] slab = cursor.slab;
+        int position = getPosition();
+        int valuePosition = position + kind.headerSize;
+        switch (kind) {
+        case COUNT:
+            Bytes.putLong(slab, valuePosition, Bytes.toLong(slab, valuePosition) + 1);
+            break;
+        case LONG_SUM:
+            long longValue = inputDataType.getCodec().decodeLong(ptr, sortOrder);
+            Bytes.putLong(slab, valuePosition, Bytes.toLong(slab, valuePosition) + longValue);
+            slab[position] = 1;
+            break;
+        case DOUBLE_SUM:
+            double doubleValue = inputDataType.getCodec().decodeDouble(ptr, sortOrder);
+            Bytes.putDouble(slab, valuePosition, Bytes.toDouble(slab, valuePosition) + doubleValue);
+            slab[position] = 1;
+            break;
+        case MIN:
+        case MAX:
+            if (ptr.getLength() > valueSize) {
+                throw new IllegalStateException("Expected at most " + valueSize + " bytes for " + delegate
+                        + ", but got " + ptr.getLength());
+            }
+            int length = Bytes.toInt(slab, position);
+            if (length != 0) {
+                int c = getDataType().compareTo(slab, valuePosition, length, sortOrder,
+                        ptr.get(), ptr.getOffset(), ptr.getLength(), sortOrder, getDataType());
+                // Same semantics as MinAggregator.keepFirst and MaxAggregator.keepFirst
+                boolean keepFirst = kind == Kind.MIN ? c <= 0 : c > 0;
+                if (keepFirst) {
+                    break;
+                }
+            }
+            System.arraycopy(ptr.get(), ptr.getOffset(), slab, valuePosition, ptr.getLength());
+            Bytes.putInt(slab, position, ptr.getLength());
+            break;
+        }
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        byte[] slab = cursor.slab;
+        int position = getPosition();
+        int valuePosition = position + kind.headerSize;
+        boolean isSet = isSet(slab, position);
+        switch (kind) {
+        case MIN:
+        case MAX:
+            if (!isSet) {
+                return false;
+            }
+            ptr.set(slab, valuePosition, Bytes.toInt(slab, position));
+            return true;
+        default:
+            if (!isSet && isNullable()) {
+                return false;
+            }
+            if (buffer == null) {
+                buffer = new byte[getDataType().getByteSize()];
+            }
+            if (kind == Kind.DOUBLE_SUM) {
+                getDataType().getCodec().encodeDouble(Bytes.toDouble(slab, valuePosition), buffer, 0);
+            } else {
+                getDataType().getCodec().encodeLong(Bytes.toLong(slab, valuePosition), buffer, 0);
+            }
+            ptr.set(buffer);
+            return true;
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (cursor.slab != null) {
+            int position = getPosition();
+            Bytes.zero(cursor.slab, position, getStateSize());
+        }
+        super.reset();
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return delegate.getDataType();
+    }
+
+    @Override
+    public boolean isNullable() {
+        return delegate.isNullable();
+    }
+
+    @Override
+    public Integer getMaxLength() {
+        return delegate.getMaxLength();
+    }
+
+    @Override
+    public Integer getScale() {
+        return delegate.getScale();
+    }
+
+    @Override
+    public SortOrder getSortOrder() {
+        return delegate.getSortOrder();
+    }
+
+    @Override
+    public int getSize() {
+        return SizedUtil.OBJECT_SIZE + getStateSize();
+    }
+
+    @Override
+    public String toString() {
+        return "SLAB " + kind + " [" + delegate + "]";
+    }
+}
@@ -17,7 +17,6 @@
  */
 package org.apache.phoenix.expression.function;
 
-import java.sql.Date;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -113,9 +112,9 @@ public class CeilDateExpression extends RoundDateExpression {
             PDataType dataType = getDataType();
             long time = dataType.getCodec().decodeLong(ptr, children.get(0).getSortOrder());
             long value = roundTime(time);
-            Date d = new Date(value);
-            byte[] byteValue = dataType.toBytes(d);
-            ptr.set(byteValue);
+            byte[] byteValue = getResultBuffer(dataType.getByteSize());
+            int length = dataType.getCodec().encodeLong(value, byteValue, 0);
+            ptr.set(byteValue, 0, length);
             return true;
         }
         return false;
@@ -127,4 +127,10 @@ public class CeilTimestampExpression extends CeilDateExpression {
         return false;
     }   
 
+    @Override
+    public boolean isResultTransient() {
+        // Either a new array or the value of the child
+        return children.get(0).isResultTransient();
+    }
+
 }
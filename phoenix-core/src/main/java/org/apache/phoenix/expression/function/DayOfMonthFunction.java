@@ -28,7 +28,7 @@ import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PTimestamp;
-import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
 
 /**
  * 
@@ -58,12 +58,11 @@ public class DayOfMonthFunction extends DateScalarFunction {
             return true; //means null
         }
         long dateTime = inputCodec.decodeLong(ptr, expression.getSortOrder());
-        DateTime dt = new DateTime(dateTime);
-        int day = dt.getDayOfMonth();
+        int day = ISOChronology.getInstance().dayOfMonth().get(dateTime);
         PDataType returnType = getDataType();
-        byte[] byteValue = new byte[returnType.getByteSize()];
-        returnType.getCodec().encodeInt(day, byteValue, 0);
-        ptr.set(byteValue);
+        byte[] byteValue = getResultBuffer(returnType.getByteSize());
+        int length = returnType.getCodec().encodeInt(day, byteValue, 0);
+        ptr.set(byteValue, 0, length);
         return true;
     }
 
@@ -80,4 +79,9 @@ public class DayOfMonthFunction extends DateScalarFunction {
     private Expression getChildExpression() {
         return children.get(0);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
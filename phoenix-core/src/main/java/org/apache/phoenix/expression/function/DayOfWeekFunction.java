@@ -27,7 +27,7 @@ import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PTimestamp;
-import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
 
 /**
  * Implementation of DayOfWeekFunction(Date/Timestamp)
@@ -69,12 +69,11 @@ public class DayOfWeekFunction extends DateScalarFunction {
             return true;
         }
         long dateTime = inputCodec.decodeLong(ptr, arg.getSortOrder());
-        DateTime jodaDT = new DateTime(dateTime);
-        int day = jodaDT.getDayOfWeek();
+        int day = ISOChronology.getInstance().dayOfWeek().get(dateTime);
         PDataType returnDataType = getDataType();
-        byte[] byteValue = new byte[returnDataType.getByteSize()];
-        returnDataType.getCodec().encodeInt(day, byteValue, 0);
-        ptr.set(byteValue);
+        byte[] byteValue = getResultBuffer(returnDataType.getByteSize());
+        int length = returnDataType.getCodec().encodeInt(day, byteValue, 0);
+        ptr.set(byteValue, 0, length);
         return true;
     }
 
@@ -83,4 +82,9 @@ public class DayOfWeekFunction extends DateScalarFunction {
     public PDataType getDataType() {
         return PInteger.INSTANCE;
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
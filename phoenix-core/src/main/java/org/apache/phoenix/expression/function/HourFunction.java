@@ -59,9 +59,9 @@ public class HourFunction extends DateScalarFunction {
         long dateTime = inputCodec.decodeLong(ptr, expression.getSortOrder());
         int hour = (int)(((dateTime/1000) % (24*3600))/3600);
         PDataType returnType = getDataType();
-        byte[] byteValue = new byte[returnType.getByteSize()];
-        returnType.getCodec().encodeInt(hour, byteValue, 0);
-        ptr.set(byteValue);
+        byte[] byteValue = getResultBuffer(returnType.getByteSize());
+        int length = returnType.getCodec().encodeInt(hour, byteValue, 0);
+        ptr.set(byteValue, 0, length);
         return true;
     }
 
@@ -78,4 +78,9 @@ public class HourFunction extends DateScalarFunction {
     private Expression getChildExpression() {
         return children.get(0);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -27,9 +27,11 @@ import java.util.Locale;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.StringUtil;
 
 import com.force.i18n.LocaleUtils;
 
@@ -67,19 +69,26 @@ public class LowerFunction extends ScalarFunction {
         if (!getStrExpression().evaluate(tuple, ptr)) {
             return false;
         }
-        if (ptr.getLength()==0) {
+        if (ptr.getLength() == 0) {
             return true;
         }
 
-        String sourceStr = (String) PVarchar.INSTANCE.toObject(ptr, getStrExpression().getSortOrder());
-
-        if (sourceStr == null) {
-            return true;
+        SortOrder sortOrder = getStrExpression().getSortOrder();
+        Locale effectiveLocale = locale == null ? Locale.getDefault() : locale;
+        if (StringUtil.hasSimpleAsciiCaseMapping(effectiveLocale)) {
+            byte[] result = getResultBuffer(ptr.getLength());
+            if (StringUtil.changeAsciiCase(ptr.get(), ptr.getOffset(), ptr.getLength(), sortOrder,
+                    false, result, 0)) {
+                ptr.set(result, 0, ptr.getLength());
+                return true;
+            }
         }
 
-        String resultStr = locale == null ? sourceStr.toLowerCase() : sourceStr.toLowerCase(locale);
-
-        ptr.set(PVarchar.INSTANCE.toBytes(resultStr));
+        String sourceStr = (String) PVarchar.INSTANCE.toObject(ptr, sortOrder);
+        String resultStr = sourceStr.toLowerCase(effectiveLocale);
+        byte[] result = getResultBuffer(StringUtil.getUtf8Length(resultStr));
+        int length = StringUtil.toUtf8Bytes(resultStr, result, 0);
+        ptr.set(result, 0, length);
         return true;
     }
 
@@ -101,4 +110,9 @@ public class LowerFunction extends ScalarFunction {
     private Expression getStrExpression() {
         return children.get(0);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
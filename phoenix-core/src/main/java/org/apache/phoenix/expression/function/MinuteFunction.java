@@ -59,9 +59,9 @@ public class MinuteFunction extends DateScalarFunction {
         long dateTime = inputCodec.decodeLong(ptr, expression.getSortOrder());
         int minute = (int)(((dateTime/1000) % 3600)/60);
         PDataType returnType = getDataType();
-        byte[] byteValue = new byte[returnType.getByteSize()];
-        returnType.getCodec().encodeInt(minute, byteValue, 0);
-        ptr.set(byteValue);
+        byte[] byteValue = getResultBuffer(returnType.getByteSize());
+        int length = returnType.getCodec().encodeInt(minute, byteValue, 0);
+        ptr.set(byteValue, 0, length);
         return true;
     }
 
@@ -78,4 +78,9 @@ public class MinuteFunction extends DateScalarFunction {
     private Expression getChildExpression() {
         return children.get(0);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
@@ -20,7 +20,6 @@ package org.apache.phoenix.expression.function;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.sql.Date;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
@@ -169,9 +168,9 @@ public class RoundDateExpression extends ScalarFunction {
             PDataType dataType = getDataType();
             long time = dataType.getCodec().decodeLong(ptr, children.get(0).getSortOrder());
             long value = roundTime(time);
-            Date d = new Date(value);
-            byte[] byteValue = dataType.toBytes(d);
-            ptr.set(byteValue);
+            byte[] byteValue = getResultBuffer(dataType.getByteSize());
+            int length = dataType.getCodec().encodeLong(value, byteValue, 0);
+            ptr.set(byteValue, 0, length);
             return true;
         }
         return false;
@@ -225,6 +224,11 @@ public class RoundDateExpression extends ScalarFunction {
     public boolean isNullable() {
         return children.get(0).isNullable() || divBy == 0;
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
     
     protected PDataCodec getKeyRangeCodec(PDataType columnDataType) {
         return columnDataType.getCodec();
@@ -17,7 +17,6 @@
  */
 package org.apache.phoenix.expression.function;
 
-import java.sql.Date;
 import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -50,9 +49,9 @@ public abstract class RoundJodaDateExpression extends RoundDateExpression{
             long time = dataType.getCodec().decodeLong(ptr, children.get(0).getSortOrder());
             DateTime dt = new DateTime(time,ISOChronology.getInstanceUTC());
             long value = roundDateTime(dt);
-            Date d = new Date(value);
-            byte[] byteValue = dataType.toBytes(d);
-            ptr.set(byteValue);
+            byte[] byteValue = getResultBuffer(dataType.getByteSize());
+            int length = dataType.getCodec().encodeLong(value, byteValue, 0);
+            ptr.set(byteValue, 0, length);
             return true;
         }
         return false;
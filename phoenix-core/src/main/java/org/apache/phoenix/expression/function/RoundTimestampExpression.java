@@ -121,4 +121,10 @@ public class RoundTimestampExpression extends RoundDateExpression {
         return false;
     }
 
+    @Override
+    public boolean isResultTransient() {
+        // Either a new array or the value of the child
+        return children.get(0).isResultTransient();
+    }
+
 }
@@ -28,8 +28,10 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.StringUtil;
 
 import com.force.i18n.LocaleUtils;
 
@@ -69,15 +71,26 @@ public class UpperFunction extends ScalarFunction {
         if (!getStrExpression().evaluate(tuple, ptr)) {
             return false;
         }
-
-        String sourceStr = (String) PVarchar.INSTANCE.toObject(ptr, getStrExpression().getSortOrder());
-        if (sourceStr == null) {
+        if (ptr.getLength() == 0) {
             return true;
         }
 
-        String resultStr = locale == null ? sourceStr.toUpperCase() : sourceStr.toUpperCase(locale);
+        SortOrder sortOrder = getStrExpression().getSortOrder();
+        Locale effectiveLocale = locale == null ? Locale.getDefault() : locale;
+        if (StringUtil.hasSimpleAsciiCaseMapping(effectiveLocale)) {
+            byte[] result = getResultBuffer(ptr.getLength());
+            if (StringUtil.changeAsciiCase(ptr.get(), ptr.getOffset(), ptr.getLength(), sortOrder,
+                    true, result, 0)) {
+                ptr.set(result, 0, ptr.getLength());
+                return true;
+            }
+        }
 
-        ptr.set(PVarchar.INSTANCE.toBytes(resultStr));
+        String sourceStr = (String) PVarchar.INSTANCE.toObject(ptr, sortOrder);
+        String resultStr = sourceStr.toUpperCase(effectiveLocale);
+        byte[] result = getResultBuffer(StringUtil.getUtf8Length(resultStr));
+        int length = StringUtil.toUtf8Bytes(resultStr, result, 0);
+        ptr.set(result, 0, length);
         return true;
     }
 
@@ -99,4 +112,9 @@ public class UpperFunction extends ScalarFunction {
     private Expression getStrExpression() {
         return children.get(0);
     }
+
+    @Override
+    public boolean isResultTransient() {
+        return true;
+    }
 }
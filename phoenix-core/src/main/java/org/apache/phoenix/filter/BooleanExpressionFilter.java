@@ -44,6 +44,8 @@ import org.apache.phoenix.util.ServerUtil;
 abstract public class BooleanExpressionFilter extends FilterBase implements Writable {
 
     protected Expression expression;
+    // Specialized form of the expression, or null if the expression is interpreted
+    private CompiledPredicate predicate;
     private ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
     
     public BooleanExpressionFilter() {
@@ -89,6 +91,9 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
             value="NP_BOOLEAN_RETURN_NULL",
             justification="Returns null by design.")
     protected Boolean evaluate(Tuple input) {
+        if (predicate != null) {
+            return predicate.evaluate(input);
+        }
         try {
             if (!expression.evaluate(input, tempPtr)) {
                 return null;
@@ -108,6 +113,8 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
             expression = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
             expression.readFields(input);
             expression.reset(); // Initializes expression tree for partial evaluation
+            // Compile once the expression is set up for partial evaluation, when opening the scan on the server
+            predicate = CompiledPredicate.compile(expression);
         } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
             ServerUtil.throwIOException("BooleanExpressionFilter failed during reading", t);
         }
@@ -131,5 +138,8 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
     @Override
     public void reset() {
         expression.reset();
+        if (predicate != null) {
+            predicate.reset();
+        }
     }
 }
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDataType.PDataCodec;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTime;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.types.PUnsignedDate;
+import org.apache.phoenix.schema.types.PUnsignedInt;
+import org.apache.phoenix.schema.types.PUnsignedLong;
+import org.apache.phoenix.schema.types.PUnsignedSmallint;
+import org.apache.phoenix.schema.types.PUnsignedTime;
+import org.apache.phoenix.schema.types.PUnsignedTinyint;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ *
+ * WHERE clause expression compiled into a tree of evaluators specialized for the
+ * shape of the expression, used by {@link BooleanExpressionFilter} in place of
+ * interpreting the expression for every row. AND, OR and NOT are evaluated on
+ * three valued results instead of serialized booleans, comparisons of a column
+ * against a constant look the column up directly and compare against the constant
+ * decoded once, as a primitive for the integral and date types. Any other node is
+ * evaluated through the expression itself, so the compiled form always evaluates
+ * to the same result as the expression, including during partial evaluation.
+ *
+ * A compiled predicate refers to the (stateful) expression it was compiled from,
+ * so, like the expression, it may only be used by a single thread.
+ *
+ */
+public abstract class CompiledPredicate {
+    // Results of evaluating a node. UNKNOWN means that not all the columns
+    // required to evaluate the node have been seen yet.
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int NULL = 2;
+    static final int UNKNOWN = 3;
+
+    /**
+     * Compile a boolean expression
+     * @param expression the WHERE clause expression
+     * @return the compiled predicate, or null if no part of the expression can be
+     * evaluated more efficiently than by the expression itself
+     */
+    public static CompiledPredicate compile(Expression expression) {
+        CompiledPredicate predicate = compileNode(expression);
+        return predicate instanceof Interpreted ? null : predicate;
+    }
+
+    private static CompiledPredicate compileNode(Expression expression) {
+        Class<? extends Expression> clazz = expression.getClass();
+        if (clazz == AndExpression.class || clazz == OrExpression.class) {
+            List<Expression> children = expression.getChildren();
+            CompiledPredicate[] compiledChildren = new CompiledPredicate[children.size()];
+            boolean isCompiled = false;
+            for (int i = 0; i < compiledChildren.length; i++) {
+                compiledChildren[i] = compileNode(children.get(i));
+                isCompiled |= !(compiledChildren[i] instanceof Interpreted);
+            }
+            if (isCompiled) {
+                return new AndOr(compiledChildren, clazz == AndExpression.class ? FALSE : TRUE);
+            }
+        } else if (clazz == NotExpression.class) {
+            CompiledPredicate child = compileNode(expression.getChildren().get(0));
+            if (!(child instanceof Interpreted)) {
+                return new Not(child);
+            }
+        } else if (clazz == ComparisonExpression.class) {
+            CompiledPredicate comparison = compileComparison((ComparisonExpression)expression);
+            if (comparison != null) {
+                return comparison;
+            }
+        }
+        return new Interpreted(expression);
+    }
+
+    private static CompiledPredicate compileComparison(ComparisonExpression expression) {
+        Expression lhs = expression.getChildren().get(0);
+        Expression rhs = expression.getChildren().get(1);
+        if (!(rhs instanceof LiteralExpression) || !rhs.isStateless()) {
+            return null;
+        }
+        PDataType type = lhs.getDataType();
+        // The constant is coerced to the type and sort order of the column when the
+        // expression is compiled, so we only handle the case where both sides match.
+        // CHAR values must be unpadded before being compared.
+        if (type == null || type != rhs.getDataType() || lhs.getSortOrder() != rhs.getSortOrder()
+                || type.isArrayType() || type == PChar.INSTANCE) {
+            return null;
+        }
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        if (!rhs.evaluate(null, ptr) || ptr.getLength() == 0) {
+            return null;
+        }
+        byte[] constant = ptr.copyBytes();
+        CompareOp op = expression.getFilterOp();
+        SortOrder sortOrder = lhs.getSortOrder();
+        if (isIntegral(type) && constant.length == type.getByteSize()) {
+            return new LongComparison(lhs, op, type, sortOrder, constant);
+        }
+        return new BytesComparison(lhs, op, type, sortOrder, constant);
+    }
+
+    /**
+     * @return true if the type is fixed width and its serialized form has the same
+     * order as the long returned by its codec
+     */
+    private static boolean isIntegral(PDataType type) {
+        return type == PLong.INSTANCE || type == PInteger.INSTANCE || type == PSmallint.INSTANCE
+                || type == PTinyint.INSTANCE || type == PUnsignedLong.INSTANCE
+                || type == PUnsignedInt.INSTANCE || type == PUnsignedSmallint.INSTANCE
+                || type == PUnsignedTinyint.INSTANCE || type == PDate.INSTANCE
+                || type == PTime.INSTANCE || type == PUnsignedDate.INSTANCE
+                || type == PUnsignedTime.INSTANCE;
+    }
+
+    /**
+     * Evaluate the predicate the way {@link BooleanExpressionFilter} evaluates its expression.
+     * @return null if the predicate cannot be evaluated yet, otherwise whether the row
+     * matches, with NULL treated as FALSE
+     */
+    @edu.umd.cs.findbugs.annotations.SuppressWarnings(
+            value="NP_BOOLEAN_RETURN_NULL",
+            justification="Returns null by design.")
+    public final Boolean evaluate(Tuple tuple) {
+        int result;
+        try {
+            result = evaluateNode(tuple);
+        } catch (IllegalDataException e) {
+            return Boolean.FALSE;
+        }
+        if (result == UNKNOWN) {
+            return null;
+        }
+        return result == TRUE;
+    }
+
+    /**
+     * Clear the partial evaluation state of the predicate. The expression the predicate
+     * was compiled from must be reset as well.
+     */
+    public void reset() {
+    }
+
+    abstract int evaluateNode(Tuple tuple);
+
+    private static final class AndOr extends CompiledPredicate {
+        private final CompiledPredicate[] children;
+        private final int stopValue;
+        // Remember evaluation of child expression for partial evaluation
+        private final boolean[] evaluated;
+        private boolean seenNull;
+
+        AndOr(CompiledPredicate[] children, int stopValue) {
+            this.children = children;
+            this.stopValue = stopValue;
+            this.evaluated = new boolean[children.length];
+        }
+
+        @Override
+        int evaluateNode(Tuple tuple) {
+            boolean childFailed = false;
+            for (int i = 0; i < children.length; i++) {
+                if (evaluated[i]) {
+                    continue;
+                }
+                int result = children[i].evaluateNode(tuple);
+                if (result == stopValue) {
+                    return stopValue;
+                }
+                if (result == UNKNOWN) {
+                    childFailed = true;
+                } else {
+                    seenNull |= result == NULL;
+                    evaluated[i] = true;
+                }
+            }
+            if (childFailed) {
+                return UNKNOWN;
+            }
+            return seenNull ? NULL : stopValue ^ 1;
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < children.length; i++) {
+                evaluated[i] = false;
+                children[i].reset();
+            }
+            seenNull = false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder("(");
+            for (int i = 0; i < children.length; i++) {
+                if (i > 0) {
+                    buf.append(stopValue == FALSE ? " AND " : " OR ");
+                }
+                buf.append(children[i]);
+            }
+            return buf.append(')').toString();
+        }
+    }
+
+    private static final class Not extends CompiledPredicate {
+        private final CompiledPredicate child;
+
+        Not(CompiledPredicate child) {
+            this.child = child;
+        }
+
+        @Override
+        int evaluateNode(Tuple tuple) {
+            int result = child.evaluateNode(tuple);
+            return result == TRUE || result == FALSE ? result ^ 1 : result;
+        }
+
+        @Override
+        public void reset() {
+            child.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    /**
+     * Comparison of a column, or of any other expression, against a constant
+     */
+    private static class BytesComparison extends CompiledPredicate {
+        private final Expression lhs;
+        // Set when the lhs is a plain column, to look the cell up without going through the expression
+        private final byte[] cf;
+        private final byte[] cq;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        private final CompareOp op;
+        protected final PDataType type;
+        protected final SortOrder sortOrder;
+        protected final byte[] constant;
+
+        BytesComparison(Expression lhs, CompareOp op, PDataType type, SortOrder sortOrder, byte[] constant) {
+            this.lhs = lhs;
+            if (lhs.getClass() == KeyValueColumnExpression.class) {
+                this.cf = ((KeyValueColumnExpression)lhs).getColumnFamily();
+                this.cq = ((KeyValueColumnExpression)lhs).getColumnQualifier();
+            } else {
+                this.cf = null;
+                this.cq = null;
+            }
+            this.op = op;
+            this.type = type;
+            this.sortOrder = sortOrder;
+            this.constant = constant;
+        }
+
+        @Override
+        final int evaluateNode(Tuple tuple) {
+            boolean evaluated = cf == null ? lhs.evaluate(tuple, ptr) : tuple.getValue(cf, cq, ptr);
+            if (!evaluated) {
+                return UNKNOWN;
+            }
+            if (ptr.getLength() == 0) { // null comparison evals to null
+                return NULL;
+            }
+            return ByteUtil.compare(op, compareTo(ptr.get(), ptr.getOffset(), ptr.getLength())) ? TRUE : FALSE;
+        }
+
+        protected int compareTo(byte[] b, int offset, int length) {
+            return type.compareTo(b, offset, length, sortOrder, constant, 0, constant.length, sortOrder, type);
+        }
+
+        @Override
+        public String toString() {
+            return lhs + " " + op + " " + type.toObject(constant, sortOrder);
+        }
+    }
+
+    /**
+     * Comparison against a constant of a type whose values can be compared as longs
+     */
+    private static final class LongComparison extends BytesComparison {
+        private final PDataCodec codec;
+        private final long value;
+
+        LongComparison(Expression lhs, CompareOp op, PDataType type, SortOrder sortOrder, byte[] constant) {
+            super(lhs, op, type, sortOrder, constant);
+            this.codec = type.getCodec();
+            this.value = codec.decodeLong(constant, 0, sortOrder);
+        }
+
+        @Override
+        protected int compareTo(byte[] b, int offset, int length) {
+            if (length != constant.length) {
+                // Let the type deal with unexpected lengths
+                return super.compareTo(b, offset, length);
+            }
+            return Long.compare(codec.decodeLong(b, offset, sortOrder), value);
+        }
+    }
+
+    /**
+     * Node evaluated through the expression it was compiled from
+     */
+    private static final class Interpreted extends CompiledPredicate {
+        private final Expression expression;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+        Interpreted(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        int evaluateNode(Tuple tuple) {
+            if (!expression.evaluate(tuple, ptr)) {
+                return UNKNOWN;
+            }
+            if (ptr.getLength() == 0) {
+                return NULL;
+            }
+            return Boolean.TRUE.equals(PBoolean.INSTANCE.toObject(ptr, expression.getDataType())) ? TRUE : FALSE;
+        }
+
+        @Override
+        public String toString() {
+            return expression.toString();
+        }
+    }
+}
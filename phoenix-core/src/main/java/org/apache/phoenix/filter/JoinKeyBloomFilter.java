@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Writables;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.TupleUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.hash.HashFunction;
+import org.apache.phoenix.thirdparty.com.google.common.hash.Hashing;
+
+/**
+ *
+ * Filter that rejects the rows of the LHS of an inner hash join whose join key
+ * is not contained in a Bloom filter built over the join keys of the RHS. The
+ * key expressions are evaluated against the raw row, which lets the region server
+ * drop non-matching rows before they are projected and probed against the hash
+ * cache by HashJoinRegionScanner. The Bloom filter may return false positives,
+ * which are then rejected by the hash cache probe, but never false negatives.
+ *
+ */
+public class JoinKeyBloomFilter extends FilterBase implements Writable {
+    private static final byte VERSION = 1;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private List<Expression> keyExpressions;
+    private long[] bits;
+    private int numHashFunctions;
+    private boolean filterRow;
+
+    public JoinKeyBloomFilter() {
+    }
+
+    private JoinKeyBloomFilter(List<Expression> keyExpressions, long[] bits, int numHashFunctions) {
+        this.keyExpressions = keyExpressions;
+        this.bits = bits;
+        this.numHashFunctions = numHashFunctions;
+    }
+
+    private static long hash(ImmutableBytesWritable key) {
+        return HASH_FUNCTION.hashBytes(key.get(), key.getOffset(), key.getLength()).asLong();
+    }
+
+    /**
+     * Determines whether or not the key may have been added to the Bloom filter
+     * @param key the concatenated value of the join key expressions
+     * @return false if the key was definitely not added and true otherwise
+     */
+    public boolean mightContain(ImmutableBytesWritable key) {
+        long hash = hash(key);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        long numBits = (long)bits.length * Long.SIZE;
+        for (int i = 1; i <= numHashFunctions; i++) {
+            int combinedHash = hash1 + i * hash2;
+            if (combinedHash < 0) {
+                combinedHash = ~combinedHash;
+            }
+            long bit = combinedHash % numBits;
+            if ((bits[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Expression> getKeyExpressions() {
+        return keyExpressions;
+    }
+
+    public int getSizeInBytes() {
+        return bits.length * Long.BYTES;
+    }
+
+    @Override
+    public boolean hasFilterRow() {
+        return true;
+    }
+
+    @Override
+    public void filterRowCells(List<Cell> kvs) throws IOException {
+        if (kvs.isEmpty()) {
+            return;
+        }
+        for (Expression expression : keyExpressions) {
+            expression.reset();
+        }
+        ImmutableBytesWritable key = TupleUtil.getConcatenatedValue(new MultiKeyValueTuple(kvs), keyExpressions);
+        filterRow = !mightContain(key);
+    }
+
+    @Override
+    public boolean filterRow() {
+        return filterRow;
+    }
+
+    @Override
+    public void reset() {
+        filterRow = false;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        try {
+            out.writeByte(VERSION);
+            WritableUtils.writeVInt(out, keyExpressions.size());
+            for (Expression expression : keyExpressions) {
+                WritableUtils.writeVInt(out, ExpressionType.valueOf(expression).ordinal());
+                expression.write(out);
+            }
+            WritableUtils.writeVInt(out, numHashFunctions);
+            WritableUtils.writeVInt(out, bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
+            ServerUtil.throwIOException("JoinKeyBloomFilter failed during writing", t);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        try {
+            in.readByte(); // ignore
+            int nExpressions = WritableUtils.readVInt(in);
+            keyExpressions = Lists.newArrayListWithExpectedSize(nExpressions);
+            for (int i = 0; i < nExpressions; i++) {
+                Expression expression = ExpressionType.values()[WritableUtils.readVInt(in)].newInstance();
+                expression.readFields(in);
+                keyExpressions.add(expression);
+            }
+            numHashFunctions = WritableUtils.readVInt(in);
+            bits = new long[WritableUtils.readVInt(in)];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+        } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
+            ServerUtil.throwIOException("JoinKeyBloomFilter failed during reading", t);
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        return Writables.getBytes(this);
+    }
+
+    public static JoinKeyBloomFilter parseFrom(final byte[] pbBytes) throws DeserializationException {
+        try {
+            return (JoinKeyBloomFilter) Writables.getWritable(pbBytes, new JoinKeyBloomFilter());
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JoinKeyBloomFilter " + keyExpressions + " (" + getSizeInBytes() + " bytes, "
+                + numHashFunctions + " hash functions)";
+    }
+
+    /**
+     * Collects the hashes of the RHS join keys while the hash cache is being serialized,
+     * so that the Bloom filter can be sized once the number of keys is known.
+     */
+    public static class Builder {
+        private final long maxSizeInBytes;
+        private long[] hashes = new long[16];
+        private int nKeys;
+        private boolean overflow;
+
+        /**
+         * @param maxSizeInBytes the maximum size of the bit set. Once the number of keys
+         * requires a larger bit set, no filter is built.
+         */
+        public Builder(long maxSizeInBytes) {
+            this.maxSizeInBytes = maxSizeInBytes;
+        }
+
+        public void add(ImmutableBytesWritable key) {
+            if (overflow) {
+                return;
+            }
+            if (getSizeInBytes(nKeys + 1) > maxSizeInBytes) {
+                overflow = true;
+                hashes = null;
+                return;
+            }
+            if (nKeys == hashes.length) {
+                hashes = Arrays.copyOf(hashes, hashes.length + (hashes.length >> 1));
+            }
+            hashes[nKeys++] = hash(key);
+        }
+
+        private static long getNumBits(int nKeys) {
+            long numBits = (long)Math.ceil(-nKeys * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            // Round up to a whole number of words
+            return Math.max(Long.SIZE, (numBits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        }
+
+        private static long getSizeInBytes(int nKeys) {
+            return getNumBits(nKeys) / Byte.SIZE;
+        }
+
+        /**
+         * @param maxSizeInBytes the maximum size of the bit set
+         * @return the maximum number of keys for which a filter is built
+         */
+        public static int getMaxNumKeys(long maxSizeInBytes) {
+            int low = 0;
+            int high = Integer.MAX_VALUE;
+            while (low < high) {
+                int mid = (int)(((long)low + high + 1) >>> 1);
+                if (getSizeInBytes(mid) <= maxSizeInBytes) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Build the filter
+         * @param keyExpressions the LHS key expressions, which must evaluate to the
+         * same bytes on the LHS rows as the RHS hash expressions on the RHS rows
+         * @return the filter or null if the maximum size was exceeded
+         */
+        public JoinKeyBloomFilter build(List<Expression> keyExpressions) {
+            if (overflow) {
+                return null;
+            }
+            long numBits = getNumBits(nKeys);
+            int numHashFunctions = nKeys == 0 ? 1 : Math.max(1, (int)Math.round((double)numBits / nKeys * Math.log(2)));
+            long[] bits = new long[(int)(numBits / Long.SIZE)];
+            for (int i = 0; i < nKeys; i++) {
+                long hash = hashes[i];
+                int hash1 = (int)hash;
+                int hash2 = (int)(hash >>> 32);
+                for (int j = 1; j <= numHashFunctions; j++) {
+                    int combinedHash = hash1 + j * hash2;
+                    if (combinedHash < 0) {
+                        combinedHash = ~combinedHash;
+                    }
+                    long bit = combinedHash % numBits;
+                    bits[(int)(bit >>> 6)] |= 1L << bit;
+                }
+            }
+            return new JoinKeyBloomFilter(keyExpressions, bits, numHashFunctions);
+        }
+    }
+}
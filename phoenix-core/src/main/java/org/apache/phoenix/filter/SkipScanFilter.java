@@ -81,8 +81,13 @@ public class SkipScanFilter extends FilterBase implements Writable {
     private int offset;
     private Map<ImmutableBytesWritable, Cell> nextCellHintMap =
             new HashMap<ImmutableBytesWritable, Cell>();
+    // flattened upper bounds of each slot, searched when moving forward within a slot
+    private SlotBounds[] slotBounds;
+    // buffer used to prepend the bytes before the offset to the skip hint
+    private byte[] hintKey = ByteUtil.EMPTY_BYTE_ARRAY;
 
     private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private final ImmutableBytesWritable familyPtr = new ImmutableBytesWritable();
 
     /**
      * We know that initially the first row will be positioned at or 
@@ -126,6 +131,11 @@ public class SkipScanFilter extends FilterBase implements Writable {
         this.endKey = new byte[maxKeyLength];
         this.endKeyLength = 0;
         this.includeMultipleVersions = includeMultipleVersions;
+        this.slotBounds = new SlotBounds[slots.size()];
+        for (int i = 0; i < slotBounds.length; i++) {
+            Field field = schema.getField(ScanUtil.getRowKeyPosition(slotSpan, i));
+            slotBounds[i] = new SlotBounds(slots.get(i), ScanUtil.getComparator(field));
+        }
     }
 
     // Exposed for testing.
@@ -148,19 +158,29 @@ public class SkipScanFilter extends FilterBase implements Writable {
     }
 
     private void setNextCellHint(Cell kv) {
-        ImmutableBytesWritable family = new ImmutableBytesWritable(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
         Cell nextCellHint = null;
         if (offset == 0) {
             nextCellHint = new KeyValue(startKey, 0, startKeyLength,
                     null, 0, 0, null, 0, 0, HConstants.LATEST_TIMESTAMP, Type.Maximum, null, 0, 0);
         } else { // Prepend key of NextCellHint with bytes before offset
-            byte[] nextKey = new byte[offset + startKeyLength];
-            System.arraycopy(kv.getRowArray(), kv.getRowOffset(), nextKey, 0, offset);
-            System.arraycopy(startKey, 0, nextKey, offset, startKeyLength);
-            nextCellHint = new KeyValue(nextKey, 0, nextKey.length,
+            int nextKeyLength = offset + startKeyLength;
+            if (hintKey.length < nextKeyLength) {
+                hintKey = new byte[nextKeyLength];
+            }
+            System.arraycopy(kv.getRowArray(), kv.getRowOffset(), hintKey, 0, offset);
+            System.arraycopy(startKey, 0, hintKey, offset, startKeyLength);
+            nextCellHint = new KeyValue(hintKey, 0, nextKeyLength,
                     null, 0, 0, null, 0, 0, HConstants.LATEST_TIMESTAMP, Type.Maximum, null, 0, 0);
         }
-        Cell previousCellHint = nextCellHintMap.put(family, nextCellHint);
+        // The hint cell itself is not reused, as the region scanner may hold on to the seek key.
+        // Put keeps the key already in the map, so only a new family needs a key of its own.
+        familyPtr.set(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+        Cell previousCellHint = nextCellHintMap.put(familyPtr, nextCellHint);
+        if (previousCellHint == null) {
+            nextCellHintMap.remove(familyPtr);
+            nextCellHintMap.put(new ImmutableBytesWritable(kv.getFamilyArray(), kv.getFamilyOffset(),
+                    kv.getFamilyLength()), nextCellHint);
+        }
         // we should either have no previous hint, or the next hint should always come after the previous hint
         boolean isHintAfterPrevious = previousCellHint == null
                 || Bytes.compareTo(nextCellHint.getRowArray(), nextCellHint.getRowOffset(),
@@ -174,8 +194,11 @@ public class SkipScanFilter extends FilterBase implements Writable {
     
     @Override
     public Cell getNextCellHint(Cell kv) {
-        return isDone ? null : nextCellHintMap.get(new ImmutableBytesWritable(kv.getFamilyArray(),
-                kv.getFamilyOffset(), kv.getFamilyLength()));
+        if (isDone) {
+            return null;
+        }
+        familyPtr.set(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+        return nextCellHintMap.get(familyPtr);
     }
 
     public boolean hasIntersect(byte[] lowerInclusiveKey, byte[] upperExclusiveKey) {
@@ -196,7 +219,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
     
     private boolean areSlotsSingleKey(int startPosInclusive, int endPosExclusive) {
         for (int i = startPosInclusive; i < endPosExclusive; i++) {
-            if (!slots.get(i).get(position[i]).isSingleKey()) {
+            if (!slotBounds[i].isSingleKey(position[i])) {
                 return false;
             }
         }
@@ -369,7 +392,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
 
             // If key range of last slot is a single key, we can increment our position
             // since we know we'll be past the current row after including it.
-            if (slots.get(nSlots-1).get(position[nSlots-1]).isSingleKey()) {
+            if (slotBounds[nSlots-1].isSingleKey(position[nSlots-1])) {
                 if (nextPosition(nSlots-1) < 0) {
                     // Current row will be included, but we have no more
                     isDone = true;
@@ -382,7 +405,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
                 // less significant slots.
                 int earliestRangeIndex = nSlots-1;
                 for (int i = 0; i < nSlots; i++) {
-                    if (!slots.get(i).get(position[i]).isSingleKey()) {
+                    if (!slotBounds[i].isSingleKey(position[i])) {
                         earliestRangeIndex = i;
                         break;
                     }
@@ -404,14 +427,13 @@ public class SkipScanFilter extends FilterBase implements Writable {
         int maxOffset = schema.iterator(currentKey, minOffset, length, ptr);
         schema.next(ptr, ScanUtil.getRowKeyPosition(slotSpan, i), maxOffset, slotSpan[i]);
         while (true) {
+            SlotBounds bounds = slotBounds[i];
             // Comparator depends on field in schema
-            BytesComparator comparator = ScanUtil.getComparator(schema.getField(ScanUtil.getRowKeyPosition(slotSpan, i)));
-            // Increment to the next range while the upper bound of our current slot is less than our current key
-            while (position[i] < slots.get(i).size() && slots.get(i).get(position[i]).compareUpperToLowerBound(ptr, comparator) < 0) {
-                position[i]++;
-            }
+            BytesComparator comparator = bounds.comparator;
+            // Move to the first range whose upper bound is not less than our current key
+            position[i] = bounds.seekUpperNotBelow(position[i], ptr);
             Arrays.fill(position, i+1, position.length, 0);
-            if (position[i] >= slots.get(i).size()) {
+            if (position[i] >= bounds.size()) {
                 // Our current key is bigger than the last range of the current slot.
                 // If navigating after current key, backtrack and increment the key of the previous slot values.
                 // If navigating to current key, just return
@@ -430,7 +452,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
                 // If we're positioned at a single key, no need to copy the current key and get the next key .
                 // Instead, just increment to the next key and continue.
                 boolean incremented = false;
-                while (j >= 0 && slots.get(j).get(position[j]).isSingleKey() && (incremented=true) && (position[j] = (position[j] + 1) % slots.get(j).size()) == 0) {
+                while (j >= 0 && slotBounds[j].isSingleKey(position[j]) && (incremented=true) && (position[j] = (position[j] + 1) % slots.get(j).size()) == 0) {
                     j--;
                     incremented = false;
                 }
@@ -476,7 +498,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
                 setStartKey(ptr, minOffset, i, nSlots, false);
                 return ReturnCode.SEEK_NEXT_USING_HINT;
             } else { // We're in range, check the next slot
-                if (!slots.get(i).get(position[i]).isSingleKey() && i < earliestRangeIndex) {
+                if (!bounds.isSingleKey(position[i]) && i < earliestRangeIndex) {
                     earliestRangeIndex = i;
                 }
                 // If we're past the last slot or we know we're seeking to the next (in
@@ -532,7 +554,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
     }
     
     private int nextPosition(int i) {
-        while (i >= 0 && slots.get(i).get(position[i]).isSingleKey() && (position[i] = (position[i] + 1) % slots.get(i).size()) == 0) {
+        while (i >= 0 && slotBounds[i].isSingleKey(position[i]) && (position[i] = (position[i] + 1) % slots.get(i).size()) == 0) {
             i--;
         }
         return i;
@@ -577,6 +599,108 @@ public class SkipScanFilter extends FilterBase implements Writable {
         return targetKey;
     }
 
+    /**
+     * Upper bounds of the ranges of a slot, copied into a single byte array so that
+     * moving forward within a slot does not go through the {@link KeyRange} objects.
+     * The ranges of a slot are ordered and do not overlap, so the ranges whose upper
+     * bound is less than a key always form a prefix of the slot.
+     */
+    private static final class SlotBounds {
+        private final BytesComparator comparator;
+        private final byte[] upperBytes;
+        // offset of the upper bound of each range in upperBytes, plus the end offset
+        private final int[] upperOffsets;
+        private final boolean[] upperUnbound;
+        private final boolean[] upperInclusive;
+        private final boolean[] singleKey;
+
+        SlotBounds(List<KeyRange> ranges, BytesComparator comparator) {
+            int size = ranges.size();
+            this.comparator = comparator;
+            this.upperOffsets = new int[size + 1];
+            this.upperUnbound = new boolean[size];
+            this.upperInclusive = new boolean[size];
+            this.singleKey = new boolean[size];
+            int length = 0;
+            for (int i = 0; i < size; i++) {
+                KeyRange range = ranges.get(i);
+                upperOffsets[i] = length;
+                upperUnbound[i] = range.upperUnbound();
+                upperInclusive[i] = range.isUpperInclusive();
+                singleKey[i] = range.isSingleKey();
+                length += range.getUpperRange().length;
+            }
+            upperOffsets[size] = length;
+            this.upperBytes = new byte[length];
+            for (int i = 0; i < size; i++) {
+                byte[] upper = ranges.get(i).getUpperRange();
+                System.arraycopy(upper, 0, upperBytes, upperOffsets[i], upper.length);
+            }
+        }
+
+        int size() {
+            return singleKey.length;
+        }
+
+        boolean isSingleKey(int i) {
+            return singleKey[i];
+        }
+
+        /**
+         * Same as {@link KeyRange#compareUpperToLowerBound(ImmutableBytesWritable, BytesComparator)}
+         * for the range at position i.
+         */
+        int compareUpperToLowerBound(int i, ImmutableBytesWritable ptr) {
+            byte[] b = ptr.get();
+            if (upperUnbound[i] || b == KeyRange.UNBOUND) {
+                return 1;
+            }
+            int cmp = comparator.compare(upperBytes, upperOffsets[i], upperOffsets[i + 1] - upperOffsets[i],
+                    b, ptr.getOffset(), ptr.getLength());
+            if (cmp > 0) {
+                return 1;
+            }
+            if (cmp < 0) {
+                return -1;
+            }
+            return upperInclusive[i] ? 0 : -1;
+        }
+
+        /**
+         * Find the first range at or after position from whose upper bound is not less than
+         * the key in ptr, or {@link #size()} if there is none. The key is usually within a
+         * few ranges of the current position, so we gallop forward before doing a binary
+         * search over the last interval.
+         */
+        int seekUpperNotBelow(int from, ImmutableBytesWritable ptr) {
+            int size = size();
+            if (from >= size || compareUpperToLowerBound(from, ptr) >= 0) {
+                return from;
+            }
+            // Invariant: the range at low is below the key, the one at high (if any) is not
+            int low = from;
+            int high = size;
+            int step = 1;
+            while (low + step < size) {
+                if (compareUpperToLowerBound(low + step, ptr) >= 0) {
+                    high = low + step;
+                    break;
+                }
+                low += step;
+                step <<= 1;
+            }
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (compareUpperToLowerBound(mid, ptr) < 0) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            return high;
+        }
+    }
+
     private static final int KEY_RANGE_LENGTH_BITS = 21;
     private static final int SLOT_SPAN_BITS = 32 - KEY_RANGE_LENGTH_BITS;
     
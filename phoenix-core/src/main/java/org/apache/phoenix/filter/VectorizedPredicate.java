@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ColumnExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.DoubleAddExpression;
+import org.apache.phoenix.expression.DoubleMultiplyExpression;
+import org.apache.phoenix.expression.DoubleSubtractExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.LongAddExpression;
+import org.apache.phoenix.expression.LongMultiplyExpression;
+import org.apache.phoenix.expression.LongSubtractExpression;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.types.PUnsignedDouble;
+import org.apache.phoenix.schema.types.PUnsignedFloat;
+import org.apache.phoenix.schema.types.PUnsignedInt;
+import org.apache.phoenix.schema.types.PUnsignedLong;
+import org.apache.phoenix.schema.types.PUnsignedSmallint;
+import org.apache.phoenix.schema.types.PUnsignedTinyint;
+import org.apache.phoenix.util.ByteUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ *
+ * WHERE clause expression evaluated over a batch of rows, in place of a
+ * {@link BooleanExpressionFilter} evaluating it on every row. The numeric columns read
+ * by the expression are decoded into primitive vectors as the rows are added, after which
+ * its comparisons, arithmetic and AND are evaluated over the vectors in tight loops.
+ *
+ * Only an AND of comparisons between operands of the same numeric type is vectorized,
+ * where an operand is a column, a constant, or a sum, difference or product of operands.
+ * Such an expression is TRUE exactly when all of its comparisons are, which requires every
+ * operand to be set, so a row is selected under the same conditions as with the filter,
+ * which treats NULL as FALSE. A row holding a value of an unexpected length is evaluated
+ * through the expression itself.
+ *
+ * Like the expression it is compiled from, a vectorized predicate may only be used by a
+ * single thread.
+ *
+ */
+public final class VectorizedPredicate {
+    private final Expression expression;
+    private final Comparison[] comparisons;
+    private final Column[] columns;
+    // Rows to evaluate through the expression
+    private final boolean[] interpreted;
+    private final boolean[] selected;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private boolean hasInterpreted;
+
+    private VectorizedPredicate(Expression expression, Comparison[] comparisons, Column[] columns, int batchSize) {
+        this.expression = expression;
+        this.comparisons = comparisons;
+        this.columns = columns;
+        this.interpreted = new boolean[batchSize];
+        this.selected = new boolean[batchSize];
+    }
+
+    /**
+     * @return true if the type is fixed width and its values are decoded as longs
+     */
+    public static boolean isIntegral(PDataType type) {
+        return type == PLong.INSTANCE || type == PInteger.INSTANCE
+                || type == PSmallint.INSTANCE || type == PTinyint.INSTANCE
+                || type == PUnsignedLong.INSTANCE || type == PUnsignedInt.INSTANCE
+                || type == PUnsignedSmallint.INSTANCE || type == PUnsignedTinyint.INSTANCE;
+    }
+
+    /**
+     * @return true if the type is fixed width and its values are decoded as doubles
+     */
+    public static boolean isFloatingPoint(PDataType type) {
+        return type == PDouble.INSTANCE || type == PFloat.INSTANCE
+                || type == PUnsignedDouble.INSTANCE || type == PUnsignedFloat.INSTANCE;
+    }
+
+    /**
+     * Compile a WHERE clause expression
+     * @param expression the WHERE clause expression
+     * @param batchSize the maximum number of rows evaluated at a time
+     * @return the vectorized predicate, or null if the expression cannot be vectorized
+     */
+    public static VectorizedPredicate compile(Expression expression, int batchSize) {
+        List<Expression> conjuncts = Lists.newArrayList();
+        addConjuncts(expression, conjuncts);
+        List<Column> columns = Lists.newArrayList();
+        Comparison[] comparisons = new Comparison[conjuncts.size()];
+        for (int i = 0; i < comparisons.length; i++) {
+            Expression conjunct = conjuncts.get(i);
+            if (conjunct.getClass() != ComparisonExpression.class) {
+                return null;
+            }
+            Expression lhs = conjunct.getChildren().get(0);
+            Expression rhs = conjunct.getChildren().get(1);
+            // Values of the same type compare the same way as their serialized form
+            if (lhs.getDataType() != rhs.getDataType()) {
+                return null;
+            }
+            Operand left = compileOperand(lhs, columns, batchSize);
+            Operand right = left == null ? null : compileOperand(rhs, columns, batchSize);
+            if (right == null) {
+                return null;
+            }
+            comparisons[i] = new Comparison(left, ((ComparisonExpression)conjunct).getFilterOp(), right);
+        }
+        return new VectorizedPredicate(expression, comparisons, columns.toArray(new Column[columns.size()]), batchSize);
+    }
+
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression.getClass() == AndExpression.class) {
+            for (Expression child : expression.getChildren()) {
+                addConjuncts(child, conjuncts);
+            }
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+
+    private static Operand compileOperand(Expression expression, List<Column> columns, int batchSize) {
+        PDataType type = expression.getDataType();
+        if (type == null || !(isIntegral(type) || isFloatingPoint(type))) {
+            return null;
+        }
+        boolean isDouble = isFloatingPoint(type);
+        if (expression instanceof LiteralExpression) {
+            if (!expression.isStateless() || !expression.evaluate(null, new ImmutableBytesWritable())
+                    || ((LiteralExpression)expression).getValue() == null) {
+                return null;
+            }
+            return new Constant(isDouble, ((Number)((LiteralExpression)expression).getValue()), batchSize);
+        }
+        if (expression instanceof ColumnExpression) {
+            Column column = new Column(expression, batchSize);
+            columns.add(column);
+            return column;
+        }
+        Class<? extends Expression> clazz = expression.getClass();
+        int op;
+        if (clazz == LongAddExpression.class || clazz == DoubleAddExpression.class) {
+            op = Arithmetic.ADD;
+        } else if (clazz == LongSubtractExpression.class || clazz == DoubleSubtractExpression.class) {
+            op = Arithmetic.SUBTRACT;
+        } else if (clazz == LongMultiplyExpression.class || clazz == DoubleMultiplyExpression.class) {
+            op = Arithmetic.MULTIPLY;
+        } else {
+            return null;
+        }
+        List<Expression> children = expression.getChildren();
+        Operand[] operands = new Operand[children.size()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = compileOperand(children.get(i), columns, batchSize);
+            // Long arithmetic only decodes its children as longs
+            if (operands[i] == null || (!isDouble && operands[i].isDouble)) {
+                return null;
+            }
+        }
+        return new Arithmetic(isDouble, op, operands, batchSize);
+    }
+
+    /**
+     * Decode the columns of a row
+     * @param tuple the row
+     * @param row the index of the row in the batch
+     */
+    public void add(Tuple tuple, int row) {
+        boolean isInterpreted = false;
+        for (Column column : columns) {
+            isInterpreted |= !column.add(tuple, row);
+        }
+        interpreted[row] = isInterpreted;
+        hasInterpreted |= isInterpreted;
+    }
+
+    /**
+     * Evaluate the predicate over the rows added to the batch
+     * @param rows the rows of the batch, in the order they were added
+     * @param rowCount the number of rows in the batch
+     * @param selection filled with the indexes of the rows that match, in increasing order
+     * @return the number of rows that match
+     */
+    public int select(Tuple[] rows, int rowCount, int[] selection) {
+        Arrays.fill(selected, 0, rowCount, true);
+        for (Comparison comparison : comparisons) {
+            comparison.select(rowCount, selected);
+        }
+        if (hasInterpreted) {
+            for (int i = 0; i < rowCount; i++) {
+                if (interpreted[i]) {
+                    selected[i] = evaluate(rows[i]);
+                    interpreted[i] = false;
+                }
+            }
+            hasInterpreted = false;
+        }
+        int count = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (selected[i]) {
+                selection[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Evaluate the predicate on a single row through the expression, the way
+     * {@link BooleanExpressionFilter} evaluates it
+     * @return true if the row matches, with NULL treated as FALSE
+     */
+    public boolean evaluate(Tuple tuple) {
+        expression.reset();
+        try {
+            if (!expression.evaluate(tuple, ptr)) {
+                return false;
+            }
+        } catch (IllegalDataException e) {
+            return false;
+        }
+        return Boolean.TRUE.equals(expression.getDataType().toObject(ptr));
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    /**
+     * Vector of the values of an operand, with a flag for the rows where it is not set
+     */
+    private abstract static class Operand {
+        final boolean isDouble;
+        final long[] longs;
+        final double[] doubles;
+        final boolean[] nulls;
+
+        Operand(boolean isDouble, int batchSize) {
+            this.isDouble = isDouble;
+            this.longs = isDouble ? null : new long[batchSize];
+            this.doubles = isDouble ? new double[batchSize] : null;
+            this.nulls = new boolean[batchSize];
+        }
+
+        /**
+         * Compute the values of the first rows of the batch
+         */
+        void evaluate(int rowCount) {
+        }
+    }
+
+    private static final class Column extends Operand {
+        private final Expression expression;
+        private final PDataType.PDataCodec codec;
+        private final SortOrder sortOrder;
+        private final int byteSize;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+        Column(Expression expression, int batchSize) {
+            super(isFloatingPoint(expression.getDataType()), batchSize);
+            this.expression = expression;
+            this.codec = expression.getDataType().getCodec();
+            this.sortOrder = expression.getSortOrder();
+            this.byteSize = expression.getDataType().getByteSize();
+        }
+
+        /**
+         * @return false if the value of the row has an unexpected length
+         */
+        boolean add(Tuple tuple, int row) {
+            if (!expression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                nulls[row] = true;
+                return true;
+            }
+            if (ptr.getLength() != byteSize) {
+                nulls[row] = true;
+                return false;
+            }
+            nulls[row] = false;
+            if (isDouble) {
+                doubles[row] = codec.decodeDouble(ptr.get(), ptr.getOffset(), sortOrder);
+            } else {
+                longs[row] = codec.decodeLong(ptr.get(), ptr.getOffset(), sortOrder);
+            }
+            return true;
+        }
+    }
+
+    private static final class Constant extends Operand {
+        Constant(boolean isDouble, Number value, int batchSize) {
+            super(isDouble, batchSize);
+            if (isDouble) {
+                Arrays.fill(doubles, value.doubleValue());
+            } else {
+                Arrays.fill(longs, value.longValue());
+            }
+        }
+    }
+
+    /**
+     * Sum, difference or product of operands, computed like
+     * {@link LongAddExpression} or {@link DoubleAddExpression} and their siblings:
+     * long arithmetic wraps around on overflow, and double arithmetic is not set
+     * if any operand is NaN or infinite.
+     */
+    private static final class Arithmetic extends Operand {
+        static final int ADD = 0;
+        static final int SUBTRACT = 1;
+        static final int MULTIPLY = 2;
+
+        private final int op;
+        private final Operand[] children;
+
+        Arithmetic(boolean isDouble, int op, Operand[] children, int batchSize) {
+            super(isDouble, batchSize);
+            this.op = op;
+            this.children = children;
+        }
+
+        @Override
+        void evaluate(int rowCount) {
+            for (Operand child : children) {
+                child.evaluate(rowCount);
+            }
+            Arrays.fill(nulls, 0, rowCount, false);
+            if (isDouble) {
+                evaluateDoubles(rowCount);
+            } else {
+                evaluateLongs(rowCount);
+            }
+        }
+
+        private void evaluateLongs(int rowCount) {
+            Arrays.fill(longs, 0, rowCount, op == MULTIPLY ? 1 : 0);
+            for (int c = 0; c < children.length; c++) {
+                long[] values = children[c].longs;
+                boolean[] childNulls = children[c].nulls;
+                if (op == MULTIPLY) {
+                    for (int i = 0; i < rowCount; i++) {
+                        longs[i] *= values[i];
+                    }
+                } else if (op == SUBTRACT && c > 0) {
+                    for (int i = 0; i < rowCount; i++) {
+                        longs[i] -= values[i];
+                    }
+                } else {
+                    for (int i = 0; i < rowCount; i++) {
+                        longs[i] += values[i];
+                    }
+                }
+                for (int i = 0; i < rowCount; i++) {
+                    nulls[i] |= childNulls[i];
+                }
+            }
+        }
+
+        private void evaluateDoubles(int rowCount) {
+            // Start from 0.0 when adding, like DoubleAddExpression, as 0.0 + -0.0 is 0.0
+            Arrays.fill(doubles, 0, rowCount, op == MULTIPLY ? 1.0 : 0.0);
+            for (int c = 0; c < children.length; c++) {
+                Operand child = children[c];
+                for (int i = 0; i < rowCount; i++) {
+                    double value = child.isDouble ? child.doubles[i] : child.longs[i];
+                    if (op == MULTIPLY) {
+                        doubles[i] *= value;
+                    } else if (op == SUBTRACT && c == 0) {
+                        doubles[i] = value;
+                    } else if (op == SUBTRACT) {
+                        doubles[i] -= value;
+                    } else {
+                        doubles[i] += value;
+                    }
+                    nulls[i] |= child.nulls[i] || Double.isNaN(value) || Double.isInfinite(value);
+                }
+            }
+        }
+    }
+
+    private static final class Comparison {
+        private final Operand left;
+        private final CompareOp op;
+        private final Operand right;
+
+        Comparison(Operand left, CompareOp op, Operand right) {
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        void select(int rowCount, boolean[] selected) {
+            left.evaluate(rowCount);
+            right.evaluate(rowCount);
+            boolean[] leftNulls = left.nulls;
+            boolean[] rightNulls = right.nulls;
+            if (left.isDouble) {
+                double[] lhs = left.doubles;
+                double[] rhs = right.doubles;
+                // Double.compare matches the byte ordering of the floating point types
+                for (int i = 0; i < rowCount; i++) {
+                    selected[i] &= !leftNulls[i] && !rightNulls[i]
+                            && ByteUtil.compare(op, Double.compare(lhs[i], rhs[i]));
+                }
+            } else {
+                long[] lhs = left.longs;
+                long[] rhs = right.longs;
+                for (int i = 0; i < rowCount; i++) {
+                    selected[i] &= !leftNulls[i] && !rightNulls[i]
+                            && ByteUtil.compare(op, Long.compare(lhs[i], rhs[i]));
+                }
+            }
+        }
+    }
+}
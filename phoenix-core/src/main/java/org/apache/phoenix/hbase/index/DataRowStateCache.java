@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Weigher;
+import org.apache.phoenix.util.SizedUtil;
+
+/**
+ * Size bounded cache of the latest states of the data rows of a region, as left by the
+ * mutations that went through {@link IndexRegionObserver}. Looking up a row here saves the
+ * point lookup otherwise needed to get the current state of the row before building its
+ * index updates.
+ * <p>
+ * A cached state must always be the state a scan of the region would return. Row states are
+ * only added by the batches that wrote them, while holding the locks of their rows, and any
+ * other write to a row must invalidate it. As a batch may read a row before a concurrent
+ * invalidation and add it after, the row states of a batch are only added when no
+ * invalidation happened since the batch read its rows, see {@link #getGeneration()}.
+ * <p>
+ * The cells of a state that are older than the minimum time to live of the column families
+ * may have expired, in which case the state is discarded.
+ */
+public class DataRowStateCache {
+
+    private final Cache<ImmutableBytesPtr, RowState> cache;
+    private final long timeToLive;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum size in bytes of the cached row states
+     * @param timeToLive the minimum time to live in milliseconds of the cells of the region, or
+     * {@link Long#MAX_VALUE} when cells never expire
+     */
+    public DataRowStateCache(long maxSize, long timeToLive) {
+        this.timeToLive = timeToLive;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher(new Weigher<ImmutableBytesPtr, RowState>() {
+                    @Override
+                    public int weigh(ImmutableBytesPtr key, RowState rowState) {
+                        return (int) Math.min(Integer.MAX_VALUE,
+                                SizedUtil.IMMUTABLE_BYTES_PTR_SIZE + key.getLength() + rowState.state.heapSize());
+                    }
+                })
+                .build();
+    }
+
+    private static class RowState {
+        private final Put state;
+        private final long minTimestamp;
+
+        RowState(Put state, long minTimestamp) {
+            this.state = state;
+            this.minTimestamp = minTimestamp;
+        }
+    }
+
+    /**
+     * Get the generation of the cache, to be passed to {@link #putAll(Map, long, long)} once
+     * the row states read from the region or from the cache have been written.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the cached state of a row.
+     * @param rowKey the row key
+     * @param now the current time, used to check whether cells may have expired
+     * @return the state of the row, which must not be modified, or null if not cached
+     */
+    public Put get(ImmutableBytesPtr rowKey, long now) {
+        RowState rowState = cache.getIfPresent(rowKey);
+        if (rowState == null) {
+            return null;
+        }
+        if (timeToLive != Long.MAX_VALUE && rowState.minTimestamp <= now - timeToLive) {
+            cache.invalidate(rowKey);
+            return null;
+        }
+        return rowState.state;
+    }
+
+    /**
+     * Cache the states of rows written by a batch. The states are copied, so that they do not
+     * reference the buffers of the mutations or of the scans they come from.
+     * @param rowStates the states of the rows after the batch was written
+     * @param generation the generation of the cache when the batch read the rows
+     * @param timestamp the timestamp of the cells written by the batch. States having more
+     * recent cells are not cached, as the cells of the batch may not be the visible ones.
+     * Rows whose states are not cached are removed, as their previous states are stale.
+     */
+    public void putAll(Map<ImmutableBytesPtr, Put> rowStates, long generation, long timestamp)
+            throws IOException {
+        if (this.generation.get() != generation) {
+            for (ImmutableBytesPtr rowKey : rowStates.keySet()) {
+                cache.invalidate(rowKey);
+            }
+            return;
+        }
+        for (Map.Entry<ImmutableBytesPtr, Put> entry : rowStates.entrySet()) {
+            RowState rowState = copy(entry.getValue(), timestamp);
+            if (rowState == null) {
+                cache.invalidate(entry.getKey());
+            } else {
+                cache.put(new ImmutableBytesPtr(entry.getKey().copyBytesIfNecessary()), rowState);
+            }
+        }
+        // A row may have been invalidated between the check above and the put
+        if (this.generation.get() != generation) {
+            for (ImmutableBytesPtr rowKey : rowStates.keySet()) {
+                cache.invalidate(rowKey);
+            }
+        }
+    }
+
+    private static RowState copy(Put state, long timestamp) throws IOException {
+        Put copy = new Put(state.getRow());
+        long minTimestamp = Long.MAX_VALUE;
+        for (List<Cell> cells : state.getFamilyCellMap().values()) {
+            for (Cell cell : cells) {
+                long ts = cell.getTimestamp();
+                if (ts > timestamp) {
+                    return null;
+                }
+                if (ts < minTimestamp) {
+                    minTimestamp = ts;
+                }
+                copy.add(KeyValueUtil.copyToNewKeyValue(cell));
+            }
+        }
+        return new RowState(copy, minTimestamp);
+    }
+
+    /**
+     * Invalidate the state of a row written without going through the cache.
+     */
+    public void invalidate(ImmutableBytesPtr rowKey) {
+        generation.incrementAndGet();
+        cache.invalidate(rowKey);
+    }
+
+    /**
+     * Invalidate the state of a row written by a batch that does not cache it. Unlike
+     * {@link #invalidate(ImmutableBytesPtr)}, the row states of other batches are still
+     * cached, so this must only be called while holding the lock of the row.
+     */
+    public void remove(ImmutableBytesPtr rowKey) {
+        cache.invalidate(rowKey);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
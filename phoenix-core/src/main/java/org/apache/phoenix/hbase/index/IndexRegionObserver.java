@@ -40,8 +40,8 @@ import org.apache.hadoop.hbase.TagUtil;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ArrayListMultimap;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ListMultimap;
-import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
@@ -50,6 +50,7 @@ import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HConstants.OperationStatusCode;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Increment;
@@ -63,10 +64,15 @@ import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.regionserver.FlushLifeCycleTracker;
 import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
 import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.wal.WALEdit;
@@ -77,7 +83,6 @@ import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.coprocessor.DelegateRegionCoprocessorEnvironment;
 import org.apache.phoenix.coprocessor.GlobalIndexRegionScanner;
 import org.apache.phoenix.filter.SkipScanFilter;
-import org.apache.phoenix.hbase.index.LockManager.RowLock;
 import org.apache.phoenix.hbase.index.builder.FatalIndexBuildingFailureException;
 import org.apache.phoenix.hbase.index.builder.IndexBuildManager;
 import org.apache.phoenix.hbase.index.builder.IndexBuilder;
@@ -92,7 +97,6 @@ import org.apache.phoenix.hbase.index.write.LazyParallelWriterIndexCommitter;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.index.PhoenixIndexMetaData;
 import org.apache.phoenix.query.KeyRange;
-import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.trace.TracingUtils;
 import org.apache.phoenix.trace.util.NullSpan;
@@ -200,8 +204,17 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
       private ListMultimap<HTableInterfaceReference, Mutation> postIndexUpdates;
       // The collection of candidate index mutations that will be applied after the data table mutations
       private ListMultimap<HTableInterfaceReference, Pair<Mutation, byte[]>> indexUpdates;
-      private List<RowLock> rowLocks = Lists.newArrayListWithExpectedSize(QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE);
       private HashSet<ImmutableBytesPtr> rowsToLock = new HashSet<>();
+      // The lock stripes of the rows to lock, computed when the rows are locked for the first time
+      private int[] rowLockStripes;
+      private boolean rowsLocked = false;
+      // The generation of the data row state cache when the current row states were read, and the
+      // timestamp of the data table mutations
+      private long rowStateCacheGeneration;
+      private long rowStateCacheTimestamp;
+      // The rows written without their next states being prepared, whose cached states are
+      // invalidated before and after they are written
+      private List<ImmutableBytesPtr> uncachedRows;
       // The current and next states of the data rows corresponding to the pending mutations
       private HashMap<ImmutableBytesPtr, Pair<Put, Put>> dataRowStates;
       // The previous concurrent batch contexts
@@ -265,7 +278,9 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
   protected IndexWriter postWriter;
 
   protected IndexBuildManager builder;
-  private LockManager lockManager;
+  private StripedLockManager lockManager;
+  // The cache of the latest data row states, null if disabled
+  private DataRowStateCache dataRowStateCache;
 
   // The collection of pending data table rows
   private Map<ImmutableBytesPtr, PendingRow> pendingRows = new ConcurrentHashMap<>();
@@ -281,6 +296,10 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
   private String dataTableName;
 
   private static final int DEFAULT_ROWLOCK_WAIT_DURATION = 30000;
+  private static final String ROWLOCK_STRIPES_KEY = "phoenix.index.rowlock.stripes";
+  private static final int DEFAULT_ROWLOCK_STRIPES = 4096;
+  public static final String ROW_STATE_CACHE_SIZE_KEY = "phoenix.index.rowstate.cache.size";
+  private static final long DEFAULT_ROW_STATE_CACHE_SIZE = 0;
   private static final int DEFAULT_CONCURRENT_MUTATION_WAIT_DURATION_IN_MS = 100;
 
   @Override
@@ -315,7 +334,14 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
 
         this.rowLockWaitDuration = env.getConfiguration().getInt("hbase.rowlock.wait.duration",
                 DEFAULT_ROWLOCK_WAIT_DURATION);
-          this.lockManager = new LockManager();
+          this.lockManager = new StripedLockManager(env.getConfiguration().getInt(ROWLOCK_STRIPES_KEY,
+                  DEFAULT_ROWLOCK_STRIPES));
+          long rowStateCacheSize = env.getConfiguration().getLong(ROW_STATE_CACHE_SIZE_KEY,
+                  DEFAULT_ROW_STATE_CACHE_SIZE);
+          if (rowStateCacheSize > 0) {
+              this.dataRowStateCache = new DataRowStateCache(rowStateCacheSize,
+                      getMinTimeToLive(env.getRegion().getTableDescriptor()));
+          }
           this.concurrentMutationWaitDuration = env.getConfiguration().getInt("phoenix.index.concurrent.wait.duration.ms",
                   DEFAULT_CONCURRENT_MUTATION_WAIT_DURATION_IN_MS);
           // Metrics impl for the Indexer -- avoiding unnecessary indirection for hadoop-1/2 compat
@@ -338,6 +364,14 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
           INDEXER_PRE_INCREMENT_SLOW_THRESHOLD_DEFAULT);
   }
 
+  private static long getMinTimeToLive(TableDescriptor tableDescriptor) {
+      int minTimeToLive = HConstants.FOREVER;
+      for (ColumnFamilyDescriptor family : tableDescriptor.getColumnFamilies()) {
+          minTimeToLive = Math.min(minTimeToLive, family.getTimeToLive());
+      }
+      return minTimeToLive == HConstants.FOREVER ? Long.MAX_VALUE : minTimeToLive * 1000L;
+  }
+
   private String getCallTooSlowMessage(String callName, long duration, long threshold) {
       StringBuilder sb = new StringBuilder(64);
       sb.append("(callTooSlow) ").append(callName).append(" duration=").append(duration);
@@ -461,21 +495,25 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
   }
 
   private void lockRows(BatchMutateContext context) throws IOException {
-      for (ImmutableBytesPtr rowKey : context.rowsToLock) {
-          context.rowLocks.add(lockManager.lockRow(rowKey, rowLockWaitDuration));
+      if (context.rowLockStripes == null) {
+          context.rowLockStripes = lockManager.getStripes(context.rowsToLock);
       }
+      long start = EnvironmentEdgeManager.currentTimeMillis();
+      lockManager.lockStripes(context.rowLockStripes, rowLockWaitDuration);
+      context.rowsLocked = true;
+      metricSource.updateRowLockWaitTime(dataTableName,
+          EnvironmentEdgeManager.currentTimeMillis() - start);
   }
 
     private void unlockRows(BatchMutateContext context) throws IOException {
-        for (RowLock rowLock : context.rowLocks) {
-            rowLock.release();
+        if (context.rowsLocked) {
+            lockManager.unlockStripes(context.rowLockStripes);
+            context.rowsLocked = false;
         }
-        context.rowLocks.clear();
     }
 
   private void populatePendingRows(BatchMutateContext context) {
-      for (RowLock rowLock : context.rowLocks) {
-          ImmutableBytesPtr rowKey = rowLock.getRowKey();
+      for (ImmutableBytesPtr rowKey : context.rowsToLock) {
           PendingRow pendingRow = pendingRows.get(rowKey);
           if (pendingRow == null) {
               pendingRows.put(rowKey, new PendingRow(context));
@@ -616,7 +654,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
             return;
         }
         // Retrieve the current row states from the data table
-        getCurrentRowStates(c, context);
+        getCurrentRowStates(c, context, now);
         applyPendingPutMutations(miniBatchOp, context, now);
         applyPendingDeleteMutations(miniBatchOp, context);
     }
@@ -670,9 +708,14 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
      */
 
     private void getCurrentRowStates(ObserverContext<RegionCoprocessorEnvironment> c,
-                                     BatchMutateContext context) throws IOException {
+                                     BatchMutateContext context, long now) throws IOException {
         Set<KeyRange> keys = new HashSet<KeyRange>(context.rowsToLock.size());
         context.dataRowStates = new HashMap<ImmutableBytesPtr, Pair<Put, Put>>(context.rowsToLock.size());
+        if (dataRowStateCache != null) {
+            context.rowStateCacheGeneration = dataRowStateCache.getGeneration();
+            context.rowStateCacheTimestamp = now;
+        }
+        long cacheHits = 0;
         for (ImmutableBytesPtr rowKeyPtr : context.rowsToLock) {
             PendingRow pendingRow = pendingRows.get(rowKeyPtr);
             if (pendingRow != null && pendingRow.getLastContext().getCurrentPhase() == BatchMutatePhase.PRE) {
@@ -689,7 +732,21 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
                 }
             }
             else {
-                keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get()));
+                Put put = dataRowStateCache == null ? null : dataRowStateCache.get(rowKeyPtr, now);
+                if (put != null) {
+                    context.dataRowStates.put(rowKeyPtr, new Pair<Put, Put>(put, new Put(put)));
+                    cacheHits++;
+                } else {
+                    keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get()));
+                }
+            }
+        }
+        if (dataRowStateCache != null) {
+            if (cacheHits > 0) {
+                metricSource.incrementDataRowStateCacheHits(dataTableName, cacheHits);
+            }
+            if (!keys.isEmpty()) {
+                metricSource.incrementDataRowStateCacheMisses(dataTableName, keys.size());
             }
         }
         if (keys.isEmpty()) {
@@ -926,10 +983,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
             // we need to remove reference counts and locks for the rows of this batch
             removePendingRows(context);
             context.indexUpdates.clear();
-            for (RowLock rowLock : context.rowLocks) {
-                rowLock.release();
-            }
-            context.rowLocks.clear();
+            unlockRows(context);
             throw new IOException("One of the previous concurrent mutations has not completed. " +
                     "The batch needs to be retried " + table.getNameAsString());
         }
@@ -941,6 +995,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
         PhoenixIndexMetaData indexMetaData = getPhoenixIndexMetaData(c, miniBatchOp);
         BatchMutateContext context = new BatchMutateContext(indexMetaData.getClientVersion());
         setBatchMutateContext(c, context);
+        invalidateDataRowStates(miniBatchOp, indexMetaData, context);
         // Need to add cell tags to Delete Marker before we do any index processing
         // since we add tags to tables which doesn't have indexes also.
         setDeleteAttributes(miniBatchOp);
@@ -975,7 +1030,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
             // Sleep for one millisecond if we have prepared the index updates in less than 1 ms. The sleep is necessary to
             // get different timestamps for concurrent batches that share common rows. It is very rare that the index updates
             // can be prepared in less than one millisecond
-            if (!context.rowLocks.isEmpty() && now == EnvironmentEdgeManager.currentTimeMillis()) {
+            if (context.rowsLocked && now == EnvironmentEdgeManager.currentTimeMillis()) {
                 Thread.sleep(1);
                 LOG.debug("slept 1ms for " + table.getNameAsString());
             }
@@ -1055,6 +1110,39 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
       this.batchMutateContext.remove();
   }
 
+  @Override
+  public void postFlush(ObserverContext<RegionCoprocessorEnvironment> c, FlushLifeCycleTracker tracker)
+          throws IOException {
+      if (dataRowStateCache != null) {
+          dataRowStateCache.invalidateAll();
+      }
+  }
+
+  @Override
+  public void postCompact(ObserverContext<RegionCoprocessorEnvironment> c, Store store, StoreFile resultFile,
+                          CompactionLifeCycleTracker tracker, CompactionRequest request) throws IOException {
+      if (dataRowStateCache != null) {
+          dataRowStateCache.invalidateAll();
+      }
+  }
+
+  @Override
+  public void preBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> c,
+                               List<Pair<byte[], String>> familyPaths) throws IOException {
+      if (dataRowStateCache != null) {
+          dataRowStateCache.invalidateAll();
+      }
+  }
+
+  @Override
+  public void postBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> c,
+                                List<Pair<byte[], String>> stagingFamilyPaths, Map<byte[], List<Path>> finalPaths)
+          throws IOException {
+      if (dataRowStateCache != null) {
+          dataRowStateCache.invalidateAll();
+      }
+  }
+
   @Override
   public void postBatchMutateIndispensably(ObserverContext<RegionCoprocessorEnvironment> c,
       MiniBatchOperationInProgress<Mutation> miniBatchOp, final boolean success) throws IOException {
@@ -1076,6 +1164,10 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
                   countDownLatch.countDown();
               }
           }
+          if (success) {
+              updateDataRowStateCache(miniBatchOp, context);
+          }
+          invalidateUncachedRows(context);
           unlockRows(context);
           this.builder.batchCompleted(miniBatchOp);
 
@@ -1087,6 +1179,93 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
        }
   }
 
+  /**
+   * Invalidate the cached states of the rows that are written without their next states being
+   * prepared, i.e., the rows not enabled for indexing and the rows of tables without global indexes
+   */
+  private void invalidateDataRowStates(MiniBatchOperationInProgress<Mutation> miniBatchOp,
+                                       PhoenixIndexMetaData indexMetaData, BatchMutateContext context) {
+      if (dataRowStateCache == null) {
+          return;
+      }
+      boolean hasGlobalIndex = hasGlobalIndex(indexMetaData);
+      for (int i = 0; i < miniBatchOp.size(); i++) {
+          if (miniBatchOp.getOperationStatus(i) == IGNORE) {
+              continue;
+          }
+          Mutation m = miniBatchOp.getOperation(i);
+          if (!hasGlobalIndex || !this.builder.isEnabled(m)) {
+              if (context.uncachedRows == null) {
+                  context.uncachedRows = new ArrayList<>();
+              }
+              context.uncachedRows.add(new ImmutableBytesPtr(m.getRow()));
+          }
+      }
+      if (context.uncachedRows != null && dataRowStateCache.size() > 0) {
+          for (ImmutableBytesPtr rowKey : context.uncachedRows) {
+              dataRowStateCache.invalidate(rowKey);
+          }
+      }
+  }
+
+  /**
+   * Invalidate the cached states of the rows written without their next states being prepared
+   * again, once the writes are visible. These rows are not necessarily locked, so a concurrent
+   * batch may have read their previous states and cached its next states after they were
+   * invalidated in preBatchMutate(). The invalidation bumps the generation of the cache, so that
+   * such a batch cannot cache the states after this point either. This is done whether the cache
+   * is empty or not.
+   */
+  private void invalidateUncachedRows(BatchMutateContext context) {
+      if (dataRowStateCache == null || context.uncachedRows == null) {
+          return;
+      }
+      for (ImmutableBytesPtr rowKey : context.uncachedRows) {
+          dataRowStateCache.invalidate(rowKey);
+      }
+  }
+
+  /**
+   * Cache the next states of the rows written by this batch. Only the rows that are written by
+   * puts only are cached, as the next states of the rows with deletes are not necessarily the
+   * states a scan would return. The rows whose current states were taken from a concurrent batch
+   * are not cached either. This is called while the rows are still locked.
+   */
+  private void updateDataRowStateCache(MiniBatchOperationInProgress<Mutation> miniBatchOp,
+                                       BatchMutateContext context) throws IOException {
+      if (dataRowStateCache == null || context.dataRowStates == null || !context.rowsLocked) {
+          return;
+      }
+      Map<ImmutableBytesPtr, Put> rowStates = new HashMap<>(context.dataRowStates.size());
+      Set<ImmutableBytesPtr> excludedRows = null;
+      for (int i = 0; i < miniBatchOp.size(); i++) {
+          OperationStatus status = miniBatchOp.getOperationStatus(i);
+          Mutation m = miniBatchOp.getOperation(i);
+          if (status == IGNORE || !this.builder.isEnabled(m)) {
+              continue;
+          }
+          ImmutableBytesPtr rowKey = new ImmutableBytesPtr(m.getRow());
+          if (excludedRows != null && excludedRows.contains(rowKey)) {
+              continue;
+          }
+          Put nextDataRowState = context.getNextDataRowState(rowKey);
+          if (m instanceof Put && status.getOperationStatusCode() == OperationStatusCode.SUCCESS
+                  && nextDataRowState != null
+                  && (context.lastConcurrentBatchContext == null
+                          || !context.lastConcurrentBatchContext.containsKey(rowKey))) {
+              rowStates.put(rowKey, nextDataRowState);
+          } else {
+              if (excludedRows == null) {
+                  excludedRows = new HashSet<>();
+              }
+              excludedRows.add(rowKey);
+              rowStates.remove(rowKey);
+              dataRowStateCache.remove(rowKey);
+          }
+      }
+      dataRowStateCache.putAll(rowStates, context.rowStateCacheGeneration, context.rowStateCacheTimestamp);
+  }
+
   private void doPost(ObserverContext<RegionCoprocessorEnvironment> c, BatchMutateContext context) throws IOException {
       long start = EnvironmentEdgeManager.currentTimeMillis();
 
@@ -1131,8 +1310,11 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
   }
 
   private void removePendingRows(BatchMutateContext context) {
-      for (RowLock rowLock : context.rowLocks) {
-          ImmutableBytesPtr rowKey = rowLock.getRowKey();
+      // The pending rows are only updated while holding the locks of their rows
+      if (!context.rowsLocked) {
+          return;
+      }
+      for (ImmutableBytesPtr rowKey : context.rowsToLock) {
           PendingRow pendingRow = pendingRows.get(rowKey);
           if (pendingRow != null) {
               pendingRow.remove();
@@ -1161,7 +1343,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
           // Remove all locks as they are already unlocked. There is no need to unlock them again later when
           // postBatchMutateIndispensably() is called
           removePendingRows(context);
-          context.rowLocks.clear();
+          context.rowsLocked = false;
           rethrowIndexingException(e);
       }
       throw new RuntimeException(
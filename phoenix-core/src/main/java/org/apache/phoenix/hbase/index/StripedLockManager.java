@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
+import org.apache.htrace.Trace;
+import org.apache.htrace.TraceScope;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages row locks as a fixed table of lock stripes, each row being guarded by the stripe
+ * its row key hashes to. Unlike {@link LockManager}, no object is allocated per locked row:
+ * the stripes of a batch are computed once into a sorted array of distinct stripe indexes,
+ * and the whole batch is then locked and unlocked with that array. As every batch acquires
+ * its stripes in ascending order, two batches can never deadlock on each other.
+ * <p>
+ * Rows sharing a stripe are locked together, so the number of stripes trades the memory of
+ * the table against false contention between concurrent batches. The locks of a stripe are
+ * created the first time it is used.
+ */
+public class StripedLockManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedLockManager.class);
+    private static final int MAX_STRIPES = 1 << 30;
+
+    private final AtomicReferenceArray<ReentrantLock> locks;
+    private final int mask;
+
+    /**
+     * @param stripeCount the number of lock stripes, rounded up to a power of two
+     */
+    public StripedLockManager(int stripeCount) {
+        int size = stripeCount <= 1 ? 1
+                : stripeCount >= MAX_STRIPES ? MAX_STRIPES : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.locks = new AtomicReferenceArray<ReentrantLock>(size);
+        this.mask = size - 1;
+    }
+
+    public int getStripeCount() {
+        return locks.length();
+    }
+
+    /**
+     * Get the stripes guarding the given rows.
+     * @param rowKeys the row keys
+     * @return the distinct stripe indexes of the rows, in ascending order
+     */
+    public int[] getStripes(Collection<ImmutableBytesPtr> rowKeys) {
+        int[] stripes = new int[rowKeys.size()];
+        int i = 0;
+        for (ImmutableBytesPtr rowKey : rowKeys) {
+            stripes[i++] = getStripe(rowKey);
+        }
+        Arrays.sort(stripes);
+        int count = 0;
+        for (i = 0; i < stripes.length; i++) {
+            if (count == 0 || stripes[i] != stripes[count - 1]) {
+                stripes[count++] = stripes[i];
+            }
+        }
+        return count == stripes.length ? stripes : Arrays.copyOf(stripes, count);
+    }
+
+    int getStripe(ImmutableBytesPtr rowKey) {
+        // Spread the bits of the hash code, as only its low bits select the stripe
+        int h = rowKey.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & mask;
+    }
+
+    private ReentrantLock getLock(int stripe) {
+        ReentrantLock lock = locks.get(stripe);
+        if (lock == null) {
+            lock = new ReentrantLock(true);
+            if (!locks.compareAndSet(stripe, null, lock)) {
+                lock = locks.get(stripe);
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Lock the given stripes in order or throw otherwise. Nothing stays locked when an
+     * exception is thrown.
+     * @param stripes the stripes as returned by {@link #getStripes(Collection)}
+     * @param waitDuration the maximum time in milliseconds to wait for each stripe
+     * @throws TimeoutIOException if a stripe could not be locked within waitDuration and
+     * InterruptedIOException if interrupted while waiting for a stripe.
+     */
+    public void lockStripes(int[] stripes, int waitDuration) throws IOException {
+        TraceScope traceScope = null;
+        // If we're tracing start a span to show how long this took.
+        if (Trace.isTracing()) {
+            traceScope = Trace.startSpan("StripedLockManager.lockStripes");
+            traceScope.getSpan().addTimelineAnnotation("Getting locks on " + stripes.length + " stripes");
+        }
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                ReentrantLock lock = getLock(stripes[locked]);
+                if (!lock.tryLock() && !lock.tryLock(waitDuration, TimeUnit.MILLISECONDS)) {
+                    if (traceScope != null) {
+                        traceScope.getSpan().addTimelineAnnotation("Failed to get row lock");
+                    }
+                    throw new TimeoutIOException("Timed out waiting for lock on row lock stripe: " + stripes[locked]);
+                }
+            }
+        } catch (InterruptedException ie) {
+            LOGGER.warn("Thread interrupted waiting for lock on row lock stripe: " + stripes[locked]);
+            InterruptedIOException iie = new InterruptedIOException();
+            iie.initCause(ie);
+            if (traceScope != null) {
+                traceScope.getSpan().addTimelineAnnotation("Interrupted exception getting row lock");
+            }
+            Thread.currentThread().interrupt();
+            throw iie;
+        } finally {
+            if (locked < stripes.length) {
+                unlockStripes(stripes, locked);
+            }
+            if (traceScope != null) {
+                traceScope.close();
+            }
+        }
+    }
+
+    /**
+     * Unlock the given stripes, which must have been locked by the current thread.
+     * @param stripes the stripes as passed to {@link #lockStripes(int[], int)}
+     */
+    public void unlockStripes(int[] stripes) {
+        unlockStripes(stripes, stripes.length);
+    }
+
+    private void unlockStripes(int[] stripes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks.get(stripes[i]).unlock();
+        }
+    }
+}
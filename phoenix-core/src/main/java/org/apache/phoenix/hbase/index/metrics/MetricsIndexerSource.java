@@ -79,6 +79,14 @@ public interface MetricsIndexerSource extends BaseSource {
   String POST_INDEX_UPDATE_FAILURE = "postIndexUpdateFailure";
   String POST_INDEX_UPDATE_FAILURE_DESC = "The number of failures of index updates post data updates";
 
+  String ROW_LOCK_WAIT_TIME = "rowLockWaitTime";
+  String ROW_LOCK_WAIT_TIME_DESC = "Histogram for the time in milliseconds spent waiting for the row locks of a batch";
+
+  String DATA_ROW_STATE_CACHE_HIT = "dataRowStateCacheHits";
+  String DATA_ROW_STATE_CACHE_HIT_DESC = "The number of data row states found in the row state cache";
+  String DATA_ROW_STATE_CACHE_MISS = "dataRowStateCacheMisses";
+  String DATA_ROW_STATE_CACHE_MISS_DESC = "The number of data row states read from the region after a row state cache miss";
+
   /**
    * Updates the index preparation time histogram (preBatchMutate).
    * @param dataTableName  Physical data table name
@@ -210,4 +218,25 @@ public interface MetricsIndexerSource extends BaseSource {
    * @param dataTableName  Physical data table name
    */
   void incrementPostIndexUpdateFailures(String dataTableName);
+
+  /**
+   * Updates the row lock wait time histogram.
+   * @param dataTableName  Physical data table name
+   * @param t time taken in milliseconds
+   */
+  void updateRowLockWaitTime(String dataTableName, long t);
+
+  /**
+   * Increments the number of data row state cache hits.
+   * @param dataTableName  Physical data table name
+   * @param hits the number of hits
+   */
+  void incrementDataRowStateCacheHits(String dataTableName, long hits);
+
+  /**
+   * Increments the number of data row state cache misses.
+   * @param dataTableName  Physical data table name
+   * @param misses the number of misses
+   */
+  void incrementDataRowStateCacheMisses(String dataTableName, long misses);
 }
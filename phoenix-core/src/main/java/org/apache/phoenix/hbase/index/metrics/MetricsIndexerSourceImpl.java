@@ -46,6 +46,9 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
     private final MetricHistogram postIndexUpdateFailureTimeHisto;
     private final MutableFastCounter preIndexUpdateFailures;
     private final MutableFastCounter postIndexUpdateFailures;
+    private final MetricHistogram rowLockWaitTimeHisto;
+    private final MutableFastCounter dataRowStateCacheHits;
+    private final MutableFastCounter dataRowStateCacheMisses;
 
     public MetricsIndexerSourceImpl() {
         this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -82,6 +85,12 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
                 POST_INDEX_UPDATE_FAILURE, POST_INDEX_UPDATE_FAILURE_DESC, 0L);
         preIndexUpdateFailures = getMetricsRegistry().newCounter(
                 PRE_INDEX_UPDATE_FAILURE, PRE_INDEX_UPDATE_FAILURE_DESC, 0L);
+        rowLockWaitTimeHisto = getMetricsRegistry().newHistogram(
+                ROW_LOCK_WAIT_TIME, ROW_LOCK_WAIT_TIME_DESC);
+        dataRowStateCacheHits = getMetricsRegistry().newCounter(
+                DATA_ROW_STATE_CACHE_HIT, DATA_ROW_STATE_CACHE_HIT_DESC, 0L);
+        dataRowStateCacheMisses = getMetricsRegistry().newCounter(
+                DATA_ROW_STATE_CACHE_MISS, DATA_ROW_STATE_CACHE_MISS_DESC, 0L);
     }
 
     @Override
@@ -204,12 +213,36 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
         postIndexUpdateFailures.incr();
     }
 
+    @Override
+    public void updateRowLockWaitTime(String dataTableName, long t) {
+        incrementTableSpecificHistogram(ROW_LOCK_WAIT_TIME, dataTableName, t);
+        rowLockWaitTimeHisto.add(t);
+    }
+
+    @Override
+    public void incrementDataRowStateCacheHits(String dataTableName, long hits) {
+        incrementTableSpecificCounter(DATA_ROW_STATE_CACHE_HIT, dataTableName, hits);
+        dataRowStateCacheHits.incr(hits);
+    }
+
+    @Override
+    public void incrementDataRowStateCacheMisses(String dataTableName, long misses) {
+        incrementTableSpecificCounter(DATA_ROW_STATE_CACHE_MISS, dataTableName, misses);
+        dataRowStateCacheMisses.incr(misses);
+    }
+
     private void incrementTableSpecificCounter(String baseCounterName, String tableName) {
         MutableFastCounter indexSpecificCounter =
             getMetricsRegistry().getCounter(getCounterName(baseCounterName, tableName), 0);
         indexSpecificCounter.incr();
     }
 
+    private void incrementTableSpecificCounter(String baseCounterName, String tableName, long delta) {
+        MutableFastCounter indexSpecificCounter =
+            getMetricsRegistry().getCounter(getCounterName(baseCounterName, tableName), 0);
+        indexSpecificCounter.incr(delta);
+    }
+
     private void incrementTableSpecificHistogram(String baseCounterName, String tableName, long t) {
         MetricHistogram tableSpecificHistogram =
             getMetricsRegistry().getHistogram(getCounterName(baseCounterName, tableName));
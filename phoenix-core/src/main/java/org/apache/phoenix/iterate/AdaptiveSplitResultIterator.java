@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.ExplainPlanAttributes.ExplainPlanAttributesBuilder;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.join.HashJoinInfo;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Iterator over one of the parallel scans of a query which re-splits the remainder of
+ * the scan when it lags far behind the other scans of the query, for example because
+ * the region it covers has stale or no guide posts. The time spent waiting on the scan
+ * is compared to the median of the scans of the query that already completed. When it
+ * lags, the scan is closed and the key range after the last returned row is split into
+ * several scans. The first one is read directly while the others are read ahead in the
+ * background, and they are returned one after the other, so the rows come back in the
+ * same order as they would from the original scan. Each scan is split at most once.
+ *
+ * Only used for non aggregate scans without ORDER BY, OFFSET or LIMIT which return at most
+ * one row per row key, in which case the scan can be resumed after the row key of the last
+ * returned row.
+ *
+ */
+public class AdaptiveSplitResultIterator implements ResultIterator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveSplitResultIterator.class);
+    // Minimum time between two checks of whether the scan lags
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Runs the scans the remainder of a lagging scan is split into
+     */
+    public interface ScanRunner {
+        /**
+         * @return an iterator over the scan, read by the caller
+         */
+        ResultIterator newIterator(Scan scan) throws SQLException;
+
+        /**
+         * Start reading the scan in the background
+         * @return the future iterator over the rows of the scan
+         */
+        Future<PeekingResultIterator> submit(Scan scan) throws SQLException;
+    }
+
+    /**
+     * Time spent waiting on the completed scans of a query, shared by the iterators over its scans
+     */
+    public static class ScanPeers {
+        private long[] busyNanos = new long[8];
+        private int count;
+        private long median;
+
+        public synchronized void completed(long nanos) {
+            if (count == busyNanos.length) {
+                busyNanos = Arrays.copyOf(busyNanos, count * 2);
+            }
+            busyNanos[count++] = nanos;
+            long[] sorted = Arrays.copyOf(busyNanos, count);
+            Arrays.sort(sorted);
+            median = sorted[count / 2];
+        }
+
+        /**
+         * @return the median of the time spent on the completed scans, or 0 if none completed yet
+         */
+        public synchronized long getMedianNanos() {
+            return median;
+        }
+    }
+
+    private final ResultIterator original;
+    private final Scan scan;
+    private final ScanPeers peers;
+    private final ScanRunner runner;
+    private final float lagFactor;
+    private final long minLagNanos;
+    private final int splitCount;
+    private final long timeoutMillis;
+    private final Deque<Future<PeekingResultIterator>> pending = new ArrayDeque<>();
+    private ResultIterator delegate;
+    private long busyNanos;
+    private long nextCheckNanos;
+    private boolean split;
+    private boolean done;
+
+    AdaptiveSplitResultIterator(ResultIterator delegate, Scan scan, ScanPeers peers, ScanRunner runner,
+            float lagFactor, long minLagMillis, int splitCount, long timeoutMillis) {
+        this.original = delegate;
+        this.delegate = delegate;
+        this.scan = scan;
+        this.peers = peers;
+        this.runner = runner;
+        this.lagFactor = lagFactor;
+        this.minLagNanos = TimeUnit.MILLISECONDS.toNanos(minLagMillis);
+        this.splitCount = splitCount;
+        this.timeoutMillis = timeoutMillis;
+        this.nextCheckNanos = minLagNanos;
+    }
+
+    /**
+     * Wrap the iterator over a parallel scan when adaptive splitting is enabled and the
+     * scan can be resumed from the last returned row
+     */
+    public static ResultIterator wrap(ResultIterator iterator, Scan scan, QueryPlan plan, ScanPeers peers,
+            ScanRunner runner) {
+        ReadOnlyProps props = plan.getContext().getConnection().getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.ADAPTIVE_SCAN_SPLIT_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_ADAPTIVE_SCAN_SPLIT_ENABLED) || !isSplittable(scan, plan)) {
+            return iterator;
+        }
+        return new AdaptiveSplitResultIterator(iterator, scan, peers, runner,
+                props.getFloat(QueryServices.ADAPTIVE_SCAN_SPLIT_LAG_FACTOR_ATTRIB,
+                        QueryServicesOptions.DEFAULT_ADAPTIVE_SCAN_SPLIT_LAG_FACTOR),
+                props.getLong(QueryServices.ADAPTIVE_SCAN_SPLIT_MIN_TIME_MS_ATTRIB,
+                        QueryServicesOptions.DEFAULT_ADAPTIVE_SCAN_SPLIT_MIN_TIME_MS),
+                props.getInt(QueryServices.ADAPTIVE_SCAN_SPLIT_COUNT_ATTRIB,
+                        QueryServicesOptions.DEFAULT_ADAPTIVE_SCAN_SPLIT_COUNT),
+                plan.getContext().getStatement().getQueryTimeoutInMillis());
+    }
+
+    private static boolean isSplittable(Scan scan, QueryPlan plan) {
+        // Rows must be returned in row key order, one per row key, so that we can resume after
+        // the last one. The stop row bounds the key range to split.
+        return ScanUtil.isSimpleScan(scan)
+                && isOneTuplePerRowKey(scan)
+                && plan.getContext().getAggregationManager().isEmpty()
+                && plan.getOrderBy().getOrderByExpressions().isEmpty()
+                && plan.getLimit() == null
+                && !ScanUtil.isReversed(scan)
+                && !ScanUtil.isLocalIndex(scan)
+                && scan.getStopRow().length > 0;
+    }
+
+    /**
+     * Whether the region scanner returns at most one tuple per row key. A hash join returns
+     * one tuple per match of the row, all of them having the row key of the row, so that
+     * resuming after the row key of the last returned tuple would drop the other matches.
+     */
+    private static boolean isOneTuplePerRowKey(Scan scan) {
+        return !HashJoinInfo.isHashJoin(scan);
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        if (done) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Tuple tuple = delegate.next();
+        busyNanos += System.nanoTime() - start;
+        while (tuple == null) {
+            delegate.close();
+            Future<PeekingResultIterator> future = pending.poll();
+            if (future == null) {
+                done = true;
+                peers.completed(busyNanos);
+                return null;
+            }
+            delegate = getIterator(future);
+            tuple = delegate.next();
+        }
+        if (!split && busyNanos >= nextCheckNanos) {
+            nextCheckNanos = busyNanos + CHECK_INTERVAL_NANOS;
+            if (busyNanos >= Math.max(minLagNanos, (long)(lagFactor * peers.getMedianNanos()))) {
+                split(tuple);
+            }
+        }
+        return tuple;
+    }
+
+    private PeekingResultIterator getIterator(Future<PeekingResultIterator> future) throws SQLException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_TIMED_OUT)
+                    .setMessage(". Query couldn't be completed in the allotted time: " + timeoutMillis + " ms")
+                    .setRootCause(e).build().buildException();
+        } catch (Exception e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    private void split(Tuple lastTuple) throws SQLException {
+        split = true;
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        lastTuple.getKey(ptr);
+        // Smallest row key after the last returned row
+        byte[] startKey = new byte[ptr.getLength() + 1];
+        System.arraycopy(ptr.get(), ptr.getOffset(), startKey, 0, ptr.getLength());
+        byte[] stopKey = scan.getStopRow();
+        if (Bytes.compareTo(startKey, stopKey) >= 0) {
+            return;
+        }
+        byte[][] keys = Bytes.split(startKey, stopKey, splitCount - 1);
+        if (keys == null) {
+            return;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Splitting lagging scan " + scan + " after " + busyNanos / 1000000
+                    + " ms into " + (keys.length - 1) + " scans from " + Bytes.toStringBinary(startKey));
+        }
+        ResultIterator first = runner.newIterator(newScan(keys[0], keys[1]));
+        try {
+            for (int i = 1; i < keys.length - 1; i++) {
+                pending.add(runner.submit(newScan(keys[i], keys[i + 1])));
+            }
+            delegate.close();
+        } catch (SQLException e) {
+            first.close();
+            throw e;
+        }
+        delegate = first;
+    }
+
+    private Scan newScan(byte[] startKey, byte[] stopKey) {
+        Scan newScan = ScanUtil.newScan(scan);
+        newScan.withStartRow(startKey);
+        newScan.withStopRow(stopKey);
+        return newScan;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        done = true;
+        SQLException toThrow = null;
+        try {
+            delegate.close();
+        } catch (SQLException e) {
+            toThrow = e;
+        }
+        // Close the scans read in the background. Like BaseResultIterators, we only
+        // cancel the ones that did not start, and wait for the others to complete.
+        Future<PeekingResultIterator> future;
+        while ((future = pending.poll()) != null) {
+            if (!future.cancel(false)) {
+                try {
+                    future.get().close();
+                } catch (Exception e) {
+                    LOGGER.info("Failed to read ahead scan during close", e);
+                }
+            }
+        }
+        if (toThrow != null) {
+            throw toThrow;
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        original.explain(planSteps);
+    }
+
+    @Override
+    public void explain(List<String> planSteps, ExplainPlanAttributesBuilder explainPlanAttributesBuilder) {
+        original.explain(planSteps, explainPlanAttributesBuilder);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSplitResultIterator [delegate=" + delegate + ", split=" + split + "]";
+    }
+}
@@ -96,6 +96,7 @@ import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.parse.HintNode.Hint;
+import org.apache.phoenix.job.JobManager.JobLane;
 import org.apache.phoenix.query.ConnectionQueryServices;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.QueryConstants;
@@ -104,6 +105,7 @@ import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.ColumnFamilyNotFoundException;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnFamily;
+import org.apache.phoenix.schema.PName;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
@@ -194,6 +196,28 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
         }
         return !isSerial();
     }
+
+    /**
+     * Point lookups, serial queries and queries with few parallel scans are interactive. Their
+     * tasks run before the tasks of other queries queued in the thread pool.
+     * @return the lane of the queue of the thread pool to run the scans of the query in
+     */
+    protected JobLane getJobLane(int numScans) {
+        int interactiveMaxScans = context.getConnection().getQueryServices().getProps().getInt(
+                QueryServices.INTERACTIVE_MAX_SCANS_ATTRIB, QueryServicesOptions.DEFAULT_INTERACTIVE_MAX_SCANS);
+        if (isSerial() || numScans <= interactiveMaxScans || context.getScanRanges().isPointLookup()) {
+            return JobLane.INTERACTIVE;
+        }
+        return JobLane.BULK;
+    }
+
+    /**
+     * @return the tenant that the scans of the query run for, or null for a global connection
+     */
+    protected Object getTenantId() {
+        PName tenantId = context.getConnection().getTenantId();
+        return tenantId == null ? null : tenantId.getString();
+    }
     
     private static void initializeScan(QueryPlan plan, Integer perScanLimit, Integer offset, Scan scan) throws SQLException {
         StatementContext context = plan.getContext();
@@ -17,14 +17,11 @@
  */
 package org.apache.phoenix.iterate;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.AbstractQueue;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -41,9 +38,19 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
     private int currentIndex;
     private BufferedSegmentQueue<T> currentQueue;
     private MinMaxPriorityQueue<BufferedSegmentQueue<T>> mergedQueue;
+    private final boolean compressSpill;
 
     public BufferedQueue(long thresholdBytes) {
+        this(thresholdBytes, true);
+    }
+
+    /**
+     * @param thresholdBytes size in memory past which a segment is spilled to disk
+     * @param compressSpill whether or not the blocks of spill files are compressed
+     */
+    public BufferedQueue(long thresholdBytes, boolean compressSpill) {
         this.thresholdBytes = thresholdBytes;
+        this.compressSpill = compressSpill;
         this.queues = Lists.<BufferedSegmentQueue<T>> newArrayList();
         this.currentIndex = -1;
         this.currentQueue = null;
@@ -51,6 +58,10 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
     }
     
     abstract protected BufferedSegmentQueue<T> createSegmentQueue(int index, long thresholdBytes);
+
+    protected final boolean isSpillCompressed() {
+        return compressSpill;
+    }
     
     abstract protected Comparator<BufferedSegmentQueue<T>> getSegmentQueueComparator();
     
@@ -148,11 +159,25 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
     }
 
     public abstract static class BufferedSegmentQueue<T> extends AbstractQueue<T> {
-        protected static final int EOF = -1;
-        
+        /**
+         * Writes the entries of a segment to its spill file. A new writer is used for
+         * each spill file, so it may keep state across entries.
+         */
+        protected interface SegmentWriter<T> {
+            void write(DataOutputStream out, T e) throws IOException;
+        }
+
+        /**
+         * Reads back the entries of a spill file, in the order they were written
+         */
+        protected interface SegmentReader<T> {
+            T read(DataInputStream in) throws IOException;
+        }
+
         private final int index;
         private final long thresholdBytes;
         private final boolean hasMaxQueueSize;
+        private final boolean compressSpill;
         private long totalResultSize = 0;
         private long maxResultSize = 0;
         private File file;
@@ -165,16 +190,25 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
         private List<SegmentQueueFileIterator> iterators;
 
         public BufferedSegmentQueue(int index, long thresholdBytes, boolean hasMaxQueueSize) {
+            this(index, thresholdBytes, hasMaxQueueSize, true);
+        }
+
+        /**
+         * @param compressSpill whether or not the blocks of the spill file are compressed
+         */
+        public BufferedSegmentQueue(int index, long thresholdBytes, boolean hasMaxQueueSize,
+                boolean compressSpill) {
             this.index = index;
             this.thresholdBytes = thresholdBytes;
             this.hasMaxQueueSize = hasMaxQueueSize;
+            this.compressSpill = compressSpill;
             this.iterators = Lists.<SegmentQueueFileIterator> newArrayList();
         }
         
         abstract protected Queue<T> getInMemoryQueue();
         abstract protected long sizeOf(T e);
-        abstract protected void writeToStream(DataOutputStream out, T e) throws IOException;
-        abstract protected T readFromStream(DataInputStream in) throws IOException;
+        abstract protected SegmentWriter<T> newSegmentWriter();
+        abstract protected SegmentReader<T> newSegmentReader();
         
         public int index() {
             return this.index;
@@ -303,13 +337,14 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
             if (totalResultSize >= thresholdBytes) {
                 this.file = File.createTempFile(UUID.randomUUID().toString(), null);
                 try (DataOutputStream out = new DataOutputStream(
-                        new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+                        new SpillBlockOutputStream(file, compressSpill))) {
+                    SegmentWriter<T> writer = newSegmentWriter();
                     int resSize = inMemQueue.size();
                     for (int i = 0; i < resSize; i++) {
                         T e = inMemQueue.poll();
-                        writeToStream(out, e);
+                        writer.write(out, e);
                     }
-                    out.writeInt(EOF); // end
+                    // No end marker is written, as readers stop after flushedCount entries
                     flushedCount = resSize;
                     inMemQueue.clear();
                     flushBuffer = true;
@@ -320,7 +355,9 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
         private class SegmentQueueFileIterator implements Iterator<T>, Closeable {
             private boolean isEnd;
             private long readIndex;
+            private int readCount;
             private DataInputStream in;
+            private SegmentReader<T> reader;
             private T next;
             
             public SegmentQueueFileIterator() {
@@ -339,9 +376,10 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
                 this.isEnd = false;
                 this.readIndex = readIndex;
                 this.next = null;
+                this.readCount = 0;
+                this.reader = newSegmentReader();
                 try {
-                    this.in = new DataInputStream(
-                            new BufferedInputStream(Files.newInputStream(file.toPath())));
+                    this.in = new DataInputStream(new SpillBlockInputStream(file));
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -371,10 +409,13 @@ public abstract class BufferedQueue<T> extends AbstractQueue<T> implements SizeA
                     return null;
 
                 T e = null;
-                try {
-                    e = readFromStream(in);
-                } catch (IOException ex) {
-                  throw new RuntimeException(ex);
+                if (readCount < flushedCount) {
+                    try {
+                        e = reader.read(in);
+                    } catch (IOException ex) {
+                      throw new RuntimeException(ex);
+                    }
+                    readCount++;
                 }
                 if (e == null) {
                     close();
@@ -20,20 +20,14 @@ package org.apache.phoenix.iterate;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
 import java.util.Queue;
 
-import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
-import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
-import org.apache.phoenix.util.PhoenixKeyValueUtil;
-import org.apache.phoenix.util.ResultUtil;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.MinMaxPriorityQueue;
 
@@ -43,7 +37,12 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
 
     public BufferedSortedQueue(Comparator<ResultEntry> comparator,
             Integer limit, long thresholdBytes) throws IOException {
-        super(thresholdBytes);
+        this(comparator, limit, thresholdBytes, true);
+    }
+
+    public BufferedSortedQueue(Comparator<ResultEntry> comparator,
+            Integer limit, long thresholdBytes, boolean compressSpill) throws IOException {
+        super(thresholdBytes, compressSpill);
         this.comparator = comparator;
         this.limit = limit == null ? -1 : limit;
     }
@@ -51,7 +50,8 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
     @Override
     protected BufferedSegmentQueue<ResultEntry> createSegmentQueue(
             int index, long thresholdBytes) {
-        return new BufferedResultEntryPriorityQueue(index, thresholdBytes, limit, comparator);
+        return new BufferedResultEntryPriorityQueue(index, thresholdBytes, limit, comparator,
+                isSpillCompressed());
     }
 
     @Override
@@ -68,8 +68,9 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
         private MinMaxPriorityQueue<ResultEntry> results = null;
         
         public BufferedResultEntryPriorityQueue(int index,
-                long thresholdBytes, int limit, Comparator<ResultEntry> comparator) {
-            super(index, thresholdBytes, limit >= 0);
+                long thresholdBytes, int limit, Comparator<ResultEntry> comparator,
+                boolean compressSpill) {
+            super(index, thresholdBytes, limit >= 0, compressSpill);
             this.results = limit < 0 ? 
                     MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).create()
                   : MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).maximumSize(limit).create();
@@ -86,65 +87,44 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
         }
 
         @Override
-        protected void writeToStream(DataOutputStream os, ResultEntry e) throws IOException {
-            int totalLen = 0;
-            List<KeyValue> keyValues = toKeyValues(e);
-            for (KeyValue kv : keyValues) {
-                totalLen += (kv.getLength() + Bytes.SIZEOF_INT);
-            }
-            os.writeInt(totalLen);
-            for (KeyValue kv : keyValues) {
-                os.writeInt(kv.getLength());
-                os.write(kv.getBuffer(), kv.getOffset(), kv
-                        .getLength());
-            }
-            ImmutableBytesWritable[] sortKeys = e.sortKeys;
-            os.writeInt(sortKeys.length);
-            for (ImmutableBytesWritable sortKey : sortKeys) {
-                if (sortKey != null) {
-                    os.writeInt(sortKey.getLength());
-                    os.write(sortKey.get(), sortKey.getOffset(),
-                            sortKey.getLength());
-                } else {
-                    os.writeInt(0);
+        protected SegmentWriter<ResultEntry> newSegmentWriter() {
+            final CompactTupleEncoder encoder = new CompactTupleEncoder();
+            return new SegmentWriter<ResultEntry>() {
+                @Override
+                public void write(DataOutputStream os, ResultEntry e) throws IOException {
+                    Tuple result = e.getResult();
+                    encoder.encode(os, result, result.size());
+                    ImmutableBytesWritable[] sortKeys = e.sortKeys;
+                    WritableUtils.writeVInt(os, sortKeys.length);
+                    for (ImmutableBytesWritable sortKey : sortKeys) {
+                        if (sortKey != null) {
+                            Bytes.writeByteArray(os, sortKey.get(), sortKey.getOffset(),
+                                    sortKey.getLength());
+                        } else {
+                            WritableUtils.writeVInt(os, 0);
+                        }
+                    }
                 }
-            }
+            };
         }
 
         @Override
-        protected ResultEntry readFromStream(DataInputStream is) throws IOException {
-            int length = is.readInt();
-            if (length < 0)
-                return null;
-
-            byte[] rb = new byte[length];
-            is.readFully(rb);
-            Result result = ResultUtil.toResult(new ImmutableBytesWritable(rb));
-            ResultTuple rt = new ResultTuple(result);
-            int sortKeySize = is.readInt();
-            ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[sortKeySize];
-            for (int i = 0; i < sortKeySize; i++) {
-                int contentLength = is.readInt();
-                if (contentLength > 0) {
-                    byte[] sortKeyContent = new byte[contentLength];
-                    is.readFully(sortKeyContent);
-                    sortKeys[i] = new ImmutableBytesWritable(sortKeyContent);
-                } else {
-                    sortKeys[i] = null;
+        protected SegmentReader<ResultEntry> newSegmentReader() {
+            final CompactTupleDecoder decoder = new CompactTupleDecoder();
+            return new SegmentReader<ResultEntry>() {
+                @Override
+                public ResultEntry read(DataInputStream is) throws IOException {
+                    Tuple result = decoder.decode(is);
+                    int sortKeySize = WritableUtils.readVInt(is);
+                    ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[sortKeySize];
+                    for (int i = 0; i < sortKeySize; i++) {
+                        byte[] sortKeyContent = Bytes.readByteArray(is);
+                        sortKeys[i] = sortKeyContent.length > 0
+                                ? new ImmutableBytesWritable(sortKeyContent) : null;
+                    }
+                    return new ResultEntry(sortKeys, result);
                 }
-            }
-
-            return new ResultEntry(sortKeys, rt);
-        }
-
-        private List<KeyValue> toKeyValues(ResultEntry entry) {
-            Tuple result = entry.getResult();
-            int size = result.size();
-            List<KeyValue> kvs = new ArrayList<KeyValue>(size);
-            for (int i = 0; i < size; i++) {
-                kvs.add(PhoenixKeyValueUtil.maybeCopyCell(result.getValue(i)));
-            }
-            return kvs;
+            };
         }
 
     }
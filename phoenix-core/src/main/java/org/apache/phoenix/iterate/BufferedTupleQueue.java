@@ -26,13 +26,9 @@ import java.util.LinkedList;
 import java.util.Queue;
 
 import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.client.Result;
-import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.PhoenixKeyValueUtil;
-import org.apache.phoenix.util.ResultUtil;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 
@@ -42,9 +38,13 @@ public class BufferedTupleQueue extends BufferedQueue<Tuple> {
         super(thresholdBytes);
     }
 
+    public BufferedTupleQueue(long thresholdBytes, boolean compressSpill) {
+        super(thresholdBytes, compressSpill);
+    }
+
     @Override
     protected BufferedSegmentQueue<Tuple> createSegmentQueue(int index, long thresholdBytes) {
-        return new BufferedTupleSegmentQueue(index, thresholdBytes, false);
+        return new BufferedTupleSegmentQueue(index, thresholdBytes, false, isSpillCompressed());
     }
 
     @Override
@@ -95,8 +95,9 @@ public class BufferedTupleQueue extends BufferedQueue<Tuple> {
     private static class BufferedTupleSegmentQueue extends BufferedSegmentQueue<Tuple> {
         private LinkedList<Tuple> results;
 
-        public BufferedTupleSegmentQueue(int index, long thresholdBytes, boolean hasMaxQueueSize) {
-            super(index, thresholdBytes, hasMaxQueueSize);
+        public BufferedTupleSegmentQueue(int index, long thresholdBytes, boolean hasMaxQueueSize,
+                boolean compressSpill) {
+            super(index, thresholdBytes, hasMaxQueueSize, compressSpill);
             this.results = Lists.newLinkedList();
         }
 
@@ -112,22 +113,26 @@ public class BufferedTupleQueue extends BufferedQueue<Tuple> {
         }
 
         @Override
-        protected void writeToStream(DataOutputStream out, Tuple e) throws IOException {
-            KeyValue kv = PhoenixKeyValueUtil.maybeCopyCell(e.getValue(0));
-            out.writeInt(kv.getLength() + Bytes.SIZEOF_INT);
-            out.writeInt(kv.getLength());
-            out.write(kv.getBuffer(), kv.getOffset(), kv.getLength());
+        protected SegmentWriter<Tuple> newSegmentWriter() {
+            final CompactTupleEncoder encoder = new CompactTupleEncoder();
+            return new SegmentWriter<Tuple>() {
+                @Override
+                public void write(DataOutputStream out, Tuple e) throws IOException {
+                    // Only the first cell is kept, as for the in memory size
+                    encoder.encode(out, e, 1);
+                }
+            };
         }
 
         @Override
-        protected Tuple readFromStream(DataInputStream in) throws IOException {
-            int length = in.readInt();
-            if (length < 0) return null;
-
-            byte[] b = new byte[length];
-            in.readFully(b);
-            Result result = ResultUtil.toResult(new ImmutableBytesWritable(b));
-            return new ResultTuple(result);
+        protected SegmentReader<Tuple> newSegmentReader() {
+            final CompactTupleDecoder decoder = new CompactTupleDecoder();
+            return new SegmentReader<Tuple>() {
+                @Override
+                public Tuple read(DataInputStream in) throws IOException {
+                    return decoder.decode(in);
+                }
+            };
         }
 
     }
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PrefixByteDecoder;
+
+/**
+ * Decodes a sequence of tuples encoded with {@link CompactTupleEncoder}. The tuples
+ * must be decoded in the order in which they were encoded, starting with the first one.
+ */
+public class CompactTupleDecoder {
+    private final PrefixByteDecoder rowDecoder = new PrefixByteDecoder();
+    // Family and qualifier of each dictionary entry
+    private final List<byte[][]> columns = new ArrayList<byte[][]>();
+    private long previousTimestamp;
+
+    /**
+     * Reads the next tuple
+     * @param in input to decode from
+     * @return the tuple or null if the end of the stream was reached
+     * @throws IOException
+     */
+    public Tuple decode(DataInput in) throws IOException {
+        int header = WritableUtils.readVInt(in);
+        if (header == 0) {
+            return null;
+        }
+        boolean sharedRow = header > 0;
+        int cellCount = sharedRow ? header - 1 : -header - 1;
+        byte[] row = null;
+        if (sharedRow && cellCount > 0) {
+            // A new byte array of the exact length is allocated for each row key
+            row = rowDecoder.decode(in).get();
+        }
+        List<Cell> cells = new ArrayList<Cell>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            byte[] cellRow = sharedRow ? row : Bytes.readByteArray(in);
+            byte[][] column = readColumn(in);
+            long timestamp = previousTimestamp + WritableUtils.readVLong(in);
+            previousTimestamp = timestamp;
+            byte type = in.readByte();
+            byte[] value = Bytes.readByteArray(in);
+            cells.add(new KeyValue(cellRow, 0, cellRow.length, column[0], 0, column[0].length,
+                    column[1], 0, column[1].length, timestamp, KeyValue.Type.codeToType(type),
+                    value, 0, value.length));
+        }
+        return new ResultTuple(Result.create(cells));
+    }
+
+    private byte[][] readColumn(DataInput in) throws IOException {
+        int id = WritableUtils.readVInt(in);
+        if (id > 0 && id <= columns.size()) {
+            return columns.get(id - 1);
+        }
+        byte[][] column = new byte[][] { Bytes.readByteArray(in), Bytes.readByteArray(in) };
+        if (id == columns.size() + 1) {
+            columns.add(column);
+        } else if (id != 0) {
+            throw new IOException("Invalid column id " + id + " for a dictionary of size " + columns.size());
+        }
+        return column;
+    }
+}
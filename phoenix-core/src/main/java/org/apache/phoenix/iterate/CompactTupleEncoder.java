@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.PrefixByteEncoder;
+
+/**
+ * Encodes a sequence of tuples written one after the other, such as the rows of a spill
+ * file. Instead of serializing every cell as a {@link KeyValue}, the row key is written
+ * once per tuple and prefix encoded against the row key of the previous tuple, and each
+ * family and qualifier pair is replaced by an id from a dictionary built as the tuples are
+ * written. Timestamps are written as the difference with the previous timestamp. Each
+ * tuple is written as:
+ * <ul>
+ * <li>a vint header: 0 for the end of the stream, the cell count plus one if all cells
+ * share the row key of the tuple, or minus the cell count minus one otherwise</li>
+ * <li>the prefix encoded row key, if shared by all the cells</li>
+ * <li>for each cell, the row key if not shared, the column id, the timestamp delta, the
+ * type, and the length prefixed value</li>
+ * </ul>
+ * A column id of 0 is followed by a family and qualifier which are not added to the
+ * dictionary, an id equal to the dictionary size plus one by a new dictionary entry,
+ * and any other id refers to an existing entry. For decoding, see {@link CompactTupleDecoder}.
+ */
+public class CompactTupleEncoder {
+    static final int DEFAULT_MAX_DICTIONARY_SIZE = 4096;
+
+    private final int maxDictionarySize;
+    private final PrefixByteEncoder rowEncoder = new PrefixByteEncoder();
+    private final Map<ImmutableBytesPtr, Integer> columnIds = new HashMap<ImmutableBytesPtr, Integer>();
+    // Family length, family and qualifier of each dictionary entry, to check hits without allocating
+    private final List<byte[]> columns = new ArrayList<byte[]>();
+    // Column id used for the cell at each position of the previous tuple
+    private int[] previousIds = new int[0];
+    private long previousTimestamp;
+
+    public CompactTupleEncoder() {
+        this(DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    public CompactTupleEncoder(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * Writes the cells of the tuple
+     * @param out output to encode into
+     * @param tuple the tuple to encode
+     * @param cellCount the number of cells of the tuple to encode, starting with the first one
+     * @throws IOException
+     */
+    public void encode(DataOutput out, Tuple tuple, int cellCount) throws IOException {
+        KeyValue first = cellCount == 0 ? null : PhoenixKeyValueUtil.maybeCopyCell(tuple.getValue(0));
+        boolean sharedRow = true;
+        for (int i = 1; i < cellCount && sharedRow; i++) {
+            KeyValue kv = PhoenixKeyValueUtil.maybeCopyCell(tuple.getValue(i));
+            sharedRow = Bytes.equals(first.getRowArray(), first.getRowOffset(), first.getRowLength(),
+                    kv.getRowArray(), kv.getRowOffset(), kv.getRowLength());
+        }
+        if (sharedRow) {
+            WritableUtils.writeVInt(out, cellCount + 1);
+            if (first != null) {
+                rowEncoder.encode(out, first.getRowArray(), first.getRowOffset(), first.getRowLength());
+            }
+        } else {
+            WritableUtils.writeVInt(out, -cellCount - 1);
+        }
+        if (previousIds.length < cellCount) {
+            int[] ids = new int[cellCount];
+            System.arraycopy(previousIds, 0, ids, 0, previousIds.length);
+            previousIds = ids;
+        }
+        for (int i = 0; i < cellCount; i++) {
+            KeyValue kv = PhoenixKeyValueUtil.maybeCopyCell(tuple.getValue(i));
+            if (!sharedRow) {
+                Bytes.writeByteArray(out, kv.getRowArray(), kv.getRowOffset(), kv.getRowLength());
+            }
+            writeColumn(out, kv, i);
+            WritableUtils.writeVLong(out, kv.getTimestamp() - previousTimestamp);
+            previousTimestamp = kv.getTimestamp();
+            out.writeByte(kv.getTypeByte());
+            Bytes.writeByteArray(out, kv.getValueArray(), kv.getValueOffset(), kv.getValueLength());
+        }
+    }
+
+    /**
+     * Writes the marker decoded as the end of the stream by {@link CompactTupleDecoder}
+     */
+    public void encodeEnd(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, 0);
+    }
+
+    private static boolean isColumn(byte[] column, KeyValue kv) {
+        int familyLength = Bytes.toInt(column, 0);
+        int qualifierOffset = Bytes.SIZEOF_INT + familyLength;
+        return Bytes.equals(column, qualifierOffset, column.length - qualifierOffset,
+                    kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength())
+                && Bytes.equals(column, Bytes.SIZEOF_INT, familyLength,
+                    kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+    }
+
+    private void writeColumn(DataOutput out, KeyValue kv, int position) throws IOException {
+        // Tuples of a stream usually have the same columns in the same order
+        int id = previousIds[position];
+        if (id > 0 && isColumn(columns.get(id - 1), kv)) {
+            WritableUtils.writeVInt(out, id);
+            return;
+        }
+        byte[] column = new byte[Bytes.SIZEOF_INT + kv.getFamilyLength() + kv.getQualifierLength()];
+        int offset = Bytes.putInt(column, 0, kv.getFamilyLength());
+        offset = Bytes.putBytes(column, offset, kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+        Bytes.putBytes(column, offset, kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
+        ImmutableBytesPtr key = new ImmutableBytesPtr(column);
+        Integer existingId = columnIds.get(key);
+        if (existingId != null) {
+            id = existingId;
+            WritableUtils.writeVInt(out, id);
+        } else if (columns.size() < maxDictionarySize) {
+            columns.add(column);
+            id = columns.size();
+            columnIds.put(key, id);
+            WritableUtils.writeVInt(out, id);
+            writeFamilyAndQualifier(out, kv);
+        } else {
+            id = 0;
+            WritableUtils.writeVInt(out, id);
+            writeFamilyAndQualifier(out, kv);
+        }
+        previousIds[position] = id;
+    }
+
+    private static void writeFamilyAndQualifier(DataOutput out, KeyValue kv) throws IOException {
+        Bytes.writeByteArray(out, kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+        Bytes.writeByteArray(out, kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
+    }
+}
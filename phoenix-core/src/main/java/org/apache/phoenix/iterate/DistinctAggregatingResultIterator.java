@@ -81,6 +81,9 @@ public class DistinctAggregatingResultIterator implements AggregatingResultItera
             for (ColumnProjector column : rowProjector.getColumnProjectors()) {
                 Expression e = column.getExpression();
                 boolean isNull1 = !e.evaluate(this.result, ptr1);
+                if (!isNull1 && e.isResultTransient()) {
+                    ptr1.set(ptr1.copyBytes());
+                }
                 boolean isNull2 = !e.evaluate(that.result, ptr2);
                 if (isNull1 && isNull2) {
                     return true;
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+
+/**
+ * Tournament tree of losers used to merge a fixed number of sorted sources. Each
+ * internal node holds the source that lost the match played at that node, so that
+ * replacing the winner only replays the matches on the path from its leaf to the root:
+ * log2(k) comparisons per element, against up to twice that for a binary heap.
+ * Exhausted sources lose every match, and ties go to the source with the lower
+ * index, which makes the merge stable.
+ *
+ * @param <T> the type of the elements being merged
+ */
+public abstract class LoserTree<T> {
+    private final Comparator<? super T> comparator;
+    private final int size;
+    // Current element of each source, null once the source is exhausted
+    private final Object[] heads;
+    // losers[0] is the overall winner, losers[1..size-1] the loser at each internal node
+    private final int[] losers;
+    private boolean initialized;
+
+    protected LoserTree(int size, Comparator<? super T> comparator) {
+        this.size = size;
+        this.comparator = comparator;
+        this.heads = new Object[size];
+        this.losers = new int[Math.max(1, size)];
+    }
+
+    /**
+     * Move the given source to its next element.
+     * @param source index of the source
+     * @return the next element of the source or null if it is exhausted
+     */
+    protected abstract T advance(int source) throws SQLException;
+
+    /**
+     * Called once a source has been advanced past its last element
+     * @param source index of the source
+     */
+    protected void exhausted(int source) throws SQLException {
+    }
+
+    @SuppressWarnings("unchecked")
+    private T head(int source) {
+        return (T)heads[source];
+    }
+
+    private boolean beats(int s1, int s2) {
+        T h1 = head(s1);
+        T h2 = head(s2);
+        if (h1 == null) {
+            return false;
+        }
+        if (h2 == null) {
+            return true;
+        }
+        int c = comparator.compare(h1, h2);
+        return c < 0 || (c == 0 && s1 < s2);
+    }
+
+    private void init() throws SQLException {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            heads[i] = advance(i);
+            if (heads[i] == null) {
+                exhausted(i);
+            }
+        }
+        // Play the initial tournament bottom up, with the leaves at size..2*size-1
+        int[] winners = new int[2 * size];
+        for (int i = 0; i < size; i++) {
+            winners[size + i] = i;
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (beats(left, right)) {
+                winners[node] = left;
+                losers[node] = right;
+            } else {
+                winners[node] = right;
+                losers[node] = left;
+            }
+        }
+        losers[0] = size == 1 ? 0 : winners[1];
+    }
+
+    /**
+     * @return the smallest current element of all sources or null if all are exhausted
+     */
+    public T peek() throws SQLException {
+        init();
+        return size == 0 ? null : head(losers[0]);
+    }
+
+    /**
+     * Remove and return the smallest current element of all sources
+     * @return the element or null if all sources are exhausted
+     */
+    public T poll() throws SQLException {
+        T winner = peek();
+        if (winner == null) {
+            return null;
+        }
+        int source = losers[0];
+        heads[source] = advance(source);
+        if (heads[source] == null) {
+            exhausted(source);
+        }
+        for (int node = (source + size) >> 1; node >= 1; node >>= 1) {
+            if (beats(losers[node], source)) {
+                int loser = source;
+                source = losers[node];
+                losers[node] = loser;
+            }
+        }
+        losers[0] = source;
+        return winner;
+    }
+}
@@ -20,19 +20,19 @@ package org.apache.phoenix.iterate;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.schema.tuple.Tuple;
 
 /**
  * Base class for a ResultIterator that does a merge sort on the list of iterators provided.
+ * The iterators are merged through a {@link LoserTree}.
  * @since 1.2
  */
 public abstract class MergeSortResultIterator implements PeekingResultIterator {
     protected final ResultIterators resultIterators;
     protected final ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
-    private PriorityQueue<MaterializedComparableResultIterator> minHeap;
+    private LoserTree<Tuple> loserTree;
     private final IteratorComparator itrComparator = new IteratorComparator();
 
     public MergeSortResultIterator(ResultIterators iterators) {
@@ -48,38 +48,37 @@ public abstract class MergeSortResultIterator implements PeekingResultIterator {
 
     @Override
     public Tuple peek() throws SQLException {
-        MaterializedComparableResultIterator iterator = minIterator();
-        if (iterator == null) { return null; }
-        return iterator.peek();
+        return getLoserTree().peek();
     }
 
     @Override
     public Tuple next() throws SQLException {
-        MaterializedComparableResultIterator iterator = minIterator();
-        if (iterator == null) { return null; }
-        Tuple next = iterator.next();
-        minHeap.poll();
-        if (iterator.peek() != null) {
-            minHeap.add(iterator);
-        } else {
-            iterator.close();
-        }
-        return next;
+        return getLoserTree().poll();
     }
 
-    private PriorityQueue<MaterializedComparableResultIterator> getMinHeap() throws SQLException {
-        if (minHeap == null) {
-            List<PeekingResultIterator> iterators = resultIterators.getIterators();
-            minHeap = new PriorityQueue<MaterializedComparableResultIterator>(Math.max(1, iterators.size()));
-            for (PeekingResultIterator itr : iterators) {
-                if (itr.peek() == null) {
-                    itr.close();
-                    continue;
+    private LoserTree<Tuple> getLoserTree() throws SQLException {
+        if (loserTree == null) {
+            final List<PeekingResultIterator> iterators = resultIterators.getIterators();
+            final boolean[] started = new boolean[iterators.size()];
+            loserTree = new LoserTree<Tuple>(iterators.size(), itrComparator) {
+                @Override
+                protected Tuple advance(int source) throws SQLException {
+                    PeekingResultIterator itr = iterators.get(source);
+                    // The head of a source is its peeked tuple, which is only consumed once merged
+                    if (started[source]) {
+                        itr.next();
+                    }
+                    started[source] = true;
+                    return itr.peek();
+                }
+
+                @Override
+                protected void exhausted(int source) throws SQLException {
+                    iterators.get(source).close();
                 }
-                minHeap.add(new MaterializedComparableResultIterator(itr, itrComparator));
-            }
+            };
         }
-        return minHeap;
+        return loserTree;
     }
 
     private class IteratorComparator implements Comparator<Tuple> {
@@ -89,10 +88,4 @@ public abstract class MergeSortResultIterator implements PeekingResultIterator {
         }
     }
 
-    private MaterializedComparableResultIterator minIterator() throws SQLException {
-        PriorityQueue<MaterializedComparableResultIterator> minHeap = getMinHeap();
-        MaterializedComparableResultIterator minIterator = minHeap.peek();
-        return minIterator;
-    }
-
 }
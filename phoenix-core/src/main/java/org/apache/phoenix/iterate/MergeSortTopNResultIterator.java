@@ -58,6 +58,10 @@ public class MergeSortTopNResultIterator extends MergeSortResultIterator {
             OrderByExpression order = orderByColumns.get(i);
             Expression orderExpr = order.getExpression();
             boolean isNull1 = !orderExpr.evaluate(t1, ptr1) || ptr1.getLength() == 0;
+            if (!isNull1 && orderExpr.isResultTransient()) {
+                // Evaluating the second tuple would overwrite the value of the first one
+                ptr1.set(ptr1.copyBytes());
+            }
             boolean isNull2 = !orderExpr.evaluate(t2, ptr2) || ptr2.getLength() == 0;
             if (isNull1 && isNull2) {
                 continue;
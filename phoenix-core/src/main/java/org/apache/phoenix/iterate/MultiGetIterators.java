@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.execute.TupleProjector;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobLane;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.trace.util.Tracing;
+import org.apache.phoenix.util.EncodedColumnsUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Reads the rows of a point lookup with batched Gets instead of scans. The keys falling into
+ * the scans of each region are looked up with a single multi-get, and the multi-gets of the
+ * regions run in parallel. The projected columns and the filter of the scans are copied onto
+ * the Gets, so that they are still applied on the server. The cells returned are then packed
+ * by the tuple projector of the scan, as the region observer would have done.
+ *
+ * Gets do not go through the scanner hooks of the Phoenix coprocessors, so this may only be
+ * used for queries that do not need them (see ScanPlan).
+ */
+public class MultiGetIterators extends BaseResultIterators {
+    private static final String NAME = "MULTI-GET";
+
+    public MultiGetIterators(QueryPlan plan, Integer perScanLimit, ParallelScanGrouper scanGrouper, Scan scan,
+            Map<ImmutableBytesPtr,ServerCache> caches, QueryPlan dataPlan) throws SQLException {
+        super(plan, perScanLimit, null, scanGrouper, scan, caches, dataPlan);
+    }
+
+    @Override
+    protected boolean isSerial() {
+        return false;
+    }
+
+    @Override
+    protected void submitWork(List<List<Scan>> nestedScans, List<List<Pair<Scan,Future<PeekingResultIterator>>>> nestedFutures,
+            final Queue<PeekingResultIterator> allIterators, int estFlattenedSize, boolean isReverse, ParallelScanGrouper scanGrouper) {
+        ExecutorService executor = context.getConnection().getQueryServices().getExecutor();
+        final String physicalTableName = tableRef.getTable().getPhysicalName().getString();
+        final byte[] physicalTableNameBytes = tableRef.getTable().getPhysicalName().getBytes();
+        List<byte[]> keys = getPointKeys();
+        context.getOverallQueryMetrics().updateNumParallelScans(nestedScans.size());
+        final JobLane jobLane = getJobLane(nestedScans.size());
+        final Object tenantId = getTenantId();
+        for (List<Scan> regionScans : nestedScans) {
+            final Scan scan = regionScans.get(0);
+            final List<Get> gets = Lists.newArrayList();
+            for (Scan regionScan : regionScans) {
+                for (byte[] key : getKeysInScan(keys, regionScan)) {
+                    gets.add(newGet(key, regionScan));
+                }
+            }
+            final TaskExecutionMetricsHolder taskMetrics =
+                    new TaskExecutionMetricsHolder(context.getReadMetricsQueue(), physicalTableName);
+            Future<PeekingResultIterator> future = executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
+
+                @Override
+                public PeekingResultIterator call() throws Exception {
+                    TupleProjector projector = TupleProjector.deserializeProjectorFromScan(scan);
+                    boolean useNewValueColumnQualifier = EncodedColumnsUtil.useNewValueColumnQualifier(scan);
+                    List<Tuple> tuples = Lists.newArrayListWithExpectedSize(gets.size());
+                    if (!gets.isEmpty()) {
+                        try (Table htable = context.getConnection().getQueryServices().getTable(physicalTableNameBytes)) {
+                            // Results come back in the order of the Gets, so in row key order
+                            for (Result result : htable.get(gets)) {
+                                if (result.isEmpty()) {
+                                    continue;
+                                }
+                                Tuple tuple = new ResultTuple(result);
+                                if (projector != null) {
+                                    Cell projectedCell = projector.projectResults(tuple, useNewValueColumnQualifier).getValue(0);
+                                    tuple = new ResultTuple(Result.create(Collections.singletonList(projectedCell)));
+                                }
+                                tuples.add(tuple);
+                            }
+                        }
+                    }
+                    // The rows are already in memory, so there is nothing left to spool or chunk
+                    PeekingResultIterator iterator = new MaterializedResultIterator(tuples);
+                    allIterators.add(iterator);
+                    return iterator;
+                }
+
+                @Override
+                public Object getJobId() {
+                    return MultiGetIterators.this;
+                }
+
+                @Override
+                public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                    return taskMetrics;
+                }
+
+                @Override
+                public JobLane getJobLane() {
+                    return jobLane;
+                }
+
+                @Override
+                public Object getTenantId() {
+                    return tenantId;
+                }
+            }, "Multi-get for table: " + physicalTableName));
+            nestedFutures.add(Collections.singletonList(new Pair<Scan,Future<PeekingResultIterator>>(scan, future)));
+        }
+    }
+
+    private List<byte[]> getPointKeys() {
+        List<byte[]> keys = Lists.newArrayListWithExpectedSize(context.getScanRanges().getPointLookupCount());
+        Iterator<KeyRange> iterator = context.getScanRanges().getPointLookupKeyIterator();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next().getLowerRange());
+        }
+        Collections.sort(keys, Bytes.BYTES_COMPARATOR);
+        return keys;
+    }
+
+    /**
+     * @return the keys, sorted in row key order, that are in the key range of the scan
+     */
+    private static List<byte[]> getKeysInScan(List<byte[]> keys, Scan scan) {
+        int from = scan.getStartRow().length == 0 ? 0 : lowerBound(keys, scan.getStartRow());
+        int to = scan.getStopRow().length == 0 ? keys.size() : lowerBound(keys, scan.getStopRow());
+        return keys.subList(from, Math.max(from, to));
+    }
+
+    private static int lowerBound(List<byte[]> keys, byte[] key) {
+        int index = Collections.binarySearch(keys, key, Bytes.BYTES_COMPARATOR);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    private static Get newGet(byte[] key, Scan scan) {
+        Get get = new Get(key);
+        for (Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
+            if (entry.getValue() == null) {
+                get.addFamily(entry.getKey());
+            } else {
+                for (byte[] qualifier : entry.getValue()) {
+                    get.addColumn(entry.getKey(), qualifier);
+                }
+            }
+        }
+        for (Entry<byte[], TimeRange> entry : scan.getColumnFamilyTimeRange().entrySet()) {
+            get.setColumnFamilyTimeRange(entry.getKey(), entry.getValue().getMin(), entry.getValue().getMax());
+        }
+        try {
+            get.setTimeRange(scan.getTimeRange().getMin(), scan.getTimeRange().getMax());
+            get.readVersions(scan.getMaxVersions());
+        } catch (IOException e) {
+            // Cannot happen as the time range and versions were already validated by the scan
+            throw new IllegalStateException(e);
+        }
+        get.setFilter(scan.getFilter());
+        get.setCacheBlocks(scan.getCacheBlocks());
+        get.setConsistency(scan.getConsistency());
+        get.setPriority(scan.getPriority());
+        return get;
+    }
+
+    @Override
+    protected String getName() {
+        return NAME;
+    }
+}
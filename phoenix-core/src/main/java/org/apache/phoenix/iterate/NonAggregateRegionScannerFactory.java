@@ -218,8 +218,13 @@ public class NonAggregateRegionScannerFactory extends RegionScannerFactory {
       }
       PTable.QualifierEncodingScheme encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
       ResultIterator inner = new RegionScannerResultIterator(s, EncodedColumnsUtil.getMinMaxQualifiersFromScan(scan), encodingScheme);
-      return new OrderedResultIterator(inner, orderByExpressions, spoolingEnabled,
+      OrderedResultIterator iterator = new OrderedResultIterator(inner, orderByExpressions, spoolingEnabled,
               thresholdBytes, limit >= 0 ? limit : null, null, estimatedRowSize);
+      byte[] threshold = scan.getAttribute(BaseScannerRegionObserver.TOPN_THRESHOLD);
+      if (threshold != null) {
+        iterator.setThresholdSortKeys(TopNThreshold.deserialize(threshold));
+      }
+      return iterator;
     } catch (IOException e) {
       throw new RuntimeException(e);
     } finally {
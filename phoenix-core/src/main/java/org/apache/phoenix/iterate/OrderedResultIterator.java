@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Result;
@@ -52,6 +53,9 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Ordering;
  * Result scanner that sorts aggregated rows by columns specified in the ORDER BY clause.
  * <p>
  * Note that currently the sort is entirely done in memory. 
+ * <p>
+ * When given an executor and a parallelism greater than one, the rows are sorted
+ * into that many runs concurrently, which are then merged (see {@link ParallelSortedQueue}).
  *  
  * 
  * @since 0.1
@@ -144,7 +148,11 @@ public class OrderedResultIterator implements PeekingResultIterator {
     private final ResultIterator delegate;
     private final List<OrderByExpression> orderByExpressions;
     private final long estimatedByteSize;
+    private final ExecutorService executor;
+    private final int parallelism;
     
+    private ImmutableBytesWritable[] thresholdSortKeys;
+
     private PeekingResultIterator resultIterator;
     private long byteSize;
 
@@ -165,7 +173,22 @@ public class OrderedResultIterator implements PeekingResultIterator {
     public OrderedResultIterator(ResultIterator delegate,
             List<OrderByExpression> orderByExpressions, boolean spoolingEnabled,
             long thresholdBytes, Integer limit, Integer offset, int estimatedRowSize) {
+        this(delegate, orderByExpressions, spoolingEnabled, thresholdBytes, limit, offset,
+                estimatedRowSize, null, 1);
+    }
+
+    /**
+     * @param executor executor used to sort runs of rows concurrently
+     * @param parallelism number of runs the rows are sorted into. A value of one or
+     *        a null executor sorts all rows on the thread reading them.
+     */
+    public OrderedResultIterator(ResultIterator delegate,
+            List<OrderByExpression> orderByExpressions, boolean spoolingEnabled,
+            long thresholdBytes, Integer limit, Integer offset, int estimatedRowSize,
+            ExecutorService executor, int parallelism) {
         checkArgument(!orderByExpressions.isEmpty());
+        this.executor = executor;
+        this.parallelism = executor == null ? 1 : Math.max(1, parallelism);
         this.delegate = delegate;
         this.orderByExpressions = orderByExpressions;
         this.spoolingEnabled = spoolingEnabled;
@@ -201,6 +224,16 @@ public class OrderedResultIterator implements PeekingResultIterator {
     public long getByteSize() {
         return byteSize;
     }
+
+    /**
+     * Drop the rows that sort after the given sort keys instead of sorting them. Rows with
+     * the same sort keys are kept. Must be called before the first row is read.
+     * @param sortKeys sort keys of a row, with null for a null value, as
+     *        returned by {@link #evaluateSortKeys(List, Tuple)}
+     */
+    public void setThresholdSortKeys(ImmutableBytesWritable[] sortKeys) {
+        this.thresholdSortKeys = sortKeys;
+    }
     /**
      * Builds a comparator from the list of columns in ORDER BY clause.
      * @param orderByExpressions the columns in ORDER BY clause.
@@ -208,7 +241,7 @@ public class OrderedResultIterator implements PeekingResultIterator {
      */
     // ImmutableBytesWritable.Comparator doesn't implement generics
     @SuppressWarnings("unchecked")
-    private static Comparator<ResultEntry> buildComparator(List<OrderByExpression> orderByExpressions) {
+    static Comparator<ResultEntry> buildComparator(List<OrderByExpression> orderByExpressions) {
         Ordering<ResultEntry> ordering = null;
         int pos = 0;
         for (OrderByExpression col : orderByExpressions) {
@@ -243,6 +276,25 @@ public class OrderedResultIterator implements PeekingResultIterator {
         };
     }
     
+    /**
+     * Evaluates the sort keys of a row, using null for the ones that are null or could
+     * not be evaluated.
+     */
+    static ImmutableBytesWritable[] evaluateSortKeys(List<Expression> expressions, Tuple result) {
+        int pos = 0;
+        ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[expressions.size()];
+        for (Expression expression : expressions) {
+            final ImmutableBytesWritable sortKey = new ImmutableBytesWritable();
+            boolean evaluated = expression.evaluate(result, sortKey);
+            if (evaluated && sortKey.getLength() > 0 && expression.isResultTransient()) {
+                sortKey.set(sortKey.copyBytes());
+            }
+            // set the sort key that failed to get evaluated with null
+            sortKeys[pos++] = evaluated && sortKey.getLength() > 0 ? sortKey : null;
+        }
+        return sortKeys;
+    }
+
     @Override
     public Tuple next() throws SQLException {
         return getResultIterator().next();
@@ -253,24 +305,35 @@ public class OrderedResultIterator implements PeekingResultIterator {
             return resultIterator;
         }
         
-        final int numSortKeys = orderByExpressions.size();
         List<Expression> expressions = Lists.newArrayList(Collections2.transform(orderByExpressions, TO_EXPRESSION));
         final Comparator<ResultEntry> comparator = buildComparator(orderByExpressions);
         try{
-            final SizeAwareQueue<ResultEntry> queueEntries =
-                    PhoenixQueues.newResultEntrySortedQueue(comparator, limit, spoolingEnabled,
-                        thresholdBytes);
+            final SizeAwareQueue<ResultEntry> queueEntries;
+            ParallelSortedQueue parallelQueue = null;
+            if (parallelism > 1) {
+                parallelQueue = new ParallelSortedQueue(comparator, limit, spoolingEnabled,
+                    thresholdBytes, executor, parallelism);
+                queueEntries = parallelQueue;
+            } else {
+                queueEntries = PhoenixQueues.newResultEntrySortedQueue(comparator, limit,
+                    spoolingEnabled, thresholdBytes);
+            }
             resultIterator = new RecordPeekingResultIterator(queueEntries);
+            ResultEntry threshold = thresholdSortKeys == null ? null : new ResultEntry(thresholdSortKeys, null);
             for (Tuple result = delegate.next(); result != null; result = delegate.next()) {
-                int pos = 0;
-                ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[numSortKeys];
-                for (Expression expression : expressions) {
-                    final ImmutableBytesWritable sortKey = new ImmutableBytesWritable();
-                    boolean evaluated = expression.evaluate(result, sortKey);
-                    // set the sort key that failed to get evaluated with null
-                    sortKeys[pos++] = evaluated && sortKey.getLength() > 0 ? sortKey : null;
+                ResultEntry entry = new ResultEntry(evaluateSortKeys(expressions, result), result);
+                if (threshold != null && comparator.compare(entry, threshold) > 0) {
+                    continue;
                 }
-                queueEntries.add(new ResultEntry(sortKeys, result));
+                if (parallelQueue != null) {
+                    // Sort keys are still evaluated on this thread, as expressions may not be thread safe
+                    parallelQueue.put(entry);
+                } else {
+                    queueEntries.add(entry);
+                }
+            }
+            if (parallelQueue != null) {
+                parallelQueue.finish();
             }
             this.byteSize = queueEntries.getByteSize();
         } catch (IOException e) {
@@ -321,6 +384,7 @@ public class OrderedResultIterator implements PeekingResultIterator {
     @Override
     public String toString() {
         return "OrderedResultIterator [thresholdBytes=" + thresholdBytes
+                + ", parallelism=" + parallelism
                 + ", limit=" + limit + ", offset=" + offset + ", delegate=" + delegate
                 + ", orderByExpressions=" + orderByExpressions
                 + ", estimatedByteSize=" + estimatedByteSize
@@ -33,6 +33,7 @@ import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobLane;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
@@ -107,17 +108,21 @@ public class ParallelIterators extends BaseResultIterators {
         int numScans = scanLocations.size();
         context.getOverallQueryMetrics().updateNumParallelScans(numScans);
         GLOBAL_NUM_PARALLEL_SCANS.update(numScans);
-        final long renewLeaseThreshold = context.getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
+        final AdaptiveSplitResultIterator.ScanPeers scanPeers = new AdaptiveSplitResultIterator.ScanPeers();
+        final JobLane jobLane = getJobLane(numScans);
+        final Object tenantId = getTenantId();
+        final AdaptiveSplitResultIterator.ScanRunner splitScanRunner =
+                new SplitScanRunner(scanGrouper, jobLane, tenantId);
+        final TopNThreshold topNThreshold = TopNThreshold.newInstance(plan, context.getScan());
         for (final ScanLocator scanLocation : scanLocations) {
             final Scan scan = scanLocation.getScan();
-            final ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(readMetrics, physicalTableName,
-                scan, context.getConnection().getLogLevel());
             final TaskExecutionMetricsHolder taskMetrics = new TaskExecutionMetricsHolder(readMetrics, physicalTableName);
-            final TableResultIterator tableResultItr =
-                    context.getConnection().getTableResultIteratorFactory().newIterator(
-                        mutationState, tableRef, scan, scanMetricsHolder, renewLeaseThreshold, plan,
-                        scanGrouper, caches);
-            context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
+            ResultIterator scanResultItr = AdaptiveSplitResultIterator.wrap(
+                    newTableResultIterator(scan, scanGrouper), scan, plan, scanPeers, splitScanRunner);
+            if (topNThreshold != null) {
+                scanResultItr = topNThreshold.wrap(scanResultItr, scan);
+            }
+            final ResultIterator tableResultItr = scanResultItr;
             Future<PeekingResultIterator> future = executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
                 
                 @Override
@@ -155,6 +160,16 @@ public class ParallelIterators extends BaseResultIterators {
                 public TaskExecutionMetricsHolder getTaskExecutionMetric() {
                     return taskMetrics;
                 }
+
+                @Override
+                public JobLane getJobLane() {
+                    return jobLane;
+                }
+
+                @Override
+                public Object getTenantId() {
+                    return tenantId;
+                }
             }, "Parallel scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
             // Add our future in the right place so that we can concatenate the
             // results of the inner futures versus merge sorting across all of them.
@@ -162,6 +177,79 @@ public class ParallelIterators extends BaseResultIterators {
         }
     }
 
+    private TableResultIterator newTableResultIterator(Scan scan, ParallelScanGrouper scanGrouper) throws SQLException {
+        ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(context.getReadMetricsQueue(),
+                tableRef.getTable().getPhysicalName().getString(), scan, context.getConnection().getLogLevel());
+        TableResultIterator tableResultItr =
+                context.getConnection().getTableResultIteratorFactory().newIterator(
+                    mutationState, tableRef, scan, scanMetricsHolder,
+                    context.getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds(), plan,
+                    scanGrouper, caches);
+        context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
+        return tableResultItr;
+    }
+
+    /**
+     * Runs the scans that the remainder of a lagging scan is split into. The scans read
+     * in the background are spooled, so that they make progress while the rows of the
+     * preceding scans are consumed.
+     */
+    private class SplitScanRunner implements AdaptiveSplitResultIterator.ScanRunner {
+        private final ParallelScanGrouper scanGrouper;
+        private final JobLane jobLane;
+        private final Object tenantId;
+
+        SplitScanRunner(ParallelScanGrouper scanGrouper, JobLane jobLane, Object tenantId) {
+            this.scanGrouper = scanGrouper;
+            this.jobLane = jobLane;
+            this.tenantId = tenantId;
+        }
+
+        @Override
+        public ResultIterator newIterator(Scan scan) throws SQLException {
+            return newTableResultIterator(scan, scanGrouper);
+        }
+
+        @Override
+        public Future<PeekingResultIterator> submit(final Scan scan) throws SQLException {
+            final TableResultIterator tableResultItr = newTableResultIterator(scan, scanGrouper);
+            final String physicalTableName = tableRef.getTable().getPhysicalName().getString();
+            final TaskExecutionMetricsHolder taskMetrics =
+                    new TaskExecutionMetricsHolder(context.getReadMetricsQueue(), physicalTableName);
+            final ParallelIteratorFactory spoolingFactory =
+                    new SpoolingResultIterator.SpoolingResultIteratorFactory(context.getConnection().getQueryServices());
+            ExecutorService executor = context.getConnection().getQueryServices().getExecutor();
+            return executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
+
+                @Override
+                public PeekingResultIterator call() throws Exception {
+                    return spoolingFactory.newIterator(context, tableResultItr, scan, physicalTableName,
+                            ParallelIterators.this.plan);
+                }
+
+                @Override
+                public Object getJobId() {
+                    return ParallelIterators.this;
+                }
+
+                @Override
+                public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                    return taskMetrics;
+                }
+
+                @Override
+                public JobLane getJobLane() {
+                    return jobLane;
+                }
+
+                @Override
+                public Object getTenantId() {
+                    return tenantId;
+                }
+            }, "Split scanner for table: " + physicalTableName));
+        }
+    }
+
     @Override
     protected String getName() {
         return NAME;
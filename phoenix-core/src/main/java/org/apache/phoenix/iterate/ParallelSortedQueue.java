@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
+import org.apache.phoenix.util.ServerUtil;
+
+/**
+ * Sorted queue of {@link ResultEntry} that sorts its entries on several threads.
+ * Entries are {@link #put(ResultEntry) put} by a single thread in batches, and each
+ * batch is handed to one of a fixed number of sorted runs in turn. Runs are the same
+ * queues as used for a single threaded sort, so they spill to disk past their share
+ * of the threshold, and a run is only ever filled by one task at a time. Once
+ * {@link #finish()} is called, the runs are merged through a {@link LoserTree}.
+ */
+class ParallelSortedQueue extends AbstractQueue<ResultEntry> implements SizeAwareQueue<ResultEntry> {
+    static final int BATCH_SIZE = 1024;
+
+    private final ExecutorService executor;
+    private final List<SizeAwareQueue<ResultEntry>> runs;
+    // Task filling each run, if any
+    private final List<Future<?>> pending;
+    private List<ResultEntry> batch = new ArrayList<ResultEntry>(BATCH_SIZE);
+    private int batchCount;
+    private final LoserTree<ResultEntry> merger;
+    private final Integer limit;
+    private int polled;
+
+    ParallelSortedQueue(Comparator<ResultEntry> comparator, Integer limit,
+            boolean spoolingEnabled, long thresholdBytes, ExecutorService executor,
+            int parallelism) throws IOException {
+        this.executor = executor;
+        this.limit = limit;
+        this.runs = new ArrayList<SizeAwareQueue<ResultEntry>>(parallelism);
+        this.pending = new ArrayList<Future<?>>(parallelism);
+        long runThresholdBytes = Math.max(1, thresholdBytes / parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            runs.add(PhoenixQueues.newResultEntrySortedQueue(comparator, limit,
+                spoolingEnabled, runThresholdBytes));
+            pending.add(null);
+        }
+        this.merger = new LoserTree<ResultEntry>(parallelism, comparator) {
+            @Override
+            protected ResultEntry advance(int source) {
+                // The merge only starts once all the runs are filled
+                return runs.get(source).poll();
+            }
+        };
+    }
+
+    /**
+     * Add an entry to the queue. May block while the run the current batch is
+     * handed to is still being filled with a previous batch.
+     */
+    public void put(ResultEntry entry) throws SQLException {
+        batch.add(entry);
+        if (batch.size() >= BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Wait for all the runs to be filled. Must be called before the queue is read.
+     */
+    public void finish() throws SQLException {
+        if (!batch.isEmpty()) {
+            flushBatch();
+        }
+        for (int i = 0; i < runs.size(); i++) {
+            waitFor(i);
+        }
+    }
+
+    private void flushBatch() throws SQLException {
+        final int runIndex = batchCount++ % runs.size();
+        final SizeAwareQueue<ResultEntry> run = runs.get(runIndex);
+        final List<ResultEntry> entries = batch;
+        batch = new ArrayList<ResultEntry>(BATCH_SIZE);
+        waitFor(runIndex);
+        try {
+            pending.set(runIndex, executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    run.addAll(entries);
+                    return null;
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // The pool is saturated, so sort the batch on this thread instead
+            run.addAll(entries);
+        }
+    }
+
+    private void waitFor(int runIndex) throws SQLException {
+        Future<?> future = pending.get(runIndex);
+        if (future == null) {
+            return;
+        }
+        pending.set(runIndex, null);
+        try {
+            runIfNotStarted(future);
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException();
+        } catch (ExecutionException e) {
+            // Surface errors such as a full size bound queue as they are on a single thread
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw ServerUtil.parseServerException(e.getCause());
+        }
+    }
+
+    /**
+     * Run a task on this thread if no thread of the pool has picked it up yet. The queue may
+     * be filled from a thread of the same pool, for example for a client side sort within a
+     * hash join sub-plan, and must not wait on tasks queued behind it.
+     */
+    private static void runIfNotStarted(Future<?> future) {
+        if (future instanceof RunnableFuture) {
+            // No-op if the task has already been started
+            ((RunnableFuture<?>) future).run();
+        }
+    }
+
+    @Override
+    public boolean offer(ResultEntry e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResultEntry poll() {
+        // Each run keeps up to limit entries, so the merged runs may have more
+        if (limit != null && polled >= limit) {
+            return null;
+        }
+        try {
+            ResultEntry entry = merger.poll();
+            if (entry != null) {
+                polled++;
+            }
+            return entry;
+        } catch (SQLException e) {
+            // Polling a run never fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ResultEntry peek() {
+        if (limit != null && polled >= limit) {
+            return null;
+        }
+        try {
+            return merger.peek();
+        } catch (SQLException e) {
+            // Polling a run never fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Iterator<ResultEntry> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        int size = batch.size();
+        for (SizeAwareQueue<ResultEntry> run : runs) {
+            size += run.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getByteSize() {
+        long byteSize = 0;
+        for (SizeAwareQueue<ResultEntry> run : runs) {
+            byteSize += run.getByteSize();
+        }
+        return byteSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (int i = 0; i < runs.size(); i++) {
+            Future<?> future = pending.get(i);
+            if (future != null) {
+                // Batches are small, so let the task complete rather than close its run under it
+                try {
+                    runIfNotStarted(future);
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ignored) {
+                }
+            }
+            try {
+                runs.get(i).close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
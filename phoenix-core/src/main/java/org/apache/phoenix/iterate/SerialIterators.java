@@ -36,6 +36,7 @@ import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobLane;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
@@ -97,6 +98,8 @@ public class SerialIterators extends BaseResultIterators {
                 flattenedScans = Lists.reverse(flattenedScans);
             }
             final List<Scan> finalScans = flattenedScans;
+            final JobLane jobLane = getJobLane(flattenedScans.size());
+            final Object tenantId = getTenantId();
             Future<PeekingResultIterator> future = executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
                 @Override
                 public PeekingResultIterator call() throws Exception {
@@ -118,6 +121,16 @@ public class SerialIterators extends BaseResultIterators {
                 public TaskExecutionMetricsHolder getTaskExecutionMetric() {
                     return taskMetrics;
                 }
+
+                @Override
+                public JobLane getJobLane() {
+                    return jobLane;
+                }
+
+                @Override
+                public Object getTenantId() {
+                    return tenantId;
+                }
             }, "Serial scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
             // Add our singleton Future which will execute serially
             nestedFutures.add(Collections.singletonList(new Pair<Scan, Future<PeekingResultIterator>>(flattenedScans.get(0), future)));
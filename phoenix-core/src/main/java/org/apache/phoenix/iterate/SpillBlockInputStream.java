@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Input stream reading spill files written by {@link SpillBlockOutputStream} one
+ * block at a time through a {@link FileChannel}.
+ */
+public class SpillBlockInputStream extends InputStream {
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(SpillBlockOutputStream.HEADER_SIZE);
+    private byte[] block = new byte[0];
+    private byte[] stored = new byte[0];
+    private int position;
+    private int limit;
+    private boolean isEnd;
+
+    public SpillBlockInputStream(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Read the next block into the block buffer
+     * @return false if the end of the file was reached
+     */
+    private boolean readBlock() throws IOException {
+        if (isEnd) {
+            return false;
+        }
+        header.clear();
+        if (!readFully(header, true)) {
+            isEnd = true;
+            return false;
+        }
+        header.flip();
+        byte codec = header.get();
+        int uncompressedLength = header.getInt();
+        int storedLength = header.getInt();
+        if (block.length < uncompressedLength) {
+            block = new byte[uncompressedLength];
+        }
+        if (codec == SpillBlockOutputStream.RAW_BLOCK) {
+            readFully(ByteBuffer.wrap(block, 0, storedLength), false);
+        } else if (codec == SpillBlockOutputStream.SNAPPY_BLOCK) {
+            if (stored.length < storedLength) {
+                stored = new byte[storedLength];
+            }
+            readFully(ByteBuffer.wrap(stored, 0, storedLength), false);
+            try {
+                Snappy.uncompress(stored, 0, storedLength, block, 0);
+            } catch (CorruptionException e) {
+                throw new IOException(e);
+            }
+        } else {
+            throw new IOException("Unknown spill block codec " + codec);
+        }
+        position = 0;
+        limit = uncompressedLength;
+        return true;
+    }
+
+    private boolean readFully(ByteBuffer buffer, boolean atBlockStart) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (atBlockStart && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated spill block");
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        isEnd = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Output stream for spill files that buffers writes into fixed size blocks and writes
+ * each block to the file through a {@link FileChannel}. Blocks may be compressed with
+ * Snappy, in which case a block is only stored compressed if that makes it smaller.
+ * Each block is preceded by a header made of a one byte codec, the uncompressed length
+ * and the stored length. For reading, see {@link SpillBlockInputStream}.
+ */
+public class SpillBlockOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final byte RAW_BLOCK = 0;
+    static final byte SNAPPY_BLOCK = 1;
+    static final int HEADER_SIZE = 1 + 2 * Bytes.SIZEOF_INT;
+
+    private final FileChannel channel;
+    private final byte[] block;
+    private final byte[] compressed;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private int position;
+    private long bytesWritten;
+    private boolean isClosed;
+
+    public SpillBlockOutputStream(File file, boolean compress) throws IOException {
+        this(file, compress, DEFAULT_BLOCK_SIZE);
+    }
+
+    public SpillBlockOutputStream(File file, boolean compress, int blockSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.block = new byte[blockSize];
+        this.compressed = compress ? new byte[Snappy.maxCompressedLength(blockSize)] : null;
+    }
+
+    /**
+     * @return the number of bytes written to the file so far, including block headers
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == block.length) {
+            writeBlock();
+        }
+        block[position++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        byte codec = RAW_BLOCK;
+        byte[] data = block;
+        int length = position;
+        if (compressed != null) {
+            int compressedLength = Snappy.compress(block, 0, position, compressed, 0);
+            if (compressedLength < position) {
+                codec = SNAPPY_BLOCK;
+                data = compressed;
+                length = compressedLength;
+            }
+        }
+        header.clear();
+        header.put(codec).putInt(position).putInt(length);
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(data, 0, length));
+        bytesWritten += HEADER_SIZE + length;
+        position = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            writeBlock();
+        } finally {
+            channel.close();
+        }
+    }
+}
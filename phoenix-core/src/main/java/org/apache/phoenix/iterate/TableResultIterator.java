@@ -38,6 +38,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.GuardedBy;
 
 import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
@@ -55,6 +56,8 @@ import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.join.HashCacheClient;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ByteUtil;
@@ -101,6 +104,7 @@ public class TableResultIterator implements ResultIterator {
     private int retry;
     private Map<ImmutableBytesPtr,ServerCache> caches;
     private HashCacheClient hashCacheClient;
+    private final boolean useAsyncScan;
 
     @VisibleForTesting // Exposed for testing. DON'T USE ANYWHERE ELSE!
     TableResultIterator() {
@@ -112,6 +116,7 @@ public class TableResultIterator implements ResultIterator {
         this.scanGrouper = null;
         this.caches = null;
         this.retry = 0;
+        this.useAsyncScan = false;
     }
 
     public static enum RenewLeaseStatus {
@@ -137,6 +142,11 @@ public class TableResultIterator implements ResultIterator {
         this.caches = caches;
         this.retry=plan.getContext().getConnection().getQueryServices().getProps()
                 .getInt(QueryConstants.HASH_JOIN_CACHE_RETRIES, QueryConstants.DEFAULT_HASH_JOIN_CACHE_RETRIES);
+        // Transactional tables are read through the Table of the transaction, which filters out
+        // the uncommitted data of other transactions
+        this.useAsyncScan = plan.getContext().getConnection().getQueryServices().getProps()
+                .getBoolean(QueryServices.ASYNC_SCAN_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_ASYNC_SCAN_ENABLED)
+                && !table.isTransactional();
         ScanUtil.setScanAttributesForIndexReadRepair(scan, table, plan.getContext().getConnection());
         ScanUtil.setScanAttributesForPhoenixTTL(scan, table, plan.getContext().getConnection());
         scan.setAttribute(BaseScannerRegionObserver.SERVER_PAGING, TRUE_BYTES);
@@ -235,8 +245,11 @@ public class TableResultIterator implements ResultIterator {
             ResultIterator delegate = this.scanIterator;
             if (delegate == UNINITIALIZED_SCANNER) {
                 try {
-                    this.scanIterator =
-                            new ScanningResultIterator(htable.getScanner(scan), scan, scanMetricsHolder);
+                    ResultScanner scanner = useAsyncScan
+                            ? plan.getContext().getConnection().getQueryServices()
+                                    .getAsyncTable(htable.getName().getName()).getScanner(scan)
+                            : htable.getScanner(scan);
+                    this.scanIterator = new ScanningResultIterator(scanner, scan, scanMetricsHolder);
                 } catch (IOException e) {
                     Closeables.closeQuietly(htable);
                     throw ServerUtil.parseServerException(e);
@@ -278,6 +291,8 @@ public class TableResultIterator implements ResultIterator {
                         return NOT_RENEWED;
                     }
                 } else {
+                    // Scanners of the asynchronous client renew their lease themselves while
+                    // they wait for the consumer to catch up
                     return NOT_SUPPORTED;
                 }
             }
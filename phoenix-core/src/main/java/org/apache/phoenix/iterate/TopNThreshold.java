@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Sort keys shared by the parallel scans of an ORDER BY ... LIMIT n query. Each scan
+ * returns the top n rows of its region in sorted order, so the n-th row of any scan
+ * bounds the rows that can make it into the query result: at least n rows sort before
+ * or with it. The best such row seen so far is sent to the scans that start afterwards
+ * (see {@link BaseScannerRegionObserver#TOPN_THRESHOLD}), and their regions drop the
+ * rows sorting after it instead of sorting and returning them.
+ * <p>
+ * Rows are otherwise only read once all scans have started, so the first n rows of
+ * each scan are read ahead as soon as its first row is asked for.
+ */
+public class TopNThreshold {
+    private final List<Expression> expressions;
+    private final Comparator<ResultEntry> comparator;
+    private final int limit;
+    private ResultEntry threshold;
+    private byte[] serializedThreshold;
+
+    private TopNThreshold(List<OrderByExpression> orderByExpressions, int limit) {
+        this.expressions = Lists.newArrayListWithExpectedSize(orderByExpressions.size());
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            expressions.add(orderByExpression.getExpression());
+        }
+        this.comparator = OrderedResultIterator.buildComparator(orderByExpressions);
+        this.limit = limit;
+    }
+
+    /**
+     * @return the threshold to share between the scans of the plan, or null if the plan
+     *         is not a TopN or if it is disabled
+     */
+    public static TopNThreshold newInstance(QueryPlan plan, Scan scan) {
+        ReadOnlyProps props = plan.getContext().getConnection().getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.COOPERATIVE_TOPN_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_COOPERATIVE_TOPN_ENABLED)) {
+            return null;
+        }
+        Integer limit = QueryUtil.getOffsetLimit(plan.getLimit(), plan.getOffset());
+        List<OrderByExpression> orderByExpressions = plan.getOrderBy().getOrderByExpressions();
+        if (limit == null || limit <= 0 || limit > props.getInt(QueryServices.COOPERATIVE_TOPN_MAX_LIMIT_ATTRIB,
+                QueryServicesOptions.DEFAULT_COOPERATIVE_TOPN_MAX_LIMIT)
+                || orderByExpressions.isEmpty()
+                || scan.getAttribute(BaseScannerRegionObserver.TOPN) == null) {
+            return null;
+        }
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            Expression expression = orderByExpression.getExpression();
+            // The client merges these rows with a plain byte comparison, which may not
+            // agree with the order the regions sort them in
+            if (expression.getSortOrder() == SortOrder.DESC && !expression.getDataType().isFixedWidth()) {
+                return null;
+            }
+        }
+        return new TopNThreshold(orderByExpressions, limit);
+    }
+
+    /**
+     * Wraps the iterator over the rows of a scan, so that the scan is sent the current
+     * threshold when it starts, and its n-th row is offered as a new threshold.
+     */
+    public ResultIterator wrap(ResultIterator iterator, Scan scan) {
+        return new ThresholdResultIterator(iterator, scan);
+    }
+
+    /**
+     * Offers the n-th row of a scan as the threshold. Synchronized, as the expressions
+     * are shared by the threads running the scans and may not be thread safe.
+     */
+    synchronized void offer(Tuple tuple) {
+        ImmutableBytesWritable[] sortKeys = OrderedResultIterator.evaluateSortKeys(expressions, tuple);
+        for (ImmutableBytesWritable sortKey : sortKeys) {
+            if (sortKey != null) {
+                sortKey.set(sortKey.copyBytes());
+            }
+        }
+        ResultEntry entry = new ResultEntry(sortKeys, null);
+        if (threshold == null || comparator.compare(entry, threshold) < 0) {
+            threshold = entry;
+            serializedThreshold = serialize(sortKeys);
+        }
+    }
+
+    synchronized byte[] getSerializedThreshold() {
+        return serializedThreshold;
+    }
+
+    static byte[] serialize(ImmutableBytesWritable[] sortKeys) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            WritableUtils.writeVInt(output, sortKeys.length);
+            for (ImmutableBytesWritable sortKey : sortKeys) {
+                if (sortKey == null) {
+                    WritableUtils.writeVInt(output, -1);
+                } else {
+                    WritableUtils.writeVInt(output, sortKey.getLength());
+                    output.write(sortKey.get(), sortKey.getOffset(), sortKey.getLength());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    public static ImmutableBytesWritable[] deserialize(byte[] serializedThreshold) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(serializedThreshold))) {
+            ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[WritableUtils.readVInt(input)];
+            for (int i = 0; i < sortKeys.length; i++) {
+                int length = WritableUtils.readVInt(input);
+                if (length >= 0) {
+                    byte[] b = new byte[length];
+                    input.readFully(b);
+                    sortKeys[i] = new ImmutableBytesWritable(b);
+                }
+            }
+            return sortKeys;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class ThresholdResultIterator extends DelegateResultIterator {
+        private final Scan scan;
+        private Iterator<Tuple> readAhead;
+        private boolean exhausted;
+
+        ThresholdResultIterator(ResultIterator delegate, Scan scan) {
+            super(delegate);
+            this.scan = scan;
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            if (readAhead == null) {
+                // The scanner is opened on the first call to next, so the scan may still be changed
+                byte[] serializedThreshold = getSerializedThreshold();
+                if (serializedThreshold != null) {
+                    scan.setAttribute(BaseScannerRegionObserver.TOPN_THRESHOLD, serializedThreshold);
+                }
+                List<Tuple> rows = Lists.newArrayListWithExpectedSize(limit);
+                Tuple tuple;
+                while (rows.size() < limit && (tuple = super.next()) != null) {
+                    rows.add(tuple);
+                }
+                if (rows.size() == limit) {
+                    offer(rows.get(limit - 1));
+                } else {
+                    exhausted = true;
+                }
+                readAhead = rows.iterator();
+            }
+            if (readAhead.hasNext()) {
+                return readAhead.next();
+            }
+            return exhausted ? null : super.next();
+        }
+    }
+}
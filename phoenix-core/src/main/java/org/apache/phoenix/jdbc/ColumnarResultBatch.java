@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.jdbc;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.visitor.SingleAggregateFunctionVisitor;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Rows of a result set read ahead in batches, with the projected columns of each batch
+ * decoded once into column vectors. INTEGER and BIGINT values are kept in a long vector
+ * and DOUBLE values in a double vector, so that the typed getters of
+ * {@link PhoenixResultSet} neither evaluate the projection again nor box the value.
+ * VARCHAR and CHAR values are dictionary encoded: each distinct value of the batch is
+ * decoded into a String once and the rows point to it, until the column turns out to have
+ * more distinct values in the batch than a fraction of the batch size.
+ *
+ * Values are decoded exactly as {@link org.apache.phoenix.compile.ExpressionProjector}
+ * decodes them into the type of their expression. Columns of other types, as well as
+ * values requested as another type, are read from the current row as before. So are values
+ * that fail to be decoded, so that the error is raised by the getter of that value, and
+ * only if the value is actually read.
+ */
+class ColumnarResultBatch {
+    // Stop looking values up in the dictionary of a column once it has more than
+    // batch size / MAX_DISTINCT_VALUES_DIVISOR entries, as the values barely repeat then
+    private static final int MAX_DISTINCT_VALUES_DIVISOR = 4;
+
+    private enum Vector { LONG, DOUBLE, STRING, OBJECT }
+
+    private final RowProjector rowProjector;
+    private final int batchSize;
+    private final int maxDistinctValues;
+    private final Expression[] expressions;
+    private final PDataType[] types;
+    private final Vector[] vectors;
+    private final Tuple[] rows;
+    private final boolean[][] nulls;
+    private final boolean[][] failures;
+    private final long[][] longValues;
+    private final double[][] doubleValues;
+    private final int[][] dictionaryCodes;
+    private final String[][] dictionaries;
+    private final int[] dictionarySizes;
+    private final Map<ImmutableBytesPtr, Integer>[] dictionaryIndexes;
+    private final Object[][] objectValues;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private final ImmutableBytesPtr key = new ImmutableBytesPtr();
+
+    private int rowCount;
+    private int position;
+    private boolean exhausted;
+
+    @SuppressWarnings("unchecked")
+    ColumnarResultBatch(RowProjector rowProjector, int batchSize) {
+        this.rowProjector = rowProjector;
+        this.batchSize = batchSize;
+        this.maxDistinctValues = Math.max(1, batchSize / MAX_DISTINCT_VALUES_DIVISOR);
+        int columnCount = rowProjector.getColumnCount();
+        this.expressions = new Expression[columnCount];
+        this.types = new PDataType[columnCount];
+        this.vectors = new Vector[columnCount];
+        this.rows = new Tuple[batchSize];
+        this.nulls = new boolean[columnCount][];
+        this.failures = new boolean[columnCount][];
+        this.longValues = new long[columnCount][];
+        this.doubleValues = new double[columnCount][];
+        this.dictionaryCodes = new int[columnCount][];
+        this.dictionaries = new String[columnCount][];
+        this.dictionarySizes = new int[columnCount];
+        this.dictionaryIndexes = new Map[columnCount];
+        this.objectValues = new Object[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            Expression expression = rowProjector.getColumnProjector(i).getExpression();
+            PDataType type = expression.getDataType();
+            Vector vector = getVector(type);
+            if (vector == null) {
+                continue;
+            }
+            expressions[i] = expression;
+            types[i] = type;
+            vectors[i] = vector;
+            nulls[i] = new boolean[batchSize];
+            failures[i] = new boolean[batchSize];
+            switch (vector) {
+            case LONG:
+                longValues[i] = new long[batchSize];
+                break;
+            case DOUBLE:
+                doubleValues[i] = new double[batchSize];
+                break;
+            case STRING:
+                dictionaryCodes[i] = new int[batchSize];
+                dictionaries[i] = new String[batchSize];
+                dictionaryIndexes[i] = Maps.newHashMapWithExpectedSize(maxDistinctValues);
+                break;
+            default:
+                objectValues[i] = new Object[batchSize];
+                break;
+            }
+        }
+        this.position = batchSize;
+        this.rowCount = batchSize;
+    }
+
+    /**
+     * Aggregate functions are evaluated from the state of their client aggregator, which
+     * only holds the values of the last row read, so their rows cannot be read ahead.
+     * @return true if the rows of the projection may be read in batches
+     */
+    static boolean isSupported(RowProjector rowProjector) {
+        final boolean[] hasAggregate = new boolean[1];
+        SingleAggregateFunctionVisitor visitor = new SingleAggregateFunctionVisitor() {
+            @Override
+            public Iterator<Expression> visitEnter(SingleAggregateFunction function) {
+                hasAggregate[0] = true;
+                return Collections.emptyIterator();
+            }
+        };
+        for (int i = 0; i < rowProjector.getColumnCount() && !hasAggregate[0]; i++) {
+            rowProjector.getColumnProjector(i).getExpression().accept(visitor);
+        }
+        return !hasAggregate[0];
+    }
+
+    private static Vector getVector(PDataType type) {
+        if (type == PInteger.INSTANCE || type == PLong.INSTANCE) {
+            return Vector.LONG;
+        }
+        if (type == PDouble.INSTANCE) {
+            return Vector.DOUBLE;
+        }
+        if (type == PVarchar.INSTANCE || type == PChar.INSTANCE) {
+            return Vector.STRING;
+        }
+        // Only immutable values may be handed out more than once
+        if (type == PDecimal.INSTANCE || type == PBoolean.INSTANCE) {
+            return Vector.OBJECT;
+        }
+        return null;
+    }
+
+    /**
+     * Move to the next row, reading the next batch from the scanner when the current one
+     * has been consumed.
+     * @return the next row or null when the scanner has no more rows
+     */
+    Tuple next(ResultIterator scanner) throws SQLException {
+        if (++position < rowCount) {
+            return rows[position];
+        }
+        // Drop the references to the rows of the previous batch
+        Arrays.fill(rows, 0, rowCount, null);
+        rowCount = 0;
+        position = 0;
+        if (exhausted) {
+            return null;
+        }
+        Tuple row;
+        while (rowCount < batchSize && (row = scanner.next()) != null) {
+            rows[rowCount++] = row;
+        }
+        if (rowCount < batchSize) {
+            exhausted = true;
+        }
+        if (rowCount == 0) {
+            return null;
+        }
+        decode();
+        return rows[0];
+    }
+
+    private void decode() {
+        for (int i = 0; i < dictionaryIndexes.length; i++) {
+            if (dictionaryIndexes[i] != null) {
+                dictionaryIndexes[i].clear();
+                Arrays.fill(dictionaries[i], 0, dictionarySizes[i], null);
+                dictionarySizes[i] = 0;
+            } else if (objectValues[i] != null) {
+                Arrays.fill(objectValues[i], null);
+            }
+        }
+        for (int row = 0; row < rowCount; row++) {
+            rowProjector.reset();
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i] != null) {
+                    try {
+                        decode(row, i);
+                        failures[i][row] = false;
+                    } catch (RuntimeException e) {
+                        // Leave the value to the projection of the row, which raises the error
+                        // again if and when the value is read
+                        failures[i][row] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void decode(int row, int column) {
+        Expression expression = expressions[column];
+        if (!expression.evaluate(rows[row], ptr) || ptr.getLength() == 0) {
+            nulls[column][row] = true;
+            return;
+        }
+        nulls[column][row] = false;
+        PDataType type = types[column];
+        switch (vectors[column]) {
+        case LONG:
+            longValues[column][row] = type.getCodec().decodeLong(ptr.get(), ptr.getOffset(),
+                    expression.getSortOrder());
+            break;
+        case DOUBLE:
+            doubleValues[column][row] = type.getCodec().decodeDouble(ptr.get(), ptr.getOffset(),
+                    expression.getSortOrder());
+            break;
+        case STRING:
+            dictionaryCodes[column][row] = encode(column, expression);
+            break;
+        default:
+            objectValues[column][row] = toObject(expression);
+            break;
+        }
+    }
+
+    private int encode(int column, Expression expression) {
+        Map<ImmutableBytesPtr, Integer> index = dictionaryIndexes[column];
+        boolean lookup = dictionarySizes[column] < maxDistinctValues;
+        if (lookup) {
+            key.set(ptr.get(), ptr.getOffset(), ptr.getLength());
+            Integer code = index.get(key);
+            if (code != null) {
+                return code;
+            }
+        }
+        int code = dictionarySizes[column]++;
+        dictionaries[column][code] = (String) toObject(expression);
+        if (lookup) {
+            // The bytes may point into a buffer reused by the expression
+            index.put(new ImmutableBytesPtr(ptr.copyBytes()), code);
+        }
+        return code;
+    }
+
+    private Object toObject(Expression expression) {
+        return expression.getDataType().toObject(ptr, expression.getDataType(),
+                expression.getSortOrder(), expression.getMaxLength(), expression.getScale());
+    }
+
+    /**
+     * @return true if the value of the column in the current row is decoded into the given type
+     */
+    boolean isDecoded(int column, PDataType type) {
+        return column >= 0 && column < types.length && types[column] == type
+                && !failures[column][position];
+    }
+
+    boolean isNull(int column) {
+        return nulls[column][position];
+    }
+
+    /**
+     * @return the value of an INTEGER or BIGINT column, or 0 if it is null
+     */
+    long getLong(int column) {
+        return nulls[column][position] ? 0 : longValues[column][position];
+    }
+
+    /**
+     * @return the value of a DOUBLE column, or 0 if it is null
+     */
+    double getDouble(int column) {
+        return nulls[column][position] ? 0 : doubleValues[column][position];
+    }
+
+    /**
+     * @return the value of a decoded column as an object of the type of its expression
+     */
+    Object getObject(int column) {
+        if (nulls[column][position]) {
+            return null;
+        }
+        switch (vectors[column]) {
+        case LONG:
+            long value = longValues[column][position];
+            if (types[column] == PInteger.INSTANCE) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        case DOUBLE:
+            return doubleValues[column][position];
+        case STRING:
+            return dictionaries[column][dictionaryCodes[column][position]];
+        default:
+            return objectValues[column][position];
+        }
+    }
+}
@@ -18,7 +18,11 @@
 package org.apache.phoenix.jdbc;
 
 import static org.apache.phoenix.coprocessor.ScanRegionObserver.DYN_COLS_METADATA_CELL_QUALIFIER;
+import static org.apache.phoenix.query.QueryServices.COLUMNAR_RESULT_SET_BATCH_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.COLUMNAR_RESULT_SET_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.WILDCARD_QUERY_DYNAMIC_COLS_ATTRIB;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_COLUMNAR_RESULT_SET_BATCH_SIZE;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_COLUMNAR_RESULT_SET_ENABLED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_WILDCARD_QUERY_DYNAMIC_COLS_ATTRIB;
 
 import java.io.InputStream;
@@ -91,6 +95,7 @@ import org.apache.phoenix.schema.types.PTimestamp;
 import org.apache.phoenix.schema.types.PTinyint;
 import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SQLCloseable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -144,6 +149,7 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     private final boolean wildcardIncludesDynamicCols;
     private final List<PColumn> staticColumns;
     private final int startPositionForDynamicCols;
+    private final ColumnarResultBatch columnarBatch;
 
     private RowProjector rowProjectorWithDynamicCols;
     private Tuple currentRow = BEFORE_FIRST;
@@ -177,6 +183,16 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
             this.staticColumns = null;
             this.startPositionForDynamicCols = 0;
         }
+        // The projector of rows with dynamic columns changes from row to row
+        ReadOnlyProps props = this.context.getConnection().getQueryServices().getProps();
+        if (!this.wildcardIncludesDynamicCols
+                && props.getBoolean(COLUMNAR_RESULT_SET_ENABLED_ATTRIB, DEFAULT_COLUMNAR_RESULT_SET_ENABLED)
+                && ColumnarResultBatch.isSupported(rowProjector)) {
+            this.columnarBatch = new ColumnarResultBatch(rowProjector, props.getInt(
+                    COLUMNAR_RESULT_SET_BATCH_SIZE_ATTRIB, DEFAULT_COLUMNAR_RESULT_SET_BATCH_SIZE));
+        } else {
+            this.columnarBatch = null;
+        }
     }
     
     @Override
@@ -289,6 +305,11 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     @Override
     public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
         checkCursorState();
+        if (isDecoded(columnIndex, PDecimal.INSTANCE)) {
+            BigDecimal value = (BigDecimal)columnarBatch.getObject(columnIndex-1);
+            wasNull = (value == null);
+            return value;
+        }
         BigDecimal value = (BigDecimal)getRowProjector().getColumnProjector(columnIndex-1)
                 .getValue(currentRow, PDecimal.INSTANCE, ptr);
         wasNull = (value == null);
@@ -339,7 +360,7 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
         checkCursorState();
         ColumnProjector colProjector = getRowProjector().getColumnProjector(columnIndex-1);
         PDataType type = colProjector.getExpression().getDataType();
-        Object value = colProjector.getValue(currentRow, type, ptr);
+        Object value = getValue(columnIndex, colProjector, type);
         wasNull = (value == null);
         if (value == null) {
             return false;
@@ -463,6 +484,10 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     @Override
     public double getDouble(int columnIndex) throws SQLException {
         checkCursorState();
+        if (isDecoded(columnIndex, PDouble.INSTANCE)) {
+            wasNull = columnarBatch.isNull(columnIndex-1);
+            return columnarBatch.getDouble(columnIndex-1);
+        }
         Double value = (Double)getRowProjector().getColumnProjector(columnIndex-1)
                 .getValue(currentRow, PDouble.INSTANCE, ptr);
         wasNull = (value == null);
@@ -512,6 +537,10 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     @Override
     public int getInt(int columnIndex) throws SQLException {
         checkCursorState();
+        if (isDecoded(columnIndex, PInteger.INSTANCE)) {
+            wasNull = columnarBatch.isNull(columnIndex-1);
+            return (int)columnarBatch.getLong(columnIndex-1);
+        }
         Integer value = (Integer)getRowProjector().getColumnProjector(columnIndex-1)
                 .getValue(currentRow, PInteger.INSTANCE, ptr);
         wasNull = (value == null);
@@ -529,6 +558,10 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     @Override
     public long getLong(int columnIndex) throws SQLException {
         checkCursorState();
+        if (isDecoded(columnIndex, PLong.INSTANCE) || isDecoded(columnIndex, PInteger.INSTANCE)) {
+            wasNull = columnarBatch.isNull(columnIndex-1);
+            return columnarBatch.getLong(columnIndex-1);
+        }
         Long value = (Long)getRowProjector().getColumnProjector(columnIndex-1).getValue(currentRow,
             PLong.INSTANCE, ptr);
         wasNull = (value == null);
@@ -582,7 +615,7 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     public Object getObject(int columnIndex) throws SQLException {
         checkCursorState();
         ColumnProjector projector = getRowProjector().getColumnProjector(columnIndex-1);
-        Object value = projector.getValue(currentRow, projector.getExpression().getDataType(), ptr);
+        Object value = getValue(columnIndex, projector, projector.getExpression().getDataType());
         wasNull = (value == null);
         return value;
     }
@@ -667,7 +700,7 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
         // We can't coerce using our formatter because we don't have enough context in PDataType.
         ColumnProjector projector = getRowProjector().getColumnProjector(columnIndex-1);
         PDataType type = projector.getExpression().getDataType();
-        Object value = projector.getValue(currentRow,type, ptr);
+        Object value = getValue(columnIndex, projector, type);
         if (wasNull = (value == null)) {
             return null;
         }
@@ -838,7 +871,7 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
                 firstRecordRead = true;
                 overAllQueryMetrics.startResultSetWatch();
             }
-            currentRow = scanner.next();
+            currentRow = columnarBatch == null ? scanner.next() : columnarBatch.next(scanner);
             if (currentRow != null) {
                 count++;
                 // Reset this projector with each row
@@ -1396,6 +1429,25 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
         return context;
     }
 
+    /**
+     * @return true if the value of the column in the current row is decoded into the given
+     * type in the column vectors of the result set batch
+     */
+    private boolean isDecoded(int columnIndex, PDataType type) {
+        return columnarBatch != null && columnarBatch.isDecoded(columnIndex-1, type);
+    }
+
+    /**
+     * Get the value of a column as an object of the given type.
+     */
+    private Object getValue(int columnIndex, ColumnProjector projector, PDataType type)
+            throws SQLException {
+        if (isDecoded(columnIndex, type)) {
+            return columnarBatch.getObject(columnIndex-1);
+        }
+        return projector.getValue(currentRow, type, ptr);
+    }
+
     /**
      * Return the row projector to use
      * @return the row projector including dynamic column projectors in case we are including
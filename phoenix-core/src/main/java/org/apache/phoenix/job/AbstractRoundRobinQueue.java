@@ -28,6 +28,11 @@ import java.util.concurrent.TimeUnit;
  * An bounded blocking queue implementation that keeps a virtual queue of elements on per-producer
  * basis and iterates through each producer queue in round robin fashion.
  *
+ * Producers may be assigned to lanes, in which case the producers of a lane are only polled when
+ * all the lanes before it are empty, or when the lane was passed over {@link #getLaneWeight()}
+ * times in a row. The number of elements of each lane and of each group of producers may be
+ * bounded below the size of the queue, so that other lanes and groups always have room left.
+ *
  */
 public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
         implements BlockingQueue<E>{
@@ -45,8 +50,20 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
      * @param newProducerToFront If true, new producers go to the front of the round-robin list, if false, they go to the end.
      */
     public AbstractRoundRobinQueue(int maxSize, boolean newProducerToFront) {
+        this(maxSize, newProducerToFront, 1);
+    }
+
+    /**
+     * @param laneCount number of lanes, in priority order, that producers are assigned to by {@link #extractLane(Object)}
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractRoundRobinQueue(int maxSize, boolean newProducerToFront, int laneCount) {
         this.producerMap = new HashMap<Object,ProducerList<E>>();
-        this.producerLists = new LinkedList<ProducerList<E>>();
+        this.groupSizes = new HashMap<Object,Integer>();
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            this.lanes[i] = new Lane<E>();
+        }
         this.lock = new Object();
         this.newProducerToFront = newProducerToFront;
         this.maxSize = maxSize;
@@ -56,10 +73,12 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
     public Iterator<E> iterator() {
         synchronized(lock) {
             ArrayList<E> allElements = new ArrayList<E>(this.size);
-            ListIterator<ProducerList<E>> iter = this.producerLists.listIterator(this.currentProducer);
-            while(iter.hasNext()) {
-                ProducerList<E> tList = iter.next();
-                allElements.addAll(tList.list);
+            for (Lane<E> lane : this.lanes) {
+                ListIterator<ProducerList<E>> iter = lane.producerLists.listIterator(lane.currentProducer);
+                while(iter.hasNext()) {
+                    ProducerList<E> tList = iter.next();
+                    allElements.addAll(tList.list);
+                }
             }
             return allElements.iterator();
         }
@@ -92,16 +111,30 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
                 return false;
             }
             producerList = this.producerMap.get(producerKey);
+            // A producer stays in the lane and group of its first element while it has queued elements
+            int laneIndex = producerList == null ? extractLane(o) : producerList.lane;
+            Object group = producerList == null ? extractGroup(o) : producerList.group;
+            Lane<E> lane = this.lanes[laneIndex];
+            if (lane.size >= getMaxLaneSize(laneIndex)) {
+                return false;
+            }
+            if (group != null && getGroupSize(group) >= getMaxGroupSize()) {
+                return false;
+            }
             if (producerList == null) {
-                producerList = new ProducerList<E>(producerKey);
+                producerList = new ProducerList<E>(producerKey, laneIndex, group);
                 this.producerMap.put(producerKey, producerList);
-                this.producerLists.add(this.currentProducer, producerList);
+                lane.producerLists.add(lane.currentProducer, producerList);
                 if (!this.newProducerToFront) {
-                    incrementCurrentProducerPointer();
+                    lane.incrementCurrentProducerPointer();
                 }
             }
             producerList.list.add(o);
+            lane.size++;
             this.size++;
+            if (group != null) {
+                this.groupSizes.put(group, getGroupSize(group) + 1);
+            }
             lock.notifyAll();
         }
         return true;
@@ -112,6 +145,45 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
      */
     protected abstract Object extractProducer(E o);
 
+    /**
+     * Implementations may assign the producer of an element to a lane other than the first one.
+     * @return the index of the lane of the producer of the element
+     */
+    protected int extractLane(E o) {
+        return 0;
+    }
+
+    /**
+     * Implementations may assign the producer of an element to a group, in which case the elements
+     * of all the producers of the group are limited to {@link #getMaxGroupSize()}.
+     * @return the group of the producer of the element, or null if the producer is in no group
+     */
+    protected Object extractGroup(E o) {
+        return null;
+    }
+
+    /**
+     * @return the maximum number of elements of the lane
+     */
+    protected int getMaxLaneSize(int lane) {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the maximum number of elements of a group of producers
+     */
+    protected int getMaxGroupSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of times in a row a non empty lane is passed over in favor of the lanes
+     * before it before it is polled
+     */
+    protected int getLaneWeight() {
+        return Integer.MAX_VALUE;
+    }
+
     @Override
     public void put(E o) {
         offer(o);
@@ -145,33 +217,74 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
     @Override
     public E poll() {
         synchronized(lock) {
-            ListIterator<ProducerList<E>> iter = this.producerLists.listIterator(this.currentProducer);
-            while (iter.hasNext()) {
-                ProducerList<E> tList = iter.next();
-                if (tList.list.isEmpty()) {
-                    iter.remove();
-                    this.producerMap.remove(tList.producer);
-                    adjustCurrentProducerPointer();
-                } else {
-                    E element = tList.list.removeFirst();
-                    this.size--;
-                    assert element != null;
-                    // This is the round robin part. When we take an element from the current thread's queue
-                    // we move on to the next thread.
-                    if (tList.list.isEmpty()) {
-                        iter.remove();
-                        this.producerMap.remove(tList.producer);
-                        adjustCurrentProducerPointer();
-                    } else {
-                        incrementCurrentProducerPointer();
-                    }
-                    lock.notifyAll();
-                    return element;
+            Lane<E> lane = nextLane();
+            if (lane == null) {
+                assert this.size == 0;
+                return null;
+            }
+            ProducerList<E> tList = lane.producerLists.get(lane.currentProducer);
+            E element = tList.list.removeFirst();
+            removed(lane, tList);
+            assert element != null;
+            // This is the round robin part. When we take an element from the current thread's queue
+            // we move on to the next thread.
+            if (tList.list.isEmpty()) {
+                lane.producerLists.remove(lane.currentProducer);
+                this.producerMap.remove(tList.producer);
+                lane.adjustCurrentProducerPointer();
+            } else {
+                lane.incrementCurrentProducerPointer();
+            }
+            lock.notifyAll();
+            return element;
+        }
+    }
+
+    /**
+     * @return the lane to poll the next element from, or null if the queue is empty
+     */
+    private Lane<E> nextLane() {
+        Lane<E> next = null;
+        for (Lane<E> lane : this.lanes) {
+            if (lane.size == 0) {
+                continue;
+            }
+            if (next == null) {
+                next = lane;
+            } else if (lane.passedOver >= getLaneWeight()) {
+                // Keep the lanes after the first non empty one from starving
+                next = lane;
+                break;
+            }
+        }
+        if (next != null) {
+            for (Lane<E> lane : this.lanes) {
+                if (lane == next) {
+                    lane.passedOver = 0;
+                } else if (lane.size > 0) {
+                    lane.passedOver++;
                 }
             }
-            assert this.size == 0;
         }
-        return null;
+        return next;
+    }
+
+    private void removed(Lane<E> lane, ProducerList<E> tList) {
+        lane.size--;
+        this.size--;
+        if (tList.group != null) {
+            int groupSize = getGroupSize(tList.group) - 1;
+            if (groupSize == 0) {
+                this.groupSizes.remove(tList.group);
+            } else {
+                this.groupSizes.put(tList.group, groupSize);
+            }
+        }
+    }
+
+    private int getGroupSize(Object group) {
+        Integer groupSize = this.groupSizes.get(group);
+        return groupSize == null ? 0 : groupSize;
     }
 
     /**
@@ -181,13 +294,14 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
         synchronized(lock) {
             ProducerList<E> tList = this.producerMap.get(producer);
             if (tList != null && !tList.list.isEmpty()) {
+                Lane<E> lane = this.lanes[tList.lane];
                 E element = tList.list.removeFirst();
-                this.size--;
+                removed(lane, tList);
                 if (tList.list.isEmpty()) {
-                    this.producerLists.remove(tList);
+                    lane.producerLists.remove(tList);
                     this.producerMap.remove(tList.producer);
                     // we need to adjust the current thread pointer in case it pointed to this thread list, which is now removed
-                    adjustCurrentProducerPointer();
+                    lane.adjustCurrentProducerPointer();
                 }
                 lock.notifyAll();
                 assert element != null;
@@ -202,15 +316,9 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
     @Override
     public E peek() {
         synchronized(lock) {
-            ListIterator<ProducerList<E>> iter = this.producerLists.listIterator(this.currentProducer);
-            while (iter.hasNext()) {
-                ProducerList<E> tList = iter.next();
-                if (tList.list.isEmpty()) {
-                    iter.remove();
-                    this.producerMap.remove(tList.producer);
-                    adjustCurrentProducerPointer();
-                } else {
-                    E element = tList.list.getFirst();
+            for (Lane<E> lane : this.lanes) {
+                if (lane.size > 0) {
+                    E element = lane.producerLists.get(lane.currentProducer).list.getFirst();
                     assert element != null;
                     return element;
                 }
@@ -232,8 +340,8 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
             int drained = drainTo(c, this.size);
             assert drained == originalSize;
             assert this.size == 0;
-            assert this.producerLists.isEmpty();
             assert this.producerMap.isEmpty();
+            assert this.groupSizes.isEmpty();
             return drained;
         }
     }
@@ -271,22 +379,34 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
             return this.size;
         }
     }
-    
-    private void incrementCurrentProducerPointer() {
-        synchronized(lock) {
+
+    /**
+     * @return the number of elements in the lane
+     */
+    public int size(int lane) {
+        synchronized(this.lock) {
+            return this.lanes[lane].size;
+        }
+    }
+
+    private static class Lane<E> {
+        private final LinkedList<ProducerList<E>> producerLists = new LinkedList<ProducerList<E>>();
+        private int currentProducer;
+        private int size;
+        private int passedOver;
+
+        private void incrementCurrentProducerPointer() {
             if (this.producerLists.size() == 0) {
                 this.currentProducer = 0;
             } else {
                 this.currentProducer = (this.currentProducer+1)%this.producerLists.size();
             }
         }
-    }
-    
-    /**
-     * Adjusts the current pointer to a decrease in size.
-     */
-    private void adjustCurrentProducerPointer() {
-        synchronized(lock) {
+
+        /**
+         * Adjusts the current pointer to a decrease in size.
+         */
+        private void adjustCurrentProducerPointer() {
             if (this.producerLists.size() == 0) {
                 this.currentProducer = 0;
             } else {
@@ -296,19 +416,23 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
     }
 
     private static class ProducerList<E> {
-        public ProducerList(Object producer) {
+        public ProducerList(Object producer, int lane, Object group) {
             this.producer = producer;
+            this.lane = lane;
+            this.group = group;
             this.list = new LinkedList<E>();
         }
         private final Object producer;
+        private final int lane;
+        private final Object group;
         private final LinkedList<E> list;
     }
 
     private final Map<Object,ProducerList<E>> producerMap;
-    private final LinkedList<ProducerList<E>> producerLists;
+    private final Map<Object,Integer> groupSizes;
+    private final Lane<E>[] lanes;
     private final Object lock;
     private final boolean newProducerToFront;
-    private int currentProducer;
     private int size;
     private int maxSize;
 }
@@ -17,6 +17,10 @@
  */
 package org.apache.phoenix.job;
 
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_BULK_TASK_QUEUE_WAIT_TIME;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_BULK_TASK_REJECTED_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_INTERACTIVE_TASK_QUEUE_WAIT_TIME;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_INTERACTIVE_TASK_REJECTED_COUNTER;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_REJECTED_TASK_COUNTER;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_END_TO_END_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_EXECUTED_COUNTER;
@@ -39,8 +43,11 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServicesOptions;
 
 import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 
 /**
@@ -53,10 +60,37 @@ import org.apache.phoenix.util.EnvironmentEdgeManager;
 @SuppressWarnings("rawtypes")
 public class JobManager<T> extends AbstractRoundRobinQueue<T> {
 	
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobManager.class);
     private static final AtomicLong PHOENIX_POOL_INDEX = new AtomicLong(1);
-	
+
+    /**
+     * Lanes of the queue of the thread pool. Queued tasks of interactive jobs run before the
+     * tasks of bulk jobs, and part of the queue may be reserved for them, so that short queries
+     * are neither delayed nor rejected because of large scans filling up the queue.
+     */
+    public enum JobLane {
+        INTERACTIVE,
+        BULK
+    }
+
+    private final int maxBulkSize;
+    private final int maxTenantSize;
+    private final int interactiveWeight;
+
     public JobManager(int maxSize) {
-        super(maxSize, true); // true -> new producers move to front of queue; this reduces latency.
+        this(maxSize, 0, Integer.MAX_VALUE, 100);
+    }
+
+    /**
+     * @param interactiveReservePercent percent of the queue that only interactive tasks may use
+     * @param interactiveWeight number of interactive tasks taken for each bulk task when both are queued
+     * @param maxTenantPercent maximum percent of the queue that the tasks of a single tenant may use
+     */
+    public JobManager(int maxSize, int interactiveReservePercent, int interactiveWeight, int maxTenantPercent) {
+        super(maxSize, true, JobLane.values().length); // true -> new producers move to front of queue; this reduces latency.
+        this.maxBulkSize = maxSize - (int)((long)maxSize * interactiveReservePercent / 100);
+        this.maxTenantSize = Math.max(1, (int)((long)maxSize * maxTenantPercent / 100));
+        this.interactiveWeight = interactiveWeight;
     }
 
 	@Override
@@ -67,24 +101,100 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         return o;
     }        
 
+    @Override
+    protected int extractLane(T o) {
+        return getJobLane(o).ordinal();
+    }
+
+    @Override
+    protected Object extractGroup(T o) {
+        if (o instanceof JobFutureTask) {
+            return ((JobFutureTask)o).tenantId;
+        }
+        return null;
+    }
+
+    @Override
+    protected int getMaxLaneSize(int lane) {
+        return lane == JobLane.BULK.ordinal() ? maxBulkSize : super.getMaxLaneSize(lane);
+    }
+
+    @Override
+    protected int getMaxGroupSize() {
+        return maxTenantSize;
+    }
+
+    @Override
+    protected int getLaneWeight() {
+        return interactiveWeight;
+    }
+
+    private static JobLane getJobLane(Object task) {
+        if (task instanceof JobFutureTask) {
+            return ((JobFutureTask)task).lane;
+        }
+        return JobLane.BULK;
+    }
+
     public static interface JobRunnable<T> extends Runnable {
         public Object getJobId();
         public TaskExecutionMetricsHolder getTaskExecutionMetric();
+
+        public default JobLane getJobLane() {
+            return JobLane.BULK;
+        }
+
+        /**
+         * @return the tenant that the job runs for, or null if it is not run for a tenant
+         */
+        public default Object getTenantId() {
+            return null;
+        }
     }
 
     public static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize, boolean useInstrumentedThreadPool) {
+        return createThreadPoolExec(keepAliveMs, size, queueSize,
+                QueryServicesOptions.DEFAULT_QUEUE_INTERACTIVE_RESERVE_PERCENT,
+                QueryServicesOptions.DEFAULT_QUEUE_INTERACTIVE_WEIGHT,
+                QueryServicesOptions.DEFAULT_QUEUE_MAX_TENANT_PERCENT, false, size, useInstrumentedThreadPool);
+    }
+
+    /**
+     * @param size number of platform threads of the pool, which bounds the number of tasks running
+     * at a time
+     * @param useVirtualThreads run the tasks on virtual threads, when supported by the JVM. Tasks
+     * mostly wait on scan RPCs, so the pool may then be sized to the number of RPCs to allow in
+     * flight rather than to the number of platform threads to afford.
+     * @param virtualThreadsSize number of threads of the pool when it runs on virtual threads. The
+     * pool falls back to size platform threads when the JVM does not support virtual threads.
+     */
+    public static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize,
+            int interactiveReservePercent, int interactiveWeight, int maxTenantPercent,
+            boolean useVirtualThreads, int virtualThreadsSize, boolean useInstrumentedThreadPool) {
         BlockingQueue<Runnable> queue;
         if (queueSize == 0) {
             queue = new SynchronousQueue<Runnable>(); // Specialized for 0 length.
         } else {
-            queue = new JobManager<Runnable>(queueSize);
+            queue = new JobManager<Runnable>(queueSize, interactiveReservePercent, interactiveWeight,
+                    maxTenantPercent);
         }
         String name = "phoenix-" + PHOENIX_POOL_INDEX.getAndIncrement();
+        ThreadFactory baseFactory = Executors.defaultThreadFactory();
+        if (useVirtualThreads) {
+            ThreadFactory virtualThreadFactory = newVirtualThreadFactory();
+            if (virtualThreadFactory != null) {
+                baseFactory = virtualThreadFactory;
+                name += "-virtual";
+                size = virtualThreadsSize;
+            } else {
+                LOGGER.warn("Virtual threads are not supported by this JVM, using platform threads for " + name);
+            }
+        }
         ThreadFactory threadFactory = new ThreadFactoryBuilder()
                 .setNameFormat(name + "-thread-%s")
                 .setDaemon(true)
                 .setThreadFactory(
-                        new ContextClassLoaderThreadFactory(JobManager.class.getClassLoader()))
+                        new ContextClassLoaderThreadFactory(baseFactory, JobManager.class.getClassLoader()))
                 .build();
         ThreadPoolExecutor exec;
         if (useInstrumentedThreadPool) {
@@ -119,6 +229,19 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         return exec;
     }
 
+    /**
+     * @return a factory of virtual threads, or null if the JVM does not support them
+     */
+    static ThreadFactory newVirtualThreadFactory() {
+        try {
+            // Thread.ofVirtual().factory(), through reflection as we build for Java 8
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     /**
      * Subclasses FutureTask for the sole purpose of providing {@link #getCallable()}, which is used to extract the producer in the {@link JobBasedRoundRobinQueue}
      */
@@ -126,15 +249,22 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         private final Object jobId;
         @Nullable
         private final TaskExecutionMetricsHolder taskMetric;
+        private final JobLane lane;
+        @Nullable
+        private final Object tenantId;
         
         public JobFutureTask(Runnable r, T t) {
             super(r, t);
             if(r instanceof JobRunnable){
               	this.jobId = ((JobRunnable)r).getJobId();
               	this.taskMetric = ((JobRunnable)r).getTaskExecutionMetric();
+              	this.lane = ((JobRunnable)r).getJobLane();
+              	this.tenantId = ((JobRunnable)r).getTenantId();
             } else {
             	this.jobId = this;
             	this.taskMetric = null;
+            	this.lane = JobLane.BULK;
+            	this.tenantId = null;
             }
         }
         
@@ -144,9 +274,13 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
             if (c instanceof JobCallable) {
                 this.jobId = ((JobCallable<T>) c).getJobId();
                 this.taskMetric = ((JobCallable<T>) c).getTaskExecutionMetric();
+                this.lane = ((JobCallable<T>) c).getJobLane();
+                this.tenantId = ((JobCallable<T>) c).getTenantId();
             } else {
                 this.jobId = this;
                 this.taskMetric = null;
+                this.lane = JobLane.BULK;
+                this.tenantId = null;
             }
         }
         
@@ -201,6 +335,17 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     public static interface JobCallable<T> extends Callable<T> {
         public Object getJobId();
         public TaskExecutionMetricsHolder getTaskExecutionMetric();
+
+        public default JobLane getJobLane() {
+            return JobLane.BULK;
+        }
+
+        /**
+         * @return the tenant that the job runs for, or null if it is not run for a tenant
+         */
+        public default Object getTenantId() {
+            return null;
+        }
     }
 
 
@@ -217,7 +362,11 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         private final ClassLoader contextClassLoader;
 
         public ContextClassLoaderThreadFactory(ClassLoader contextClassLoader) {
-            baseFactory = Executors.defaultThreadFactory();
+            this(Executors.defaultThreadFactory(), contextClassLoader);
+        }
+
+        public ContextClassLoaderThreadFactory(ThreadFactory baseFactory, ClassLoader contextClassLoader) {
+            this.baseFactory = baseFactory;
             this.contextClassLoader = contextClassLoader;
         }
 
@@ -243,6 +392,11 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
                     metrics.getNumRejectedTasks().increment();
                 }
                 GLOBAL_REJECTED_TASK_COUNTER.increment();
+                if (getJobLane(r) == JobLane.INTERACTIVE) {
+                    GLOBAL_INTERACTIVE_TASK_REJECTED_COUNTER.increment();
+                } else {
+                    GLOBAL_BULK_TASK_REJECTED_COUNTER.increment();
+                }
                 throw new RejectedExecutionException("Task " + r.toString() + " rejected from " + executor.toString());
             }
         };
@@ -269,6 +423,11 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
             long queueWaitTime = EnvironmentEdgeManager.currentTimeMillis() -
                 instrumentedTask.getTaskSubmissionTime();
             GLOBAL_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+            if (getJobLane(task) == JobLane.INTERACTIVE) {
+                GLOBAL_INTERACTIVE_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+            } else {
+                GLOBAL_BULK_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+            }
             TaskExecutionMetricsHolder metrics = getRequestMetric(task);
             if (metrics != null) {
                 metrics.getTaskQueueWaitTime().change(queueWaitTime);
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ResultUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.CorruptionException;
+
+/**
+ * Hash cache factory that builds a compact, read-only representation of the hash cache.
+ * Instead of a map of keys to lists of deserialized rows, the rows are kept in their serialized
+ * form in the uncompressed cache bytes, and located through a few int arrays: an open addressing
+ * table of distinct join keys, the keys themselves in a single byte array, and the rows grouped
+ * by key. A row is only deserialized into a {@link Tuple} when a probe matches its key. This costs
+ * a bit more CPU per match, but uses a small multiple of the serialized size on each region
+ * server instead of one object graph per row, which allows much larger hash join caches within
+ * the same memory budget and with much less GC overhead.
+ * The serialized format is the same as for {@link HashCacheFactory}.
+ */
+public class CompactHashCacheFactory extends HashCacheFactory {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    public CompactHashCacheFactory() {
+    }
+
+    @Override
+    public Closeable newCache(ImmutableBytesWritable cachePtr, byte[] txState, MemoryChunk chunk, boolean useProtoForIndexMaintainer, int clientVersion) throws SQLException {
+        try {
+            return new CompactHashCacheImpl(uncompress(cachePtr), chunk, clientVersion);
+        } catch (CorruptionException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    @Immutable
+    private static class CompactHashCacheImpl implements HashCache {
+        private final MemoryChunk memoryChunk;
+        private final boolean singleValueOnly;
+        private final int clientVersion;
+        private final byte[] hashCacheBytes;
+        // Open addressing table of key index + 1, with 0 meaning an empty slot
+        private final int[] table;
+        private final int[] keyHashes;
+        // Start offset of each key in keys, with one extra element for the end of the last key
+        private final int[] keyOffsets;
+        private final byte[] keys;
+        // Start index in rowsByKey of the rows of each key, with one extra element
+        private final int[] keyRowStarts;
+        private final int[] rowsByKey;
+        private final int[] rowOffsets;
+        private final int[] rowLengths;
+
+        private CompactHashCacheImpl(byte[] hashCacheBytes, MemoryChunk memoryChunk, int clientVersion) {
+            try {
+                this.memoryChunk = memoryChunk;
+                this.clientVersion = clientVersion;
+                this.hashCacheBytes = hashCacheBytes;
+                int offset = 0;
+                DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(hashCacheBytes));
+                int nExprs = dataInput.readInt();
+                List<Expression> onExpressions = new ArrayList<Expression>(nExprs);
+                for (int i = 0; i < nExprs; i++) {
+                    int expressionOrdinal = WritableUtils.readVInt(dataInput);
+                    Expression expression = ExpressionType.values()[expressionOrdinal].newInstance();
+                    expression.readFields(dataInput);
+                    onExpressions.add(expression);
+                }
+                int exprSize = dataInput.readInt();
+                this.singleValueOnly = exprSize < 0;
+                offset += Math.abs(exprSize);
+                int nRows = dataInput.readInt();
+                offset += Bytes.SIZEOF_INT;
+
+                int tableSize = tableSizeFor(nRows);
+                // Account for everything but the keys, which are only known once the rows are read
+                this.memoryChunk.resize(hashCacheBytes.length + sizeOf(tableSize, nRows, nRows));
+                int[] table = new int[tableSize];
+                int[] keyHashes = new int[nRows];
+                int[] keyOffsets = new int[nRows + 1];
+                int[] rowKeys = new int[nRows];
+                this.rowOffsets = new int[nRows];
+                this.rowLengths = new int[nRows];
+                TrustedByteArrayOutputStream keysOut = new TrustedByteArrayOutputStream(nRows * Bytes.SIZEOF_LONG);
+                int nKeys = 0;
+                int mask = tableSize - 1;
+                for (int i = 0; i < nRows; i++) {
+                    int resultSize = (int)Bytes.readVLong(hashCacheBytes, offset);
+                    offset += WritableUtils.decodeVIntSize(hashCacheBytes[offset]);
+                    rowOffsets[i] = offset;
+                    rowLengths[i] = resultSize;
+                    // The row has to be deserialized once to evaluate its join key
+                    Tuple result = toTuple(hashCacheBytes, offset, resultSize);
+                    ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, onExpressions);
+                    int hash = key.hashCode();
+                    int slot = hash & mask;
+                    int keyIndex = -1;
+                    for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+                        int candidate = entry - 1;
+                        if (keyHashes[candidate] == hash
+                                && Bytes.equals(keysOut.getBuffer(), keyOffsets[candidate], keyOffsets[candidate + 1] - keyOffsets[candidate],
+                                        key.get(), key.getOffset(), key.getLength())) {
+                            keyIndex = candidate;
+                            break;
+                        }
+                    }
+                    if (keyIndex < 0) {
+                        keyIndex = nKeys++;
+                        table[slot] = keyIndex + 1;
+                        keyHashes[keyIndex] = hash;
+                        keysOut.write(key.get(), key.getOffset(), key.getLength());
+                        keyOffsets[keyIndex + 1] = keysOut.size();
+                    }
+                    rowKeys[i] = keyIndex;
+                    offset += resultSize;
+                }
+                // Group the rows by key, keeping the original order of the rows of each key
+                int[] keyRowStarts = new int[nKeys + 1];
+                for (int i = 0; i < nRows; i++) {
+                    keyRowStarts[rowKeys[i] + 1]++;
+                }
+                for (int k = 0; k < nKeys; k++) {
+                    keyRowStarts[k + 1] += keyRowStarts[k];
+                }
+                this.rowsByKey = new int[nRows];
+                int[] positions = Arrays.copyOf(keyRowStarts, nKeys);
+                for (int i = 0; i < nRows; i++) {
+                    rowsByKey[positions[rowKeys[i]]++] = i;
+                }
+                this.keyHashes = nKeys == nRows ? keyHashes : Arrays.copyOf(keyHashes, nKeys);
+                this.keyOffsets = nKeys == nRows ? keyOffsets : Arrays.copyOf(keyOffsets, nKeys + 1);
+                this.keyRowStarts = keyRowStarts;
+                this.keys = keysOut.toByteArray();
+                if (tableSizeFor(nKeys) < tableSize) {
+                    // Many rows per key, shrink the table to the number of distinct keys
+                    table = rehash(this.keyHashes, tableSizeFor(nKeys));
+                }
+                this.table = table;
+                this.memoryChunk.resize(hashCacheBytes.length + keys.length + sizeOf(table.length, nKeys, nRows));
+            } catch (IOException e) { // Not possible with ByteArrayInputStream
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static int tableSizeFor(int nKeys) {
+            int minSize = (int)Math.ceil(nKeys / LOAD_FACTOR);
+            return Integer.highestOneBit(Math.max(1, minSize)) << 1;
+        }
+
+        private static int[] rehash(int[] keyHashes, int tableSize) {
+            int[] table = new int[tableSize];
+            int mask = tableSize - 1;
+            for (int k = 0; k < keyHashes.length; k++) {
+                int slot = keyHashes[k] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = k + 1;
+            }
+            return table;
+        }
+
+        private static long sizeOf(int tableSize, int nKeys, int nRows) {
+            return SizedUtil.ARRAY_SIZE * 8L
+                    + (long)tableSize * Bytes.SIZEOF_INT
+                    // key hashes, offsets and row starts
+                    + (long)nKeys * Bytes.SIZEOF_INT * 3
+                    // rows by key, row offsets and lengths
+                    + (long)nRows * Bytes.SIZEOF_INT * 3;
+        }
+
+        private static Tuple toTuple(byte[] bytes, int offset, int length) {
+            return new ResultTuple(ResultUtil.toResult(new ImmutableBytesWritable(bytes, offset, length)));
+        }
+
+        private int findKey(ImmutableBytesPtr hashKey) {
+            int hash = hashKey.hashCode();
+            int mask = table.length - 1;
+            for (int slot = hash & mask, entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+                int keyIndex = entry - 1;
+                if (keyHashes[keyIndex] == hash
+                        && Bytes.equals(keys, keyOffsets[keyIndex], keyOffsets[keyIndex + 1] - keyOffsets[keyIndex],
+                                hashKey.get(), hashKey.getOffset(), hashKey.getLength())) {
+                    return keyIndex;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < keyRowStarts.length - 1; k++) {
+                sb.append("key: " + Bytes.toStringBinary(keys, keyOffsets[k], keyOffsets[k + 1] - keyOffsets[k])
+                        + " rows: " + (keyRowStarts[k + 1] - keyRowStarts[k]));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() {
+            memoryChunk.close();
+        }
+
+        @Override
+        public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException {
+            int keyIndex = findKey(hashKey);
+            if (keyIndex < 0) {
+                return null;
+            }
+            int start = keyRowStarts[keyIndex];
+            int end = keyRowStarts[keyIndex + 1];
+            if (singleValueOnly && end - start > 1) {
+                SQLException ex = new SQLExceptionInfo.Builder(SQLExceptionCode.SINGLE_ROW_SUBQUERY_RETURNS_MULTIPLE_ROWS).build().buildException();
+                ServerUtil.throwIOException(ex.getMessage(), ex);
+            }
+            if (end - start == 1) {
+                int row = rowsByKey[start];
+                return Collections.singletonList(toTuple(hashCacheBytes, rowOffsets[row], rowLengths[row]));
+            }
+            List<Tuple> tuples = new ArrayList<Tuple>(end - start);
+            for (int i = start; i < end; i++) {
+                int row = rowsByKey[i];
+                tuples.add(toTuple(hashCacheBytes, rowOffsets[row], rowLengths[row]));
+            }
+            return tuples;
+        }
+
+        @Override
+        public int getClientVersion() {
+            return clientVersion;
+        }
+    }
+}
@@ -70,17 +70,21 @@ public class HashCacheFactory implements ServerCacheFactory {
     @Override
     public Closeable newCache(ImmutableBytesWritable cachePtr, byte[] txState, MemoryChunk chunk, boolean useProtoForIndexMaintainer, int clientVersion) throws SQLException {
         try {
-            // This reads the uncompressed length from the front of the compressed input
-            int uncompressedLen = Snappy.getUncompressedLength(cachePtr.get(), cachePtr.getOffset());
-            byte[] uncompressed = new byte[uncompressedLen];
-            Snappy.uncompress(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength(),
-                uncompressed, 0);
-            return new HashCacheImpl(uncompressed, chunk, clientVersion);
+            return new HashCacheImpl(uncompress(cachePtr), chunk, clientVersion);
         } catch (CorruptionException e) {
             throw ServerUtil.parseServerException(e);
         }
     }
 
+    static byte[] uncompress(ImmutableBytesWritable cachePtr) throws CorruptionException {
+        // This reads the uncompressed length from the front of the compressed input
+        int uncompressedLen = Snappy.getUncompressedLength(cachePtr.get(), cachePtr.getOffset());
+        byte[] uncompressed = new byte[uncompressedLen];
+        Snappy.uncompress(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength(),
+            uncompressed, 0);
+        return uncompressed;
+    }
+
     @Immutable
     private class HashCacheImpl implements HashCache {
         private final Map<ImmutableBytesPtr,List<Tuple>> hashCache;
@@ -27,6 +27,8 @@ import static org.apache.phoenix.monitoring.MetricType.MUTATION_COMMIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.NUM_PARALLEL_SCANS;
 import static org.apache.phoenix.monitoring.MetricType.OPEN_PHOENIX_CONNECTIONS_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_MISS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.INDEX_COMMIT_FAILURE_SIZE;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_SERVICES_COUNTER;
@@ -43,6 +45,10 @@ import static org.apache.phoenix.monitoring.MetricType.TASK_QUEUE_WAIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_THROTTLED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_ATTEMPTED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.TASK_REJECTED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.INTERACTIVE_TASK_QUEUE_WAIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.BULK_TASK_QUEUE_WAIT_TIME;
+import static org.apache.phoenix.monitoring.MetricType.INTERACTIVE_TASK_REJECTED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.BULK_TASK_REJECTED_COUNTER;
 
 import static org.apache.phoenix.monitoring.MetricType.COUNT_RPC_CALLS;
 import static org.apache.phoenix.monitoring.MetricType.COUNT_REMOTE_RPC_CALLS;
@@ -93,8 +99,14 @@ public enum GlobalClientMetrics {
     GLOBAL_TASK_EXECUTION_TIME(TASK_EXECUTION_TIME),
     GLOBAL_MUTATION_SQL_COUNTER(MUTATION_SQL_COUNTER),
     GLOBAL_SELECT_SQL_COUNTER(SELECT_SQL_COUNTER),
+    GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER(PARSED_STATEMENT_CACHE_HIT_COUNTER),
+    GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER(PARSED_STATEMENT_CACHE_MISS_COUNTER),
     GLOBAL_TASK_EXECUTED_COUNTER(TASK_EXECUTED_COUNTER),
     GLOBAL_REJECTED_TASK_COUNTER(TASK_REJECTED_COUNTER),
+    GLOBAL_INTERACTIVE_TASK_QUEUE_WAIT_TIME(INTERACTIVE_TASK_QUEUE_WAIT_TIME),
+    GLOBAL_BULK_TASK_QUEUE_WAIT_TIME(BULK_TASK_QUEUE_WAIT_TIME),
+    GLOBAL_INTERACTIVE_TASK_REJECTED_COUNTER(INTERACTIVE_TASK_REJECTED_COUNTER),
+    GLOBAL_BULK_TASK_REJECTED_COUNTER(BULK_TASK_REJECTED_COUNTER),
     GLOBAL_QUERY_TIMEOUT_COUNTER(QUERY_TIMEOUT_COUNTER),
     GLOBAL_FAILED_QUERY_COUNTER(QUERY_FAILED_COUNTER),
     GLOBAL_SPOOL_FILE_COUNTER(SPOOL_FILE_COUNTER),
@@ -42,12 +42,18 @@ public enum MetricType {
     NUM_PARALLEL_SCANS("ps", "Number of scans that were executed in parallel",LogLevel.DEBUG, PLong.INSTANCE),
     SCAN_BYTES("sb", "Number of bytes read by scans",LogLevel.OFF, PLong.INSTANCE),
     SELECT_SQL_COUNTER("sc", "Counter for number of sql queries",LogLevel.OFF, PLong.INSTANCE),
+    PARSED_STATEMENT_CACHE_HIT_COUNTER("psh", "Number of times a parsed statement was found in the statement cache",LogLevel.OFF, PLong.INSTANCE),
+    PARSED_STATEMENT_CACHE_MISS_COUNTER("psm", "Number of times a statement had to be parsed because it was not in the statement cache",LogLevel.OFF, PLong.INSTANCE),
     // task metrics
     TASK_QUEUE_WAIT_TIME("tw", "Time in milliseconds tasks had to wait in the queue of the thread pool executor",LogLevel.DEBUG, PLong.INSTANCE),
     TASK_END_TO_END_TIME("tee", "Time in milliseconds spent by tasks from creation to completion",LogLevel.DEBUG, PLong.INSTANCE),
     TASK_EXECUTION_TIME("tx", "Time in milliseconds tasks took to execute",LogLevel.DEBUG, PLong.INSTANCE),
     TASK_EXECUTED_COUNTER("te", "Counter for number of tasks submitted to the thread pool executor",LogLevel.DEBUG, PLong.INSTANCE),
     TASK_REJECTED_COUNTER("tr", "Counter for number of tasks that were rejected by the thread pool executor",LogLevel.DEBUG, PLong.INSTANCE),
+    INTERACTIVE_TASK_QUEUE_WAIT_TIME("twi", "Time in milliseconds tasks of interactive queries had to wait in the queue of the thread pool executor",LogLevel.OFF, PLong.INSTANCE),
+    BULK_TASK_QUEUE_WAIT_TIME("twb", "Time in milliseconds tasks of bulk queries had to wait in the queue of the thread pool executor",LogLevel.OFF, PLong.INSTANCE),
+    INTERACTIVE_TASK_REJECTED_COUNTER("tri", "Counter for number of tasks of interactive queries that were rejected by the thread pool executor",LogLevel.OFF, PLong.INSTANCE),
+    BULK_TASK_REJECTED_COUNTER("trb", "Counter for number of tasks of bulk queries that were rejected by the thread pool executor",LogLevel.OFF, PLong.INSTANCE),
     // spool metrics
     SPOOL_FILE_SIZE("ss", "Size of spool files created in bytes",LogLevel.DEBUG, PLong.INSTANCE),
     SPOOL_FILE_COUNTER("sn", "Number of spool files created",LogLevel.DEBUG, PLong.INSTANCE),
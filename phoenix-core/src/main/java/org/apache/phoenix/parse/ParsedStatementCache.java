@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of parsed statements keyed by SQL string, shared by all connections of
+ * a QueryServices instance. Parse nodes are immutable and bind values are only
+ * resolved at compile time, so the same statement may be compiled concurrently
+ * by many connections. The parse tree does not depend on table metadata, so
+ * entries never need to be invalidated on schema changes.
+ */
+public class ParsedStatementCache {
+    private final Cache<String, BindableStatement> cache;
+
+    public ParsedStatementCache(int maxSize) {
+        this.cache = maxSize <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .<String, BindableStatement>build();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Get the previously parsed statement for the given SQL
+     * @param sql the SQL string as passed in by the client
+     * @return the parsed statement or null if not found or caching is disabled
+     */
+    public BindableStatement get(String sql) {
+        if (cache == null) {
+            return null;
+        }
+        BindableStatement statement = cache.getIfPresent(sql);
+        if (statement == null) {
+            GLOBAL_PARSED_STATEMENT_CACHE_MISS_COUNTER.increment();
+        } else {
+            GLOBAL_PARSED_STATEMENT_CACHE_HIT_COUNTER.increment();
+        }
+        return statement;
+    }
+
+    /**
+     * Cache the parsed statement for the given SQL. Only DML statements are cached,
+     * as DDL is executed rarely and some DDL parse nodes are updated during compilation.
+     */
+    public void put(String sql, BindableStatement statement) {
+        if (cache != null && isCacheable(statement)) {
+            cache.put(sql, statement);
+        }
+    }
+
+    private static boolean isCacheable(BindableStatement statement) {
+        return statement instanceof SelectStatement
+                || statement instanceof UpsertStatement
+                || statement instanceof DeleteStatement;
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+}
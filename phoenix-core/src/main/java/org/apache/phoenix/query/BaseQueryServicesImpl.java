@@ -23,6 +23,7 @@ import org.apache.phoenix.job.JobManager;
 import org.apache.phoenix.memory.GlobalMemoryManager;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.optimize.QueryOptimizer;
+import org.apache.phoenix.parse.ParsedStatementCache;
 import org.apache.phoenix.util.ReadOnlyProps;
 
 
@@ -39,17 +40,24 @@ public abstract class BaseQueryServicesImpl implements QueryServices {
     private final MemoryManager memoryManager;
     private final ReadOnlyProps props;
     private final QueryOptimizer queryOptimizer;
+    private final ParsedStatementCache parsedStatementCache;
     
     public BaseQueryServicesImpl(ReadOnlyProps defaultProps, QueryServicesOptions options) {
         this.executor =  JobManager.createThreadPoolExec(
                 options.getKeepAliveMs(), 
-                options.getThreadPoolSize(), 
+                options.getThreadPoolSize(),
                 options.getQueueSize(),
+                options.getQueueInteractiveReservePercent(),
+                options.getQueueInteractiveWeight(),
+                options.getQueueMaxTenantPercent(),
+                options.isVirtualThreadsEnabled(),
+                options.getVirtualThreadsMaxConcurrentTasks(),
                 options.isGlobalMetricsEnabled());
         this.memoryManager = new GlobalMemoryManager(
                 Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100);
         this.props = options.getProps(defaultProps);
         this.queryOptimizer = new QueryOptimizer(this);
+        this.parsedStatementCache = new ParsedStatementCache(options.getParsedStatementCacheSize());
     }
     
     @Override
@@ -76,5 +84,10 @@ public abstract class BaseQueryServicesImpl implements QueryServices {
     @Override
     public QueryOptimizer getOptimizer() {
         return queryOptimizer;
-    }   
+    }
+
+    @Override
+    public ParsedStatementCache getParsedStatementCache() {
+        return parsedStatementCache;
+    }
 }
@@ -26,7 +26,9 @@ import java.util.Set;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.AdvancedScanResultConsumer;
 import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.AsyncTable;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.TableDescriptor;
@@ -93,6 +95,17 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
      */
     Table getTableIfExists(byte[] tableName) throws SQLException;
 
+    /**
+     * Get the asynchronous Table by the given name, from an asynchronous connection
+     * opened on first use and shared by all callers. The returned table does not
+     * need to be closed.
+     *
+     * @param tableName the name of the Table
+     * @return AsyncTable interface
+     * @throws SQLException if the asynchronous connection could not be opened
+     */
+    AsyncTable<AdvancedScanResultConsumer> getAsyncTable(byte[] tableName) throws SQLException;
+
     public TableDescriptor getTableDescriptor(byte[] tableName) throws SQLException;
 
     public HRegionLocation getTableRegionLocation(byte[] tableName, byte[] row) throws SQLException;
@@ -128,12 +128,16 @@ import org.apache.hadoop.hbase.NamespaceDescriptor;
 import org.apache.hadoop.hbase.NamespaceNotFoundException;
 import org.apache.hadoop.hbase.TableExistsException;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.AdvancedScanResultConsumer;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.AsyncConnection;
+import org.apache.hadoop.hbase.client.AsyncTable;
 import org.apache.hadoop.hbase.client.ClusterConnection;
 import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
 import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.CoprocessorDescriptorBuilder;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Increment;
@@ -343,6 +347,10 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
     private final boolean returnSequenceValues ;
 
     private Connection connection;
+    // Opened on first use, by scans run through the asynchronous client. Not guarded by
+    // this, as init() holds it while running scans.
+    private volatile AsyncConnection asyncConnection;
+    private final Object asyncConnectionLock = new Object();
     private volatile boolean initialized;
     private volatile int nSequenceSaltBuckets;
 
@@ -494,6 +502,37 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         }
     }
 
+    @Override
+    public AsyncTable<AdvancedScanResultConsumer> getAsyncTable(byte[] tableName) throws SQLException {
+        AsyncConnection asyncConnection = this.asyncConnection;
+        if (asyncConnection == null) {
+            synchronized (asyncConnectionLock) {
+                if (closed) {
+                    throw new SQLExceptionInfo.Builder(SQLExceptionCode.CANNOT_ESTABLISH_CONNECTION)
+                            .build().buildException();
+                }
+                asyncConnection = this.asyncConnection;
+                if (asyncConnection == null) {
+                    try {
+                        // Connect as the user of the connection info, like the HConnection, rather
+                        // than as the user of the thread that happens to open it
+                        asyncConnection = ConnectionFactory.createAsyncConnection(this.config, this.user).get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                                .setRootCause(e).build().buildException();
+                    } catch (ExecutionException e) {
+                        throw new SQLExceptionInfo.Builder(SQLExceptionCode.CANNOT_ESTABLISH_CONNECTION)
+                                .setRootCause(e.getCause()).build().buildException();
+                    }
+                    this.asyncConnection = asyncConnection;
+                    LOGGER.info("Asynchronous HConnection established: " + asyncConnection);
+                }
+            }
+        }
+        return asyncConnection.getTable(TableName.valueOf(tableName));
+    }
+
     @Override
     public Table getTableIfExists(byte[] tableName) throws SQLException {
         try (Admin admin = getAdmin()) {
@@ -577,10 +616,21 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
                         if (renewLeaseExecutor != null) {
                             renewLeaseExecutor.shutdownNow();
                         }
-                        // shut down the tx client service if we created one to support transactions
-                        for (PhoenixTransactionClient client : txClients) {
-                            if (client != null) {
-                                client.close();
+                        try {
+                            // shut down the tx client service if we created one to support transactions
+                            for (PhoenixTransactionClient client : txClients) {
+                                if (client != null) {
+                                    client.close();
+                                }
+                            }
+                        } finally {
+                            // close the async HBase connection even if a tx client failed to close
+                            synchronized (asyncConnectionLock) {
+                                if (asyncConnection != null) {
+                                    AsyncConnection toClose = asyncConnection;
+                                    asyncConnection = null;
+                                    toClose.close();
+                                }
                             }
                         }
                     }
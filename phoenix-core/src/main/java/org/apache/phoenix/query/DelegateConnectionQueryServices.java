@@ -26,7 +26,9 @@ import java.util.Set;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.AdvancedScanResultConsumer;
 import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.AsyncTable;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.TableDescriptor;
@@ -80,6 +82,11 @@ public class DelegateConnectionQueryServices extends DelegateQueryServices imple
         return getDelegate().getTableIfExists(tableName);
     }
 
+    @Override
+    public AsyncTable<AdvancedScanResultConsumer> getAsyncTable(byte[] tableName) throws SQLException {
+        return getDelegate().getAsyncTable(tableName);
+    }
+
     @Override
     public List<HRegionLocation> getAllTableRegions(byte[] tableName) throws SQLException {
         return getDelegate().getAllTableRegions(tableName);
@@ -22,6 +22,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.phoenix.iterate.SpoolTooBigToDiskException;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.optimize.QueryOptimizer;
+import org.apache.phoenix.parse.ParsedStatementCache;
 import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SQLCloseable;
 
@@ -43,6 +44,37 @@ public interface QueryServices extends SQLCloseable {
     public static final String KEEP_ALIVE_MS_ATTRIB = "phoenix.query.keepAliveMs";
     public static final String THREAD_POOL_SIZE_ATTRIB = "phoenix.query.threadPoolSize";
     public static final String QUEUE_SIZE_ATTRIB = "phoenix.query.queueSize";
+    // Percent of the queue of the thread pool that only tasks of interactive queries may use
+    public static final String QUEUE_INTERACTIVE_RESERVE_PERCENT_ATTRIB = "phoenix.query.queue.interactiveReservePercent";
+    // Number of queued tasks of interactive queries run for each task of other queries waiting in the queue
+    public static final String QUEUE_INTERACTIVE_WEIGHT_ATTRIB = "phoenix.query.queue.interactiveWeight";
+    // Maximum percent of the queue of the thread pool that the tasks of a single tenant may use
+    public static final String QUEUE_MAX_TENANT_PERCENT_ATTRIB = "phoenix.query.queue.maxTenantPercent";
+    // Queries run with at most this number of parallel scans are considered interactive
+    public static final String INTERACTIVE_MAX_SCANS_ATTRIB = "phoenix.query.interactiveMaxScans";
+    // Scan tables through the asynchronous HBase client, which reads ahead of the consumer
+    // up to the max result size of the scan and renews the lease of its scanners itself
+    public static final String ASYNC_SCAN_ENABLED_ATTRIB = "phoenix.query.asyncScan.enabled";
+    // Read the rows of point lookups on the full primary key with batched Gets, one batch per region,
+    // rather than with skip scans
+    public static final String MULTI_GET_POINT_LOOKUP_ENABLED_ATTRIB = "phoenix.query.multiGetPointLookup.enabled";
+    // Point lookups on more keys than this are run as skip scans
+    public static final String MULTI_GET_POINT_LOOKUP_MAX_KEYS_ATTRIB = "phoenix.query.multiGetPointLookup.maxKeys";
+    // Send the sort key of the n-th row of the best finished scan of an ORDER BY ... LIMIT n query
+    // to the scans started afterwards, so that regions drop the rows sorting after it
+    public static final String COOPERATIVE_TOPN_ENABLED_ATTRIB = "phoenix.query.cooperativeTopN.enabled";
+    // Queries with a higher LIMIT (plus OFFSET) do not share sort keys, as the first rows of each scan
+    // are read ahead to find its n-th row
+    public static final String COOPERATIVE_TOPN_MAX_LIMIT_ATTRIB = "phoenix.query.cooperativeTopN.maxLimit";
+    // Read the rows of result sets ahead in batches and decode the projected columns of each batch
+    // once into column vectors, with repeated VARCHAR values decoded once per batch
+    public static final String COLUMNAR_RESULT_SET_ENABLED_ATTRIB = "phoenix.query.columnarResultSet.enabled";
+    // Number of rows per batch of columnar result sets
+    public static final String COLUMNAR_RESULT_SET_BATCH_SIZE_ATTRIB = "phoenix.query.columnarResultSet.batchSize";
+    // Run the tasks of the thread pool on virtual threads when the JVM supports them (Java 21+)
+    public static final String VIRTUAL_THREADS_ENABLED_ATTRIB = "phoenix.query.virtualThreads.enabled";
+    // Maximum number of tasks, and so of scan RPCs, in flight on virtual threads at a time
+    public static final String VIRTUAL_THREADS_MAX_CONCURRENT_TASKS_ATTRIB = "phoenix.query.virtualThreads.maxConcurrentTasks";
     public static final String THREAD_TIMEOUT_MS_ATTRIB = "phoenix.query.timeoutMs";
     public static final String SERVER_SPOOL_THRESHOLD_BYTES_ATTRIB =
             "phoenix.query.server.spoolThresholdBytes";
@@ -50,6 +82,12 @@ public interface QueryServices extends SQLCloseable {
             "phoenix.query.client.spoolThresholdBytes";
     public static final String CLIENT_ORDERBY_SPOOLING_ENABLED_ATTRIB =
             "phoenix.query.client.orderBy.spooling.enabled";
+    // Sort rows of client side ORDER BY and GROUP BY into runs concurrently on the query thread pool
+    public static final String CLIENT_PARALLEL_SORT_ENABLED_ATTRIB =
+            "phoenix.query.client.parallelSort.enabled";
+    // Maximum number of runs sorted concurrently by a client side sort. Also bounded by the thread pool size.
+    public static final String CLIENT_PARALLEL_SORT_MAX_THREADS_ATTRIB =
+            "phoenix.query.client.parallelSort.maxThreads";
     public static final String CLIENT_JOIN_SPOOLING_ENABLED_ATTRIB =
             "phoenix.query.client.join.spooling.enabled";
     public static final String SERVER_ORDERBY_SPOOLING_ENABLED_ATTRIB =
@@ -87,6 +125,26 @@ public interface QueryServices extends SQLCloseable {
     public static final String MAX_MEMORY_PERC_ATTRIB = "phoenix.query.maxGlobalMemoryPercentage";
     public static final String MAX_TENANT_MEMORY_PERC_ATTRIB = "phoenix.query.maxTenantMemoryPercentage";
     public static final String MAX_SERVER_CACHE_SIZE_ATTRIB = "phoenix.query.maxServerCacheBytes";
+    // Keep hash join caches in their serialized form on the region servers. Requires all region servers to support it.
+    public static final String COMPACT_HASH_CACHE_ENABLED_ATTRIB = "phoenix.query.compactHashCache.enabled";
+    // Push a Bloom filter over the RHS join keys down to the LHS scan of hash joins on non PK columns.
+    // Requires all region servers to support it.
+    public static final String JOIN_BLOOM_FILTER_ENABLED_ATTRIB = "phoenix.query.joinBloomFilter.enabled";
+    // Maximum size in bytes of the join Bloom filter. No filter is pushed down for larger join key sets.
+    public static final String JOIN_BLOOM_FILTER_MAX_SIZE_ATTRIB = "phoenix.query.joinBloomFilter.maxSize";
+    // Join on the client through spilled hash partitions of both sides when the estimated size of
+    // the build side of a hash join exceeds the maximum server cache size.
+    public static final String PARTITIONED_HASH_JOIN_ENABLED_ATTRIB = "phoenix.query.partitionedHashJoin.enabled";
+    // Maximum number of partitions each side of a partitioned hash join is spilled into.
+    public static final String PARTITIONED_HASH_JOIN_MAX_PARTITIONS_ATTRIB = "phoenix.query.partitionedHashJoin.maxPartitions";
+    // Re-split the remainder of a parallel scan that lags far behind the other scans of the query
+    public static final String ADAPTIVE_SCAN_SPLIT_ENABLED_ATTRIB = "phoenix.query.adaptiveScanSplit.enabled";
+    // A scan lags when it has been busy this many times longer than the median of the completed scans
+    public static final String ADAPTIVE_SCAN_SPLIT_LAG_FACTOR_ATTRIB = "phoenix.query.adaptiveScanSplit.lagFactor";
+    // Minimum time in milliseconds that a scan must have been busy before it is re-split
+    public static final String ADAPTIVE_SCAN_SPLIT_MIN_TIME_MS_ATTRIB = "phoenix.query.adaptiveScanSplit.minTimeMs";
+    // Number of scans that the remainder of a lagging scan is split into
+    public static final String ADAPTIVE_SCAN_SPLIT_COUNT_ATTRIB = "phoenix.query.adaptiveScanSplit.count";
     public static final String DATE_FORMAT_TIMEZONE_ATTRIB = "phoenix.query.dateFormatTimeZone";
     public static final String DATE_FORMAT_ATTRIB = "phoenix.query.dateFormat";
     public static final String TIME_FORMAT_ATTRIB = "phoenix.query.timeFormat";
@@ -101,6 +159,12 @@ public interface QueryServices extends SQLCloseable {
 
     public static final String MUTATE_BATCH_SIZE_ATTRIB = "phoenix.mutate.batchSize";
     public static final String MUTATE_BATCH_SIZE_BYTES_ATTRIB = "phoenix.mutate.batchSizeBytes";
+    // Maximum number of tables whose mutations are sent at the same time within a phase of a commit
+    public static final String MUTATE_MAX_CONCURRENT_TABLES_ATTRIB = "phoenix.mutate.maxConcurrentTables";
+    // Whether server side UPSERT SELECT, DELETE and index builds write a batch while the scan builds the next one
+    public static final String SERVER_MUTATION_PIPELINE_ENABLED_ATTRIB = "phoenix.coprocessor.mutationPipeline.enabled";
+    // Max number of threads writing the batches of pipelined server side mutations of a region server
+    public static final String SERVER_MUTATION_PIPELINE_THREADS_ATTRIB = "phoenix.coprocessor.mutationPipeline.threads";
     public static final String MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB = "phoenix.coprocessor.maxServerCacheTimeToLiveMs";
     public static final String MAX_SERVER_CACHE_PERSISTENCE_TIME_TO_LIVE_MS_ATTRIB = "phoenix.coprocessor.maxServerCachePersistenceTimeToLiveMs";
     
@@ -114,9 +178,15 @@ public interface QueryServices extends SQLCloseable {
     public static final String DROP_METADATA_ATTRIB  = "phoenix.schema.dropMetaData";
     public static final String GROUPBY_SPILLABLE_ATTRIB  = "phoenix.groupby.spillable";
     public static final String GROUPBY_SPILL_FILES_ATTRIB = "phoenix.groupby.spillFiles";
+    // Strategy used by spillable group by once the cache is full: LRU or SORT
+    public static final String GROUPBY_SPILL_STRATEGY_ATTRIB = "phoenix.groupby.spillStrategy";
     public static final String GROUPBY_MAX_CACHE_SIZE_ATTRIB = "phoenix.groupby.maxCacheSize";
+    // Use byte slabs instead of per group aggregators for non spillable group by when all aggregators are fixed width
+    public static final String GROUPBY_SLAB_CACHE_ATTRIB = "phoenix.groupby.slabCache";
     public static final String GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB = "phoenix.groupby.estimatedDistinctValues";
     public static final String AGGREGATE_CHUNK_SIZE_INCREASE_ATTRIB = "phoenix.aggregate.chunk_size_increase";
+    // Number of rows aggregated at once by server side ungrouped and key ordered grouped aggregation, 0 to aggregate row by row
+    public static final String AGGREGATE_BATCH_SIZE_ATTRIB = "phoenix.aggregate.batchSize";
 
     public static final String CALL_QUEUE_PRODUCER_ATTRIB_NAME = "CALL_QUEUE_PRODUCER";
 
@@ -367,6 +437,9 @@ public interface QueryServices extends SQLCloseable {
      */
     String SOURCE_OPERATION_ATTRIB = "phoenix.source.operation";
 
+    // Max number of parsed statements kept in the client side statement cache. Set to 0 to disable.
+    public static final String PARSED_STATEMENT_CACHE_SIZE_ATTRIB = "phoenix.query.parsedStatementCacheSize";
+
     /**
      * Get executor service used for parallel scans
      */
@@ -386,4 +459,9 @@ public interface QueryServices extends SQLCloseable {
      * Get query optimizer used to choose the best query plan
      */
     public QueryOptimizer getOptimizer();
+
+    /**
+     * Get the cache of parsed statements shared by all connections
+     */
+    public ParsedStatementCache getParsedStatementCache();
 }
@@ -38,8 +38,10 @@ import static org.apache.phoenix.query.QueryServices.EXTRA_JDBC_ARGUMENTS_ATTRIB
 import static org.apache.phoenix.query.QueryServices.FORCE_ROW_KEY_ORDER_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GLOBAL_METRICS_ENABLED;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SLAB_CACHE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILLABLE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILL_FILES_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILL_STRATEGY_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.HBASE_CLIENT_SCANNER_TIMEOUT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.IMMUTABLE_ROWS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.INDEX_MUTATE_BATCH_SIZE_THRESHOLD_ATTRIB;
@@ -63,8 +65,14 @@ import static org.apache.phoenix.query.QueryServices.MAX_TENANT_MEMORY_PERC_ATTR
 import static org.apache.phoenix.query.QueryServices.MIN_STATS_UPDATE_FREQ_MS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MUTATE_BATCH_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.NUM_RETRIES_FOR_SCHEMA_UPDATE_CHECK;
+import static org.apache.phoenix.query.QueryServices.PARSED_STATEMENT_CACHE_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.PHOENIX_ACLS_ENABLED;
 import static org.apache.phoenix.query.QueryServices.QUEUE_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.QUEUE_INTERACTIVE_RESERVE_PERCENT_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.QUEUE_INTERACTIVE_WEIGHT_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.QUEUE_MAX_TENANT_PERCENT_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.VIRTUAL_THREADS_ENABLED_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.VIRTUAL_THREADS_MAX_CONCURRENT_TASKS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.REGIONSERVER_INFO_PORT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.RENEW_LEASE_ENABLED;
 import static org.apache.phoenix.query.QueryServices.RENEW_LEASE_THREAD_POOL_SIZE;
@@ -127,17 +135,43 @@ public class QueryServicesOptions {
 	public static final int DEFAULT_KEEP_ALIVE_MS = 60000;
 	public static final int DEFAULT_THREAD_POOL_SIZE = 128;
 	public static final int DEFAULT_QUEUE_SIZE = 5000;
+	// Opt-in, as tasks that are not tagged as interactive, such as client side sorts and commits,
+	// run in the bulk lane and would otherwise be rejected before the queue is full
+	public static final int DEFAULT_QUEUE_INTERACTIVE_RESERVE_PERCENT = 0;
+	public static final int DEFAULT_QUEUE_INTERACTIVE_WEIGHT = 8;
+	public static final int DEFAULT_QUEUE_MAX_TENANT_PERCENT = 100;
+	public static final int DEFAULT_INTERACTIVE_MAX_SCANS = 4;
+	public static final boolean DEFAULT_ASYNC_SCAN_ENABLED = false;
+	public static final boolean DEFAULT_MULTI_GET_POINT_LOOKUP_ENABLED = false;
+	public static final int DEFAULT_MULTI_GET_POINT_LOOKUP_MAX_KEYS = 5000;
+	public static final boolean DEFAULT_COOPERATIVE_TOPN_ENABLED = false;
+	public static final int DEFAULT_COOPERATIVE_TOPN_MAX_LIMIT = 1000;
+	public static final boolean DEFAULT_COLUMNAR_RESULT_SET_ENABLED = false;
+	public static final int DEFAULT_COLUMNAR_RESULT_SET_BATCH_SIZE = 1024;
+	public static final boolean DEFAULT_VIRTUAL_THREADS_ENABLED = false;
+	public static final int DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENT_TASKS = 1024;
 	public static final int DEFAULT_THREAD_TIMEOUT_MS = 600000; // 10min
 	public static final int DEFAULT_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
 	public static final int DEFAULT_SERVER_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
 	public static final int DEFAULT_CLIENT_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
 	public static final boolean DEFAULT_CLIENT_ORDERBY_SPOOLING_ENABLED = true;
+	public static final boolean DEFAULT_CLIENT_PARALLEL_SORT_ENABLED = false;
+	public static final int DEFAULT_CLIENT_PARALLEL_SORT_MAX_THREADS = 8;
 	public static final boolean DEFAULT_CLIENT_JOIN_SPOOLING_ENABLED = true;
 	public static final boolean DEFAULT_SERVER_ORDERBY_SPOOLING_ENABLED = true;
     public static final String DEFAULT_SPOOL_DIRECTORY = System.getProperty("java.io.tmpdir");
 	public static final int DEFAULT_MAX_MEMORY_PERC = 15; // 15% of heap
 	public static final int DEFAULT_MAX_TENANT_MEMORY_PERC = 100;
 	public static final long DEFAULT_MAX_SERVER_CACHE_SIZE = 1024*1024*100;  // 100 Mb
+    public static final boolean DEFAULT_COMPACT_HASH_CACHE_ENABLED = false;
+    public static final boolean DEFAULT_JOIN_BLOOM_FILTER_ENABLED = false;
+    public static final long DEFAULT_JOIN_BLOOM_FILTER_MAX_SIZE = 1024*1024;  // 1 Mb
+    public static final boolean DEFAULT_PARTITIONED_HASH_JOIN_ENABLED = false;
+    public static final int DEFAULT_PARTITIONED_HASH_JOIN_MAX_PARTITIONS = 64;
+    public static final boolean DEFAULT_ADAPTIVE_SCAN_SPLIT_ENABLED = false;
+    public static final float DEFAULT_ADAPTIVE_SCAN_SPLIT_LAG_FACTOR = 3.0f;
+    public static final long DEFAULT_ADAPTIVE_SCAN_SPLIT_MIN_TIME_MS = 2000;
+    public static final int DEFAULT_ADAPTIVE_SCAN_SPLIT_COUNT = 4;
     public static final int DEFAULT_TARGET_QUERY_CONCURRENCY = 32;
     public static final int DEFAULT_MAX_QUERY_CONCURRENCY = 64;
     public static final String DEFAULT_DATE_FORMAT = DateUtil.DEFAULT_DATE_FORMAT;
@@ -161,6 +195,9 @@ public class QueryServicesOptions {
     public final static int DEFAULT_MUTATE_BATCH_SIZE = 100; // Batch size for UPSERT SELECT and DELETE
     //Batch size in bytes for UPSERT, SELECT and DELETE. By default, 2MB
     public final static long DEFAULT_MUTATE_BATCH_SIZE_BYTES = 2097152;
+    public final static int DEFAULT_MUTATE_MAX_CONCURRENT_TABLES = 1;
+    public final static boolean DEFAULT_SERVER_MUTATION_PIPELINE_ENABLED = false;
+    public final static int DEFAULT_SERVER_MUTATION_PIPELINE_THREADS = 16;
 	// The only downside of it being out-of-sync is that the parallelization of the scan won't be as balanced as it could be.
     public static final int DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS = 30000; // 30 sec (with no activity)
     public static final int DEFAULT_MAX_SERVER_CACHE_PERSISTENCE_TIME_TO_LIVE_MS = 30 * 60000; // 30 minutes
@@ -168,6 +205,7 @@ public class QueryServicesOptions {
     public static final int DEFAULT_MAX_INTRA_REGION_PARALLELIZATION = DEFAULT_MAX_QUERY_CONCURRENCY;
     public static final int DEFAULT_DISTINCT_VALUE_COMPRESS_THRESHOLD = 1024 * 1024 * 1; // 1 Mb
     public static final int DEFAULT_AGGREGATE_CHUNK_SIZE_INCREASE = 1024 * 1024 * 1; // 1 Mb
+    public static final int DEFAULT_AGGREGATE_BATCH_SIZE = 0; // Disabled, aggregate row by row
     public static final int DEFAULT_INDEX_MUTATE_BATCH_SIZE_THRESHOLD = 3;
     public static final long DEFAULT_MAX_SPOOL_TO_DISK_BYTES = 1024000000;
     // Only the first chunked batches are fetched in parallel, so this default
@@ -186,8 +224,15 @@ public class QueryServicesOptions {
     // Number of spill files / partitions the keys are distributed to
     // Each spill file fits 2GB of data
     public static final int DEFAULT_GROUPBY_SPILL_FILES = 2;
+    // Evict least recently used groups into hash partitioned spill files
+    public static final String GROUPBY_SPILL_STRATEGY_LRU = "LRU";
+    // Write the cached groups as runs sorted by key and merge the runs at the end
+    public static final String GROUPBY_SPILL_STRATEGY_SORT = "SORT";
+    public static final String DEFAULT_GROUPBY_SPILL_STRATEGY = GROUPBY_SPILL_STRATEGY_LRU;
     // Max size of 1st level main memory cache in bytes --> upper bound
     public static final long DEFAULT_GROUPBY_MAX_CACHE_MAX = 1024L*1024L*100L;  // 100 Mb
+    // Enable / disable the slab based cache for non spillable group by
+    public static final boolean DEFAULT_GROUPBY_SLAB_CACHE = false;
 
     public static final long DEFAULT_SEQUENCE_CACHE_SIZE = 100;  // reserve 100 sequences at a time
     public static final int GLOBAL_INDEX_CHECKER_ENABLED_MAP_EXPIRATION_MIN = 10;
@@ -371,6 +416,8 @@ public class QueryServicesOptions {
     public static final boolean DEFAULT_LONG_VIEW_INDEX_ENABLED = false;
 
     public static final boolean DEFAULT_PENDING_MUTATIONS_DDL_THROW = false;
+
+    public static final int DEFAULT_PARSED_STATEMENT_CACHE_SIZE = 1000;
     private final Configuration config;
 
     private QueryServicesOptions(Configuration config) {
@@ -571,6 +618,14 @@ public class QueryServicesOptions {
         return set(GROUPBY_SPILLABLE_ATTRIB, enabled);
     }
 
+    public QueryServicesOptions setGroupBySpillStrategy(String strategy) {
+        return set(GROUPBY_SPILL_STRATEGY_ATTRIB, strategy);
+    }
+
+    public QueryServicesOptions setGroupBySlabCache(boolean enabled) {
+        return set(GROUPBY_SLAB_CACHE_ATTRIB, enabled);
+    }
+
     public QueryServicesOptions setGroupBySpillMaxCacheSize(long size) {
         return set(GROUPBY_MAX_CACHE_SIZE_ATTRIB, size);
     }
@@ -611,6 +666,30 @@ public class QueryServicesOptions {
         return config.getInt(QUEUE_SIZE_ATTRIB, DEFAULT_QUEUE_SIZE);
     }
 
+    public int getQueueInteractiveReservePercent() {
+        return config.getInt(QUEUE_INTERACTIVE_RESERVE_PERCENT_ATTRIB, DEFAULT_QUEUE_INTERACTIVE_RESERVE_PERCENT);
+    }
+
+    public int getQueueInteractiveWeight() {
+        return config.getInt(QUEUE_INTERACTIVE_WEIGHT_ATTRIB, DEFAULT_QUEUE_INTERACTIVE_WEIGHT);
+    }
+
+    public int getQueueMaxTenantPercent() {
+        return config.getInt(QUEUE_MAX_TENANT_PERCENT_ATTRIB, DEFAULT_QUEUE_MAX_TENANT_PERCENT);
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return config.getBoolean(VIRTUAL_THREADS_ENABLED_ATTRIB, DEFAULT_VIRTUAL_THREADS_ENABLED);
+    }
+
+    public int getVirtualThreadsMaxConcurrentTasks() {
+        return config.getInt(VIRTUAL_THREADS_MAX_CONCURRENT_TASKS_ATTRIB, DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENT_TASKS);
+    }
+
+    public int getParsedStatementCacheSize() {
+        return config.getInt(PARSED_STATEMENT_CACHE_SIZE_ATTRIB, DEFAULT_PARSED_STATEMENT_CACHE_SIZE);
+    }
+
     public int getMaxMemoryPerc() {
         return config.getInt(MAX_MEMORY_PERC_ATTRIB, DEFAULT_MAX_MEMORY_PERC);
     }
@@ -644,6 +723,14 @@ public class QueryServicesOptions {
         return config.getBoolean(GROUPBY_SPILLABLE_ATTRIB, DEFAULT_GROUPBY_SPILLABLE);
     }
 
+    public String getSpillableGroupBySpillStrategy() {
+        return config.get(GROUPBY_SPILL_STRATEGY_ATTRIB, DEFAULT_GROUPBY_SPILL_STRATEGY);
+    }
+
+    public boolean isSlabGroupByCacheEnabled() {
+        return config.getBoolean(GROUPBY_SLAB_CACHE_ATTRIB, DEFAULT_GROUPBY_SLAB_CACHE);
+    }
+
     public long getSpillableGroupByMaxCacheSize() {
         return config.getLong(GROUPBY_MAX_CACHE_SIZE_ATTRIB, DEFAULT_GROUPBY_MAX_CACHE_MAX);
     }
@@ -51,9 +51,7 @@ public class PVarchar extends PDataType<String> {
         if (object == null) {
             return 0;
         }
-        byte[] b = toBytes(object); // TODO: no byte[] allocation: use CharsetEncoder
-        System.arraycopy(b, 0, bytes, offset, b.length);
-        return b.length;
+        return StringUtil.toUtf8Bytes((String) object, bytes, offset);
     }
 
     @Override
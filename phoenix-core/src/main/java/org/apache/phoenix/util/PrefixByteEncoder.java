@@ -87,7 +87,7 @@ public class PrefixByteEncoder {
           int prevOffset = previous.getOffset();
           byte[] prevBytes = previous.get();
           int prevLength = previous.getLength();
-          int minLength = prevLength < b.length ? prevLength : b.length;
+          int minLength = prevLength < length ? prevLength : length;
           for(i = 0; (i < minLength) && (prevBytes[prevOffset + i] == b[offset + i]); i++);
           WritableUtils.writeVInt(out, i);
           Bytes.writeByteArray(out, b, offset + i, length - i);
@@ -18,6 +18,7 @@
 package org.apache.phoenix.util;
 
 import java.util.Arrays;
+import java.util.Locale;
 
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.exception.UndecodableByteException;
@@ -228,6 +229,106 @@ public class StringUtil {
         return false;
     }
 
+    /**
+     * Get the number of bytes of the UTF-8 encoding of a String, without encoding it.
+     * Unpaired surrogates count as one byte, as they are replaced by '?' by
+     * {@link Bytes#toBytes(String)}.
+     */
+    public static int getUtf8Length(String s) {
+        int length = s.length();
+        int byteLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                byteLength += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // Two chars encoded in four bytes
+                byteLength += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                byteLength += 2;
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * Encode a String as UTF-8 into the given buffer, producing the same bytes as
+     * {@link Bytes#toBytes(String)} without allocating an intermediate array.
+     * @param s the String to encode
+     * @param bytes the buffer, which must have room for {@link #getUtf8Length(String)} bytes
+     * @param offset the offset at which to write in the buffer
+     * @return the number of bytes written
+     */
+    public static int toUtf8Bytes(String s, byte[] bytes, int offset) {
+        int length = s.length();
+        int pos = offset;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte)c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte)(0xC0 | (c >> 6));
+                bytes[pos++] = (byte)(0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[pos++] = (byte)(0xF0 | (cp >> 18));
+                    bytes[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                    bytes[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                    bytes[pos++] = (byte)(0x80 | (cp & 0x3F));
+                } else {
+                    bytes[pos++] = '?';
+                }
+            } else {
+                bytes[pos++] = (byte)(0xE0 | (c >> 12));
+                bytes[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return pos - offset;
+    }
+
+    /**
+     * @return true if upper or lower casing ASCII characters in the locale only maps
+     * 'a' to 'z' to 'A' to 'Z' and back. The Turkic and Lithuanian locales have special
+     * rules for the letter I.
+     */
+    public static boolean hasSimpleAsciiCaseMapping(Locale locale) {
+        String language = locale.getLanguage();
+        return !"tr".equals(language) && !"az".equals(language) && !"lt".equals(language);
+    }
+
+    /**
+     * Upper or lower case a UTF-8 encoded string made of ASCII characters only, writing the
+     * result in ascending sort order into the given buffer. Only valid for locales for which
+     * {@link #hasSimpleAsciiCaseMapping(Locale)} is true.
+     * @return false if a non ASCII character was found, in which case the content of the
+     * buffer is undefined and the string must be converted through {@link String}
+     */
+    public static boolean changeAsciiCase(byte[] bytes, int offset, int length, SortOrder sortOrder,
+            boolean toUpperCase, byte[] result, int resultOffset) {
+        byte mask = sortOrder == SortOrder.DESC ? (byte)0xFF : 0;
+        char from = toUpperCase ? 'a' : 'A';
+        char to = toUpperCase ? 'z' : 'Z';
+        for (int i = 0; i < length; i++) {
+            int c = (bytes[offset + i] ^ mask) & 0xFF;
+            if (c >= 0x80) {
+                return false;
+            }
+            if (c >= from && c <= to) {
+                c ^= 0x20;
+            }
+            result[resultOffset + i] = (byte)c;
+        }
+        return true;
+    }
+
     public static int getFirstNonBlankCharIdxFromStart(byte[] string, int offset, int length, SortOrder sortOrder) {
         int i = offset;
         byte space = sortOrder == SortOrder.ASC ? SPACE_UTF8 : INVERTED_SPACE_UTF8;
@@ -103,6 +103,9 @@ public class TupleUtil {
         if (expressions.size() == 1) {
             if (!evaluated) {
                 value.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            } else if (expression.isResultTransient()) {
+                // Callers keep the returned key, so it may not be overwritten by the next evaluation
+                value.set(value.copyBytes());
             }
             return value;
         } else {
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.CountAggregator;
+import org.apache.phoenix.expression.aggregator.DistinctValueWithCountServerAggregator;
+import org.apache.phoenix.expression.aggregator.DoubleSumAggregator;
+import org.apache.phoenix.expression.aggregator.LongSumAggregator;
+import org.apache.phoenix.expression.aggregator.MaxAggregator;
+import org.apache.phoenix.expression.aggregator.MinAggregator;
+import org.apache.phoenix.expression.aggregator.NonSizeTrackingServerAggregators;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.aggregator.SlabAggregator;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class SlabGroupByCacheTest {
+
+    private static Aggregator[] newAggregators() {
+        return new Aggregator[] {
+                new CountAggregator(),
+                new LongSumAggregator(),
+                new DoubleSumAggregator(SortOrder.getDefault(), null),
+                new MinAggregator(SortOrder.getDefault()) {
+                    @Override
+                    public PDataType getDataType() {
+                        return PInteger.INSTANCE;
+                    }
+                },
+                new MaxAggregator(SortOrder.getDefault()) {
+                    @Override
+                    public PDataType getDataType() {
+                        return PInteger.INSTANCE;
+                    }
+                } };
+    }
+
+    private static ServerAggregators newServerAggregators(Aggregator[] aggregators) {
+        return new NonSizeTrackingServerAggregators(new SingleAggregateFunction[aggregators.length],
+                aggregators, new Expression[aggregators.length], 0);
+    }
+
+    private static ImmutableBytesWritable[] newRow(long l, double d, int i) {
+        return new ImmutableBytesWritable[] {
+                new ImmutableBytesWritable(PLong.INSTANCE.toBytes(l)),
+                new ImmutableBytesWritable(PLong.INSTANCE.toBytes(l)),
+                new ImmutableBytesWritable(PDouble.INSTANCE.toBytes(d)),
+                new ImmutableBytesWritable(PInteger.INSTANCE.toBytes(i)),
+                new ImmutableBytesWritable(PInteger.INSTANCE.toBytes(i)) };
+    }
+
+    private static void aggregate(Aggregator[] aggregators, ImmutableBytesWritable[] row) {
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i].aggregate(null, new ImmutableBytesWritable(row[i]));
+        }
+    }
+
+    @Test
+    public void testSameResultsAsObjectAggregators() throws Exception {
+        ServerAggregators aggregators = newServerAggregators(newAggregators());
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(10 * 1024 * 1024);
+        SlabGroupByCache cache = new SlabGroupByCache(memoryManager, aggregators, 2);
+        Map<ImmutableBytesPtr, Aggregator[]> expected = new HashMap<>();
+        int nGroups = 1000;
+        for (int i = 0; i < 10000; i++) {
+            ImmutableBytesPtr key = new ImmutableBytesPtr(Bytes.toBytes("key" + (i * 7) % nGroups));
+            ImmutableBytesWritable[] row = newRow(i, i / 3.0, (i * 31) % 1001 - 500);
+            aggregate(cache.cache(key), row);
+            Aggregator[] rowAggregators = expected.get(key);
+            if (rowAggregators == null) {
+                rowAggregators = newAggregators();
+                expected.put(key, rowAggregators);
+            }
+            aggregate(rowAggregators, row);
+        }
+        assertEquals(nGroups, cache.size());
+        assertTrue(memoryManager.getAvailableMemory() < memoryManager.getMaxMemory());
+
+        RegionScanner scanner = cache.getScanner(null);
+        List<Cell> results = new ArrayList<>();
+        boolean hasMore;
+        do {
+            hasMore = scanner.next(results);
+        } while (hasMore);
+        assertEquals(nGroups, results.size());
+        for (Cell cell : results) {
+            ImmutableBytesPtr key = new ImmutableBytesPtr(CellUtil.cloneRow(cell));
+            assertArrayEquals(aggregators.toBytes(expected.get(key)), CellUtil.cloneValue(cell));
+        }
+        cache.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testNullSumAndMin() throws Exception {
+        ServerAggregators aggregators = newServerAggregators(newAggregators());
+        SlabGroupByCache cache = new SlabGroupByCache(new GlobalMemoryManager(1024 * 1024), aggregators, 10);
+        ImmutableBytesPtr key = new ImmutableBytesPtr(Bytes.toBytes("a"));
+        Aggregator[] rowAggregators = cache.cache(key);
+        // Only count a row, leaving the other aggregators null
+        rowAggregators[0].aggregate(null, new ImmutableBytesWritable(Bytes.toBytes(1L)));
+        Aggregator[] expected = newAggregators();
+        expected[0].aggregate(null, new ImmutableBytesWritable(Bytes.toBytes(1L)));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (int i = 1; i < rowAggregators.length; i++) {
+            assertFalse(rowAggregators[i].evaluate(null, ptr));
+        }
+        assertArrayEquals(aggregators.toBytes(expected), aggregators.toBytes(rowAggregators));
+        cache.close();
+    }
+
+    @Test
+    public void testVariableWidthAggregatorsNotSupported() {
+        assertTrue(SlabAggregator.isSupported(newAggregators()));
+        assertFalse(SlabAggregator.isSupported(new Aggregator[] {
+                new CountAggregator(),
+                new DistinctValueWithCountServerAggregator(new Configuration()) }));
+        assertFalse(SlabAggregator.isSupported(new Aggregator[] {
+                new MinAggregator(SortOrder.getDefault()) {
+                    @Override
+                    public PDataType getDataType() {
+                        return PVarchar.INSTANCE;
+                    }
+                } }));
+    }
+
+    @Test
+    public void testInsufficientMemory() throws Exception {
+        ServerAggregators aggregators = newServerAggregators(newAggregators());
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(64 * 1024);
+        SlabGroupByCache cache = new SlabGroupByCache(memoryManager, aggregators, 16);
+        try {
+            for (int i = 0; i < 100000; i++) {
+                cache.cache(new ImmutableBytesPtr(Bytes.toBytes(i)));
+            }
+            fail();
+        } catch (InsufficientMemoryException e) { // expected
+        }
+        cache.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+}
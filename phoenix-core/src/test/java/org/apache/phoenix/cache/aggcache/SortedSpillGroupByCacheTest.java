@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixCoprocessorSourceFactory;
+import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixGroupBySpillSource;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.NonSizeTrackingServerAggregators;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.KeyValueSchema;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.ValueBitSet;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SortedSpillGroupByCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ServerAggregators newServerAggregators() throws Exception {
+        SingleAggregateFunction[] functions = new SingleAggregateFunction[] {
+                new CountAggregateFunction(CountAggregateFunction.STAR),
+                new SumAggregateFunction(Arrays.<Expression>asList(LiteralExpression.newConstant(0L))) };
+        Aggregator[] aggregators = new Aggregator[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            aggregators[i] = functions[i].newServerAggregator(null);
+        }
+        return new NonSizeTrackingServerAggregators(functions, aggregators,
+                new Expression[functions.length], 0);
+    }
+
+    private static void aggregate(Aggregator[] aggregators, long value) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable(PLong.INSTANCE.toBytes(value));
+        for (Aggregator aggregator : aggregators) {
+            aggregator.aggregate(null, ptr);
+        }
+    }
+
+    private static long[] decode(ServerAggregators aggregators, Cell cell) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable(cell.getValueArray(),
+                cell.getValueOffset(), cell.getValueLength());
+        KeyValueSchema schema = aggregators.getValueSchema();
+        ValueBitSet valueSet = ValueBitSet.newInstance(schema);
+        valueSet.clear();
+        valueSet.or(ptr);
+        int maxOffset = ptr.getOffset() + ptr.getLength();
+        long[] values = new long[2];
+        schema.iterator(ptr);
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(schema.next(ptr, i, maxOffset, valueSet));
+            values[i] = PLong.INSTANCE.getCodec().decodeLong(ptr, SortOrder.getDefault());
+        }
+        return values;
+    }
+
+    private Configuration newConfiguration(long maxCacheSize) throws Exception {
+        Configuration conf = new Configuration(false);
+        conf.setLong(QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB, maxCacheSize);
+        conf.set(QueryServices.SPOOL_DIRECTORY, folder.getRoot().getAbsolutePath());
+        return conf;
+    }
+
+    @Test
+    public void testMergeSpilledRuns() throws Exception {
+        MetricsPhoenixGroupBySpillSource metricsSource =
+                MetricsPhoenixCoprocessorSourceFactory.getInstance().getGroupBySpillSource();
+        long runsBefore = metricsSource.getSpillRunsWrittenCount();
+        long bytesBefore = metricsSource.getSpillBytesWritten();
+        ServerAggregators aggregators = newServerAggregators();
+        SortedSpillGroupByCache cache = new SortedSpillGroupByCache(newConfiguration(64 * 1024),
+                new GlobalMemoryManager(10 * 1024 * 1024), aggregators, 10, metricsSource);
+
+        int nGroups = 5000;
+        Map<String, long[]> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            String key = "key" + random.nextInt(nGroups);
+            aggregate(cache.cache(new ImmutableBytesPtr(Bytes.toBytes(key))), i);
+            long[] values = expected.get(key);
+            if (values == null) {
+                values = new long[2];
+                expected.put(key, values);
+            }
+            values[0]++;
+            values[1] += i;
+        }
+        assertTrue(cache.getNumSpillRuns() > 0);
+        assertEquals(runsBefore + cache.getNumSpillRuns(), metricsSource.getSpillRunsWrittenCount());
+        assertTrue(metricsSource.getSpillBytesWritten() > bytesBefore);
+        assertEquals(cache.getNumSpillRuns(), folder.getRoot().list().length);
+
+        // Partial aggregations are returned in key order and add up to the expected totals
+        Map<String, long[]> actual = new HashMap<>();
+        byte[] previousKey = null;
+        RegionScanner scanner = cache.getScanner(null);
+        List<Cell> results = new ArrayList<>();
+        boolean hasMore;
+        do {
+            results.clear();
+            hasMore = scanner.next(results);
+            for (Cell cell : results) {
+                byte[] key = CellUtil.cloneRow(cell);
+                if (previousKey != null) {
+                    assertTrue(Bytes.compareTo(previousKey, key) <= 0);
+                }
+                previousKey = key;
+                long[] values = decode(aggregators, cell);
+                long[] totals = actual.get(Bytes.toString(key));
+                if (totals == null) {
+                    actual.put(Bytes.toString(key), values);
+                } else {
+                    totals[0] += values[0];
+                    totals[1] += values[1];
+                }
+            }
+        } while (hasMore);
+        cache.close();
+
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<String, long[]> entry : expected.entrySet()) {
+            long[] values = actual.get(entry.getKey());
+            assertEquals(entry.getValue()[0], values[0]);
+            assertEquals(entry.getValue()[1], values[1]);
+        }
+        // Spilled runs are deleted once the cache is closed
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testNoSpill() throws Exception {
+        ServerAggregators aggregators = newServerAggregators();
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(10 * 1024 * 1024);
+        SortedSpillGroupByCache cache = new SortedSpillGroupByCache(newConfiguration(1024 * 1024),
+                memoryManager, aggregators, 10,
+                MetricsPhoenixCoprocessorSourceFactory.getInstance().getGroupBySpillSource());
+        for (int i = 0; i < 100; i++) {
+            aggregate(cache.cache(new ImmutableBytesPtr(Bytes.toBytes(i % 10))), 1);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(0, cache.getNumSpillRuns());
+
+        RegionScanner scanner = cache.getScanner(null);
+        List<Cell> results = new ArrayList<>();
+        int i = 0;
+        boolean hasMore;
+        do {
+            results.clear();
+            hasMore = scanner.next(results);
+            assertEquals(1, results.size());
+            assertEquals(i, Bytes.toInt(CellUtil.cloneRow(results.get(0))));
+            long[] values = decode(aggregators, results.get(0));
+            assertEquals(10, values[0]);
+            assertEquals(10, values[1]);
+            i++;
+        } while (hasMore);
+        assertEquals(10, i);
+        assertFalse(scanner.next(results));
+        cache.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testSizeDoesNotCountSpilledGroupsAgain() throws Exception {
+        ServerAggregators aggregators = newServerAggregators();
+        SortedSpillGroupByCache cache = new SortedSpillGroupByCache(newConfiguration(64 * 1024),
+                new GlobalMemoryManager(10 * 1024 * 1024), aggregators, 10,
+                MetricsPhoenixCoprocessorSourceFactory.getInstance().getGroupBySpillSource());
+
+        // Aggregate the same groups over and over, stopping like a GROUP BY with a LIMIT does
+        // once the cache reports enough groups
+        int nGroups = 2000;
+        int limit = nGroups + 1;
+        int nRows = 10 * nGroups;
+        int i = 0;
+        while (i < nRows && cache.size() < limit) {
+            aggregate(cache.cache(new ImmutableBytesPtr(Bytes.toBytes(i % nGroups))), 1);
+            i++;
+        }
+        assertTrue(cache.getNumSpillRuns() > 0);
+        // There are fewer distinct groups than the limit, so all the rows must be aggregated
+        assertEquals(nRows, i);
+        assertTrue(cache.size() <= nGroups);
+
+        Map<Integer, Long> counts = new HashMap<>();
+        RegionScanner scanner = cache.getScanner(null);
+        List<Cell> results = new ArrayList<>();
+        boolean hasMore;
+        do {
+            results.clear();
+            hasMore = scanner.next(results);
+            for (Cell cell : results) {
+                int key = Bytes.toInt(CellUtil.cloneRow(cell));
+                Long count = counts.get(key);
+                counts.put(key, (count == null ? 0 : count) + decode(aggregators, cell)[0]);
+            }
+        } while (hasMore);
+        cache.close();
+
+        assertEquals(nGroups, counts.size());
+        for (Long count : counts.values()) {
+            assertEquals(nRows / nGroups, count.longValue());
+        }
+    }
+}
@@ -66,6 +66,7 @@ import org.apache.phoenix.execute.HashJoinPlan.HashSubPlan;
 import org.apache.phoenix.execute.HashJoinPlan.SubPlan;
 import org.apache.phoenix.execute.HashJoinPlan.WhereClauseSubPlan;
 import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.PartitionedHashJoinPlan;
 import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
@@ -2487,6 +2488,41 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
         }
     }
     
+    @Test
+    public void testJoinBloomFilter() throws SQLException {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.JOIN_BLOOM_FILTER_ENABLED_ATTRIB, Boolean.toString(true));
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            conn.createStatement().execute("CREATE TABLE t1(k INTEGER PRIMARY KEY, col1 VARCHAR, col2 VARCHAR)");
+            conn.createStatement().execute("CREATE TABLE t2(k INTEGER PRIMARY KEY, col1 VARCHAR)");
+            String query = "SELECT a.k, b.k FROM t1 a JOIN t2 b ON a.col1 = b.col1";
+            String explainPlan = QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertEquals("CLIENT PARALLEL 1-WAY FULL SCAN OVER T1\n" +
+                    "    PARALLEL INNER-JOIN TABLE 0\n" +
+                    "        CLIENT PARALLEL 1-WAY FULL SCAN OVER T2\n" +
+                    "    DYNAMIC SERVER BLOOM FILTER BY [COL1] (IF AT MOST 875175 RHS KEYS)", explainPlan);
+            // Left joins do not filter out any LHS row
+            query = "SELECT a.k, b.k FROM t1 a LEFT JOIN t2 b ON a.col1 = b.col1";
+            explainPlan = QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertFalse(explainPlan, explainPlan.contains("BLOOM FILTER"));
+            // Joins on the row key are already pushed down as key ranges
+            query = "SELECT a.k, b.k FROM t1 a JOIN t2 b ON a.k = b.k";
+            explainPlan = QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertFalse(explainPlan, explainPlan.contains("BLOOM FILTER"));
+        } finally {
+            conn.close();
+        }
+        conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        try {
+            String query = "SELECT a.k, b.k FROM t1 a JOIN t2 b ON a.col1 = b.col1";
+            String explainPlan = QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertFalse(explainPlan, explainPlan.contains("BLOOM FILTER"));
+        } finally {
+            conn.close();
+        }
+    }
+
     @Test
     public void testFuncIndexUsage() throws SQLException {
         Connection conn = DriverManager.getConnection(getUrl());
@@ -5227,6 +5263,11 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
             return Lists.newArrayList(plan.getLhsPlan(), plan.getRhsPlan());
         }
 
+        @Override
+        public List<QueryPlan> visit(PartitionedHashJoinPlan plan) {
+            return Lists.newArrayList(plan.getLhsPlan(), plan.getRhsPlan());
+        }
+
         @Override
         public List<QueryPlan> visit(UnionPlan plan) {
             return plan.getSubPlans();
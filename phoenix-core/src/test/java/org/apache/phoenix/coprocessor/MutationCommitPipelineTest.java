@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.RegionTooBusyException;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.ipc.RpcCall;
+import org.apache.hadoop.hbase.ipc.RpcUtil;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Unit tests for MutationCommitPipeline
+ */
+public class MutationCommitPipelineTest {
+    private static final long BLOCKING_MEMSTORE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long MAX_BATCH_SIZE_BYTES = 6400;
+
+    @Mock
+    private Region region;
+
+    @Mock
+    private RegionInfo regionInfo;
+
+    @Mock
+    private UngroupedAggregateRegionObserver observer;
+
+    private ExecutorService executor;
+    private MutationCommitPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(region.getRegionInfo()).thenReturn(regionInfo);
+        Mockito.when(regionInfo.getRegionNameAsString()).thenReturn("region");
+        executor = Executors.newSingleThreadExecutor();
+        pipeline = new MutationCommitPipeline(executor, observer, region, BLOCKING_MEMSTORE_SIZE,
+                MAX_BATCH_SIZE, MAX_BATCH_SIZE_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBatchesWrittenInOrder() throws Exception {
+        final List<Integer> written = Lists.newArrayList();
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        pipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                firstBatchStarted.countDown();
+                try {
+                    releaseFirstBatch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                written.add(0);
+            }
+        });
+        // The caller isn't blocked while the batch is written
+        firstBatchStarted.await();
+        releaseFirstBatch.countDown();
+        for (int i = 1; i < 10; i++) {
+            final int batch = i;
+            pipeline.submit(new MutationCommitPipeline.Batch() {
+                @Override
+                public void write() {
+                    written.add(batch);
+                }
+            });
+        }
+        pipeline.await();
+        assertEquals(Lists.newArrayList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), written);
+    }
+
+    @Test
+    public void testFailureReportedOnNextSubmit() throws Exception {
+        final IOException failure = new IOException("failed");
+        pipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                throw failure;
+            }
+        });
+        final AtomicInteger writes = new AtomicInteger();
+        try {
+            pipeline.submit(new MutationCommitPipeline.Batch() {
+                @Override
+                public void write() {
+                    writes.incrementAndGet();
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(0, writes.get());
+        // Nothing is left in flight
+        pipeline.await();
+    }
+
+    @Test
+    public void testBatchSizeFollowsMemStorePressure() throws Exception {
+        MutationCommitPipeline.Batch noop = new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() {
+            }
+        };
+        Mockito.when(region.getMemStoreHeapSize()).thenReturn(BLOCKING_MEMSTORE_SIZE);
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(noop);
+        }
+        pipeline.await();
+        assertEquals(MAX_BATCH_SIZE / 16, pipeline.getBatchSize());
+        assertEquals(MAX_BATCH_SIZE_BYTES / 16, pipeline.getBatchSizeBytes());
+
+        // No change between a quarter and half of the blocking size
+        Mockito.when(region.getMemStoreHeapSize()).thenReturn(BLOCKING_MEMSTORE_SIZE / 3);
+        pipeline.submit(noop);
+        pipeline.await();
+        assertEquals(MAX_BATCH_SIZE / 16, pipeline.getBatchSize());
+
+        Mockito.when(region.getMemStoreHeapSize()).thenReturn(0L);
+        pipeline.submit(noop);
+        pipeline.await();
+        assertEquals(MAX_BATCH_SIZE / 16 + MAX_BATCH_SIZE / 8, pipeline.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(noop);
+        }
+        pipeline.await();
+        assertEquals(MAX_BATCH_SIZE, pipeline.getBatchSize());
+        assertEquals(MAX_BATCH_SIZE_BYTES, pipeline.getBatchSizeBytes());
+    }
+
+    @Test
+    public void testRegionTooBusyRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        pipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                if (attempts.incrementAndGet() <= 2) {
+                    throw new RegionTooBusyException("busy");
+                }
+            }
+        });
+        pipeline.await();
+        assertEquals(3, attempts.get());
+        assertEquals(MAX_BATCH_SIZE / 4, pipeline.getBatchSize());
+        Mockito.verify(observer, Mockito.times(2)).checkForRegionClosingOrSplitting();
+    }
+
+    @Test
+    public void testRegionTooBusyNotRetriedForOtherRegions() throws Exception {
+        pipeline = new MutationCommitPipeline(executor, observer, null, BLOCKING_MEMSTORE_SIZE,
+                MAX_BATCH_SIZE, MAX_BATCH_SIZE_BYTES);
+        final AtomicInteger attempts = new AtomicInteger();
+        pipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() throws IOException {
+                attempts.incrementAndGet();
+                throw new RegionTooBusyException("busy");
+            }
+        });
+        try {
+            pipeline.await();
+            fail();
+        } catch (RegionTooBusyException e) {
+            // expected
+        }
+        assertEquals(1, attempts.get());
+        assertEquals(MAX_BATCH_SIZE, pipeline.getBatchSize());
+    }
+
+    @Test
+    public void testBatchWrittenWithRpcContextOfCaller() throws Exception {
+        RpcCall rpcCall = Mockito.mock(RpcCall.class);
+        final AtomicReference<RpcCall> writeRpcContext = new AtomicReference<>();
+        RpcUtil.setRpcContext(rpcCall);
+        try {
+            pipeline.submit(new MutationCommitPipeline.Batch() {
+                @Override
+                public void write() {
+                    writeRpcContext.set(RpcUtil.getRpcContext());
+                }
+            });
+            pipeline.await();
+        } finally {
+            RpcUtil.setRpcContext(null);
+        }
+        assertSame(rpcCall, writeRpcContext.get());
+        // The pool thread doesn't keep the context of the call once the batch is written
+        pipeline.submit(new MutationCommitPipeline.Batch() {
+            @Override
+            public void write() {
+                writeRpcContext.set(RpcUtil.getRpcContext());
+            }
+        });
+        pipeline.await();
+        assertNull(writeRpcContext.get());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class ColumnValueMapTest {
+    private static final int COLUMN_COUNT = 3 * ColumnValueMap.INDEX_THRESHOLD;
+
+    private static List<PColumn> columns;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        StringBuilder ddl = new StringBuilder("create table COLUMN_VALUE_MAP_TEST (id INTEGER not null primary key");
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            ddl.append(", c").append(i).append(" VARCHAR");
+        }
+        ddl.append(")");
+        try (Connection conn = DriverManager.getConnection(PhoenixRuntime.JDBC_PROTOCOL
+                + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR + PhoenixRuntime.CONNECTIONLESS)) {
+            conn.createStatement().execute(ddl.toString());
+            List<PColumn> tableColumns = conn.unwrap(PhoenixConnection.class)
+                    .getTable(new PTableKey(null, "COLUMN_VALUE_MAP_TEST")).getColumns();
+            columns = Lists.newArrayList(tableColumns.subList(1, tableColumns.size()));
+        }
+    }
+
+    private static byte[] value(int i) {
+        return Bytes.toBytes("v" + i);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        // Go through both the linear search and the indexed lookup
+        for (int count = 1; count <= COLUMN_COUNT; count++) {
+            ColumnValueMap map = new ColumnValueMap(1);
+            Map<PColumn, byte[]> expected = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] value = value(i);
+                assertNull(map.put(columns.get(i), value));
+                expected.put(columns.get(i), value);
+            }
+            assertEquals(count, map.size());
+            for (int i = 0; i < COLUMN_COUNT; i++) {
+                assertEquals(i < count, map.containsKey(columns.get(i)));
+            }
+            assertEquals(expected, map);
+            assertEquals(expected.hashCode(), map.hashCode());
+
+            // Overwriting keeps the insertion order
+            byte[] newValue = Bytes.toBytes("new");
+            assertArrayEquals(value(0), map.put(columns.get(0), newValue));
+            assertEquals(count, map.size());
+            Iterator<Entry<PColumn, byte[]>> iterator = map.entrySet().iterator();
+            Entry<PColumn, byte[]> first = iterator.next();
+            assertSame(columns.get(0), first.getKey());
+            assertSame(newValue, first.getValue());
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        ColumnValueMap map = new ColumnValueMap(COLUMN_COUNT);
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            map.put(columns.get(i), value(i));
+        }
+        for (int i = 0; i < COLUMN_COUNT; i += 2) {
+            assertArrayEquals(value(i), map.remove(columns.get(i)));
+        }
+        Iterator<Entry<PColumn, byte[]>> iterator = map.entrySet().iterator();
+        for (int i = 1; i < COLUMN_COUNT; i += 2) {
+            Entry<PColumn, byte[]> entry = iterator.next();
+            assertSame(columns.get(i), entry.getKey());
+            if (i % 4 == 1) {
+                iterator.remove();
+            }
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals(COLUMN_COUNT / 4, map.size());
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            assertEquals(i % 4 == 3, map.containsKey(columns.get(i)));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(columns.get(3)));
+    }
+}
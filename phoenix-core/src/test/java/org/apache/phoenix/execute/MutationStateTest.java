@@ -21,6 +21,9 @@ import static org.apache.phoenix.execute.MutationState.joinSortedIntArrays;
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -30,8 +33,11 @@ import static org.mockito.Mockito.when;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import org.apache.hadoop.hbase.Cell;
@@ -42,12 +48,21 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.execute.MutationState.MultiRowMutationState;
+import org.apache.phoenix.execute.MutationState.RowMutationState;
+import org.apache.phoenix.execute.MutationState.RowTimestampColInfo;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PUnsignedInt;
 import org.apache.phoenix.schema.types.PVarchar;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.SizedUtil;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -188,6 +203,114 @@ public class MutationStateTest {
 
     }
 
+
+    private static RowMutationState newRow(PColumn column, byte[] value, int statementIndex) {
+        Map<PColumn, byte[]> columnValues = new ColumnValueMap(1);
+        columnValues.put(column, value);
+        return new RowMutationState(columnValues, column.getEstimatedSize() + value.length, statementIndex,
+                RowTimestampColInfo.NULL_ROWTIMESTAMP_INFO, null);
+    }
+
+    private static long getEstimatedSize(MultiRowMutationState rows) {
+        long size = 0;
+        for (RowMutationState row : rows.values()) {
+            size += row.calculateEstimatedSize();
+        }
+        return size;
+    }
+
+    @Test
+    public void testMultiRowMutationState() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("create table MUTATION_TEST3 (id INTEGER not null primary key, v VARCHAR)");
+            PTable table = conn.unwrap(PhoenixConnection.class).getTable(new PTableKey(null, "MUTATION_TEST3"));
+            PColumn column = table.getColumnForColumnName("V");
+            // Start small so that the arrays and the key slabs are grown several times
+            MultiRowMutationState rows = new MultiRowMutationState(1);
+            int rowCount = 10000;
+            for (int i = 0; i < rowCount; i++) {
+                // Use a shared array to make sure the keys are copied
+                byte[] key = Bytes.toBytes("prefix" + i);
+                assertNull(rows.put(new ImmutableBytesPtr(key, 6, key.length - 6), newRow(column, key, i)));
+            }
+            assertEquals(rowCount, rows.size());
+            assertEquals(getEstimatedSize(rows), rows.getEstimatedSize());
+
+            // Overwriting a row returns the old one and replaces its size
+            RowMutationState newRow = newRow(column, new byte[100], rowCount);
+            RowMutationState oldRow = rows.put(new ImmutableBytesPtr(Bytes.toBytes("7")), newRow);
+            assertArrayEquals(Bytes.toBytes("prefix7"), oldRow.getColumnValues().get(column));
+            assertEquals(rowCount, rows.size());
+            assertEquals(getEstimatedSize(rows), rows.getEstimatedSize());
+
+            // Remove the odd rows while iterating, in insertion order
+            Iterator<Entry<ImmutableBytesPtr, RowMutationState>> iterator = rows.entrySet().iterator();
+            for (int i = 0; i < rowCount; i++) {
+                Entry<ImmutableBytesPtr, RowMutationState> entry = iterator.next();
+                assertEquals(Integer.toString(i), Bytes.toString(entry.getKey().copyBytes()));
+                if (i % 2 == 1) {
+                    iterator.remove();
+                }
+            }
+            assertFalse(iterator.hasNext());
+            assertEquals(rowCount / 2, rows.size());
+            assertEquals(getEstimatedSize(rows), rows.getEstimatedSize());
+
+            // Adding rows back reuses the space of the removed ones
+            for (int i = 1; i < rowCount; i += 2) {
+                assertNull(rows.put(new ImmutableBytesPtr(Bytes.toBytes(Integer.toString(i))),
+                        newRow(column, Bytes.toBytes(i), i)));
+            }
+            for (int i = 0; i < rowCount; i += 2) {
+                assertNotNull(rows.put(new ImmutableBytesPtr(Bytes.toBytes(Integer.toString(i))),
+                        newRow(column, Bytes.toBytes(i), i)));
+            }
+            assertEquals(rowCount, rows.size());
+            assertEquals(getEstimatedSize(rows), rows.getEstimatedSize());
+
+            MultiRowMutationState copy = new MultiRowMutationState(16);
+            copy.putAll(rows);
+            copy.putAll(rows);
+            assertEquals(rowCount, copy.size());
+            assertEquals(rows.getEstimatedSize(), copy.getEstimatedSize());
+
+            rows.clear();
+            assertTrue(rows.isEmpty());
+            assertEquals(0, rows.getEstimatedSize());
+            assertFalse(rows.entrySet().iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testUpsertsOfSameRowAreMerged() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.setAutoCommit(false);
+            conn.createStatement().execute(
+                    "create table MUTATION_TEST4 (id INTEGER not null primary key, a VARCHAR, b VARCHAR)"
+                    + " COLUMN_ENCODED_BYTES=0");
+            MutationState state = conn.unwrap(PhoenixConnection.class).getMutationState();
+            conn.createStatement().execute("upsert into MUTATION_TEST4(id, a, b) values (1, 'a1', 'b1')");
+            long rowSize = state.getEstimatedSize();
+            conn.createStatement().execute("upsert into MUTATION_TEST4(id, a) values (1, 'a2')");
+            // The value of A is replaced, only the index of the second statement is added
+            assertEquals(rowSize + SizedUtil.INT_SIZE, state.getEstimatedSize());
+            conn.createStatement().execute("upsert into MUTATION_TEST4(id, a) values (2, 'a3')");
+            assertEquals(2, state.getNumRows());
+
+            Iterator<Pair<byte[], List<Cell>>> iterator = PhoenixRuntime.getUncommittedDataIterator(conn);
+            List<Cell> cells = iterator.next().getSecond();
+            assertFalse(iterator.hasNext());
+            Map<String, String> values = new HashMap<>();
+            for (Cell cell : cells) {
+                values.put(PInteger.INSTANCE.toObject(CellUtil.cloneRow(cell)) + ":"
+                        + Bytes.toString(CellUtil.cloneQualifier(cell)), Bytes.toString(CellUtil.cloneValue(cell)));
+            }
+            assertEquals("a2", values.get("1:A"));
+            assertEquals("b1", values.get("1:B"));
+            assertEquals("a3", values.get("2:A"));
+        }
+    }
+
     @Rule
     public ExpectedException exceptionRule = ExpectedException.none();
 
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.apache.phoenix.query.QueryConstants.BASE_TABLE_BASE_COLUMN_COUNT;
+import static org.apache.phoenix.query.QueryConstants.VALUE_COLUMN_FAMILY;
+import static org.apache.phoenix.util.PhoenixRuntime.CONNECTIONLESS;
+import static org.apache.phoenix.util.PhoenixRuntime.JDBC_PROTOCOL;
+import static org.apache.phoenix.util.PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.ColumnResolver;
+import org.apache.phoenix.compile.FromCompiler;
+import org.apache.phoenix.compile.JoinCompiler;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.compile.SequenceManager;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.compile.TupleProjectionCompiler;
+import org.apache.phoenix.coprocessor.MetaDataProtocol;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.ProjectedColumnExpression;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PColumnImpl;
+import org.apache.phoenix.schema.PName;
+import org.apache.phoenix.schema.PNameFactory;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.EncodedCQCounter;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
+import org.apache.phoenix.schema.PTable.QualifierEncodingScheme;
+import org.apache.phoenix.schema.PTableImpl;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class PartitionedHashJoinPlanTest {
+
+    private static final StatementContext CONTEXT;
+    static {
+        try {
+            Properties props = new Properties();
+            // Small enough for the partitions to be spooled to disk and partitioned again
+            props.setProperty(QueryServices.CLIENT_SPOOL_THRESHOLD_BYTES_ATTRIB, Integer.toString(64));
+            PhoenixConnection connection = DriverManager.getConnection(JDBC_PROTOCOL + JDBC_PROTOCOL_SEPARATOR + CONNECTIONLESS, props).unwrap(PhoenixConnection.class);
+            PhoenixStatement stmt = new PhoenixStatement(connection);
+            ColumnResolver resolver = FromCompiler.getResolverForQuery(SelectStatement.SELECT_ONE, connection);
+            CONTEXT = new StatementContext(stmt, resolver, new Scan(), new SequenceManager(stmt));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final Object[][] LEFT_RELATION = new Object[][] {
+            {1, "1"},
+            {2, "2"},
+            {3, "3"},
+            {4, "4"},
+            {5, "5"},
+            {7, "2"},
+    };
+
+    private static final Object[][] RIGHT_RELATION = new Object[][] {
+            {"2", 20},
+            {"2", 40},
+            {"5", 50},
+            {"6", 60},
+            {"5", 100},
+            {"1", 10},
+            {"3", 30},
+    };
+
+    @Test
+    public void testInnerJoin() throws SQLException {
+        Object[][] expected = new Object[][] {
+                {1, "1", "1", 10},
+                {2, "2", "2", 20},
+                {2, "2", "2", 40},
+                {3, "3", "3", 30},
+                {5, "5", "5", 50},
+                {5, "5", "5", 100},
+                {7, "2", "2", 20},
+                {7, "2", "2", 40},
+        };
+        testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Inner, expected);
+    }
+
+    @Test
+    public void testLeftJoin() throws SQLException {
+        Object[][] expected = new Object[][] {
+                {1, "1", "1", 10},
+                {2, "2", "2", 20},
+                {2, "2", "2", 40},
+                {3, "3", "3", 30},
+                {4, "4", null, null},
+                {5, "5", "5", 50},
+                {5, "5", "5", 100},
+                {7, "2", "2", 20},
+                {7, "2", "2", 40},
+        };
+        testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Left, expected);
+    }
+
+    @Test
+    public void testFullJoin() throws SQLException {
+        Object[][] expected = new Object[][] {
+                {1, "1", "1", 10},
+                {2, "2", "2", 20},
+                {2, "2", "2", 40},
+                {3, "3", "3", 30},
+                {4, "4", null, null},
+                {5, "5", "5", 50},
+                {5, "5", "5", 100},
+                {7, "2", "2", 20},
+                {7, "2", "2", 40},
+                {null, null, "6", 60},
+        };
+        testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Full, expected);
+    }
+
+    @Test
+    public void testSemiJoin() throws SQLException {
+        Object[][] expected = new Object[][] {
+                {1, "1"},
+                {2, "2"},
+                {3, "3"},
+                {5, "5"},
+                {7, "2"},
+        };
+        testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Semi, expected);
+    }
+
+    @Test
+    public void testAntiJoin() throws SQLException {
+        Object[][] expected = new Object[][] {
+                {4, "4"},
+        };
+        testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Anti, expected);
+    }
+
+    @Test
+    public void testNoMatches() throws SQLException {
+        Object[][] rightRelation = new Object[][] {
+                {"6", 60},
+        };
+        testJoin(LEFT_RELATION, rightRelation, JoinType.Inner, new Object[0][]);
+        testJoin(LEFT_RELATION, rightRelation, JoinType.Semi, new Object[0][]);
+        testJoin(LEFT_RELATION, rightRelation, JoinType.Anti, LEFT_RELATION);
+    }
+
+    @Test
+    public void testSingleValueOnly() throws SQLException {
+        try {
+            testJoin(LEFT_RELATION, RIGHT_RELATION, JoinType.Inner, true, 4, new Object[0][]);
+            fail();
+        } catch (SQLException e) {
+            assertEquals(SQLExceptionCode.SINGLE_ROW_SUBQUERY_RETURNS_MULTIPLE_ROWS.getErrorCode(), e.getErrorCode());
+        }
+
+        Object[][] rightRelation = new Object[][] {
+                {"2", 20},
+                {"6", 60},
+                {"5", 100},
+                {"1", 10},
+        };
+        Object[][] expected = new Object[][] {
+                {1, "1", "1", 10},
+                {2, "2", "2", 20},
+                {5, "5", "5", 100},
+                {7, "2", "2", 20},
+        };
+        testJoin(LEFT_RELATION, rightRelation, JoinType.Inner, true, 4, expected);
+
+        // Duplicate keys that no LHS row matches are fine
+        rightRelation = new Object[][] {
+                {"2", 20},
+                {"6", 60},
+                {"6", 61},
+                {"5", 100},
+                {"1", 10},
+        };
+        testJoin(LEFT_RELATION, rightRelation, JoinType.Inner, true, 4, expected);
+    }
+
+    private void testJoin(Object[][] leftRelation, Object[][] rightRelation, JoinType type, Object[][] expectedResult) throws SQLException {
+        for (int numPartitions : new int[] {1, 3, 16}) {
+            testJoin(leftRelation, rightRelation, type, false, numPartitions, expectedResult);
+        }
+    }
+
+    private void testJoin(Object[][] leftRelation, Object[][] rightRelation, JoinType type,
+            boolean isSingleValueOnly, int numPartitions, Object[][] expectedResult) throws SQLException {
+        TableRef leftTable = createProjectedTableFromLiterals(leftRelation[0]);
+        TableRef rightTable = createProjectedTableFromLiterals(rightRelation[0]);
+        QueryPlan leftPlan = newLiteralResultIterationPlan(leftRelation);
+        QueryPlan rightPlan = newLiteralResultIterationPlan(rightRelation);
+        List<Expression> lhsKeyExpressions = Collections.singletonList(new ColumnRef(leftTable, 1).newColumnExpression());
+        List<Expression> rhsKeyExpressions = Collections.singletonList(new ColumnRef(rightTable, 0).newColumnExpression());
+        PTable joinedTable = JoinCompiler.joinProjectedTables(leftTable.getTable(), rightTable.getTable(), type);
+        boolean needsMerge = type != JoinType.Semi && type != JoinType.Anti;
+        PartitionedHashJoinPlan plan = new PartitionedHashJoinPlan(CONTEXT, SelectStatement.SELECT_ONE,
+                TableRef.EMPTY_TABLE_REF, type, leftPlan, rightPlan,
+                new Pair<List<Expression>, List<Expression>>(lhsKeyExpressions, rhsKeyExpressions),
+                needsMerge ? joinedTable : leftTable.getTable(), leftTable.getTable(),
+                needsMerge ? rightTable.getTable() : null, leftTable.getTable().getColumns().size(),
+                isSingleValueOnly, numPartitions);
+        List<String> expected = Lists.newArrayList();
+        for (Object[] row : expectedResult) {
+            expected.add(Arrays.toString(row));
+        }
+        int columnCount = expectedResult.length == 0 ? 0 : expectedResult[0].length;
+        List<String> actual = Lists.newArrayList();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        ResultIterator iter = plan.iterator();
+        try {
+            Tuple next;
+            while ((next = iter.next()) != null) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    PColumn column = joinedTable.getColumns().get(i);
+                    boolean eval = new ProjectedColumnExpression(column, joinedTable, column.getName().getString()).evaluate(next, ptr);
+                    row[i] = eval ? column.getDataType().toObject(ptr) : null;
+                }
+                actual.add(Arrays.toString(row));
+            }
+        } finally {
+            iter.close();
+        }
+        // The output of the join is not ordered
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals("Partitions: " + numPartitions, expected, actual);
+    }
+
+    private QueryPlan newLiteralResultIterationPlan(Object[][] rows) throws SQLException {
+        List<Tuple> tuples = Lists.newArrayList();
+        Tuple baseTuple = new SingleKeyValueTuple(KeyValue.LOWESTKEY);
+        for (Object[] row : rows) {
+            Expression[] exprs = new Expression[row.length];
+            for (int i = 0; i < row.length; i++) {
+                exprs[i] = LiteralExpression.newConstant(row[i]);
+            }
+            TupleProjector projector = new TupleProjector(exprs);
+            tuples.add(projector.projectResults(baseTuple));
+        }
+
+        return new LiteralResultIterationPlan(tuples, CONTEXT, SelectStatement.SELECT_ONE, TableRef.EMPTY_TABLE_REF,
+                RowProjector.EMPTY_PROJECTOR, null, null, OrderBy.EMPTY_ORDER_BY, null);
+    }
+
+    private TableRef createProjectedTableFromLiterals(Object[] row) {
+        List<PColumn> columns = Lists.<PColumn>newArrayList();
+        for (int i = 0; i < row.length; i++) {
+            String name = ParseNodeFactory.createTempAlias();
+            Expression expr = LiteralExpression.newConstant(row[i]);
+            PName colName = PNameFactory.newName(name);
+            columns.add(new PColumnImpl(PNameFactory.newName(name), PNameFactory.newName(VALUE_COLUMN_FAMILY),
+                    expr.getDataType(), expr.getMaxLength(), expr.getScale(), expr.isNullable(),
+                    i, expr.getSortOrder(), null, null, false, name, false, false, colName.getBytes(), HConstants.LATEST_TIMESTAMP));
+        }
+        try {
+            PTable pTable =  new PTableImpl.Builder()
+                    .setType(PTableType.SUBQUERY)
+                    .setTimeStamp(MetaDataProtocol.MIN_TABLE_TIMESTAMP)
+                    .setIndexDisableTimestamp(0L)
+                    .setSequenceNumber(PTable.INITIAL_SEQ_NUM)
+                    .setImmutableRows(false)
+                    .setDisableWAL(false)
+                    .setMultiTenant(false)
+                    .setStoreNulls(false)
+                    .setUpdateCacheFrequency(0)
+                    .setNamespaceMapped(Boolean.FALSE)
+                    .setAppendOnlySchema(false)
+                    .setImmutableStorageScheme(ImmutableStorageScheme.ONE_CELL_PER_COLUMN)
+                    .setQualifierEncodingScheme(QualifierEncodingScheme.NON_ENCODED_QUALIFIERS)
+                    .setBaseColumnCount(BASE_TABLE_BASE_COLUMN_COUNT)
+                    .setEncodedCQCounter(EncodedCQCounter.NULL_COUNTER)
+                    .setUseStatsForParallelization(true)
+                    .setExcludedColumns(ImmutableList.of())
+                    .setSchemaName(PName.EMPTY_NAME)
+                    .setTableName(PName.EMPTY_NAME)
+                    .setRowKeyOrderOptimizable(true)
+                    .setIndexes(Collections.emptyList())
+                    .setPhysicalNames(ImmutableList.of())
+                    .setColumns(columns)
+                    .build();
+            TableRef sourceTable = new TableRef(pTable);
+            List<ColumnRef> sourceColumnRefs = Lists.<ColumnRef> newArrayList();
+            for (PColumn column : sourceTable.getTable().getColumns()) {
+                sourceColumnRefs.add(new ColumnRef(sourceTable, column.getPosition()));
+            }
+
+            return new TableRef(TupleProjectionCompiler.createProjectedTable(sourceTable, sourceColumnRefs, false));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
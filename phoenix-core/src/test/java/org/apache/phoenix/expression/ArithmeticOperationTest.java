@@ -18,6 +18,7 @@
 package org.apache.phoenix.expression;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -29,11 +30,16 @@ import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.exception.DataExceedsCapacityException;
+import org.apache.phoenix.expression.function.CoalesceFunction;
 import org.apache.phoenix.expression.function.RandomFunction;
 import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PDecimal;
 import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.TupleUtil;
 import org.junit.Test;
 
 
@@ -289,15 +295,45 @@ public class ArithmeticOperationTest {
         assertEquals(ptr1, ptr2);
     }
 
+    @Test
+    public void testResultBufferReuse() throws Exception {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        Expression add = new LongAddExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(1L), LiteralExpression.newConstant(2L)));
+        assertTrue(add.isResultTransient());
+        assertTrue(add.evaluate(null, ptr));
+        byte[] buffer = ptr.get();
+        // The value never covers the whole buffer, so that "copy if necessary" helpers copy it
+        assertTrue(ptr.getLength() < buffer.length);
+        assertTrue(buffer != ByteUtil.copyKeyBytesIfNecessary(ptr));
+        assertEquals(3L, PLong.INSTANCE.toObject(ptr));
+        assertTrue(add.evaluate(null, ptr));
+        assertTrue(buffer == ptr.get());
+
+        // Compound expressions assume that the value of a child may be passed through
+        Expression multiply = new LongMultiplyExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(2L), LiteralExpression.newConstant(3L)));
+        Expression coalesce = new CoalesceFunction(Arrays.<Expression>asList(multiply,
+                LiteralExpression.newConstant(0L)));
+        assertTrue(coalesce.isResultTransient());
+        assertFalse(LiteralExpression.newConstant(0L).isResultTransient());
+
+        // Keys are copied since they are held on to
+        ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(null, Arrays.asList(coalesce));
+        assertEquals(6L, PLong.INSTANCE.toObject(key));
+        assertTrue(multiply.evaluate(null, ptr));
+        assertTrue(key.get() != ptr.get());
+    }
+
     private static void assertEqualValue(Expression e, PDataType type, Object value) {
         ImmutableBytesWritable ptr = new ImmutableBytesWritable();
         boolean evaluated = e.evaluate(null, ptr);
         assertTrue(evaluated);
-        assertEquals(value, type.toObject(ptr.get()));
+        assertEquals(value, type.toObject(ptr));
         CloneExpressionVisitor visitor = new CloneExpressionVisitor();
         Expression clone = e.accept(visitor);
         evaluated = clone.evaluate(null, ptr);
         assertTrue(evaluated);
-        assertEquals(value, type.toObject(ptr.get()));
+        assertEquals(value, type.toObject(ptr));
     }
 }
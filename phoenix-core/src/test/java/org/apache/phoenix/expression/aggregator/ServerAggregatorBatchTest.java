@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.BaseTerminalExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MaxAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.junit.Test;
+
+public class ServerAggregatorBatchTest {
+    private static final byte[] ROW = Bytes.toBytes("row");
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+
+    /**
+     * Expression returning the value of the cell at the given position of the row
+     */
+    private static class CellValueExpression extends BaseTerminalExpression {
+        private final int index;
+        private final PDataType type;
+        private final SortOrder sortOrder;
+
+        CellValueExpression(int index, PDataType type, SortOrder sortOrder) {
+            this.index = index;
+            this.type = type;
+            this.sortOrder = sortOrder;
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            Cell cell = tuple.getValue(index);
+            ptr.set(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return type;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return sortOrder;
+        }
+
+        @Override
+        public <T> T accept(ExpressionVisitor<T> visitor) {
+            return null;
+        }
+    }
+
+    /**
+     * Expression returning the value of the cell at the given position of the row in a
+     * buffer reused by every evaluation, like expressions computing a new value do
+     */
+    private static class TransientCellValueExpression extends CellValueExpression {
+        private final byte[] buffer = new byte[Bytes.SIZEOF_LONG + 1];
+
+        TransientCellValueExpression(int index, PDataType type, SortOrder sortOrder) {
+            super(index, type, sortOrder);
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            super.evaluate(tuple, ptr);
+            System.arraycopy(ptr.get(), ptr.getOffset(), buffer, 0, ptr.getLength());
+            ptr.set(buffer, 0, ptr.getLength());
+            return true;
+        }
+
+        @Override
+        public boolean isResultTransient() {
+            return true;
+        }
+    }
+
+    private static final Expression LONG_COL = new CellValueExpression(0, PLong.INSTANCE, SortOrder.ASC);
+    private static final Expression INT_DESC_COL = new CellValueExpression(1, PInteger.INSTANCE, SortOrder.DESC);
+    private static final Expression DOUBLE_COL = new CellValueExpression(2, PDouble.INSTANCE, SortOrder.ASC);
+    private static final Expression VARCHAR_COL = new CellValueExpression(3, PVarchar.INSTANCE, SortOrder.ASC);
+
+    private static List<Expression> args(Expression expression) {
+        return Collections.singletonList(expression);
+    }
+
+    private static ServerAggregators newServerAggregators(SingleAggregateFunction... functions) {
+        Aggregator[] aggregators = new Aggregator[functions.length];
+        Expression[] expressions = new Expression[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            aggregators[i] = functions[i].newServerAggregator(null);
+            expressions[i] = functions[i].getAggregatorExpression();
+        }
+        return new NonSizeTrackingServerAggregators(functions, aggregators, expressions, 0);
+    }
+
+    private static Cell newCell(int qualifier, byte[] value) {
+        return PhoenixKeyValueUtil.newKeyValue(ROW, FAMILY, Bytes.toBytes(qualifier), 0, value);
+    }
+
+    private static byte[] toBytes(PDataType type, Object value, SortOrder sortOrder) {
+        return value == null ? new byte[0] : type.toBytes(value, sortOrder);
+    }
+
+    private static List<Tuple> newRows(int nRows) {
+        Random random = new Random(7);
+        List<Tuple> rows = new ArrayList<>(nRows);
+        for (int i = 0; i < nRows; i++) {
+            boolean isNull = random.nextInt(10) == 0;
+            rows.add(new MultiKeyValueTuple(Arrays.asList(
+                    newCell(0, toBytes(PLong.INSTANCE, isNull ? null : random.nextLong() / 4, SortOrder.ASC)),
+                    newCell(1, toBytes(PInteger.INSTANCE, random.nextInt(1000) - 500, SortOrder.DESC)),
+                    newCell(2, toBytes(PDouble.INSTANCE, isNull ? null : random.nextDouble() * 1000 - 500, SortOrder.ASC)),
+                    newCell(3, toBytes(PVarchar.INSTANCE, "v" + random.nextInt(100), SortOrder.ASC)))));
+        }
+        return rows;
+    }
+
+    private static SingleAggregateFunction[] newFunctions() {
+        return new SingleAggregateFunction[] {
+                new CountAggregateFunction(CountAggregateFunction.STAR),
+                new CountAggregateFunction(args(LONG_COL)),
+                new SumAggregateFunction(args(LONG_COL)),
+                new SumAggregateFunction(args(INT_DESC_COL)),
+                new SumAggregateFunction(args(DOUBLE_COL)),
+                new MinAggregateFunction(args(LONG_COL)),
+                new MaxAggregateFunction(args(LONG_COL)),
+                new MinAggregateFunction(args(INT_DESC_COL)),
+                new MaxAggregateFunction(args(INT_DESC_COL)),
+                new MinAggregateFunction(args(DOUBLE_COL)),
+                new MaxAggregateFunction(args(DOUBLE_COL)),
+                new MinAggregateFunction(args(VARCHAR_COL)) };
+    }
+
+    @Test
+    public void testSameResultsAsRowByRow() {
+        for (int batchSize : new int[] { 1, 7, 1024 }) {
+            for (int nRows : new int[] { 0, 1, 100, 5000 }) {
+                List<Tuple> rows = newRows(nRows);
+
+                ServerAggregators expectedAggregators = newServerAggregators(newFunctions());
+                Aggregator[] expected = expectedAggregators.getAggregators();
+                for (Tuple row : rows) {
+                    expectedAggregators.aggregate(expected, row);
+                }
+
+                ServerAggregators actualAggregators = newServerAggregators(newFunctions());
+                Aggregator[] actual = actualAggregators.getAggregators();
+                ServerAggregatorBatch batch = ServerAggregatorBatch.newInstance(actualAggregators, actual, batchSize);
+                assertNotNull(batch);
+                for (Tuple row : rows) {
+                    batch.aggregate(row);
+                }
+                batch.flush();
+
+                assertArrayEquals("batchSize=" + batchSize + ", nRows=" + nRows,
+                        expectedAggregators.toBytes(expected), actualAggregators.toBytes(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testTransientValues() {
+        Expression transientLongCol = new TransientCellValueExpression(0, PLong.INSTANCE, SortOrder.ASC);
+        Expression transientDoubleCol = new TransientCellValueExpression(2, PDouble.INSTANCE, SortOrder.ASC);
+        List<Tuple> rows = newRows(1000);
+
+        ServerAggregators expectedAggregators = newServerAggregators(
+                new MinAggregateFunction(args(LONG_COL)), new MaxAggregateFunction(args(DOUBLE_COL)));
+        Aggregator[] expected = expectedAggregators.getAggregators();
+        for (Tuple row : rows) {
+            expectedAggregators.aggregate(expected, row);
+        }
+
+        // Row by row
+        ServerAggregators actualAggregators = newServerAggregators(
+                new MinAggregateFunction(args(transientLongCol)), new MaxAggregateFunction(args(transientDoubleCol)));
+        Aggregator[] actual = actualAggregators.getAggregators();
+        for (Tuple row : rows) {
+            actualAggregators.aggregate(actual, row);
+        }
+        assertArrayEquals(expectedAggregators.toBytes(expected), actualAggregators.toBytes(actual));
+
+        // Batched
+        actualAggregators = newServerAggregators(
+                new MinAggregateFunction(args(transientLongCol)), new MaxAggregateFunction(args(transientDoubleCol)));
+        actual = actualAggregators.getAggregators();
+        ServerAggregatorBatch batch = ServerAggregatorBatch.newInstance(actualAggregators, actual, 64);
+        assertNotNull(batch);
+        for (Tuple row : rows) {
+            batch.aggregate(row);
+        }
+        batch.flush();
+        assertArrayEquals(expectedAggregators.toBytes(expected), actualAggregators.toBytes(actual));
+    }
+
+    @Test
+    public void testNoBatchWithoutVectorizedAggregators() {
+        ServerAggregators aggregators = newServerAggregators(new MinAggregateFunction(args(VARCHAR_COL)));
+        assertNull(ServerAggregatorBatch.newInstance(aggregators, aggregators.getAggregators(), 1024));
+        aggregators = newServerAggregators(new SumAggregateFunction(args(LONG_COL)));
+        assertNull(ServerAggregatorBatch.newInstance(aggregators, aggregators.getAggregators(), 0));
+    }
+}
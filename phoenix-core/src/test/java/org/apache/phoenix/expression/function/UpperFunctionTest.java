@@ -49,6 +49,10 @@ public class UpperFunctionTest {
 			ImmutableMap.of("\u00df", "\u0053\u0053",
 					         "Fahrvergnügen", "FAHRVERGNÜGEN");
 
+	private static ImmutableMap<String, String> asciiLowerToUpperCaseMap =
+			ImmutableMap.of("hello World 42", "HELLO WORLD 42",
+					         "a", "A");
+
 	@Test
 	public void testTurkishUpperCase() throws Exception {
 		testLowerToUpperCaseMap(turkishLowerToUpperCaseMap, "tr");
@@ -64,6 +68,12 @@ public class UpperFunctionTest {
 		testLowerToUpperCaseMap(anyLocaleLowerToUpperCaseMap, "tr");
 	}
 	
+	@Test
+	public void testAsciiUpperCase() throws Exception {
+		testLowerToUpperCaseMap(asciiLowerToUpperCaseMap, null);
+		testLowerToUpperCaseMap(asciiLowerToUpperCaseMap, "en");
+	}
+
 	private void testLowerToUpperCaseMap(Map<String, String> lowerToUpperMap, String locale) throws Exception {
 		for(Map.Entry<String, String> lowerUpperPair: lowerToUpperMap.entrySet()) {
 			String upperCaseResultAsc = callFunction(lowerUpperPair.getKey(), locale, SortOrder.ASC);
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class CompiledPredicateTest extends BaseConnectionlessQueryTest {
+    private static final String[] WHERE_CLAUSES = {
+        "A > 10 AND B < 0",
+        "A = 5 OR C = 'abc' OR B >= 100",
+        "NOT (A <= 50) AND E < 500",
+        "(A > 10 AND C LIKE 'a%') OR (B != 3 AND E IS NULL)",
+        "D > TO_DATE('2020-03-01') OR U < 100",
+        "K > 'k5' OR A < 20",
+        "F = 'ab' OR A < 20",
+        "A IS NULL OR B > 0",
+        "D <= TO_DATE('2020-06-01') OR K = 'k1'",
+        "B < 0",
+        "NOT (C = 'abc')",
+    };
+
+    private static List<List<Cell>> createRows(Connection conn, String tableName, String props) throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (K VARCHAR NOT NULL, D DATE NOT NULL, "
+                + "A INTEGER, B BIGINT, C VARCHAR, E DOUBLE, F CHAR(3), U UNSIGNED_INT "
+                + "CONSTRAINT PK PRIMARY KEY (K, D DESC)) " + props);
+        String[] columns = { "A", "B", "C", "E", "F", "U" };
+        String[] strings = { "abc", "ab", "xyz", "a", "" };
+        Random random = new Random(12345);
+        for (int i = 0; i < 200; i++) {
+            Object[] values = {
+                random.nextInt(100),
+                random.nextInt(400) - 200L,
+                strings[random.nextInt(strings.length)],
+                random.nextDouble() * 1000,
+                strings[random.nextInt(strings.length - 1)],
+                random.nextInt(200) };
+            // Only upsert non null values so that the rows have no delete markers
+            StringBuilder sql = new StringBuilder("UPSERT INTO " + tableName + " (K, D");
+            List<Object> bindings = Lists.newArrayList();
+            for (int j = 0; j < columns.length; j++) {
+                if (random.nextInt(4) != 0) {
+                    sql.append(", ").append(columns[j]);
+                    bindings.add(values[j]);
+                }
+            }
+            sql.append(") VALUES (?, ?");
+            for (int j = 0; j < bindings.size(); j++) {
+                sql.append(", ?");
+            }
+            PreparedStatement stmt = conn.prepareStatement(sql.append(')').toString());
+            stmt.setString(1, "k" + i);
+            stmt.setDate(2, new Date(1577836800000L + random.nextInt(365) * 86400000L));
+            for (int j = 0; j < bindings.size(); j++) {
+                stmt.setObject(j + 3, bindings.get(j));
+            }
+            stmt.execute();
+        }
+        Iterator<Pair<byte[],List<Cell>>> iterator = PhoenixRuntime.getUncommittedDataIterator(conn);
+        List<Cell> cells = iterator.next().getSecond();
+        conn.rollback();
+        List<List<Cell>> rows = Lists.newArrayList();
+        List<Cell> row = null;
+        for (Cell cell : cells) {
+            if (row == null || !CellUtil.matchingRows(row.get(0), cell)) {
+                row = Lists.newArrayList();
+                rows.add(row);
+            }
+            row.add(cell);
+        }
+        return rows;
+    }
+
+    private static BooleanExpressionFilter findFilter(Filter filter) {
+        if (filter instanceof BooleanExpressionFilter) {
+            return (BooleanExpressionFilter)filter;
+        }
+        if (filter instanceof FilterList) {
+            for (Filter child : ((FilterList)filter).getFilters()) {
+                BooleanExpressionFilter expressionFilter = findFilter(child);
+                if (expressionFilter != null) {
+                    return expressionFilter;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String filterRow(Filter filter, List<Cell> row) throws Exception {
+        StringBuilder buf = new StringBuilder();
+        filter.reset();
+        for (Cell cell : row) {
+            ReturnCode code = filter.filterKeyValue(cell);
+            buf.append(code).append(' ');
+            if (code == ReturnCode.NEXT_ROW) {
+                break;
+            }
+        }
+        return buf.append(filter.filterRow()).toString();
+    }
+
+    private static void assertSameResults(Connection conn, String tableName, List<List<Cell>> rows) throws Exception {
+        for (String whereClause : WHERE_CLAUSES) {
+            QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class)
+                    .optimizeQuery("SELECT * FROM " + tableName + " WHERE " + whereClause);
+            BooleanExpressionFilter interpreted = findFilter(plan.getContext().getScan().getFilter());
+            assertNotNull(whereClause, interpreted);
+            assertNotNull(whereClause, CompiledPredicate.compile(interpreted.getExpression()));
+            // Deserializing the filter, like on the region server, compiles its expression
+            BooleanExpressionFilter compiled = (BooleanExpressionFilter)interpreted.getClass()
+                    .getMethod("parseFrom", byte[].class).invoke(null, (Object)interpreted.toByteArray());
+            for (List<Cell> row : rows) {
+                assertEquals(whereClause + " on " + row, filterRow(interpreted, row), filterRow(compiled, row));
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertSameResults(conn, "T_ENCODED", createRows(conn, "T_ENCODED", ""));
+        }
+    }
+
+    @Test
+    public void testNonEncodedColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertSameResults(conn, "T_NON_ENCODED", createRows(conn, "T_NON_ENCODED", "COLUMN_ENCODED_BYTES=0"));
+        }
+    }
+
+    @Test
+    public void testNothingToCompile() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createRows(conn, "T_INTERPRETED", "");
+            QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class)
+                    .optimizeQuery("SELECT * FROM T_INTERPRETED WHERE A IN (1, 2, 3) OR C LIKE '%b'");
+            assertNull(CompiledPredicate.compile(findFilter(plan.getContext().getScan().getFilter()).getExpression()));
+        }
+    }
+}
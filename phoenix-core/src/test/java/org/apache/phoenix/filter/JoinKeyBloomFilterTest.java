@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class JoinKeyBloomFilterTest {
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] KEY_QUALIFIER = Bytes.toBytes("k");
+    private static final byte[] VALUE_QUALIFIER = Bytes.toBytes("v");
+
+    private static final PDatum VARCHAR_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+        @Override
+        public PDataType getDataType() {
+            return PVarchar.INSTANCE;
+        }
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    private static List<Expression> newKeyExpressions() {
+        return Collections.<Expression>singletonList(new KeyValueColumnExpression(VARCHAR_DATUM, FAMILY, KEY_QUALIFIER));
+    }
+
+    private static ImmutableBytesWritable key(String key) {
+        return new ImmutableBytesWritable(Bytes.toBytes(key));
+    }
+
+    private static boolean filterRow(JoinKeyBloomFilter filter, String key) throws Exception {
+        byte[] row = Bytes.toBytes("row");
+        List<Cell> cells = Lists.newArrayList(
+                PhoenixKeyValueUtil.newKeyValue(row, FAMILY, KEY_QUALIFIER, 0, Bytes.toBytes(key)),
+                PhoenixKeyValueUtil.newKeyValue(row, FAMILY, VALUE_QUALIFIER, 0, Bytes.toBytes("value")));
+        filter.reset();
+        filter.filterRowCells(cells);
+        return filter.filterRow();
+    }
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        JoinKeyBloomFilter.Builder builder = new JoinKeyBloomFilter.Builder(1024 * 1024);
+        int nKeys = 10000;
+        for (int i = 0; i < nKeys; i++) {
+            builder.add(key("key" + i));
+        }
+        JoinKeyBloomFilter filter = builder.build(newKeyExpressions());
+        for (int i = 0; i < nKeys; i++) {
+            assertTrue(filter.mightContain(key("key" + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < nKeys; i++) {
+            if (filter.mightContain(key("other" + i))) {
+                falsePositives++;
+            }
+        }
+        // Expected false positive rate is 1%
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < nKeys / 20);
+    }
+
+    @Test
+    public void testFilterRowCells() throws Exception {
+        JoinKeyBloomFilter.Builder builder = new JoinKeyBloomFilter.Builder(1024);
+        builder.add(key("a"));
+        builder.add(key("b"));
+        JoinKeyBloomFilter filter = builder.build(newKeyExpressions());
+        assertTrue(filter.hasFilterRow());
+        assertFalse(filterRow(filter, "a"));
+        assertFalse(filterRow(filter, "b"));
+        int rejected = 0;
+        for (int i = 0; i < 100; i++) {
+            if (filterRow(filter, "c" + i)) {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 90);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        JoinKeyBloomFilter.Builder builder = new JoinKeyBloomFilter.Builder(1024 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(key("key" + i));
+        }
+        JoinKeyBloomFilter filter = builder.build(newKeyExpressions());
+        JoinKeyBloomFilter copy = JoinKeyBloomFilter.parseFrom(filter.toByteArray());
+        assertEquals(filter.getSizeInBytes(), copy.getSizeInBytes());
+        assertEquals(filter.getKeyExpressions(), copy.getKeyExpressions());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(copy.mightContain(key("key" + i)));
+            assertEquals(filter.mightContain(key("other" + i)), copy.mightContain(key("other" + i)));
+        }
+        assertFalse(filterRow(copy, "key1"));
+    }
+
+    @Test
+    public void testEmptyKeys() throws Exception {
+        JoinKeyBloomFilter filter = new JoinKeyBloomFilter.Builder(1024).build(newKeyExpressions());
+        assertTrue(filterRow(filter, "a"));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        JoinKeyBloomFilter.Builder builder = new JoinKeyBloomFilter.Builder(64);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(key("key" + i));
+        }
+        assertNull(builder.build(newKeyExpressions()));
+    }
+
+    @Test
+    public void testMaxNumKeys() throws Exception {
+        int maxNumKeys = JoinKeyBloomFilter.Builder.getMaxNumKeys(64);
+        JoinKeyBloomFilter.Builder builder = new JoinKeyBloomFilter.Builder(64);
+        for (int i = 0; i < maxNumKeys; i++) {
+            builder.add(key("key" + i));
+        }
+        assertNotNull(builder.build(newKeyExpressions()));
+        builder = new JoinKeyBloomFilter.Builder(64);
+        for (int i = 0; i <= maxNumKeys; i++) {
+            builder.add(key("key" + i));
+        }
+        assertNull(builder.build(newKeyExpressions()));
+    }
+}
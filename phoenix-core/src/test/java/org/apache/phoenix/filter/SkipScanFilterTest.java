@@ -611,9 +611,34 @@ public class SkipScanFilterTest extends TestCase {
                                 PInteger.INSTANCE.toBytes(8),
                                 PInteger.INSTANCE.toBytes(11))))
         );
+        // Large IN list, where navigating forward skips over many keys of a slot at once
+        testCases.addAll(
+                foreach(new KeyRange[][]{
+                        evenNumberKeys(500),
+                        {
+                            PChar.INSTANCE.getKeyRange(Bytes.toBytes("x"), true, Bytes.toBytes("x"), true),
+                        }},
+                        new int[]{3,1},
+                        null,
+                        new Include("004x"),
+                        new SeekNext("005x", "006x"),
+                        new SeekNext("501a", "502x"),
+                        new SeekNext("502y", "504x"),
+                        new Include("998x"),
+                        new Finished("999a"))
+        );
         return testCases;
     }
 
+    private static KeyRange[] evenNumberKeys(int count) {
+        KeyRange[] keys = new KeyRange[count];
+        for (int i = 0; i < count; i++) {
+            byte[] key = Bytes.toBytes(String.format("%03d", i * 2));
+            keys[i] = PChar.INSTANCE.getKeyRange(key, true, key, true);
+        }
+        return keys;
+    }
+
     private static Collection<?> foreach(KeyRange[][] ranges, int[] widths, int[] slotSpans, Expectation... expectations) {
         List<List<KeyRange>> cnf = Lists.transform(Lists.newArrayList(ranges), ARRAY_TO_LIST);
         List<Object> ret = Lists.newArrayList();
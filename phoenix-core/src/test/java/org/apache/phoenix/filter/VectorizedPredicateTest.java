@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class VectorizedPredicateTest extends BaseConnectionlessQueryTest {
+    private static final String[] WHERE_CLAUSES = {
+        "A > 10 AND B < 0",
+        "B >= -50 AND B <= 50 AND A != 3",
+        "A + B > 10",
+        "B - A * 2 <= 0 AND U < 150",
+        "E * 2 > 700.5",
+        "E - B < 100 AND E + A >= 500",
+        "K = 5 AND B > 0",
+        "E * 0 = 0",
+        "E + E >= 0",
+        "A * -1 + 0 < -50 AND E > 0",
+    };
+
+    private static List<List<Cell>> createRows(Connection conn, String tableName, String props) throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (K INTEGER NOT NULL, S VARCHAR NOT NULL, "
+                + "A INTEGER, B BIGINT, E DOUBLE, U UNSIGNED_INT, C VARCHAR "
+                + "CONSTRAINT PK PRIMARY KEY (K DESC, S)) " + props);
+        String[] columns = { "A", "B", "E", "U", "C" };
+        Random random = new Random(54321);
+        for (int i = 0; i < 300; i++) {
+            Object[] values = {
+                random.nextInt(100),
+                random.nextInt(400) - 200L,
+                // Negative zero is less than zero in the serialized form
+                random.nextInt(10) == 0 ? -0.0 : random.nextDouble() * 1000 - 200,
+                random.nextInt(200),
+                "c" + random.nextInt(5) };
+            // Only upsert non null values so that the rows have no delete markers
+            StringBuilder sql = new StringBuilder("UPSERT INTO " + tableName + " (K, S");
+            List<Object> bindings = Lists.newArrayList();
+            for (int j = 0; j < columns.length; j++) {
+                if (random.nextInt(4) != 0) {
+                    sql.append(", ").append(columns[j]);
+                    bindings.add(values[j]);
+                }
+            }
+            sql.append(") VALUES (?, ?");
+            for (int j = 0; j < bindings.size(); j++) {
+                sql.append(", ?");
+            }
+            PreparedStatement stmt = conn.prepareStatement(sql.append(')').toString());
+            stmt.setInt(1, random.nextInt(10));
+            stmt.setString(2, "s" + i);
+            for (int j = 0; j < bindings.size(); j++) {
+                stmt.setObject(j + 3, bindings.get(j));
+            }
+            stmt.execute();
+        }
+        Iterator<Pair<byte[],List<Cell>>> iterator = PhoenixRuntime.getUncommittedDataIterator(conn);
+        List<Cell> cells = iterator.next().getSecond();
+        conn.rollback();
+        List<List<Cell>> rows = Lists.newArrayList();
+        List<Cell> row = null;
+        for (Cell cell : cells) {
+            if (row == null || !CellUtil.matchingRows(row.get(0), cell)) {
+                row = Lists.newArrayList();
+                rows.add(row);
+            }
+            row.add(cell);
+        }
+        return rows;
+    }
+
+    private static BooleanExpressionFilter findFilter(Filter filter) {
+        if (filter instanceof BooleanExpressionFilter) {
+            return (BooleanExpressionFilter)filter;
+        }
+        if (filter instanceof FilterList) {
+            for (Filter child : ((FilterList)filter).getFilters()) {
+                BooleanExpressionFilter expressionFilter = findFilter(child);
+                if (expressionFilter != null) {
+                    return expressionFilter;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIncluded(Filter filter, List<Cell> row) throws Exception {
+        filter.reset();
+        for (Cell cell : row) {
+            if (filter.filterKeyValue(cell) == ReturnCode.NEXT_ROW) {
+                return false;
+            }
+        }
+        return !filter.filterRow();
+    }
+
+    private static BooleanExpressionFilter getWhereFilter(Connection conn, String tableName, String whereClause)
+            throws Exception {
+        QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class)
+                .optimizeQuery("SELECT COUNT(*) FROM " + tableName + " WHERE " + whereClause);
+        BooleanExpressionFilter filter = findFilter(plan.getContext().getScan().getFilter());
+        assertNotNull(whereClause, filter);
+        return filter;
+    }
+
+    private static void assertSameResults(Connection conn, String tableName, List<List<Cell>> rows) throws Exception {
+        for (String whereClause : WHERE_CLAUSES) {
+            BooleanExpressionFilter filter = getWhereFilter(conn, tableName, whereClause);
+            Expression expression = filter.getExpression();
+            for (int batchSize : new int[] { 1, 7, 1024 }) {
+                VectorizedPredicate predicate = VectorizedPredicate.compile(expression, batchSize);
+                assertNotNull(whereClause, predicate);
+                Tuple[] batch = new Tuple[batchSize];
+                int[] selection = new int[batchSize];
+                for (int start = 0; start < rows.size(); start += batchSize) {
+                    int rowCount = Math.min(batchSize, rows.size() - start);
+                    for (int i = 0; i < rowCount; i++) {
+                        batch[i] = new MultiKeyValueTuple(rows.get(start + i));
+                        predicate.add(batch[i], i);
+                    }
+                    int selectedCount = predicate.select(batch, rowCount, selection);
+                    int selected = 0;
+                    for (int i = 0; i < rowCount; i++) {
+                        List<Cell> row = rows.get(start + i);
+                        boolean isSelected = selected < selectedCount && selection[selected] == i;
+                        assertEquals(whereClause + " on " + row, isIncluded(filter, row), isSelected);
+                        assertEquals(whereClause + " on " + row, isIncluded(filter, row),
+                                predicate.evaluate(batch[i]));
+                        if (isSelected) {
+                            selected++;
+                        }
+                    }
+                    assertEquals(selectedCount, selected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertSameResults(conn, "T_VECTOR_ENCODED", createRows(conn, "T_VECTOR_ENCODED", ""));
+        }
+    }
+
+    @Test
+    public void testNonEncodedColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertSameResults(conn, "T_VECTOR_NON_ENCODED",
+                    createRows(conn, "T_VECTOR_NON_ENCODED", "COLUMN_ENCODED_BYTES=0"));
+        }
+    }
+
+    @Test
+    public void testNothingToVectorize() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createRows(conn, "T_VECTOR_INTERPRETED", "");
+            for (String whereClause : new String[] { "A > 10 OR B < 0", "C = 'c1' AND B > 0", "A IS NULL",
+                    "A / 2 > 10", "E > A" }) {
+                assertNull(whereClause, VectorizedPredicate.compile(
+                        getWhereFilter(conn, "T_VECTOR_INTERPRETED", whereClause).getExpression(), 1024));
+            }
+        }
+    }
+}
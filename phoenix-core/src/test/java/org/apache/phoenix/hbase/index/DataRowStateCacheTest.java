@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.junit.Test;
+
+public class DataRowStateCacheTest {
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final byte[] QUALIFIER = Bytes.toBytes("V");
+
+    private static ImmutableBytesPtr row(String row) {
+        return new ImmutableBytesPtr(Bytes.toBytes(row));
+    }
+
+    private static Map<ImmutableBytesPtr, Put> rowState(String row, long ts, String value) {
+        Put put = new Put(Bytes.toBytes(row));
+        put.addColumn(FAMILY, QUALIFIER, ts, Bytes.toBytes(value));
+        return Collections.singletonMap(row(row), put);
+    }
+
+    private static String getValue(Put put) {
+        Cell cell = put.get(FAMILY, QUALIFIER).get(0);
+        return Bytes.toString(CellUtil.cloneValue(cell));
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        DataRowStateCache cache = new DataRowStateCache(1024 * 1024, Long.MAX_VALUE);
+        assertNull(cache.get(row("a"), 10));
+        Map<ImmutableBytesPtr, Put> rowState = rowState("a", 10, "v1");
+        cache.putAll(rowState, cache.getGeneration(), 10);
+        Put put = cache.get(row("a"), 10);
+        assertArrayEquals(Bytes.toBytes("a"), put.getRow());
+        assertEquals("v1", getValue(put));
+        // The cached state is a copy
+        rowState.get(row("a")).getFamilyCellMap().clear();
+        assertEquals("v1", getValue(cache.get(row("a"), 10)));
+
+        cache.putAll(rowState("a", 20, "v2"), cache.getGeneration(), 20);
+        assertEquals("v2", getValue(cache.get(row("a"), 20)));
+        assertEquals(1, cache.size());
+
+        cache.remove(row("a"));
+        assertNull(cache.get(row("a"), 20));
+        cache.putAll(rowState("a", 20, "v2"), cache.getGeneration(), 20);
+        cache.invalidateAll();
+        assertNull(cache.get(row("a"), 20));
+    }
+
+    @Test
+    public void testInvalidationSinceReadPreventsCaching() throws Exception {
+        DataRowStateCache cache = new DataRowStateCache(1024 * 1024, Long.MAX_VALUE);
+        cache.putAll(rowState("a", 10, "v1"), cache.getGeneration(), 10);
+        long generation = cache.getGeneration();
+        cache.invalidate(row("b"));
+        cache.putAll(rowState("a", 20, "v2"), generation, 20);
+        // The stale state must not be left in the cache either
+        assertNull(cache.get(row("a"), 20));
+        cache.putAll(rowState("a", 20, "v2"), cache.getGeneration(), 20);
+        assertEquals("v2", getValue(cache.get(row("a"), 20)));
+    }
+
+    @Test
+    public void testRowStatesWithNewerCellsAreNotCached() throws Exception {
+        DataRowStateCache cache = new DataRowStateCache(1024 * 1024, Long.MAX_VALUE);
+        cache.putAll(rowState("a", 10, "v1"), cache.getGeneration(), 10);
+        cache.putAll(rowState("a", 30, "v2"), cache.getGeneration(), 20);
+        assertNull(cache.get(row("a"), 20));
+    }
+
+    @Test
+    public void testExpiredRowStatesAreDiscarded() throws Exception {
+        DataRowStateCache cache = new DataRowStateCache(1024 * 1024, 1000);
+        cache.putAll(rowState("a", 100, "v1"), cache.getGeneration(), 100);
+        assertEquals("v1", getValue(cache.get(row("a"), 1099)));
+        assertNull(cache.get(row("a"), 1100));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() throws Exception {
+        DataRowStateCache cache = new DataRowStateCache(4096, Long.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            cache.putAll(rowState("row" + i, 10, "value" + i), cache.getGeneration(), 10);
+        }
+        assertEquals("value999", getValue(cache.get(row("row999"), 10)));
+        assertTrue(cache.size() < 100);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.junit.Test;
+
+public class StripedLockManagerTest {
+
+    private static ImmutableBytesPtr row(int i) {
+        return new ImmutableBytesPtr(Bytes.toBytes("row" + i));
+    }
+
+    @Test
+    public void testGetStripes() {
+        StripedLockManager lockManager = new StripedLockManager(100);
+        assertEquals(128, lockManager.getStripeCount());
+        int[] stripes = lockManager.getStripes(Arrays.asList(row(3), row(1), row(2), row(1), row(3)));
+        assertTrue(stripes.length >= 1 && stripes.length <= 3);
+        for (int i = 0; i < stripes.length; i++) {
+            assertTrue(stripes[i] >= 0 && stripes[i] < 128);
+            assertTrue(i == 0 || stripes[i - 1] < stripes[i]);
+        }
+        assertArrayEquals(new int[] { lockManager.getStripe(row(1)) },
+                lockManager.getStripes(Arrays.asList(row(1), row(1))));
+        assertArrayEquals(new int[] { 0 }, new StripedLockManager(1).getStripes(Arrays.asList(row(1), row(2))));
+    }
+
+    @Test
+    public void testLockTimesOutAndReleasesPartialLocks() throws Exception {
+        final StripedLockManager lockManager = new StripedLockManager(16);
+        final int[] all = new int[16];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        final int[] last = new int[] { 15 };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Another thread holds the last stripe
+            executor.submit(() -> {
+                lockManager.lockStripes(last, 0);
+                return null;
+            }).get();
+            try {
+                lockManager.lockStripes(all, 10);
+                fail();
+            } catch (TimeoutIOException e) {
+            }
+            // The stripes locked before the timeout must have been released
+            Future<?> future = executor.submit(() -> {
+                lockManager.lockStripes(new int[] { 0, 14 }, 0);
+                lockManager.unlockStripes(new int[] { 0, 14 });
+                lockManager.unlockStripes(last);
+                return null;
+            });
+            future.get();
+            lockManager.lockStripes(all, 10);
+            lockManager.unlockStripes(all);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLocksAreReentrantAndExclusive() throws Exception {
+        final StripedLockManager lockManager = new StripedLockManager(8);
+        final int[] stripes = lockManager.getStripes(Arrays.asList(row(1), row(2)));
+        lockManager.lockStripes(stripes, 0);
+        lockManager.lockStripes(stripes, 0);
+        lockManager.unlockStripes(stripes);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            try {
+                executor.submit(() -> {
+                    lockManager.lockStripes(stripes, 10);
+                    return null;
+                }).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutIOException);
+            }
+            lockManager.unlockStripes(stripes);
+            executor.submit(() -> {
+                lockManager.lockStripes(stripes, 1000);
+                lockManager.unlockStripes(stripes);
+                return null;
+            }).get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
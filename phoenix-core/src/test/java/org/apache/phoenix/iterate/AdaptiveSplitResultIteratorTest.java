@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.junit.Test;
+
+public class AdaptiveSplitResultIteratorTest {
+    private static final int ROW_COUNT = 1000;
+    private static final long TIMEOUT_MS = 60000;
+
+    private final List<Tuple> rows = new ArrayList<>();
+    private final Scan scan = new Scan().withStartRow(Bytes.toBytes(0)).withStopRow(Bytes.toBytes(ROW_COUNT));
+
+    public AdaptiveSplitResultIteratorTest() {
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.add(new SingleKeyValueTuple(
+                    new KeyValue(Bytes.toBytes(i), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i))));
+        }
+    }
+
+    /**
+     * Runs scans over the rows of the test, recording the scans it was asked to run
+     */
+    private class InMemoryScanRunner implements AdaptiveSplitResultIterator.ScanRunner {
+        private final List<Scan> scans = new ArrayList<>();
+
+        @Override
+        public ResultIterator newIterator(Scan scan) {
+            scans.add(scan);
+            return new MaterializedResultIterator(getRows(scan));
+        }
+
+        @Override
+        public Future<PeekingResultIterator> submit(Scan scan) {
+            scans.add(scan);
+            return CompletableFuture.<PeekingResultIterator>completedFuture(
+                    new MaterializedResultIterator(getRows(scan)));
+        }
+    }
+
+    private List<Tuple> getRows(Scan scan) {
+        List<Tuple> scanRows = new ArrayList<>();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (Tuple row : rows) {
+            row.getKey(ptr);
+            if (Bytes.compareTo(ptr.get(), ptr.getOffset(), ptr.getLength(),
+                    scan.getStartRow(), 0, scan.getStartRow().length) >= 0
+                    && Bytes.compareTo(ptr.get(), ptr.getOffset(), ptr.getLength(),
+                    scan.getStopRow(), 0, scan.getStopRow().length) < 0) {
+                scanRows.add(row);
+            }
+        }
+        return scanRows;
+    }
+
+    /**
+     * Iterator that waits before returning each row, like a scan over a large region
+     */
+    private static class SlowResultIterator extends DelegateResultIterator {
+        SlowResultIterator(ResultIterator delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+            return super.next();
+        }
+    }
+
+    private void assertAllRows(ResultIterator iterator) throws SQLException {
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Tuple tuple = iterator.next();
+            assertEquals(rows.get(i), tuple);
+        }
+        assertNull(iterator.next());
+        assertNull(iterator.next());
+    }
+
+    @Test
+    public void testSplitLaggingScan() throws SQLException {
+        InMemoryScanRunner runner = new InMemoryScanRunner();
+        AdaptiveSplitResultIterator.ScanPeers peers = new AdaptiveSplitResultIterator.ScanPeers();
+        peers.completed(TimeUnit.MILLISECONDS.toNanos(1));
+        ResultIterator iterator = new AdaptiveSplitResultIterator(
+                new SlowResultIterator(new MaterializedResultIterator(rows)), scan, peers, runner,
+                3, 20, 4, TIMEOUT_MS);
+        assertAllRows(iterator);
+        iterator.close();
+
+        assertEquals(4, runner.scans.size());
+        // The split scans cover the rest of the original scan, one after the other
+        assertTrue(Bytes.compareTo(runner.scans.get(0).getStartRow(), Bytes.toBytes(0)) > 0);
+        for (int i = 1; i < runner.scans.size(); i++) {
+            assertTrue(Bytes.equals(runner.scans.get(i - 1).getStopRow(), runner.scans.get(i).getStartRow()));
+        }
+        assertTrue(Bytes.equals(scan.getStopRow(), runner.scans.get(3).getStopRow()));
+        // The completed scan is taken into account by the other scans of the query
+        assertTrue(peers.getMedianNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testNoSplitWhenNotLagging() throws SQLException {
+        InMemoryScanRunner runner = new InMemoryScanRunner();
+        AdaptiveSplitResultIterator.ScanPeers peers = new AdaptiveSplitResultIterator.ScanPeers();
+        peers.completed(TimeUnit.SECONDS.toNanos(60));
+        ResultIterator iterator = new AdaptiveSplitResultIterator(
+                new SlowResultIterator(new MaterializedResultIterator(rows)), scan, peers, runner,
+                3, 20, 4, TIMEOUT_MS);
+        assertAllRows(iterator);
+        iterator.close();
+        assertTrue(runner.scans.isEmpty());
+    }
+
+    @Test
+    public void testCloseBeforeReadingSplitScans() throws SQLException {
+        InMemoryScanRunner runner = new InMemoryScanRunner();
+        ResultIterator iterator = new AdaptiveSplitResultIterator(
+                new SlowResultIterator(new MaterializedResultIterator(rows)), scan,
+                new AdaptiveSplitResultIterator.ScanPeers(), runner, 3, 20, 4, TIMEOUT_MS);
+        int count = 0;
+        while (runner.scans.isEmpty()) {
+            assertEquals(rows.get(count++), iterator.next());
+        }
+        iterator.close();
+        assertNull(iterator.next());
+    }
+}
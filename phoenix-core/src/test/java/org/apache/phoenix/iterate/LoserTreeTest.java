@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LoserTreeTest {
+
+    private static LoserTree<int[]> newLoserTree(final List<List<int[]>> sources,
+            Comparator<int[]> comparator) {
+        final List<Iterator<int[]>> iterators = new ArrayList<Iterator<int[]>>();
+        for (List<int[]> source : sources) {
+            iterators.add(source.iterator());
+        }
+        return new LoserTree<int[]>(sources.size(), comparator) {
+            @Override
+            protected int[] advance(int source) throws SQLException {
+                Iterator<int[]> iterator = iterators.get(source);
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+
+    private static final Comparator<int[]> VALUE_COMPARATOR = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] o1, int[] o2) {
+            return Integer.compare(o1[0], o2[0]);
+        }
+    };
+
+    @Test
+    public void testMerge() throws SQLException {
+        Random random = new Random(42);
+        for (int numSources : new int[] { 0, 1, 2, 3, 5, 8, 13 }) {
+            List<List<int[]>> sources = new ArrayList<List<int[]>>();
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < numSources; i++) {
+                // Leave some of the sources empty
+                int size = random.nextInt(4) == 0 ? 0 : random.nextInt(100);
+                List<int[]> source = new ArrayList<int[]>();
+                for (int j = 0; j < size; j++) {
+                    int value = random.nextInt(50);
+                    source.add(new int[] { value, i });
+                    expected.add(value);
+                }
+                Collections.sort(source, VALUE_COMPARATOR);
+                sources.add(source);
+            }
+            Collections.sort(expected);
+            LoserTree<int[]> tree = newLoserTree(sources, VALUE_COMPARATOR);
+            List<Integer> actual = new ArrayList<Integer>();
+            int previousSource = -1;
+            int previousValue = -1;
+            for (int[] entry = tree.poll(); entry != null; entry = tree.poll()) {
+                actual.add(entry[0]);
+                // Ties go to the source with the lowest index
+                if (entry[0] == previousValue) {
+                    assertEquals(true, entry[1] >= previousSource);
+                }
+                previousValue = entry[0];
+                previousSource = entry[1];
+            }
+            assertEquals(expected, actual);
+            assertNull(tree.peek());
+        }
+    }
+
+    @Test
+    public void testPeekDoesNotAdvance() throws SQLException {
+        List<List<int[]>> sources = new ArrayList<List<int[]>>();
+        sources.add(Collections.singletonList(new int[] { 2, 0 }));
+        sources.add(Collections.singletonList(new int[] { 1, 1 }));
+        LoserTree<int[]> tree = newLoserTree(sources, VALUE_COMPARATOR);
+        assertEquals(1, tree.peek()[0]);
+        assertEquals(1, tree.peek()[0]);
+        assertEquals(1, tree.poll()[0]);
+        assertEquals(2, tree.peek()[0]);
+        assertEquals(2, tree.poll()[0]);
+        assertNull(tree.poll());
+    }
+}
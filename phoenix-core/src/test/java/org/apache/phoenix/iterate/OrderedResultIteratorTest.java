@@ -16,20 +16,35 @@
  */
 package org.apache.phoenix.iterate;
 
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.coprocessor.ScanRegionObserver;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.expression.RowKeyExpression;
 import org.apache.phoenix.hbase.index.util.VersionUtil;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ScanUtil;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -87,4 +102,152 @@ public class OrderedResultIteratorTest {
         }
 
     }
+
+    private static List<Tuple> newTuples(int count) {
+        Random random = new Random(17);
+        List<Tuple> tuples = new ArrayList<Tuple>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] key = Bytes.toBytes(random.nextInt(count / 2));
+            tuples.add(new SingleKeyValueTuple(new KeyValue(key, SINGLE_COLUMN_FAMILY,
+                    SINGLE_COLUMN, Bytes.toBytes(i))));
+        }
+        return tuples;
+    }
+
+    private static List<String> sortKeys(List<Tuple> tuples, boolean ascending,
+            boolean spoolingEnabled, long thresholdBytes, Integer limit, Integer offset,
+            ExecutorService executor, int parallelism) throws SQLException {
+        return sortKeys(tuples, ascending, spoolingEnabled, thresholdBytes, limit, offset,
+                executor, parallelism, null);
+    }
+
+    private static List<String> sortKeys(List<Tuple> tuples, boolean ascending,
+            boolean spoolingEnabled, long thresholdBytes, Integer limit, Integer offset,
+            ExecutorService executor, int parallelism, byte[] thresholdKey) throws SQLException {
+        OrderByExpression orderBy = OrderByExpression.createByCheckIfOrderByReverse(
+                RowKeyExpression.INSTANCE, false, ascending, false);
+        OrderedResultIterator iterator = new OrderedResultIterator(
+                new MaterializedResultIterator(tuples), Collections.singletonList(orderBy),
+                spoolingEnabled, thresholdBytes, limit, offset, 0, executor, parallelism);
+        if (thresholdKey != null) {
+            // Go through the serialized form sent to the regions
+            iterator.setThresholdSortKeys(TopNThreshold.deserialize(TopNThreshold.serialize(
+                    new ImmutableBytesWritable[] { new ImmutableBytesWritable(thresholdKey) })));
+        }
+        List<String> keys = new ArrayList<String>();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        try {
+            for (Tuple tuple = iterator.next(); tuple != null; tuple = iterator.next()) {
+                tuple.getKey(ptr);
+                keys.add(Bytes.toStringBinary(ptr.get(), ptr.getOffset(), ptr.getLength()));
+            }
+        } finally {
+            iterator.close();
+        }
+        return keys;
+    }
+
+    @Test
+    public void testParallelSort() throws SQLException {
+        List<Tuple> tuples = newTuples(10 * ParallelSortedQueue.BATCH_SIZE + 7);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean ascending : new boolean[] { true, false }) {
+                List<String> expected = sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        null, null, null, 1);
+                assertEquals(tuples.size(), expected.size());
+                // In memory runs
+                assertEquals(expected, sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        null, null, executor, 4));
+                assertEquals(expected, sortKeys(tuples, ascending, false, Integer.MAX_VALUE,
+                        null, null, executor, 3));
+                // Runs spooled to disk
+                assertEquals(expected, sortKeys(tuples, ascending, true, 4096,
+                        null, null, executor, 4));
+                // More runs than threads
+                assertEquals(expected, sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        null, null, executor, 16));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelSortFromPoolThread() throws Exception {
+        final List<Tuple> tuples = newTuples(10 * ParallelSortedQueue.BATCH_SIZE + 7);
+        final List<String> expected = sortKeys(tuples, true, true, Integer.MAX_VALUE,
+                null, null, null, 1);
+        // The sort runs on the only thread of the pool it hands its batches to
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            List<String> actual = executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws SQLException {
+                    return sortKeys(tuples, true, true, Integer.MAX_VALUE,
+                            null, null, executor, 4);
+                }
+            }).get(60, TimeUnit.SECONDS);
+            assertEquals(expected, actual);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelSortWithLimitAndOffset() throws SQLException {
+        List<Tuple> tuples = newTuples(5 * ParallelSortedQueue.BATCH_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<String> expected = sortKeys(tuples, true, true, Integer.MAX_VALUE,
+                    100, 50, null, 1);
+            assertEquals(100, expected.size());
+            assertEquals(expected, sortKeys(tuples, true, true, Integer.MAX_VALUE,
+                    100, 50, executor, 4));
+            assertEquals(expected, sortKeys(tuples, true, true, 1024,
+                    100, 50, executor, 4));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThresholdSortKeys() throws SQLException {
+        List<Tuple> tuples = newTuples(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean ascending : new boolean[] { true, false }) {
+                List<String> expected = sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        100, null, null, 1);
+                assertEquals(100, expected.size());
+                // A threshold at the last row of the top n does not change the result
+                byte[] last = Bytes.toBytesBinary(expected.get(99));
+                assertEquals(expected, sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        100, null, null, 1, last));
+                assertEquals(expected, sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        100, null, executor, 4, last));
+                // A lower threshold drops the rows after it, keeping the ones equal to it
+                byte[] middle = Bytes.toBytesBinary(expected.get(50));
+                List<String> pruned = sortKeys(tuples, ascending, true, Integer.MAX_VALUE,
+                        100, null, null, 1, middle);
+                assertEquals(expected.lastIndexOf(expected.get(50)) + 1, pruned.size());
+                assertEquals(expected.subList(0, pruned.size()), pruned);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThresholdSerialization() {
+        ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[] {
+                new ImmutableBytesWritable(Bytes.toBytes("abc")), null,
+                new ImmutableBytesWritable(Bytes.toBytes(42), 1, 3) };
+        ImmutableBytesWritable[] deserialized =
+                TopNThreshold.deserialize(TopNThreshold.serialize(sortKeys));
+        assertEquals(3, deserialized.length);
+        assertEquals(0, sortKeys[0].compareTo(deserialized[0]));
+        assertEquals(null, deserialized[1]);
+        assertEquals(0, sortKeys[2].compareTo(deserialized[2]));
+    }
 }
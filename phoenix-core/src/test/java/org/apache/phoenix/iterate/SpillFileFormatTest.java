@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.junit.Test;
+
+/**
+ * Tests for the format of the files spilled by {@link BufferedQueue}.
+ */
+public class SpillFileFormatTest {
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+
+    private static Tuple newTuple(Random random, int i) {
+        byte[] row = Bytes.add(Bytes.toBytes("ROW_KEY_PREFIX_"), Bytes.toBytes(i / 3));
+        List<Cell> cells = new ArrayList<Cell>();
+        int cellCount = 1 + random.nextInt(4);
+        for (int j = 0; j < cellCount; j++) {
+            byte[] value = new byte[random.nextInt(20)];
+            random.nextBytes(value);
+            cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("Q" + j), 1000L + random.nextInt(3),
+                    KeyValue.Type.Put, value));
+        }
+        return new ResultTuple(Result.create(cells));
+    }
+
+    private static void assertTupleEquals(Tuple expected, Tuple actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Cell e = expected.getValue(i);
+            Cell a = actual.getValue(i);
+            assertTrue(CellUtil.equals(e, a));
+            assertEquals(e.getTimestamp(), a.getTimestamp());
+            assertArrayEquals(CellUtil.cloneValue(e), CellUtil.cloneValue(a));
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() throws IOException {
+        Random random = new Random(7);
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 1000; i++) {
+            tuples.add(newTuple(random, i));
+        }
+        // A tuple with cells of different rows and a cell without family
+        tuples.add(new ResultTuple(Result.create(Arrays.<Cell>asList(
+                new KeyValue(Bytes.toBytes("a"), FAMILY, Bytes.toBytes("Q0"), 1L, Bytes.toBytes(1)),
+                new KeyValue(Bytes.toBytes("b"), FAMILY, Bytes.toBytes("Q0"), 1L, Bytes.toBytes(2))))));
+        tuples.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes("c"), null, null, 5L,
+                Bytes.toBytes(3))));
+        for (boolean compress : new boolean[] { false, true }) {
+            // Also overflow the column dictionary with a maximum of 2 entries
+            for (int maxDictionarySize : new int[] { 2, CompactTupleEncoder.DEFAULT_MAX_DICTIONARY_SIZE }) {
+                File file = File.createTempFile("SpillFileFormatTest", null);
+                try {
+                    CompactTupleEncoder encoder = new CompactTupleEncoder(maxDictionarySize);
+                    try (DataOutputStream out = new DataOutputStream(
+                            new SpillBlockOutputStream(file, compress, 1024))) {
+                        for (Tuple tuple : tuples) {
+                            encoder.encode(out, tuple, tuple.size());
+                        }
+                        encoder.encodeEnd(out);
+                    }
+                    CompactTupleDecoder decoder = new CompactTupleDecoder();
+                    try (DataInputStream in = new DataInputStream(new SpillBlockInputStream(file))) {
+                        for (Tuple tuple : tuples) {
+                            assertTupleEquals(tuple, decoder.decode(in));
+                        }
+                        assertNull(decoder.decode(in));
+                    }
+                } finally {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedBlocksAreSmaller() throws IOException {
+        byte[] value = new byte[100];
+        File file = File.createTempFile("SpillFileFormatTest", null);
+        try {
+            long[] sizes = new long[2];
+            for (int i = 0; i < 2; i++) {
+                SpillBlockOutputStream out = new SpillBlockOutputStream(file, i == 1);
+                for (int j = 0; j < 10000; j++) {
+                    out.write(value);
+                }
+                out.close();
+                sizes[i] = out.getBytesWritten();
+                assertEquals(sizes[i], file.length());
+            }
+            assertTrue(sizes[1] < sizes[0] / 10);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSpilledTupleQueue() {
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 500; i++) {
+            tuples.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(i), SINGLE_COLUMN_FAMILY,
+                    SINGLE_COLUMN, Bytes.toBytes("VALUE" + i))));
+        }
+        for (boolean compress : new boolean[] { false, true }) {
+            BufferedTupleQueue queue = new BufferedTupleQueue(1024, compress);
+            try {
+                queue.addAll(tuples);
+                for (Tuple tuple : tuples) {
+                    assertTupleEquals(tuple, queue.poll());
+                }
+                assertNull(queue.poll());
+            } finally {
+                queue.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.ExpressionProjector;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.iterate.MaterializedResultIterator;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class ColumnarResultBatchTest {
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final byte[] DOUBLE_COLUMN = Bytes.toBytes("D");
+    private static final byte[] LONG_COLUMN = Bytes.toBytes("L");
+    private static final byte[] STRING_COLUMN = Bytes.toBytes("S");
+    private static final String BAD_VALUE = "bad";
+
+    private static PDatum newDatum(final PDataType type) {
+        return new PDatum() {
+            @Override
+            public boolean isNullable() {
+                return true;
+            }
+
+            @Override
+            public PDataType getDataType() {
+                return type;
+            }
+
+            @Override
+            public Integer getMaxLength() {
+                return null;
+            }
+
+            @Override
+            public Integer getScale() {
+                return null;
+            }
+
+            @Override
+            public SortOrder getSortOrder() {
+                return SortOrder.getDefault();
+            }
+        };
+    }
+
+    private static RowProjector newRowProjector() {
+        List<ColumnProjector> projectors = Arrays.<ColumnProjector>asList(
+                new ExpressionProjector("L", "T", new KeyValueColumnExpression(
+                        newDatum(PLong.INSTANCE), FAMILY, LONG_COLUMN), false),
+                new ExpressionProjector("D", "T", new KeyValueColumnExpression(
+                        newDatum(PDouble.INSTANCE), FAMILY, DOUBLE_COLUMN), false),
+                // Fails to evaluate BAD_VALUE, like a function given illegal data
+                new ExpressionProjector("S", "T", new KeyValueColumnExpression(
+                        newDatum(PVarchar.INSTANCE), FAMILY, STRING_COLUMN) {
+                    @Override
+                    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+                        boolean evaluated = super.evaluate(tuple, ptr);
+                        if (evaluated && BAD_VALUE.equals(Bytes.toString(
+                                ptr.get(), ptr.getOffset(), ptr.getLength()))) {
+                            throw new IllegalDataException(new SQLExceptionInfo.Builder(
+                                    SQLExceptionCode.ILLEGAL_DATA).build().buildException());
+                        }
+                        return evaluated;
+                    }
+                }, false));
+        return new RowProjector(projectors, 0, false);
+    }
+
+    private static Tuple newRow(int row, Long longValue, Double doubleValue, String stringValue) {
+        byte[] key = Bytes.toBytes(row);
+        // Cells have to be sorted by qualifier
+        List<Cell> cells = new ArrayList<>();
+        if (doubleValue != null) {
+            cells.add(new KeyValue(key, FAMILY, DOUBLE_COLUMN, PDouble.INSTANCE.toBytes(doubleValue)));
+        }
+        if (longValue != null) {
+            cells.add(new KeyValue(key, FAMILY, LONG_COLUMN, PLong.INSTANCE.toBytes(longValue)));
+        }
+        if (stringValue != null) {
+            cells.add(new KeyValue(key, FAMILY, STRING_COLUMN, PVarchar.INSTANCE.toBytes(stringValue)));
+        }
+        return new MultiKeyValueTuple(cells);
+    }
+
+    @Test
+    public void testBatchBoundariesAndNulls() throws SQLException {
+        int batchSize = 8;
+        int nRows = 2 * batchSize + 3;
+        List<Tuple> rows = new ArrayList<>();
+        for (int i = 0; i < nRows; i++) {
+            boolean isNull = i % 3 == 0;
+            rows.add(newRow(i, isNull ? null : (long) i, isNull ? null : i / 2.0,
+                    isNull ? null : "v" + i));
+        }
+        ColumnarResultBatch batch = new ColumnarResultBatch(newRowProjector(), batchSize);
+        MaterializedResultIterator scanner = new MaterializedResultIterator(rows);
+        for (int i = 0; i < nRows; i++) {
+            assertSame(rows.get(i), batch.next(scanner));
+            assertTrue(batch.isDecoded(0, PLong.INSTANCE));
+            assertTrue(batch.isDecoded(1, PDouble.INSTANCE));
+            assertTrue(batch.isDecoded(2, PVarchar.INSTANCE));
+            assertFalse(batch.isDecoded(0, PDouble.INSTANCE));
+            if (i % 3 == 0) {
+                for (int column = 0; column < 3; column++) {
+                    assertTrue(batch.isNull(column));
+                    assertNull(batch.getObject(column));
+                }
+                assertEquals(0, batch.getLong(0));
+                assertEquals(0, batch.getDouble(1), 0);
+            } else {
+                for (int column = 0; column < 3; column++) {
+                    assertFalse(batch.isNull(column));
+                }
+                assertEquals(i, batch.getLong(0));
+                assertEquals(Long.valueOf(i), batch.getObject(0));
+                assertEquals(i / 2.0, batch.getDouble(1), 0);
+                assertEquals("v" + i, batch.getObject(2));
+            }
+        }
+        assertNull(batch.next(scanner));
+        assertNull(batch.next(scanner));
+    }
+
+    @Test
+    public void testDictionaryOverflow() throws SQLException {
+        // Values are looked up in the dictionary of a batch of 16 rows until it holds 4 values,
+        // the values after that are decoded for each row
+        int batchSize = 16;
+        String[] values = new String[batchSize + 2];
+        String[] firstValues = { "a", "b", "a", "c", "b", "d", "a", "e", "a" };
+        System.arraycopy(firstValues, 0, values, 0, firstValues.length);
+        for (int i = firstValues.length; i < batchSize; i++) {
+            values[i] = "x" + i;
+        }
+        values[batchSize] = "f";
+        values[batchSize + 1] = "f";
+        List<Tuple> rows = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            rows.add(newRow(i, (long) i, null, values[i]));
+        }
+        ColumnarResultBatch batch = new ColumnarResultBatch(newRowProjector(), batchSize);
+        MaterializedResultIterator scanner = new MaterializedResultIterator(rows);
+        Object[] decoded = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            assertSame(rows.get(i), batch.next(scanner));
+            decoded[i] = batch.getObject(2);
+            assertEquals(values[i], decoded[i]);
+        }
+        assertNull(batch.next(scanner));
+        // Values found in the dictionary are decoded once per batch
+        assertSame(decoded[0], decoded[2]);
+        assertSame(decoded[1], decoded[4]);
+        // The dictionary is full
+        assertNotSame(decoded[0], decoded[6]);
+        assertNotSame(decoded[6], decoded[8]);
+        // The next batch starts over with an empty dictionary
+        assertSame(decoded[batchSize], decoded[batchSize + 1]);
+    }
+
+    @Test
+    public void testProjectionErrorIsLeftToTheRow() throws SQLException {
+        int batchSize = 8;
+        List<Tuple> rows = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            rows.add(newRow(i, (long) i, null, i == 5 ? BAD_VALUE : "v" + i));
+        }
+        RowProjector rowProjector = newRowProjector();
+        ColumnarResultBatch batch = new ColumnarResultBatch(rowProjector, batchSize);
+        MaterializedResultIterator scanner = new MaterializedResultIterator(rows);
+        // Reading the batch does not fail, the rows before and the other columns of the
+        // failing row are decoded
+        for (int i = 0; i < batchSize; i++) {
+            Tuple row = batch.next(scanner);
+            assertSame(rows.get(i), row);
+            assertTrue(batch.isDecoded(0, PLong.INSTANCE));
+            assertEquals(i, batch.getLong(0));
+            if (i != 5) {
+                assertTrue(batch.isDecoded(2, PVarchar.INSTANCE));
+                assertEquals("v" + i, batch.getObject(2));
+            } else {
+                // The value is left to the projection of the row, which raises the error
+                assertFalse(batch.isDecoded(2, PVarchar.INSTANCE));
+                try {
+                    rowProjector.getColumnProjector(2).getValue(row, PVarchar.INSTANCE,
+                            new ImmutableBytesWritable());
+                    fail();
+                } catch (SQLException e) {
+                    assertEquals(SQLExceptionCode.ILLEGAL_DATA.getErrorCode(), e.getErrorCode());
+                }
+            }
+        }
+        assertNull(batch.next(scanner));
+    }
+}
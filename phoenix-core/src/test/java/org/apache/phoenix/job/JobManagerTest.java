@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobFutureTask;
+import org.apache.phoenix.job.JobManager.JobLane;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.junit.Test;
+
+public class JobManagerTest {
+
+    private static JobFutureTask<String> newTask(final Object jobId, final JobLane lane,
+            final Object tenantId, final String name) {
+        return new JobFutureTask<String>(new JobCallable<String>() {
+            @Override
+            public String call() {
+                return name;
+            }
+
+            @Override
+            public Object getJobId() {
+                return jobId;
+            }
+
+            @Override
+            public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                return null;
+            }
+
+            @Override
+            public JobLane getJobLane() {
+                return lane;
+            }
+
+            @Override
+            public Object getTenantId() {
+                return tenantId;
+            }
+        }) {
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    private static List<String> drain(JobManager<JobFutureTask<String>> queue) {
+        List<String> names = new ArrayList<>();
+        JobFutureTask<String> task;
+        while ((task = queue.poll()) != null) {
+            names.add(task.toString());
+        }
+        return names;
+    }
+
+    @Test
+    public void testRoundRobinWithinLane() {
+        JobManager<JobFutureTask<String>> queue = new JobManager<>(100);
+        Object job1 = new Object();
+        Object job2 = new Object();
+        assertTrue(queue.offer(newTask(job1, JobLane.BULK, null, "a1")));
+        assertTrue(queue.offer(newTask(job1, JobLane.BULK, null, "a2")));
+        assertTrue(queue.offer(newTask(job1, JobLane.BULK, null, "a3")));
+        assertTrue(queue.offer(newTask(job2, JobLane.BULK, null, "b1")));
+        assertTrue(queue.offer(newTask(job2, JobLane.BULK, null, "b2")));
+        assertEquals(5, queue.size());
+        // New producers go to the front of the queue
+        assertEquals("[b1, a1, b2, a2, a3]", drain(queue).toString());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testInteractiveBeforeBulk() {
+        JobManager<JobFutureTask<String>> queue = new JobManager<>(100, 0, 2, 100);
+        Object bulkJob = new Object();
+        Object interactiveJob = new Object();
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(queue.offer(newTask(bulkJob, JobLane.BULK, null, "b" + i)));
+        }
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(queue.offer(newTask(interactiveJob, JobLane.INTERACTIVE, null, "i" + i)));
+        }
+        assertEquals(5, queue.size(JobLane.INTERACTIVE.ordinal()));
+        assertEquals(3, queue.size(JobLane.BULK.ordinal()));
+        assertEquals("i1", queue.peek().toString());
+        // One bulk task is taken for every two interactive ones so that bulk jobs do not starve
+        assertEquals("[i1, i2, b1, i3, i4, b2, i5, b3]", drain(queue).toString());
+    }
+
+    @Test
+    public void testCapacityReservedForInteractive() {
+        JobManager<JobFutureTask<String>> queue = new JobManager<>(10, 20, Integer.MAX_VALUE, 100);
+        Object bulkJob = new Object();
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(newTask(bulkJob, JobLane.BULK, null, "b" + i)));
+        }
+        assertFalse(queue.offer(newTask(bulkJob, JobLane.BULK, null, "rejected")));
+        assertFalse(queue.offer(newTask(new Object(), JobLane.BULK, null, "rejected")));
+        assertTrue(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, null, "i0")));
+        assertTrue(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, null, "i1")));
+        // The queue is full
+        assertFalse(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, null, "rejected")));
+        assertEquals("i1", queue.poll().toString());
+        assertTrue(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, null, "i2")));
+        assertEquals(10, queue.size());
+    }
+
+    @Test
+    public void testNoCapacityReservedByDefault() {
+        JobManager<JobFutureTask<String>> queue = new JobManager<>(10,
+                QueryServicesOptions.DEFAULT_QUEUE_INTERACTIVE_RESERVE_PERCENT,
+                QueryServicesOptions.DEFAULT_QUEUE_INTERACTIVE_WEIGHT,
+                QueryServicesOptions.DEFAULT_QUEUE_MAX_TENANT_PERCENT);
+        // Tasks not tagged as interactive may use the whole queue
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, null, "b" + i)));
+        }
+        assertFalse(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, null, "rejected")));
+        assertEquals(10, queue.size());
+    }
+
+    @Test
+    public void testTenantLimit() {
+        JobManager<JobFutureTask<String>> queue = new JobManager<>(10, 0, Integer.MAX_VALUE, 30);
+        // Jobs of the same tenant share its budget
+        assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, "t1", "a")));
+        assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, "t1", "b")));
+        assertTrue(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, "t1", "c")));
+        assertFalse(queue.offer(newTask(new Object(), JobLane.INTERACTIVE, "t1", "rejected")));
+        assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, "t2", "d")));
+        // Jobs of global connections are not limited
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, null, "g" + i)));
+        }
+        assertEquals("c", queue.poll().toString());
+        assertTrue(queue.offer(newTask(new Object(), JobLane.BULK, "t1", "e")));
+        assertEquals(10, queue.drainTo(new ArrayList<JobFutureTask<String>>()));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testVirtualThreadPool() throws Exception {
+        ThreadPoolExecutor executor = JobManager.createThreadPoolExec(1000, 4, 100, 10, 8, 100, true, 64, true);
+        try {
+            Thread thread = executor.submit(new Callable<Thread>() {
+                @Override
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            }).get();
+            assertEquals(JobManager.class.getClassLoader(), thread.getContextClassLoader());
+            assertTrue(thread.isDaemon());
+            // Virtual threads when running on Java 21+, platform threads otherwise
+            ThreadFactory virtualThreadFactory = JobManager.newVirtualThreadFactory();
+            assertEquals(virtualThreadFactory != null, thread.getName().contains("-virtual-thread-"));
+            if (virtualThreadFactory != null) {
+                assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+                assertEquals(64, executor.getMaximumPoolSize());
+            } else {
+                // Platform threads fall back to the size of the platform thread pool
+                assertEquals(4, executor.getMaximumPoolSize());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
+import org.junit.Test;
+
+public class CompactHashCacheFactoryTest {
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] KEY_QUALIFIER = Bytes.toBytes("k");
+    private static final byte[] VALUE_QUALIFIER = Bytes.toBytes("v");
+
+    private static final PDatum VARCHAR_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+        @Override
+        public PDataType getDataType() {
+            return PVarchar.INSTANCE;
+        }
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    private static Tuple newRow(int row, String key) {
+        byte[] rowKey = Bytes.toBytes(row);
+        Cell[] cells = new Cell[] {
+                PhoenixKeyValueUtil.newKeyValue(rowKey, FAMILY, KEY_QUALIFIER, 0, Bytes.toBytes(key)),
+                PhoenixKeyValueUtil.newKeyValue(rowKey, FAMILY, VALUE_QUALIFIER, 0, Bytes.toBytes("value" + row)) };
+        return new ResultTuple(Result.create(cells));
+    }
+
+    /**
+     * Serialize and compress the rows the same way as HashCacheClient
+     */
+    private static ImmutableBytesWritable serialize(List<Tuple> rows, Expression onExpression, boolean singleValueOnly) throws IOException {
+        TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(baOut);
+        out.writeInt(1);
+        WritableUtils.writeVInt(out, ExpressionType.valueOf(onExpression).ordinal());
+        onExpression.write(out);
+        int exprSize = baOut.size() + Bytes.SIZEOF_INT;
+        out.writeInt(exprSize * (singleValueOnly ? -1 : 1));
+        out.writeInt(rows.size());
+        for (Tuple row : rows) {
+            TupleUtil.write(row, out);
+        }
+        out.flush();
+        byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())];
+        int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+        return new ImmutableBytesWritable(compressed, 0, compressedSize);
+    }
+
+    private static void assertSameTuples(List<Tuple> expected, List<Tuple> actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testSameResultsAsHashCacheFactory() throws Exception {
+        Expression onExpression = new KeyValueColumnExpression(VARCHAR_DATUM, FAMILY, KEY_QUALIFIER);
+        Tuple[] rows = new Tuple[1000];
+        for (int i = 0; i < rows.length; i++) {
+            // Unique keys, then keys matching several rows
+            rows[i] = newRow(i, i < 500 ? "unique" + i : "shared" + (i % 50));
+        }
+        ImmutableBytesWritable cachePtr = serialize(Arrays.asList(rows), onExpression, false);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(100 * 1024 * 1024);
+        MemoryChunk chunk = memoryManager.allocate(0);
+        HashCache expected = (HashCache)new HashCacheFactory().newCache(cachePtr, null, memoryManager.allocate(0), true, 0);
+        HashCache actual = (HashCache)new CompactHashCacheFactory().newCache(cachePtr, null, chunk, true, 0);
+        assertTrue(chunk.getSize() > 0);
+
+        for (String key : new String[] { "unique0", "unique499", "shared0", "shared49", "missing", "" }) {
+            ImmutableBytesPtr hashKey = new ImmutableBytesPtr(Bytes.toBytes(key));
+            assertSameTuples(expected.get(hashKey), actual.get(hashKey));
+        }
+        assertEquals(10, actual.get(new ImmutableBytesPtr(Bytes.toBytes("shared7"))).size());
+        expected.close();
+        actual.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testSingleValueOnly() throws Exception {
+        Expression onExpression = new KeyValueColumnExpression(VARCHAR_DATUM, FAMILY, KEY_QUALIFIER);
+        ImmutableBytesWritable cachePtr = serialize(Arrays.asList(newRow(0, "a"), newRow(1, "b"), newRow(2, "b")),
+                onExpression, true);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        HashCache cache = (HashCache)new CompactHashCacheFactory().newCache(cachePtr, null, memoryManager.allocate(0), true, 0);
+        assertEquals(1, cache.get(new ImmutableBytesPtr(Bytes.toBytes("a"))).size());
+        try {
+            cache.get(new ImmutableBytesPtr(Bytes.toBytes("b")));
+            fail();
+        } catch (IOException e) {
+            // Expected: single row subquery returns multiple rows
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testEmptyCache() throws Exception {
+        Expression onExpression = new KeyValueColumnExpression(VARCHAR_DATUM, FAMILY, KEY_QUALIFIER);
+        ImmutableBytesWritable cachePtr = serialize(Collections.<Tuple>emptyList(), onExpression, false);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        HashCache cache = (HashCache)new CompactHashCacheFactory().newCache(cachePtr, null, memoryManager.allocate(0), true, 0);
+        assertNull(cache.get(new ImmutableBytesPtr(Bytes.toBytes("a"))));
+        cache.close();
+    }
+}
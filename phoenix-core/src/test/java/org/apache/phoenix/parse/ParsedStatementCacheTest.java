@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class ParsedStatementCacheTest {
+
+    private static BindableStatement parse(String sql) throws Exception {
+        return new SQLParser(new StringReader(sql)).parseStatement();
+    }
+
+    @Test
+    public void testDmlStatementsAreCached() throws Exception {
+        ParsedStatementCache cache = new ParsedStatementCache(10);
+        String[] sqls = new String[] {
+                "SELECT a, b FROM t WHERE k = ?",
+                "UPSERT INTO t(k, a) VALUES (?, ?)",
+                "DELETE FROM t WHERE k = ?" };
+        for (String sql : sqls) {
+            assertNull(cache.get(sql));
+            BindableStatement stmt = parse(sql);
+            cache.put(sql, stmt);
+            assertSame(stmt, cache.get(sql));
+        }
+        assertEquals(sqls.length, cache.size());
+    }
+
+    @Test
+    public void testDdlStatementsAreNotCached() throws Exception {
+        ParsedStatementCache cache = new ParsedStatementCache(10);
+        String sql = "CREATE TABLE t (k VARCHAR PRIMARY KEY, a INTEGER)";
+        cache.put(sql, parse(sql));
+        assertNull(cache.get(sql));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        ParsedStatementCache cache = new ParsedStatementCache(0);
+        assertFalse(cache.isEnabled());
+        String sql = "SELECT * FROM t";
+        cache.put(sql, parse(sql));
+        assertNull(cache.get(sql));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        ParsedStatementCache cache = new ParsedStatementCache(2);
+        for (int i = 0; i < 10; i++) {
+            String sql = "SELECT * FROM t" + i;
+            cache.put(sql, parse(sql));
+        }
+        assertEquals(2, cache.size());
+    }
+}
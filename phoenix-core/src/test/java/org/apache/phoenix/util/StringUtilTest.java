@@ -18,8 +18,15 @@ package org.apache.phoenix.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PVarchar;
 import org.junit.Test;
 
 public class StringUtilTest {
@@ -79,4 +86,33 @@ public class StringUtilTest {
             tmp = tmp + data.charAt(i + data.length());
         }
     }
+
+    @Test
+    public void testToUtf8Bytes() throws Exception {
+        String[] values = { "", "abc", "Fahrvergnügen", "零一二三", "\uD83D\uDE00 smile",
+                "unpaired \uD83D high", "unpaired \uDE00 low", "trailing \uD83D" };
+        for (String value : values) {
+            byte[] expected = Bytes.toBytes(value);
+            assertEquals(value, expected.length, StringUtil.getUtf8Length(value));
+            byte[] bytes = new byte[expected.length + 2];
+            assertEquals(value, expected.length, StringUtil.toUtf8Bytes(value, bytes, 1));
+            assertArrayEquals(value, expected, Arrays.copyOfRange(bytes, 1, expected.length + 1));
+        }
+    }
+
+    @Test
+    public void testChangeAsciiCase() throws Exception {
+        byte[] result = new byte[16];
+        for (SortOrder sortOrder : SortOrder.values()) {
+            byte[] bytes = PVarchar.INSTANCE.toBytes("aBc-Z09", sortOrder);
+            assertTrue(StringUtil.changeAsciiCase(bytes, 0, bytes.length, sortOrder, true, result, 0));
+            assertEquals("ABC-Z09", Bytes.toString(result, 0, bytes.length));
+            assertTrue(StringUtil.changeAsciiCase(bytes, 0, bytes.length, sortOrder, false, result, 0));
+            assertEquals("abc-z09", Bytes.toString(result, 0, bytes.length));
+            bytes = PVarchar.INSTANCE.toBytes("abç", sortOrder);
+            assertFalse(StringUtil.changeAsciiCase(bytes, 0, bytes.length, sortOrder, true, result, 0));
+        }
+        assertFalse(StringUtil.hasSimpleAsciiCaseMapping(new Locale("tr")));
+        assertTrue(StringUtil.hasSimpleAsciiCaseMapping(Locale.ENGLISH));
+    }
 }